@@ -75,6 +75,7 @@ export const useChatStore = defineStore('chat', () => {
 
             // 注册正在输入回调
             webSocketService.onTyping(handleTyping)
+            webSocketService.onTypingStop(handleTypingStop)
 
             // 注册撤回回调
             webSocketService.onRecall((notification) => {
@@ -257,13 +258,23 @@ export const useChatStore = defineStore('chat', () => {
         }
     }
 
+    // 正在输入状态的自动消失计时（服务端持续输入时会重复推送，重置计时）
+    const typingTimers = new Map<string, number>()
+
     // 处理正在输入状态
     function handleTyping(userId: number) {
         const userIdStr = userId.toString()
         typingUsers.value.add(userIdStr)
-        setTimeout(() => {
-            typingUsers.value.delete(userIdStr)
-        }, 3000)
+        clearTimeout(typingTimers.get(userIdStr))
+        typingTimers.set(userIdStr, window.setTimeout(() => handleTypingStop(userId), 3000))
+    }
+
+    // 处理停止输入状态
+    function handleTypingStop(userId: number) {
+        const userIdStr = userId.toString()
+        clearTimeout(typingTimers.get(userIdStr))
+        typingTimers.delete(userIdStr)
+        typingUsers.value.delete(userIdStr)
     }
 
     // 更新会话列表
@@ -46,6 +46,7 @@ class WebSocketService {
     private hasShownReconnectError = false  // 是否已显示重连失败提示
     private messageCallbacks: ((message: ChatMessage) => void)[] = []
     private typingCallbacks: ((userId: number) => void)[] = []
+    private typingStopCallbacks: ((userId: number) => void)[] = []
     private recallCallbacks: ((notification: MessageActionNotification) => void)[] = []
     private deleteCallbacks: ((notification: MessageActionNotification) => void)[] = []
     private notificationCallbacks: ((notification: Notification) => void)[] = []
@@ -166,6 +167,17 @@ class WebSocketService {
         })
         console.log('✅ 已订阅: /user/queue/typing')
 
+        // 订阅停止输入通知
+        this.client.subscribe('/user/queue/typing-stop', (message: IMessage) => {
+            try {
+                const userId = parseInt(message.body)
+                this.typingStopCallbacks.forEach(cb => cb(userId))
+            } catch (error) {
+                console.error('❌ 解析停止输入通知失败:', error)
+            }
+        })
+        console.log('✅ 已订阅: /user/queue/typing-stop')
+
 
         // 订阅错误消息
         this.client.subscribe('/user/queue/errors', (message: IMessage) => {
@@ -187,7 +199,7 @@ class WebSocketService {
         // 订阅通知消息
         const userId = localStorage.getItem('userId')
         if (userId) {
-            this.client.subscribe(`/topic/notifications/${userId}`, (message: IMessage) => {
+            this.client.subscribe(`/topic/notifications.${userId}`, (message: IMessage) => {
                 try {
                     const notification: Notification = JSON.parse(message.body)
                     console.log('🔔 收到新通知:', notification)
@@ -196,7 +208,7 @@ class WebSocketService {
                     console.error('❌ 解析通知失败:', error)
                 }
             })
-            console.log(`✅ 已订阅: /topic/notifications/${userId}`)
+            console.log(`✅ 已订阅: /topic/notifications.${userId}`)
         }
 
         // 发送连接确认
@@ -293,6 +305,13 @@ class WebSocketService {
         this.typingCallbacks.push(callback)
     }
 
+    /**
+     * 注册停止输入回调
+     */
+    onTypingStop(callback: (userId: number) => void) {
+        this.typingStopCallbacks.push(callback)
+    }
+
     /**
      * 注册撤回回调
      */
@@ -338,6 +357,7 @@ class WebSocketService {
             this.connected = false
             this.messageCallbacks = []
             this.typingCallbacks = []
+            this.typingStopCallbacks = []
             this.recallCallbacks = []
             this.deleteCallbacks = []
             this.notificationCallbacks = []
@@ -72,6 +72,11 @@ public class EventType {
      */
     public static final String VIDEO_DELETE = "video.delete";
 
+    /**
+     * 视频信息更新事件（标题、简介等）
+     */
+    public static final String VIDEO_UPDATE = "video.update";
+
     // ==================== 系统事件 ====================
     /**
      * 用户注册事件
@@ -29,6 +29,9 @@ public class RedisKeyConstants {
     // video-related
     public static final String VIDEO_KEY = "videos:";
 
+    // 聊天相关
+    public static final String CHAT_KEY = "chat:";
+
     // 权限相关
     public static final String PERMISSION_KEY = "permissions:";
     public static final String ROLE_KEY = "roles:";
@@ -92,6 +95,41 @@ public class RedisKeyConstants {
         public static String getUserSessionKey(String sessionId) {
             return buildKey(USER_SESSION_KEY, sessionId);
         }
+
+        // 用户统计计数 (Hash: followers / following / videos / likes)
+        public static String getStatsKey(Long userId) {
+            return buildKey(USER_KEY, "stats:", String.valueOf(userId));
+        }
+
+        // 计数有变化、等待对账的用户 (Set: userId)
+        public static String getStatsTouchedKey() {
+            return buildKey(USER_KEY, "stats:touched");
+        }
+
+        // 关注流收件箱 (ZSet: videoId -> 发布时间毫秒，写扩散推入)
+        public static String getTimelineKey(Long userId) {
+            return buildKey(USER_KEY, "timeline:", String.valueOf(userId));
+        }
+
+        // 作者发件箱 (ZSet: videoId -> 发布时间毫秒，大V的粉丝读取时拉取)
+        public static String getOutboxKey(Long userId) {
+            return buildKey(USER_KEY, "outbox:", String.valueOf(userId));
+        }
+
+        // 改为读扩散的大V作者 (Set: userId)
+        public static String getCelebritiesKey() {
+            return buildKey(USER_KEY, "celebrities");
+        }
+
+        // 用户关注的大V作者 (Set: userId，含占位成员 "0")
+        public static String getFollowedCelebritiesKey(Long userId) {
+            return buildKey(USER_KEY, "celebrities:followed:", String.valueOf(userId));
+        }
+
+        // 用户推荐流缓存页的反向索引 (Set: "缓存名|key")
+        public static String getCachedFeedPagesKey(Long userId) {
+            return buildKey(USER_KEY, "cache:index:", String.valueOf(userId));
+        }
     }
 
     /**
@@ -139,6 +177,11 @@ public class RedisKeyConstants {
         public static String getRateLimitKey(String resource, String identifier) {
             return buildKey(RATE_LIMIT_KEY, resource, ":", identifier);
         }
+
+        // 本地缓存失效广播频道 (Pub/Sub)
+        public static String getCacheInvalidationChannel() {
+            return buildKey(CONFIG_KEY, "cache:invalidation");
+        }
     }
 
     /**
@@ -161,6 +204,125 @@ public class RedisKeyConstants {
         }
     }
 
+    /**
+     * 视频相关的Key构建方法
+     */
+    public static class Video {
+        // 待落库的播放量增量，按 videoId 分片 (Hash: videoId -> delta)
+        public static String getPendingViewsKey(int shard) {
+            return buildKey(VIDEO_KEY, "views:pending:", String.valueOf(shard));
+        }
+
+        // 包含该视频的缓存页的反向索引 (Set: "缓存名|key")
+        public static String getCachedPagesKey(Long videoId) {
+            return buildKey(VIDEO_KEY, "cache:index:", String.valueOf(videoId));
+        }
+
+        // 正在落库的播放量增量 (Hash: videoId -> delta)
+        public static String getFlushingViewsKey(int shard) {
+            return buildKey(VIDEO_KEY, "views:flushing:", String.valueOf(shard));
+        }
+
+        // 某个周期内通过缓冲记录的播放次数，周期内只增不减、不随落库清零，过期后整体删除 (Hash: videoId -> count)
+        public static String getRecordedViewsKey(long epoch, int shard) {
+            return buildKey(VIDEO_KEY, "views:recorded:", String.valueOf(epoch), ":", String.valueOf(shard));
+        }
+
+        // 缓存页的失效代数，每次失效加一 (String)
+        public static String getCacheGenerationKey(String cacheName) {
+            return buildKey(VIDEO_KEY, "cache:generation:", cacheName);
+        }
+    }
+
+    /**
+     * 评论相关的Key构建方法
+     */
+    public static class Comment {
+        // 用户点赞过的评论 (Set: commentId，含占位成员 "0" 表示已从数据库加载)
+        public static String getLikedSetKey(Long userId) {
+            return buildKey(VIDEO_KEY, "comment:liked:", String.valueOf(userId));
+        }
+
+        // 待落库的点赞操作 (Hash: "commentId:userId" -> "1" 点赞 / "0" 取消，同一对只保留最后一次)
+        public static String getPendingLikeOpsKey() {
+            return buildKey(VIDEO_KEY, "comment:likes:ops:pending");
+        }
+
+        // 正在落库的点赞操作
+        public static String getFlushingLikeOpsKey() {
+            return buildKey(VIDEO_KEY, "comment:likes:ops:flushing");
+        }
+
+        // 待落库的点赞数增量 (Hash: commentId -> delta)
+        public static String getPendingLikeDeltaKey() {
+            return buildKey(VIDEO_KEY, "comment:likes:delta:pending");
+        }
+
+        // 正在落库的点赞数增量
+        public static String getFlushingLikeDeltaKey() {
+            return buildKey(VIDEO_KEY, "comment:likes:delta:flushing");
+        }
+
+        // 视频热评排行 (ZSet: commentId -> 热度)
+        public static String getHotRankKey(Long videoId) {
+            return buildKey(VIDEO_KEY, "comment:hot:", String.valueOf(videoId));
+        }
+
+        // 视频热评快照 (Hash: commentId -> CommentVO JSON，含回复预览)
+        public static String getHotDataKey(Long videoId) {
+            return buildKey(VIDEO_KEY, "comment:hot:data:", String.valueOf(videoId));
+        }
+    }
+
+    /**
+     * 聊天相关的Key构建方法
+     */
+    public static class Chat {
+        // 会话最近消息索引 (ZSet: messageId -> 发送时间毫秒)，两个用户ID小的在前
+        public static String getRecentKey(Long userId1, Long userId2) {
+            return buildKey(CHAT_KEY, "recent:", pairOf(userId1, userId2));
+        }
+
+        // 会话最近消息内容 (Hash: messageId -> MessageVO JSON，另含 _seeded 标记)
+        public static String getRecentDataKey(Long userId1, Long userId2) {
+            return buildKey(CHAT_KEY, "recent:data:", pairOf(userId1, userId2));
+        }
+
+        // 用户未读计数 (Hash: 对方用户ID -> 未读数)
+        public static String getUnreadKey(Long userId) {
+            return buildKey(CHAT_KEY, "unread:", String.valueOf(userId));
+        }
+
+        // 非互关用户已发送过消息的标记 (String: "1")
+        public static String getSentMarkerKey(Long senderId, Long receiverId) {
+            return buildKey(CHAT_KEY, "sent:", String.valueOf(senderId), ":", String.valueOf(receiverId));
+        }
+
+        // 待落库消息 (List: Message JSON)
+        public static String getPendingMessagesKey() {
+            return buildKey(CHAT_KEY, "messages:pending");
+        }
+
+        // 落库中消息 (List: Message JSON)，写入成功后删除
+        public static String getFlushingMessagesKey() {
+            return buildKey(CHAT_KEY, "messages:flushing");
+        }
+
+        // 无法落库的消息 (List: Message JSON)，由人工排查后处理
+        public static String getDeadMessagesKey() {
+            return buildKey(CHAT_KEY, "messages:dead");
+        }
+
+        // 已读水位 (String: 标记已读时的毫秒时间)，落库时早于该时间的消息直接写为已读
+        public static String getReadMarkKey(Long readerId, Long otherUserId) {
+            return buildKey(CHAT_KEY, "read:", String.valueOf(readerId), ":", String.valueOf(otherUserId));
+        }
+
+        private static String pairOf(Long userId1, Long userId2) {
+            return Math.min(userId1, userId2) + ":" + Math.max(userId1, userId2);
+        }
+    }
+
     /**
      * 推荐系统相关的Key构建方法
      */
@@ -170,11 +332,26 @@ public class RedisKeyConstants {
             return buildKey(VIDEO_KEY, "recommend:trending");
         }
 
+        // 热度榜对数空间的基准时间 (String: epochMillis)
+        public static String getTrendingEpochKey() {
+            return buildKey(VIDEO_KEY, "recommend:trending:epoch");
+        }
+
         // 个性化推荐流 (ZSet: videoId -> score)
         public static String getFeedKey(Long userId) {
             return buildKey(VIDEO_KEY, "recommend:feed:", String.valueOf(userId));
         }
 
+        // 个性化推荐流重建节流 (String: "1")
+        public static String getFeedRebuildKey(Long userId) {
+            return buildKey(VIDEO_KEY, "recommend:feed:rebuild:", String.valueOf(userId));
+        }
+
+        // 个性化推荐流重建时的临时键，写完后 RENAME 覆盖正式键
+        public static String getFeedBuildingKey(Long userId) {
+            return buildKey(VIDEO_KEY, "recommend:feed:building:", String.valueOf(userId));
+        }
+
         // 用户观看历史 (ZSet: videoId -> timestamp)
         public static String getWatchHistoryKey(Long userId) {
             return buildKey(VIDEO_KEY, "recommend:watch:history:", String.valueOf(userId));
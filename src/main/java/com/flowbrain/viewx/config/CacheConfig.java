@@ -1,5 +1,6 @@
 package com.flowbrain.viewx.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -7,6 +8,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -22,6 +24,8 @@ import java.util.Map;
  * 1. 只缓存热门数据（前3页）
  * 2. 设置合理的TTL，自动过期释放内存
  * 3. 使用Redis作为缓存存储，不占用JVM堆内存
+ * 4. 极热缓存（trending-videos 等）在 Redis 前加一层容量受限的本地 Caffeine 缓存，
+ *    跨节点失效通过 Redis Pub/Sub 广播
  */
 @Configuration
 @EnableCaching
@@ -32,7 +36,10 @@ public class CacheConfig {
      * 为不同的缓存设置不同的过期时间
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     LocalCacheProperties localCacheProperties,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     MeterRegistry meterRegistry) {
         // 默认缓存配置：5分钟过期
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(5))
@@ -62,10 +69,16 @@ public class CacheConfig {
         cacheConfigurations.put("video-detail",
                 defaultConfig.entryTtl(Duration.ofMinutes(15)));
 
-        return RedisCacheManager.builder(connectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .transactionAware() // 支持事务
                 .build();
+        // 未注册为 Bean，需手动加载初始缓存配置
+        redisCacheManager.initializeCaches();
+
+        // 热点缓存前置本地 L1，减少网络往返和反序列化
+        return new TwoLevelCacheManager(redisCacheManager, localCacheProperties,
+                connectionFactory, stringRedisTemplate, meterRegistry);
     }
 }
@@ -0,0 +1,39 @@
+package com.flowbrain.viewx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 二级缓存中本地 L1（Caffeine）的配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "viewx.cache.local")
+public class LocalCacheProperties {
+    /**
+     * 是否启用本地 L1 缓存，关闭后退化为纯 Redis 缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 启用 L1 的缓存名称，其余缓存仍只走 Redis
+     */
+    private List<String> cacheNames = new ArrayList<>(List.of("trending-videos"));
+
+    /**
+     * 每个缓存的最大权重
+     * 列表按元素个数计权，单个对象计 1，约等于可缓存的对象总数
+     */
+    private long maximumWeight = 5000;
+
+    /**
+     * L1 写入后的过期时间
+     * 应明显短于 Redis TTL，即使错过失效广播，本地数据的陈旧时间也有上限
+     */
+    private Duration expireAfterWrite = Duration.ofSeconds(60);
+}
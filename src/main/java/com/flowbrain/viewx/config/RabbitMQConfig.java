@@ -2,10 +2,13 @@ package com.flowbrain.viewx.config;
 
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -48,6 +51,12 @@ public class RabbitMQConfig {
     // 搜索索引更新队列
     public static final String QUEUE_SEARCH_INDEX = "viewx.search.index";
 
+    // 关注流写扩散队列
+    public static final String QUEUE_TIMELINE = "viewx.timeline";
+
+    // 关注图广播队列：每个节点一个临时队列（名称由 RabbitMQ 生成），这里是队列 Bean 的名称
+    public static final String FOLLOW_GRAPH_QUEUE_BEAN = "followGraphQueue";
+
     // 视频处理队列（转码、截图等）
     public static final String QUEUE_VIDEO_PROCESS = "viewx.video.process";
 
@@ -61,9 +70,15 @@ public class RabbitMQConfig {
     public static final String ROUTING_KEY_EMAIL = "email";
     public static final String ROUTING_KEY_STATISTICS = "statistics";
     public static final String ROUTING_KEY_SEARCH = "search";
+    public static final String ROUTING_KEY_FOLLOW_GRAPH = "follow.graph";
+    public static final String ROUTING_KEY_TIMELINE = "timeline";
     public static final String ROUTING_KEY_VIDEO_PROCESS = "video.process";
     public static final String ROUTING_KEY_DELAY = "delay";
 
+    // 批量消费容器工厂
+    public static final String BATCH_LISTENER_FACTORY = "batchListenerContainerFactory";
+    public static final String ACTION_LOG_LISTENER_FACTORY = "actionLogListenerContainerFactory";
+
     // ==================== 基础配置 ====================
 
     @Bean
@@ -91,6 +106,50 @@ public class RabbitMQConfig {
         return template;
     }
 
+    /**
+     * 批量消费容器工厂（推荐更新等低延迟场景）
+     * 攒满 batch-size 条或等待 receive-timeout 毫秒无新消息时，整批交给监听方法
+     */
+    @Bean(BATCH_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${viewx.mq.batch.size:200}") int batchSize,
+            @Value("${viewx.mq.batch.receive-timeout-ms:50}") long receiveTimeoutMs) {
+        return createBatchFactory(configurer, connectionFactory, batchSize, receiveTimeoutMs);
+    }
+
+    /**
+     * 行为日志批量消费容器工厂
+     * 日志对延迟不敏感，使用更大的批次换取更少的数据库写入
+     */
+    @Bean(ACTION_LOG_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory actionLogListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${viewx.mq.action-log.batch-size:500}") int batchSize,
+            @Value("${viewx.mq.action-log.flush-interval-ms:1000}") long flushIntervalMs) {
+        return createBatchFactory(configurer, connectionFactory, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * 其余配置（消息转换器、确认模式等）与默认工厂保持一致；
+     * 监听方法正常返回后整批 ACK，抛出异常则整批重新投递
+     */
+    private SimpleRabbitListenerContainerFactory createBatchFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory, int batchSize, long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        // 预取数不小于批大小，否则批次永远攒不满
+        factory.setPrefetchCount(batchSize);
+        return factory;
+    }
+
     // ==================== 交换机配置 ====================
 
     @Bean
@@ -191,6 +250,22 @@ public class RabbitMQConfig {
         return new Queue(QUEUE_SEARCH_INDEX, true);
     }
 
+    /**
+     * 关注流写扩散队列
+     */
+    @Bean
+    public Queue timelineQueue() {
+        return new Queue(QUEUE_TIMELINE, true);
+    }
+
+    /**
+     * 关注图广播队列：非持久、排他、断开即删除；直连交换机上多个队列绑定同一路由键，每个节点都收到一份
+     */
+    @Bean(FOLLOW_GRAPH_QUEUE_BEAN)
+    public Queue followGraphQueue() {
+        return new AnonymousQueue();
+    }
+
     /**
      * 视频处理队列
      */
@@ -262,6 +337,16 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(searchIndexQueue()).to(mainExchange()).with(ROUTING_KEY_SEARCH);
     }
 
+    @Bean
+    public Binding bindingTimeline() {
+        return BindingBuilder.bind(timelineQueue()).to(mainExchange()).with(ROUTING_KEY_TIMELINE);
+    }
+
+    @Bean
+    public Binding bindingFollowGraph() {
+        return BindingBuilder.bind(followGraphQueue()).to(mainExchange()).with(ROUTING_KEY_FOLLOW_GRAPH);
+    }
+
     @Bean
     public Binding bindingVideoProcess() {
         return BindingBuilder.bind(videoProcessQueue()).to(mainExchange()).with(ROUTING_KEY_VIDEO_PROCESS);
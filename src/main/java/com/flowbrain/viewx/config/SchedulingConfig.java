@@ -0,0 +1,17 @@
+package com.flowbrain.viewx.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置
+ * 启用 @Scheduled 注解支持（热度榜重归一化等后台任务）
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // 使用 Spring Boot 自动配置的任务调度器
+    // 线程数由 spring.task.scheduling.pool.size 配置（application.yml），
+    // 默认的单线程会让聊天落库等高频任务等待耗时的对账任务；
+    // 正在输入时间轮（100ms 刻度）使用 TypingStateService 自己的单线程调度器，不占用该线程池
+}
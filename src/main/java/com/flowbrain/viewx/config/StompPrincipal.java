@@ -0,0 +1,45 @@
+package com.flowbrain.viewx.config;
+
+import com.flowbrain.viewx.common.enums.Role;
+
+import java.security.Principal;
+
+/**
+ * WebSocket 会话用户（不可变）
+ *
+ * CONNECT 时由 WebSocketConfig 的认证拦截器创建并绑定到 STOMP 会话，
+ * 之后该会话的每一帧都直接携带用户ID和角色，@MessageMapping 方法无需再查询数据库。
+ * getName() 返回用户名，与 convertAndSendToUser 使用的用户目的地保持一致
+ */
+public final class StompPrincipal implements Principal {
+
+    private final Long userId;
+
+    private final String username;
+
+    private final Role role;
+
+    public StompPrincipal(Long userId, String username, Role role) {
+        this.userId = userId;
+        this.username = username;
+        this.role = role;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    @Override
+    public String toString() {
+        return "StompPrincipal{userId=" + userId + ", username=" + username + ", role=" + role + "}";
+    }
+}
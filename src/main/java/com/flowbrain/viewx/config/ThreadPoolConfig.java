@@ -1,5 +1,6 @@
 package com.flowbrain.viewx.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -34,6 +35,24 @@ public class ThreadPoolConfig {
         return executor;
     }
 
+    /**
+     * 推荐流重建线程池
+     * 与核心线程池隔离，队列满时拒绝（由调用方丢弃本次重建），重建不会落到 HTTP / MQ 线程上执行
+     */
+    @Bean("feedRebuildExecutor")
+    public Executor feedRebuildExecutor(@Value("${viewx.recommend.feed.rebuild-threads:2}") int threads,
+                                        @Value("${viewx.recommend.feed.rebuild-queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("feed-rebuild-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
     @Bean(name = "TaskExecutor")
     public Executor productTaskExecutor(ThreadPoolProperties properties) {
         // 复用配置或使用另一套配置
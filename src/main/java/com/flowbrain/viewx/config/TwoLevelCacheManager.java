@@ -0,0 +1,183 @@
+package com.flowbrain.viewx.config;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 二级缓存管理器
+ *
+ * 包装 RedisCacheManager：配置在 viewx.cache.local.cache-names 中的缓存返回 TwoLevelCache，
+ * 其余缓存原样返回 Redis 缓存。
+ *
+ * 跨节点失效：写入/失效时通过 Redis Pub/Sub 广播 "节点ID|缓存名|key"（清空时不带 key），
+ * 其他节点收到后只清除自己的 L1，L2 由发起方负责。
+ *
+ * 监控：cache.gets{cache, tier=l1|l2, result=hit|miss}，可通过 /actuator/metrics/cache.gets 查看各层命中率
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, DisposableBean {
+
+    private static final String SEPARATOR = "|";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final CacheManager remoteCacheManager;
+
+    private final LocalCacheProperties properties;
+
+    private final Set<String> localCacheNames;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    private final RedisMessageListenerContainer listenerContainer;
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager, LocalCacheProperties properties,
+            RedisConnectionFactory connectionFactory, StringRedisTemplate stringRedisTemplate,
+            MeterRegistry meterRegistry) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.properties = properties;
+        this.localCacheNames = new HashSet<>(properties.getCacheNames());
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+
+        this.listenerContainer = new RedisMessageListenerContainer();
+        this.listenerContainer.setConnectionFactory(connectionFactory);
+        this.listenerContainer.addMessageListener(
+                (message, pattern) -> onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisKeyConstants.System.getCacheInvalidationChannel()));
+        this.listenerContainer.afterPropertiesSet();
+    }
+
+    /**
+     * 保持失效广播的订阅：启动时 Redis 不可用或连接中断后，定时重新订阅
+     * 订阅中断期间其他节点的 L1 依靠 expireAfterWrite 兜底
+     */
+    @Scheduled(fixedDelayString = "${viewx.cache.local.resubscribe-interval-ms:30000}")
+    public void ensureSubscribed() {
+        if (!properties.isEnabled() || listenerContainer.isListening()) {
+            return;
+        }
+        try {
+            listenerContainer.start();
+            log.info("已订阅本地缓存失效广播");
+        } catch (Exception e) {
+            listenerContainer.stop();
+            log.warn("订阅本地缓存失效广播失败，稍后重试: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null || !properties.isEnabled() || !localCacheNames.contains(name)) {
+            return remote;
+        }
+        return caches.computeIfAbsent(name, n -> createCache(n, remote));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    private TwoLevelCache createCache(String name, Cache remote) {
+        com.github.benmanes.caffeine.cache.Cache<String, Object> local = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumWeight())
+                .weigher(TwoLevelCacheManager::weigh)
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name, "tier", "l1");
+        Counter remoteHits = Counter.builder("cache.gets")
+                .tags("cache", name, "tier", "l2", "result", "hit")
+                .description("The number of times cache lookup methods have returned a cached value.")
+                .register(meterRegistry);
+        Counter remoteMisses = Counter.builder("cache.gets")
+                .tags("cache", name, "tier", "l2", "result", "miss")
+                .description("The number of times cache lookup methods have returned an uncached value.")
+                .register(meterRegistry);
+
+        log.info("启用二级缓存: name={}, maximumWeight={}, expireAfterWrite={}",
+                name, properties.getMaximumWeight(), properties.getExpireAfterWrite());
+        return new TwoLevelCache(name, local, remote, this, remoteHits, remoteMisses);
+    }
+
+    /**
+     * 按对象大小计权：集合按元素个数，其余对象计 1
+     */
+    private static int weigh(String key, Object value) {
+        if (value instanceof Collection) {
+            return Math.max(1, ((Collection<?>) value).size());
+        }
+        return 1;
+    }
+
+    void publishEvict(String cacheName, String key) {
+        publish(nodeId + SEPARATOR + cacheName + SEPARATOR + key);
+    }
+
+    void publishClear(String cacheName) {
+        publish(nodeId + SEPARATOR + cacheName);
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(RedisKeyConstants.System.getCacheInvalidationChannel(), message);
+        } catch (Exception e) {
+            // 广播失败时其他节点的 L1 依靠 expireAfterWrite 兜底
+            log.warn("缓存失效广播失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点发来的失效广播
+     *
+     * @param message "节点ID|缓存名|key" 或 "节点ID|缓存名"（清空）
+     */
+    public void onInvalidation(String message) {
+        String[] parts = message.split("\\" + SEPARATOR, 3);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (parts.length == 3) {
+            cache.evictLocal(parts[2]);
+        } else {
+            cache.clearLocal();
+        }
+    }
+}
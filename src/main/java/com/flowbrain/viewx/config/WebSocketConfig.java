@@ -1,10 +1,15 @@
 package com.flowbrain.viewx.config;
 
+import com.flowbrain.viewx.pojo.entity.User;
+import com.flowbrain.viewx.service.UserService;
 import com.flowbrain.viewx.util.JwtUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
@@ -12,10 +17,8 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
@@ -28,19 +31,53 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final String BROKER_MODE_RELAY = "relay";
+
     @Autowired
     private JwtUtils jwtUtils;
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    @Lazy
+    private UserService userService;
+
+    /**
+     * 消息代理模式：simple 为进程内简单代理（单节点），relay 为中继到 RabbitMQ STOMP 插件（多节点）
+     */
+    @Value("${viewx.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${viewx.websocket.broker.relay.host:${spring.rabbitmq.host:localhost}}")
+    private String relayHost;
+
+    @Value("${viewx.websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${viewx.websocket.broker.relay.login:${spring.rabbitmq.username:guest}}")
+    private String relayLogin;
+
+    @Value("${viewx.websocket.broker.relay.passcode:${spring.rabbitmq.password:guest}}")
+    private String relayPasscode;
+
+    @Value("${viewx.websocket.broker.relay.virtual-host:${spring.rabbitmq.virtual-host:/}}")
+    private String relayVirtualHost;
+
+    @Value("${viewx.websocket.broker.relay.heartbeat-ms:10000}")
+    private long relayHeartbeatMs;
 
     /**
      * 配置消息代理
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // 启用简单消息代理，用于向客户端发送消息
-        config.enableSimpleBroker("/topic", "/queue");
+        if (BROKER_MODE_RELAY.equalsIgnoreCase(brokerMode)) {
+            configureBrokerRelay(config);
+        } else {
+            // 启用简单消息代理，用于向客户端发送消息
+            config.enableSimpleBroker("/topic", "/queue");
+        }
+
+        // 目的地以 . 分隔（RabbitMQ STOMP 插件不接受 /topic/ 之后再出现 /），@MessageMapping 写作 chat.send
+        config.setPathMatcher(new AntPathMatcher("."));
 
         // 设置应用程序目的地前缀
         config.setApplicationDestinationPrefixes("/app");
@@ -49,6 +86,32 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setUserDestinationPrefix("/user");
     }
 
+    /**
+     * 中继到 RabbitMQ STOMP 插件：订阅保存在 RabbitMQ 中，任意节点发布的消息都能到达所有节点上的订阅者
+     *
+     * 用户目的地（/user/queue/...）跨节点解析：
+     * - 各节点定期把本地会话广播到 /topic/user-registry，汇总成全局用户注册表
+     * - 本节点找不到目标用户的会话时，消息广播到 /topic/unresolved-user，由持有会话的节点投递
+     */
+    private void configureBrokerRelay(MessageBrokerRegistry config) {
+        if (!ClassUtils.isPresent("reactor.netty.tcp.TcpClient", getClass().getClassLoader())) {
+            throw new IllegalStateException("STOMP 代理中继需要 reactor-netty-core，请使用 -Pbroker-relay 构建");
+        }
+        config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayLogin)
+                .setClientPasscode(relayPasscode)
+                .setSystemLogin(relayLogin)
+                .setSystemPasscode(relayPasscode)
+                .setVirtualHost(relayVirtualHost)
+                .setSystemHeartbeatSendInterval(relayHeartbeatMs)
+                .setSystemHeartbeatReceiveInterval(relayHeartbeatMs)
+                .setUserDestinationBroadcast("/topic/unresolved-user")
+                .setUserRegistryBroadcast("/topic/user-registry");
+        log.info("WebSocket 使用 STOMP 代理中继: {}:{}", relayHost, relayPort);
+    }
+
     /**
      * 注册 STOMP 端点
      */
@@ -76,23 +139,25 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     if (token != null && token.startsWith("Bearer ")) {
                         token = token.substring(7);
 
+                        String username;
+                        User user;
                         try {
-                            // 验证 token
-                            String username = jwtUtils.getUsernameFromToken(token);
-
-                            if (username != null) {
-                                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                                        userDetails, null, userDetails.getAuthorities());
-
-                                SecurityContextHolder.getContext().setAuthentication(authentication);
-                                accessor.setUser(authentication);
-
-                                log.info("WebSocket 连接认证成功，用户: {}", username);
-                            }
+                            // 验证 token；每个会话只查询一次用户，之后的帧直接使用会话上的 StompPrincipal
+                            username = jwtUtils.getUsernameFromToken(token);
+                            user = username == null ? null : userService.getUserByUsername(username);
                         } catch (Exception e) {
                             log.error("WebSocket 认证失败: {}", e.getMessage());
+                            throw new MessageDeliveryException(message, "WebSocket 认证失败");
                         }
+
+                        // 携带了凭证但用户不存在或不可用时拒绝 CONNECT，不能以匿名身份继续
+                        if (user == null || !user.isEnabled() || !user.isAccountNonLocked() || user.getRole() == null) {
+                            log.warn("WebSocket 认证失败，用户不存在或不可用: {}", username);
+                            throw new MessageDeliveryException(message, "用户不存在或不可用");
+                        }
+                        accessor.setUser(new StompPrincipal(user.getId(), user.getUsername(), user.getRole()));
+
+                        log.info("WebSocket 连接认证成功，用户: {}", username);
                     }
                 }
 
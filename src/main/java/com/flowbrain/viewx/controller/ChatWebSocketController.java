@@ -1,17 +1,20 @@
 package com.flowbrain.viewx.controller;
 
 import com.flowbrain.viewx.common.Result;
+import com.flowbrain.viewx.config.StompPrincipal;
 import com.flowbrain.viewx.pojo.dto.MessageDTO;
+import com.flowbrain.viewx.pojo.entity.User;
 import com.flowbrain.viewx.pojo.vo.MessageVO;
 import com.flowbrain.viewx.service.ChatService;
 import com.flowbrain.viewx.service.UserService;
+import com.flowbrain.viewx.service.chat.ChatCacheService;
+import com.flowbrain.viewx.service.chat.TypingStateService;
 import com.flowbrain.viewx.service.impl.ChatServiceImpl;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.messaging.simp.user.SimpUserRegistry;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
@@ -36,12 +39,11 @@ public class ChatWebSocketController {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
-    /**
-     * 处理发送消息请求
-     * 客户端发送到: /app/chat.send
-     */
     @Autowired
-    private SimpUserRegistry userRegistry;
+    private ChatCacheService chatCacheService;
+
+    @Autowired
+    private TypingStateService typingStateService;
 
     // 手动注入 ObjectMapper 用于序列化
     private final com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
@@ -58,56 +60,39 @@ public class ChatWebSocketController {
         objectMapper.registerModule(simpleModule);
     }
 
-    @MessageMapping("/chat.send")
+    /**
+     * 处理发送消息请求
+     * 客户端发送到: /app/chat.send
+     */
+    @MessageMapping("chat.send")
     public void sendMessage(@Payload MessageDTO messageDTO, Principal principal) {
         try {
-            String username = principal.getName();
-            log.info("=== 开始处理消息发送 ===");
-
-            // 打印所有在线用户，帮助调试
-            log.info("当前在线用户数: {}", userRegistry.getUserCount());
-            userRegistry.getUsers().forEach(user -> {
-                log.info("- 在线用户: {}", user.getName());
-            });
-
-            log.info("发送者用户名: {}", username);
-            log.info("接收者ID: {}", messageDTO.getReceiverId());
-            log.info("消息内容: {}", messageDTO.getContent());
-
-            // 获取发送者ID
-            Long senderId = userService.getUserByUsername(username).getId();
-            log.info("发送者ID: {}", senderId);
+            StompPrincipal sender = sessionUser(principal);
+            String username = sender.getName();
+            log.debug("WebSocket 发送消息: {} -> {}", sender.getUserId(), messageDTO.getReceiverId());
 
             // 保存消息
-            Result<MessageVO> result = chatService.sendMessage(senderId, messageDTO);
-            log.info("消息保存结果: code={}, message={}", result.getCode(), result.getMessage());
+            Result<MessageVO> result = chatService.sendMessage(sender.getUserId(), messageDTO);
 
             if (result.getCode() == Result.OK) {
                 MessageVO messageVO = result.getData();
-                log.info("消息VO: {}", messageVO);
+
+                // 消息已发出，结束发送者的正在输入状态
+                typingStateService.stop(sender.getUserId(), messageDTO.getReceiverId());
 
                 // 手动序列化为 JSON 字符串，避免 Spring Messaging 转换器问题
                 String messageJson = objectMapper.writeValueAsString(messageVO);
-                log.info("序列化后的消息: {}", messageJson);
-
-                // 获取接收者的用户名
-                Result<com.flowbrain.viewx.pojo.entity.User> receiverResult = userService
-                        .getUserById(messageDTO.getReceiverId());
-                log.info("接收者查询结果: code={}, message={}", receiverResult.getCode(), receiverResult.getMessage());
-
-                com.flowbrain.viewx.pojo.entity.User receiver = receiverResult.getData();
-                if (receiver != null) {
-                    log.info("接收者用户名: {}", receiver.getUsername());
 
+                // 接收者用户名走本地缓存，不查数据库
+                String receiverName = chatCacheService.getUsername(messageDTO.getReceiverId());
+                if (receiverName != null) {
                     // 发送给接收者
                     messagingTemplate.convertAndSendToUser(
-                            receiver.getUsername(), // 使用用户名，不是用户ID
+                            receiverName, // 使用用户名，不是用户ID
                             "/queue/messages",
                             messageJson); // 发送 JSON 字符串
-
-                    log.info("✅ 消息已发送给接收者: {} (用户名: {})", messageDTO.getReceiverId(), receiver.getUsername());
                 } else {
-                    log.error("❌ 接收者为 null，无法发送消息");
+                    log.warn("接收者不存在，无法推送消息: {}", messageDTO.getReceiverId());
                 }
 
                 // 发送给发送者（确认）
@@ -115,9 +100,6 @@ public class ChatWebSocketController {
                         username, // 使用当前用户的用户名
                         "/queue/messages",
                         messageJson); // 发送 JSON 字符串
-
-                log.info("✅ 消息确认已发送给发送者: {}", username);
-                log.info("=== 消息发送处理完成 ===");
             } else {
                 // 消息保存失败，将错误信息发送给发送者
                 log.error("❌ 消息保存失败: {}", result.getMessage());
@@ -138,7 +120,7 @@ public class ChatWebSocketController {
                         "/queue/errors", // 使用专门的错误队列
                         errorJson);
 
-                log.info("✅ 错误消息已发送给发送者: {}", username);
+                log.debug("错误消息已发送给发送者: {}", username);
             }
         } catch (Exception e) {
             log.error("❌ WebSocket 发送消息失败", e);
@@ -166,47 +148,49 @@ public class ChatWebSocketController {
     /**
      * 处理正在输入状态
      * 客户端发送到: /app/chat.typing
+     * 按键信号在 TypingStateService 中合并，只向接收者推送开始/停止输入
      */
-    @MessageMapping("/chat.typing")
+    @MessageMapping("chat.typing")
     public void typing(@Payload Long receiverId, Principal principal) {
         try {
-            String username = principal.getName();
-            Long senderId = userService.getUserByUsername(username).getId();
-
-            // 获取接收者的用户名
-            com.flowbrain.viewx.pojo.entity.User receiver = userService.getUserById(receiverId).getData();
-            if (receiver != null) {
-                // 通知接收者发送者正在输入
-                messagingTemplate.convertAndSendToUser(
-                        receiver.getUsername(), // 使用用户名，不是用户ID
-                        "/queue/typing",
-                        senderId);
-
-                log.debug("正在输入状态已发送: {} -> {}", username, receiver.getUsername());
-            }
+            typingStateService.onTyping(sessionUser(principal).getUserId(), receiverId);
         } catch (Exception e) {
-            log.error("发送正在输入状态失败", e);
+            log.error("处理正在输入状态失败", e);
         }
     }
 
     /**
      * 用户连接时的处理
      */
-    @MessageMapping("/chat.connect")
+    @MessageMapping("chat.connect")
     @SendToUser("/queue/connect")
     public String connect(Principal principal) {
         try {
-            String username = principal.getName();
-            Long userId = userService.getUserByUsername(username).getId();
+            StompPrincipal user = sessionUser(principal);
 
             // 设置用户在线状态
-            chatServiceImpl.setUserOnline(userId);
+            chatServiceImpl.setUserOnline(user.getUserId());
 
-            log.info("用户上线: {}", username);
+            log.info("用户上线: {}", user.getName());
             return "connected";
         } catch (Exception e) {
             log.error("处理用户连接失败", e);
             return "error";
         }
     }
+
+    /**
+     * 当前会话用户
+     * CONNECT 时已绑定 StompPrincipal；其他类型的 Principal（如测试或旧会话）退回按用户名查询一次
+     */
+    private StompPrincipal sessionUser(Principal principal) {
+        if (principal instanceof StompPrincipal) {
+            return (StompPrincipal) principal;
+        }
+        User user = userService.getUserByUsername(principal.getName());
+        if (user == null) {
+            throw new IllegalStateException("WebSocket 会话用户不存在: " + principal.getName());
+        }
+        return new StompPrincipal(user.getId(), user.getUsername(), user.getRole());
+    }
 }
@@ -4,6 +4,7 @@ import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.pojo.dto.CommentCreateDTO;
 import com.flowbrain.viewx.pojo.entity.User;
 import com.flowbrain.viewx.pojo.vo.CommentVO;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.UserSummaryVO;
 import com.flowbrain.viewx.service.InteractionService;
 import com.flowbrain.viewx.service.UserService;
@@ -110,6 +111,42 @@ public class InteractionController {
         return interactionService.getVideoComments(videoId, userId, page, size);
     }
 
+    /**
+     * 获取视频评论列表（游标分页，首次请求不传 cursor，之后回传 nextCursor）
+     */
+    @GetMapping("/comments/{videoId}/cursor")
+    public Result<CursorPageVO<CommentVO>> getCommentsByCursor(
+            @PathVariable Long videoId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        Long userId = getCurrentUserId();
+        return interactionService.getVideoCommentsByCursor(videoId, userId, cursor, size);
+    }
+
+    /**
+     * 获取视频热评（按热度排序，首次请求不传 cursor，之后回传 nextCursor）
+     */
+    @GetMapping("/comments/{videoId}/hot")
+    public Result<CursorPageVO<CommentVO>> getHotComments(
+            @PathVariable Long videoId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        Long userId = getCurrentUserId();
+        return interactionService.getHotComments(videoId, userId, cursor, size);
+    }
+
+    /**
+     * 获取评论的回复列表（加载更多回复）
+     */
+    @GetMapping("/comments/{commentId}/replies")
+    public Result<CursorPageVO<CommentVO>> getCommentReplies(
+            @PathVariable Long commentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        Long userId = getCurrentUserId();
+        return interactionService.getCommentReplies(commentId, userId, cursor, size);
+    }
+
     /**
      * 点赞评论
      */
@@ -216,6 +253,18 @@ public class InteractionController {
         return interactionService.getFollowers(userId, currentUserId, page, size);
     }
 
+    /**
+     * 获取粉丝列表（游标分页）
+     */
+    @GetMapping("/followers/{userId}/cursor")
+    public Result<CursorPageVO<UserSummaryVO>> getFollowersByCursor(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        Long currentUserId = getCurrentUserId();
+        return interactionService.getFollowersByCursor(userId, currentUserId, cursor, size);
+    }
+
     /**
      * 获取关注列表
      */
@@ -227,4 +276,16 @@ public class InteractionController {
         Long currentUserId = getCurrentUserId();
         return interactionService.getFollowing(userId, currentUserId, page, size);
     }
+
+    /**
+     * 获取关注列表（游标分页）
+     */
+    @GetMapping("/following/{userId}/cursor")
+    public Result<CursorPageVO<UserSummaryVO>> getFollowingByCursor(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        Long currentUserId = getCurrentUserId();
+        return interactionService.getFollowingByCursor(userId, currentUserId, cursor, size);
+    }
 }
@@ -1,7 +1,9 @@
 package com.flowbrain.viewx.controller;
 
 import com.flowbrain.viewx.common.Result;
+import com.flowbrain.viewx.exception.BusinessException;
 import com.flowbrain.viewx.pojo.vo.ConversationVO;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.MessageVO;
 import com.flowbrain.viewx.service.ChatService;
 import com.flowbrain.viewx.service.UserService;
@@ -35,6 +37,9 @@ public class MessageController {
     @Autowired
     private com.flowbrain.viewx.dao.MessageMapper messageMapper;
 
+    @Autowired
+    private com.flowbrain.viewx.service.chat.MessageWriteBehindService messageWriteBehindService;
+
     /**
      * 获取会话列表
      */
@@ -50,6 +55,19 @@ public class MessageController {
         }
     }
 
+    /**
+     * 获取会话列表（游标分页，首次请求不传 cursor，向下翻页时回传 nextCursor）
+     */
+    @GetMapping("/conversations/cursor")
+    public Result<CursorPageVO<ConversationVO>> getConversationsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
+        String username = authentication.getName();
+        Long userId = userService.getUserByUsername(username).getId();
+        return chatService.getConversationsByCursor(userId, cursor, size);
+    }
+
     /**
      * 获取聊天历史
      */
@@ -69,6 +87,20 @@ public class MessageController {
         }
     }
 
+    /**
+     * 获取聊天历史（游标分页，首次请求不传 cursor，向上翻页时回传 nextCursor）
+     */
+    @GetMapping("/history/{otherUserId}/cursor")
+    public Result<CursorPageVO<MessageVO>> getChatHistoryByCursor(
+            @PathVariable Long otherUserId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            Authentication authentication) {
+        String username = authentication.getName();
+        Long userId = userService.getUserByUsername(username).getId();
+        return chatService.getChatHistoryByCursor(userId, otherUserId, cursor, size);
+    }
+
     /**
      * 标记消息为已读
      */
@@ -115,7 +147,8 @@ public class MessageController {
 
             log.info("🔄 用户 {} (ID: {}) 尝试撤回消息: {}", username, userId, messageId);
 
-            // 先获取消息以确定接收者
+            // 先把积压的消息落库，再获取消息以确定接收者
+            messageWriteBehindService.flushNow();
             com.flowbrain.viewx.pojo.entity.Message message = messageMapper.selectById(messageId);
 
             if (message == null) {
@@ -161,6 +194,9 @@ public class MessageController {
             }
 
             return result;
+        } catch (BusinessException e) {
+            log.warn("撤回消息失败: {}", e.getMessage());
+            return Result.error(e.getCode(), e.getMessage());
         } catch (Exception e) {
             log.error("❌ 撤回消息失败", e);
             return Result.serverError("撤回消息失败: " + e.getMessage());
@@ -181,7 +217,8 @@ public class MessageController {
 
             log.info("用户 {} 尝试删除消息: {}", username, messageId);
 
-            // 获取消息详情
+            // 先把积压的消息落库，再获取消息以确定接收者
+            messageWriteBehindService.flushNow();
             com.flowbrain.viewx.pojo.entity.Message message = messageMapper.selectById(messageId);
 
             Result<Void> result = chatService.deleteMessage(userId, messageId);
@@ -210,6 +247,9 @@ public class MessageController {
             }
 
             return result;
+        } catch (BusinessException e) {
+            log.warn("删除消息失败: {}", e.getMessage());
+            return Result.error(e.getCode(), e.getMessage());
         } catch (Exception e) {
             log.error("删除消息失败", e);
             return Result.serverError("删除消息失败");
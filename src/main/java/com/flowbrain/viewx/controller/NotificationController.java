@@ -3,6 +3,7 @@ package com.flowbrain.viewx.controller;
 import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.pojo.dto.NotificationQueryDTO;
 import com.flowbrain.viewx.pojo.entity.User;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.NotificationVO;
 import com.flowbrain.viewx.service.NotificationService;
 import com.flowbrain.viewx.service.UserService;
@@ -57,6 +58,19 @@ public class NotificationController {
         return notificationService.getNotifications(userId, queryDTO);
     }
 
+    /**
+     * 获取通知列表（游标分页）
+     */
+    @GetMapping("/cursor")
+    @Operation(summary = "获取通知列表（游标分页）")
+    public Result<CursorPageVO<NotificationVO>> getNotificationsByCursor(NotificationQueryDTO queryDTO) {
+        Long userId = getCurrentUserId();
+        if (userId == null) {
+            return Result.unauthorized("请先登录");
+        }
+        return notificationService.getNotificationsByCursor(userId, queryDTO);
+    }
+
     /**
      * 获取未读通知数量
      */
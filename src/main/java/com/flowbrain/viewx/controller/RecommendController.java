@@ -4,7 +4,10 @@ import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.pojo.entity.User;
 import com.flowbrain.viewx.pojo.entity.Video;
 import com.flowbrain.viewx.service.RecommendService;
+import com.flowbrain.viewx.service.TimelineService;
 import com.flowbrain.viewx.service.UserService;
+import com.flowbrain.viewx.service.VideoCacheService;
+import com.flowbrain.viewx.service.search.SuggestService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
@@ -28,6 +31,15 @@ public class RecommendController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private VideoCacheService videoCacheService;
+
+    @Autowired
+    private SuggestService suggestService;
+
+    @Autowired
+    private TimelineService timelineService;
+
     /**
      * Get trending videos (Hot list).
      * Accessible by everyone.
@@ -37,10 +49,32 @@ public class RecommendController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size) {
         log.info("Fetching trending videos, page: {}, size: {}", page, size);
-        List<com.flowbrain.viewx.pojo.vo.VideoListVO> videos = recommendService.getTrendingVideos(page, size);
+        List<com.flowbrain.viewx.pojo.vo.VideoListVO> videos = videoCacheService.getTrendingVideos(page, size);
         return Result.success(videos);
     }
 
+    /**
+     * Get trending videos with cursor pagination (infinite scroll).
+     * Pass the returned nextCursor back to fetch the following page.
+     */
+    @GetMapping("/trending/cursor")
+    public Result<com.flowbrain.viewx.pojo.vo.CursorPageVO<com.flowbrain.viewx.pojo.vo.VideoListVO>> getTrendingVideosByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return Result.success(recommendService.getTrendingVideosByCursor(cursor, size));
+    }
+
+    /**
+     * Get latest videos with keyset cursor pagination (infinite scroll).
+     * Pass the returned nextCursor back to fetch the following page.
+     */
+    @GetMapping("/latest/cursor")
+    public Result<com.flowbrain.viewx.pojo.vo.CursorPageVO<com.flowbrain.viewx.pojo.vo.VideoListVO>> getLatestVideosByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return Result.success(recommendService.getLatestVideosByCursor(cursor, size));
+    }
+
     /**
      * Get recommended videos (Personalized feed).
      * If logged in, returns personalized content.
@@ -68,11 +102,52 @@ public class RecommendController {
             log.info("Fetching recommended feed for guest");
         }
 
-        List<com.flowbrain.viewx.pojo.vo.VideoListVO> videos = recommendService.getRecommendedVideos(userId, page,
+        List<com.flowbrain.viewx.pojo.vo.VideoListVO> videos = videoCacheService.getRecommendedVideos(userId, page,
                 size);
         return Result.success(videos);
     }
 
+    /**
+     * 个性化推荐流（游标分页）
+     * 先返回预计算的推荐流，翻完后接着返回推荐流中未出现过的热门视频
+     * GET /recommend/feed/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/feed/cursor")
+    public Result<com.flowbrain.viewx.pojo.vo.CursorPageVO<com.flowbrain.viewx.pojo.vo.VideoListVO>> getRecommendedFeedByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        Long userId = null;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            User user = userService.getUserByUsername(authentication.getName());
+            if (user != null) {
+                userId = user.getId();
+            }
+        }
+        return Result.success(recommendService.getRecommendedVideosByCursor(userId, cursor, size));
+    }
+
+    /**
+     * 关注流（关注的人发布的视频，按发布时间倒序，游标分页）
+     * GET /recommend/following?cursor=xxx&size=10
+     */
+    @GetMapping("/following")
+    public Result<com.flowbrain.viewx.pojo.vo.CursorPageVO<com.flowbrain.viewx.pojo.vo.VideoListVO>> getFollowingFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return Result.unauthorized("请先登录");
+        }
+        User user = userService.getUserByUsername(authentication.getName());
+        if (user == null) {
+            return Result.unauthorized("请先登录");
+        }
+        return Result.success(timelineService.getFollowingFeed(user.getId(), cursor, size));
+    }
+
     /**
      * Initialize recommendation scores for all approved videos.
      * This endpoint should be called after deployment or when Redis is cleared.
@@ -124,4 +199,17 @@ public class RecommendController {
 
         return recommendService.searchVideos(keyword.trim(), userId, page, size);
     }
+
+    /**
+     * 搜索框联想（前缀补全话题、视频标题、用户昵称）
+     * GET /recommend/suggest?prefix=xxx&type=topic&limit=10
+     * type 为空时三类混合返回
+     */
+    @GetMapping("/suggest")
+    public Result<List<com.flowbrain.viewx.pojo.vo.SuggestionVO>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "10") int limit) {
+        return Result.success(suggestService.suggest(prefix, type, limit));
+    }
 }
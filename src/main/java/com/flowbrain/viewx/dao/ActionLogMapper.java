@@ -2,10 +2,32 @@ package com.flowbrain.viewx.dao;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.flowbrain.viewx.pojo.entity.ActionLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface ActionLogMapper extends BaseMapper<ActionLog> {
     // 继承 BaseMapper 后，自动拥有 insert、update、delete、select 等方法
     // MyBatis-Plus 会自动处理 ID 生成和字段填充
+
+    /**
+     * 多行 INSERT 批量写入行为日志（一条 SQL、一次往返）
+     * 注意：不经过 MyBatis-Plus 的 ID 生成和字段填充，id / createdAt 需由调用方设置
+     * id 由事件ID派生，重新投递时已写入的行被忽略
+     *
+     * @return 实际插入的行数
+     */
+    @Insert({
+            "<script>",
+            "INSERT INTO vx_action_logs (id, user_id, action_type, video_id, ip_address, device_info, created_at) VALUES",
+            "<foreach collection='logs' item='l' separator=','>",
+            "(#{l.id}, #{l.userId}, #{l.actionType}, #{l.videoId}, #{l.ipAddress}, #{l.deviceInfo}, #{l.createdAt})",
+            "</foreach>",
+            "ON CONFLICT (id) DO NOTHING",
+            "</script>"
+    })
+    int insertBatch(@Param("logs") List<ActionLog> logs);
 }
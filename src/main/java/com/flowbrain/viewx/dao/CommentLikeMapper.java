@@ -0,0 +1,61 @@
+package com.flowbrain.viewx.dao;
+
+import com.flowbrain.viewx.pojo.entity.CommentLike;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 评论点赞 Mapper
+ * 写入只由 CommentLikeService 的批量落库调用，RETURNING 返回实际生效的行，用于计算 like_count 增量
+ */
+@Mapper
+public interface CommentLikeMapper {
+
+        /**
+         * 批量点赞：已存在的记录和已不存在的评论被忽略
+         *
+         * @return 实际插入的记录对应的评论ID（每行一个）
+         */
+        @Select({
+                        "<script>",
+                        "INSERT INTO vx_comment_likes (comment_id, user_id, created_at)",
+                        "SELECT v.comment_id, v.user_id, NOW()",
+                        "FROM (VALUES",
+                        "<foreach collection='likes' item='like' separator=','>",
+                        "(CAST(#{like.commentId} AS BIGINT), CAST(#{like.userId} AS BIGINT))",
+                        "</foreach>",
+                        ") AS v(comment_id, user_id)",
+                        "JOIN vx_video_comments c ON c.id = v.comment_id",
+                        "ON CONFLICT (comment_id, user_id) DO NOTHING",
+                        "RETURNING comment_id",
+                        "</script>"
+        })
+        List<Long> insertLikes(@Param("likes") Collection<CommentLike> likes);
+
+        /**
+         * 批量取消点赞
+         *
+         * @return 实际删除的记录对应的评论ID（每行一个）
+         */
+        @Select({
+                        "<script>",
+                        "DELETE FROM vx_comment_likes WHERE (comment_id, user_id) IN (",
+                        "<foreach collection='likes' item='like' separator=','>",
+                        "(#{like.commentId}, #{like.userId})",
+                        "</foreach>",
+                        ") RETURNING comment_id",
+                        "</script>"
+        })
+        List<Long> deleteLikes(@Param("likes") Collection<CommentLike> likes);
+
+        /**
+         * 用户最近点赞的评论ID（预热 Redis 点赞集合）
+         */
+        @Select("SELECT comment_id FROM vx_comment_likes WHERE user_id = #{userId} " +
+                        "ORDER BY created_at DESC LIMIT #{limit}")
+        List<Long> selectLikedCommentIds(@Param("userId") Long userId, @Param("limit") int limit);
+}
@@ -4,7 +4,10 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.flowbrain.viewx.pojo.entity.VideoComment;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface CommentMapper extends BaseMapper<VideoComment> {
@@ -49,4 +52,86 @@ public interface CommentMapper extends BaseMapper<VideoComment> {
 
         @Update("UPDATE vx_videos SET comment_count = comment_count + 1 WHERE id = #{videoId}")
         void incrementVideoCommentCount(Long videoId);
+
+        /**
+         * 批量累加评论点赞数：单条 UPDATE ... FROM (VALUES ...)
+         *
+         * @param deltas commentId -> 点赞数增量
+         */
+        @Update({
+                        "<script>",
+                        "UPDATE vx_video_comments c SET like_count = GREATEST(COALESCE(c.like_count, 0) + d.delta, 0)",
+                        "FROM (VALUES",
+                        "<foreach collection='deltas' index='id' item='delta' separator=','>",
+                        "(CAST(#{id} AS BIGINT), CAST(#{delta} AS BIGINT))",
+                        "</foreach>",
+                        ") AS d(id, delta)",
+                        "WHERE c.id = d.id",
+                        "</script>"
+        })
+        int batchIncrementLikeCount(@Param("deltas") Map<Long, Long> deltas);
+
+        /**
+         * 视频热评候选：置顶优先，其次按热度 log10(点赞 + replyWeight·回复) + 发布时间/decaySeconds
+         * 只在热评缓存冷启动时执行，回复数按本视频聚合一次
+         */
+        @Select({
+                        "<script>",
+                        "SELECT c.id, c.video_id, c.user_id, c.parent_id, c.content, c.like_count, c.is_pinned, c.created_at",
+                        "FROM vx_video_comments c",
+                        "LEFT JOIN (",
+                        "  SELECT parent_id, COUNT(*) AS cnt FROM vx_video_comments",
+                        "  WHERE video_id = #{videoId} AND parent_id IS NOT NULL AND is_deleted = false",
+                        "  GROUP BY parent_id",
+                        ") r ON r.parent_id = c.id",
+                        "WHERE c.video_id = #{videoId} AND c.parent_id IS NULL AND c.is_deleted = false",
+                        "ORDER BY c.is_pinned DESC,",
+                        "  LOG(GREATEST(COALESCE(c.like_count, 0) + #{replyWeight} * COALESCE(r.cnt, 0), 1))",
+                        "  + EXTRACT(EPOCH FROM c.created_at) / #{decaySeconds} DESC",
+                        "LIMIT #{limit}",
+                        "</script>"
+        })
+        List<VideoComment> selectHotRootComments(@Param("videoId") Long videoId,
+                        @Param("replyWeight") double replyWeight,
+                        @Param("decaySeconds") double decaySeconds,
+                        @Param("limit") int limit);
+
+        /**
+         * 批量加载多个一级评论的前 limit 条回复（按时间正序），同时返回每个一级评论的回复总数
+         * 一次查询替代逐条 selectReplies
+         */
+        @Select({
+                        "<script>",
+                        "SELECT id, video_id, user_id, parent_id, content, like_count, is_pinned, created_at, reply_count",
+                        "FROM (",
+                        "  SELECT c.*,",
+                        "    ROW_NUMBER() OVER (PARTITION BY c.parent_id ORDER BY c.created_at, c.id) AS rn,",
+                        "    COUNT(*) OVER (PARTITION BY c.parent_id) AS reply_count",
+                        "  FROM vx_video_comments c",
+                        "  WHERE c.is_deleted = false AND c.parent_id IN",
+                        "  <foreach collection='parentIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+                        ") t",
+                        "WHERE rn &lt;= #{limit}",
+                        "ORDER BY parent_id, created_at, id",
+                        "</script>"
+        })
+        List<VideoComment> selectTopReplies(@Param("parentIds") Collection<Long> parentIds, @Param("limit") int limit);
+
+        /**
+         * 回复键集分页：(created_at, id) 大于游标的下一页（按时间正序）
+         */
+        @Select({
+                        "<script>",
+                        "SELECT id, video_id, user_id, parent_id, content, like_count, is_pinned, created_at",
+                        "FROM vx_video_comments",
+                        "WHERE parent_id = #{parentId} AND is_deleted = false",
+                        "<if test='cursorTime != null'>AND (created_at, id) &gt; (#{cursorTime}, #{cursorId})</if>",
+                        "ORDER BY created_at, id",
+                        "LIMIT #{limit}",
+                        "</script>"
+        })
+        List<VideoComment> selectRepliesAfter(@Param("parentId") Long parentId,
+                        @Param("cursorTime") LocalDateTime cursorTime,
+                        @Param("cursorId") Long cursorId,
+                        @Param("limit") int limit);
 }
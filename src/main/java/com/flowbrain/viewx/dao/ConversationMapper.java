@@ -2,9 +2,12 @@ package com.flowbrain.viewx.dao;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.flowbrain.viewx.pojo.entity.Conversation;
+import com.flowbrain.viewx.pojo.vo.ConversationVO;
 import org.apache.ibatis.annotations.*;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 会话 Mapper
@@ -20,6 +23,76 @@ public interface ConversationMapper extends BaseMapper<Conversation> {
             "   OR (user1_id = #{user2Id} AND user2_id = #{user1Id})")
     Conversation getConversation(@Param("user1Id") Long user1Id, @Param("user2Id") Long user2Id);
 
+    /**
+     * 会话列表（一次查询带出对方用户资料和最后一条消息，在线状态由调用方填充）
+     * 按 (last_message_time, id) 倒序；传入游标时取游标之后的一页，limit 为空时不分页
+     *
+     * 用户在 user1 / user2 两侧分别走 idx_conversations_user*_keyset 取前 limit 条再合并，
+     * 避免 OR 条件退化为整段扫描后排序
+     */
+    @Select({
+            "<script>",
+            "SELECT c.id AS conversation_id, c.other_user_id, c.last_message_time, c.unread_count,",
+            "u.username AS other_user_username, u.nickname AS other_user_nickname, ud.avatar_url AS other_user_avatar,",
+            "m.content AS last_message, m.message_type AS last_message_type",
+            "FROM (",
+            "  (SELECT id, user2_id AS other_user_id, last_message_id, last_message_time,",
+            "   unread_count_user1 AS unread_count FROM vx_conversations",
+            "   WHERE user1_id = #{userId}",
+            "   <if test='cursorTime != null'>AND (last_message_time, id) &lt; (#{cursorTime}, #{cursorId})</if>",
+            "   ORDER BY last_message_time DESC, id DESC <if test='limit != null'>LIMIT #{limit}</if>)",
+            "  UNION ALL",
+            "  (SELECT id, user1_id AS other_user_id, last_message_id, last_message_time,",
+            "   unread_count_user2 AS unread_count FROM vx_conversations",
+            "   WHERE user2_id = #{userId}",
+            "   <if test='cursorTime != null'>AND (last_message_time, id) &lt; (#{cursorTime}, #{cursorId})</if>",
+            "   ORDER BY last_message_time DESC, id DESC <if test='limit != null'>LIMIT #{limit}</if>)",
+            ") c",
+            "LEFT JOIN vx_users u ON u.id = c.other_user_id",
+            "LEFT JOIN vx_user_details ud ON ud.user_id = c.other_user_id",
+            "LEFT JOIN vx_messages m ON m.id = c.last_message_id",
+            "ORDER BY c.last_message_time DESC, c.id DESC",
+            "<if test='limit != null'>LIMIT #{limit}</if>",
+            "</script>"
+    })
+    List<ConversationVO> selectConversationPage(@Param("userId") Long userId,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") Long cursorId,
+            @Param("limit") Integer limit);
+
+    /**
+     * 用户有未读消息的会话（只填 otherUserId、unreadCount），走 idx_conversations_user*_unread 部分索引
+     */
+    @Select("SELECT user2_id AS other_user_id, unread_count_user1 AS unread_count FROM vx_conversations " +
+            "WHERE user1_id = #{userId} AND unread_count_user1 > 0 " +
+            "UNION ALL " +
+            "SELECT user1_id AS other_user_id, unread_count_user2 AS unread_count FROM vx_conversations " +
+            "WHERE user2_id = #{userId} AND unread_count_user2 > 0")
+    List<ConversationVO> selectUnreadCounts(@Param("userId") Long userId);
+
+    /**
+     * 批量更新或创建会话（由 MessageWriteBehindService 落库调用）
+     * 未读数累加；最后一条消息取时间较新的一方
+     */
+    @Update({
+            "<script>",
+            "INSERT INTO vx_conversations (id, user1_id, user2_id, last_message_id, last_message_time,",
+            "unread_count_user1, unread_count_user2, created_at) VALUES",
+            "<foreach collection='conversations' item='c' separator=','>",
+            "(#{c.id}, #{c.user1Id}, #{c.user2Id}, #{c.lastMessageId}, #{c.lastMessageTime},",
+            "#{c.unreadCountUser1}, #{c.unreadCountUser2}, NOW())",
+            "</foreach>",
+            "ON CONFLICT (user1_id, user2_id) DO UPDATE SET",
+            "last_message_id = CASE WHEN vx_conversations.last_message_time IS NULL",
+            "  OR EXCLUDED.last_message_time >= vx_conversations.last_message_time",
+            "  THEN EXCLUDED.last_message_id ELSE vx_conversations.last_message_id END,",
+            "last_message_time = GREATEST(vx_conversations.last_message_time, EXCLUDED.last_message_time),",
+            "unread_count_user1 = vx_conversations.unread_count_user1 + EXCLUDED.unread_count_user1,",
+            "unread_count_user2 = vx_conversations.unread_count_user2 + EXCLUDED.unread_count_user2",
+            "</script>"
+    })
+    int upsertConversations(@Param("conversations") Collection<Conversation> conversations);
+
     /**
      * 更新会话的最后消息信息
      */
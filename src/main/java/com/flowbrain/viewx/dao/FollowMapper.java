@@ -4,6 +4,7 @@ import com.flowbrain.viewx.pojo.entity.UserFollow;
 import com.flowbrain.viewx.pojo.vo.UserSummaryVO;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -45,28 +46,50 @@ public interface FollowMapper {
 
         /**
          * 获取粉丝列表
+         * 按 (关注时间, 粉丝ID) 倒序；传入游标时取游标之后的一页（键集分页，offset 传 0），
+         * 游标为空时按 offset 分页（兼容页码接口）
          */
-        @Select("SELECT u.id, u.username, u.nickname, ud.avatar_url as avatar " +
-                        "FROM vx_user_follows f " +
-                        "JOIN vx_users u ON f.follower_id = u.id " +
-                        "LEFT JOIN vx_user_details ud ON u.id = ud.user_id " +
-                        "WHERE f.followed_id = #{userId} " +
-                        "ORDER BY f.created_at DESC " +
-                        "LIMIT #{limit} OFFSET #{offset}")
-        List<UserSummaryVO> getFollowers(@Param("userId") Long userId, @Param("offset") int offset,
-                        @Param("limit") int limit);
+        @Select({
+                        "<script>",
+                        "SELECT u.id, u.username, u.nickname, ud.avatar_url as avatar, f.created_at as followed_at",
+                        "FROM vx_user_follows f",
+                        "JOIN vx_users u ON f.follower_id = u.id",
+                        "LEFT JOIN vx_user_details ud ON u.id = ud.user_id",
+                        "WHERE f.followed_id = #{userId}",
+                        "<if test='cursorTime != null'>AND (f.created_at, f.follower_id) &lt; (#{cursorTime}, #{cursorId})</if>",
+                        "ORDER BY f.created_at DESC, f.follower_id DESC",
+                        "LIMIT #{limit} OFFSET #{offset}",
+                        "</script>"
+        })
+        List<UserSummaryVO> getFollowers(@Param("userId") Long userId,
+                        @Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId,
+                        @Param("offset") int offset, @Param("limit") int limit);
+
+        /**
+         * 获取关注列表（排序与分页方式同 getFollowers）
+         */
+        @Select({
+                        "<script>",
+                        "SELECT u.id, u.username, u.nickname, ud.avatar_url as avatar, f.created_at as followed_at",
+                        "FROM vx_user_follows f",
+                        "JOIN vx_users u ON f.followed_id = u.id",
+                        "LEFT JOIN vx_user_details ud ON u.id = ud.user_id",
+                        "WHERE f.follower_id = #{userId}",
+                        "<if test='cursorTime != null'>AND (f.created_at, f.followed_id) &lt; (#{cursorTime}, #{cursorId})</if>",
+                        "ORDER BY f.created_at DESC, f.followed_id DESC",
+                        "LIMIT #{limit} OFFSET #{offset}",
+                        "</script>"
+        })
+        List<UserSummaryVO> getFollowing(@Param("userId") Long userId,
+                        @Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId,
+                        @Param("offset") int offset, @Param("limit") int limit);
 
         /**
-         * 获取关注列表
+         * 按关注者ID游标分批读取粉丝ID（关注流写扩散）
          */
-        @Select("SELECT u.id, u.username, u.nickname, ud.avatar_url as avatar " +
-                        "FROM vx_user_follows f " +
-                        "JOIN vx_users u ON f.followed_id = u.id " +
-                        "LEFT JOIN vx_user_details ud ON u.id = ud.user_id " +
-                        "WHERE f.follower_id = #{userId} " +
-                        "ORDER BY f.created_at DESC " +
-                        "LIMIT #{limit} OFFSET #{offset}")
-        List<UserSummaryVO> getFollowing(@Param("userId") Long userId, @Param("offset") int offset,
+        @Select("SELECT follower_id FROM vx_user_follows WHERE followed_id = #{followedId} " +
+                        "AND follower_id > #{afterId} ORDER BY follower_id LIMIT #{limit}")
+        List<Long> selectFollowerIdsAfter(@Param("followedId") Long followedId, @Param("afterId") long afterId,
                         @Param("limit") int limit);
 
         /**
@@ -5,6 +5,8 @@ import com.flowbrain.viewx.pojo.entity.Message;
 import com.flowbrain.viewx.pojo.vo.MessageVO;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -15,24 +17,67 @@ public interface MessageMapper extends BaseMapper<Message> {
 
         /**
          * 获取两个用户之间的聊天历史（过滤已删除的消息）
+         * 按 (created_at, id) 倒序；传入游标时取游标之后的一页（键集分页，offset 传 0），
+         * 游标为空时按 offset 分页（兼容页码接口）
+         *
+         * 两个方向分别走 idx_messages_pair_keyset 取前 offset + limit 条再合并，
+         * 避免 OR 条件退化为整段扫描后排序
          */
-        @Select("SELECT m.id, m.sender_id, m.receiver_id, m.content, m.message_type, " +
-                        "m.is_read, m.is_recalled, m.recalled_at, m.created_at, " +
-                        "u.username as sender_username, u.nickname as sender_nickname, ud.avatar_url as sender_avatar "
-                        +
-                        "FROM vx_messages m " +
-                        "JOIN vx_users u ON m.sender_id = u.id " +
-                        "LEFT JOIN vx_user_details ud ON u.id = ud.user_id " +
-                        "WHERE (m.sender_id = #{userId1} AND m.receiver_id = #{userId2}) " +
-                        "   OR (m.sender_id = #{userId2} AND m.receiver_id = #{userId1}) " +
-                        "AND (m.is_deleted IS NULL OR m.is_deleted = false) " + // 过滤已删除的消息
-                        "ORDER BY m.created_at DESC " +
-                        "LIMIT #{limit} OFFSET #{offset}")
+        @Select({
+                        "<script>",
+                        "SELECT m.id, m.sender_id, m.receiver_id, m.content, m.message_type,",
+                        "m.is_read, m.is_recalled, m.recalled_at, m.created_at,",
+                        "u.username as sender_username, u.nickname as sender_nickname, ud.avatar_url as sender_avatar",
+                        "FROM (",
+                        "  (SELECT * FROM vx_messages",
+                        "   WHERE sender_id = #{userId1} AND receiver_id = #{userId2}",
+                        "   AND (is_deleted IS NULL OR is_deleted = false)",
+                        "   <if test='cursorTime != null'>AND (created_at, id) &lt; (#{cursorTime}, #{cursorId})</if>",
+                        "   ORDER BY created_at DESC, id DESC LIMIT #{offset} + #{limit})",
+                        "  UNION ALL",
+                        "  (SELECT * FROM vx_messages",
+                        "   WHERE sender_id = #{userId2} AND receiver_id = #{userId1}",
+                        "   AND (is_deleted IS NULL OR is_deleted = false)",
+                        "   <if test='cursorTime != null'>AND (created_at, id) &lt; (#{cursorTime}, #{cursorId})</if>",
+                        "   ORDER BY created_at DESC, id DESC LIMIT #{offset} + #{limit})",
+                        ") m",
+                        "JOIN vx_users u ON m.sender_id = u.id",
+                        "LEFT JOIN vx_user_details ud ON u.id = ud.user_id",
+                        "ORDER BY m.created_at DESC, m.id DESC",
+                        "LIMIT #{limit} OFFSET #{offset}",
+                        "</script>"
+        })
         List<MessageVO> getChatHistory(@Param("userId1") Long userId1,
                         @Param("userId2") Long userId2,
+                        @Param("cursorTime") LocalDateTime cursorTime,
+                        @Param("cursorId") Long cursorId,
                         @Param("offset") int offset,
                         @Param("limit") int limit);
 
+        /**
+         * 批量写入消息（由 MessageWriteBehindService 落库调用）：已存在的消息和收发双方已不存在的消息被忽略
+         *
+         * @return 实际插入的消息ID
+         */
+        @Select({
+                        "<script>",
+                        "INSERT INTO vx_messages (id, sender_id, receiver_id, content, message_type, is_read, created_at)",
+                        "SELECT v.id, v.sender_id, v.receiver_id, v.content, v.message_type, COALESCE(v.is_read, false), v.created_at",
+                        "FROM (VALUES",
+                        "<foreach collection='messages' item='m' separator=','>",
+                        "(CAST(#{m.id} AS BIGINT), CAST(#{m.senderId} AS BIGINT), CAST(#{m.receiverId} AS BIGINT),",
+                        "CAST(#{m.content} AS TEXT), CAST(#{m.messageType} AS VARCHAR), CAST(#{m.isRead} AS BOOLEAN),",
+                        "CAST(#{m.createdAt} AS TIMESTAMP))",
+                        "</foreach>",
+                        ") AS v(id, sender_id, receiver_id, content, message_type, is_read, created_at)",
+                        "JOIN vx_users s ON s.id = v.sender_id",
+                        "JOIN vx_users r ON r.id = v.receiver_id",
+                        "ON CONFLICT (id) DO NOTHING",
+                        "RETURNING id",
+                        "</script>"
+        })
+        List<Long> insertMessages(@Param("messages") Collection<Message> messages);
+
         /**
          * 标记消息为已读
          */
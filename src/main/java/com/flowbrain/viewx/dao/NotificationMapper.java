@@ -8,6 +8,7 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -18,6 +19,8 @@ public interface NotificationMapper extends BaseMapper<Notification> {
 
         /**
          * 查询用户的通知列表 (带详细信息)
+         * 按 (created_at, id) 倒序；传入游标时取游标之后的一页（键集分页，offset 传 0），
+         * 游标为空时按 offset 分页（兼容页码接口）
          */
         @Select({
                         "<script>",
@@ -39,7 +42,10 @@ public interface NotificationMapper extends BaseMapper<Notification> {
                         "<if test='unreadOnly != null and unreadOnly == true'>",
                         "  AND n.is_read = FALSE",
                         "</if>",
-                        "ORDER BY n.created_at DESC",
+                        "<if test='cursorTime != null'>",
+                        "  AND (n.created_at, n.id) &lt; (#{cursorTime}, #{cursorId})",
+                        "</if>",
+                        "ORDER BY n.created_at DESC, n.id DESC",
                         "LIMIT #{limit} OFFSET #{offset}",
                         "</script>"
         })
@@ -47,6 +53,8 @@ public interface NotificationMapper extends BaseMapper<Notification> {
                         @Param("recipientId") Long recipientId,
                         @Param("notificationType") String notificationType,
                         @Param("unreadOnly") Boolean unreadOnly,
+                        @Param("cursorTime") LocalDateTime cursorTime,
+                        @Param("cursorId") Long cursorId,
                         @Param("limit") Integer limit,
                         @Param("offset") Integer offset);
 
@@ -1,11 +1,15 @@
 package com.flowbrain.viewx.dao;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.flowbrain.viewx.pojo.dto.UserStatsDTO;
 import com.flowbrain.viewx.pojo.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * 用户资料 Mapper
  * 用途：处理用户资料相关的数据库操作
@@ -14,17 +18,22 @@ import org.apache.ibatis.annotations.Select;
 public interface ProfileMapper extends BaseMapper<User> {
 
     /**
-     * 获取用户的统计信息（粉丝数、关注数等）
+     * 批量计算用户统计（计数缓存未命中时加载、后台对账时校验）
      */
-    @Select("SELECT COUNT(*) FROM vx_user_follows WHERE followed_id = #{userId}")
-    Integer countFollowers(@Param("userId") Long userId);
-
-    @Select("SELECT COUNT(*) FROM vx_user_follows WHERE follower_id = #{userId}")
-    Integer countFollowing(@Param("userId") Long userId);
-
-    @Select("SELECT COUNT(*) FROM vx_videos WHERE uploader_id = #{userId} AND is_deleted = false")
-    Integer countVideos(@Param("userId") Long userId);
-
-    @Select("SELECT COALESCE(SUM(like_count), 0) FROM vx_videos WHERE uploader_id = #{userId} AND is_deleted = false")
-    Integer countTotalLikes(@Param("userId") Long userId);
+    @Select({
+            "<script>",
+            "SELECT u.id AS user_id,",
+            "  (SELECT COUNT(*) FROM vx_user_follows f WHERE f.followed_id = u.id) AS followers,",
+            "  (SELECT COUNT(*) FROM vx_user_follows f WHERE f.follower_id = u.id) AS following,",
+            "  v.videos, v.likes",
+            "FROM vx_users u",
+            "CROSS JOIN LATERAL (",
+            "  SELECT COUNT(*) AS videos, COALESCE(SUM(like_count), 0) AS likes",
+            "  FROM vx_videos WHERE uploader_id = u.id AND is_deleted = false",
+            ") v",
+            "WHERE u.id IN",
+            "<foreach collection='userIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"
+    })
+    List<UserStatsDTO> selectUserStats(@Param("userIds") Collection<Long> userIds);
 }
@@ -1,11 +1,14 @@
 package com.flowbrain.viewx.dao;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.flowbrain.viewx.pojo.dto.SuggestSourceDTO;
 import com.flowbrain.viewx.pojo.entity.Topic;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
+
 @Mapper
 public interface TopicMapper extends BaseMapper<Topic> {
 
@@ -26,4 +29,11 @@ public interface TopicMapper extends BaseMapper<Topic> {
      */
     @Select("UPDATE vx_topics SET video_count = video_count - 1, updated_at = NOW() WHERE id = #{topicId} AND video_count > 0")
     void decrementVideoCount(@Param("topicId") Long topicId);
+
+    /**
+     * 前缀补全词条：按视频数取前 limit 个话题
+     */
+    @Select("SELECT id, name AS text, video_count AS count FROM vx_topics "
+            + "WHERE is_deleted = false ORDER BY video_count DESC LIMIT #{limit}")
+    List<SuggestSourceDTO> selectSuggestSources(@Param("limit") int limit);
 }
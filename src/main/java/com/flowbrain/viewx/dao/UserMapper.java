@@ -1,16 +1,18 @@
 package com.flowbrain.viewx.dao;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.flowbrain.viewx.pojo.dto.SuggestSourceDTO;
 import com.flowbrain.viewx.pojo.entity.User;
 import org.apache.ibatis.annotations.*;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
-    @Insert("INSERT INTO vx_users (id, username, password_encrypted, email,role) VALUES (#{id}, #{username}, #{password}, #{email}, 'USER')")
+    @Insert("INSERT INTO vx_users (id, username, password_encrypted, email, nickname, role) VALUES (#{id}, #{username}, #{password}, #{email}, #{nickname}, 'USER')")
     int insertUser(User user);
 
     @Update("UPDATE vx_users SET is_deleted=true, deleted_at=NOW() WHERE id=#{id}")
@@ -90,4 +92,33 @@ public interface UserMapper extends BaseMapper<User> {
             @Param("keyword") String keyword,
             @Param("offset") int offset,
             @Param("limit") int limit);
+
+    /**
+     * 批量查询用户简要信息（联表 vx_user_details 获取头像）
+     * 用于列表页批量填充上传者/作者信息，避免逐条 selectById 的 N+1 查询
+     *
+     * @param ids 用户ID集合（不能为空）
+     * @return 用户简要信息列表（顺序不保证）
+     */
+    @Select({
+            "<script>",
+            "SELECT u.id, u.username, u.nickname, ud.avatar_url",
+            "FROM vx_users u",
+            "LEFT JOIN vx_user_details ud ON u.id = ud.user_id",
+            "WHERE u.id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"
+    })
+    List<com.flowbrain.viewx.pojo.vo.UserBriefVO> selectBriefsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 前缀补全词条：按粉丝数取前 limit 个用户的昵称
+     */
+    @Select("SELECT u.id, u.nickname AS text, COUNT(f.follower_id) AS count " +
+            "FROM vx_users u " +
+            "LEFT JOIN vx_user_follows f ON f.followed_id = u.id " +
+            "WHERE u.is_deleted = false AND u.nickname IS NOT NULL AND u.nickname <> '' " +
+            "GROUP BY u.id, u.nickname " +
+            "ORDER BY count DESC LIMIT #{limit}")
+    List<SuggestSourceDTO> selectSuggestSources(@Param("limit") int limit);
 }
@@ -1,11 +1,20 @@
 package com.flowbrain.viewx.dao;
 
+import com.flowbrain.viewx.pojo.dto.SuggestSourceDTO;
+import com.flowbrain.viewx.pojo.dto.VideoEmbeddingDTO;
 import com.flowbrain.viewx.pojo.entity.Video;
+import com.flowbrain.viewx.util.PgVectorTypeHandler;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Results;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
@@ -18,9 +27,137 @@ public interface VideoMapper extends BaseMapper<Video> {
     @Select("SELECT * FROM vx_videos WHERE status = 'APPROVED' ORDER BY created_at DESC LIMIT #{limit} OFFSET #{offset}")
     List<Video> selectLatestVideos(@Param("offset") int offset, @Param("limit") int limit);
 
-    @Select("SELECT * FROM vx_videos WHERE status = 'APPROVED' ORDER BY content_embedding <-> #{embedding} LIMIT #{limit}")
+    /**
+     * 最新视频键集分页：(created_at, id) 小于游标的下一页，游标为空时从最新开始
+     * 走 idx_videos_latest_keyset，深翻页不再随 OFFSET 线性变慢
+     */
+    @Select({
+            "<script>",
+            "SELECT * FROM vx_videos WHERE status = 'APPROVED' AND is_deleted = false",
+            "<if test='cursorTime != null'>AND (created_at, id) &lt; (#{cursorTime}, #{cursorId})</if>",
+            "ORDER BY created_at DESC, id DESC LIMIT #{limit}",
+            "</script>"
+    })
+    List<Video> selectLatestVideosBefore(@Param("cursorTime") LocalDateTime cursorTime,
+                                         @Param("cursorId") Long cursorId,
+                                         @Param("limit") int limit);
+
+    /**
+     * 批量查询已审核通过的视频（单次 WHERE id IN (...)）
+     * 返回顺序不保证，调用方需按原ID顺序重排
+     */
+    @Select({
+            "<script>",
+            "SELECT * FROM vx_videos",
+            "WHERE status = 'APPROVED' AND is_deleted = false AND id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"
+    })
+    List<Video> selectApprovedByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 关注流冷启动：关注的人最近发布的已审核视频（只取 id、上传者、发布时间）
+     */
+    @Select("SELECT v.id, v.uploader_id, COALESCE(v.published_at, v.created_at) AS published_at "
+            + "FROM vx_user_follows f JOIN vx_videos v ON v.uploader_id = f.followed_id "
+            + "WHERE f.follower_id = #{userId} AND v.status = 'APPROVED' AND v.is_deleted = false "
+            + "ORDER BY COALESCE(v.published_at, v.created_at) DESC LIMIT #{limit}")
+    List<Video> selectFollowingTimelineSeed(@Param("userId") Long userId, @Param("limit") int limit);
+
+    /**
+     * 按ID游标分批读取已审核视频的可检索字段（构建搜索索引）
+     */
+    @Select("SELECT id, title, description FROM vx_videos WHERE status = 'APPROVED' AND is_deleted = false "
+            + "AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<Video> selectSearchDocsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 前缀补全词条：按播放量取前 limit 个已审核视频的标题
+     */
+    @Select("SELECT id, title AS text, view_count AS count FROM vx_videos "
+            + "WHERE status = 'APPROVED' AND is_deleted = false AND title <> '' "
+            + "ORDER BY view_count DESC LIMIT #{limit}")
+    List<SuggestSourceDTO> selectSuggestSources(@Param("limit") int limit);
+
+    /**
+     * 按ID游标分批读取已审核视频的ID（搜索索引快照对账）
+     */
+    @Select("SELECT id FROM vx_videos WHERE status = 'APPROVED' AND is_deleted = false "
+            + "AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<Long> selectApprovedIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 查询某时间之后有更新的视频ID（含各种状态，搜索索引快照追赶）
+     */
+    @Select("SELECT id FROM vx_videos WHERE updated_at >= #{since}")
+    List<Long> selectIdsUpdatedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * 原子累加播放量（写回缓冲不可用时的兜底路径）
+     */
+    @Update("UPDATE vx_videos SET view_count = COALESCE(view_count, 0) + #{delta} WHERE id = #{id}")
+    int incrementViewCount(@Param("id") Long id, @Param("delta") long delta);
+
+    /**
+     * 批量累加播放量：单条 UPDATE ... FROM (VALUES ...)，一次往返
+     *
+     * @param deltas videoId -> 播放量增量
+     */
+    @Update({
+            "<script>",
+            "UPDATE vx_videos v SET view_count = COALESCE(v.view_count, 0) + d.delta",
+            "FROM (VALUES",
+            "<foreach collection='deltas' index='id' item='delta' separator=','>",
+            "(CAST(#{id} AS BIGINT), CAST(#{delta} AS BIGINT))",
+            "</foreach>",
+            ") AS d(id, delta)",
+            "WHERE v.id = d.id",
+            "</script>"
+    })
+    int batchIncrementViewCount(@Param("deltas") Map<Long, Long> deltas);
+
+    /**
+     * 语义检索：按余弦距离排序，与 idx_videos_embedding（ivfflat, vector_cosine_ops）一致才能走索引
+     */
+    @Select("SELECT * FROM vx_videos WHERE status = 'APPROVED' AND is_deleted = false AND content_embedding IS NOT NULL "
+            + "ORDER BY content_embedding <=> CAST(#{embedding} AS vector) LIMIT #{limit}")
     List<Video> selectByVector(@Param("embedding") String embeddingVector, @Param("limit") int limit);
 
+    /**
+     * 设置当前事务内 ivfflat 检索的探测列表数（需在同一事务中紧接着执行向量查询）
+     */
+    @Select("SELECT set_config('ivfflat.probes', #{probes}, true)")
+    String setIvfflatProbes(@Param("probes") String probes);
+
+    /**
+     * 向量近邻召回：只返回视频ID，向量由调用方从本地缓存读取
+     */
+    @Select({
+            "<script>",
+            "SELECT id FROM vx_videos",
+            "WHERE status = 'APPROVED' AND is_deleted = false AND content_embedding IS NOT NULL",
+            "ORDER BY content_embedding &lt;=&gt; #{query, typeHandler=com.flowbrain.viewx.util.PgVectorTypeHandler}",
+            "LIMIT #{limit}",
+            "</script>"
+    })
+    List<Long> selectNearestIds(@Param("query") float[] query, @Param("limit") int limit);
+
+    /**
+     * 批量读取内容向量（二进制格式）
+     */
+    @Select({
+            "<script>",
+            "SELECT id AS video_id, vector_send(content_embedding) AS embedding FROM vx_videos",
+            "WHERE content_embedding IS NOT NULL AND id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"
+    })
+    @Results({
+            @Result(column = "video_id", property = "videoId"),
+            @Result(column = "embedding", property = "embedding", typeHandler = PgVectorTypeHandler.class)
+    })
+    List<VideoEmbeddingDTO> selectEmbeddingsByIds(@Param("ids") Collection<Long> ids);
+
     @Select("SELECT * FROM vx_videos WHERE status = 'APPROVED' AND id IN (SELECT video_id FROM video_tags WHERE tag IN (#{tags}))")
     List<Video> selectByTags(@Param("tags") List<String> tags, @Param("offset") int offset, @Param("limit") int limit);
     
@@ -6,6 +6,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -28,4 +29,27 @@ public interface VideoTopicMapper extends BaseMapper<VideoTopic> {
      */
     @Select("DELETE FROM vx_video_topics WHERE video_id = #{videoId}")
     void deleteByVideoId(@Param("videoId") Long videoId);
+
+    /**
+     * 批量查询视频的话题关联（推荐候选生成）
+     */
+    @Select({"<script>",
+            "SELECT video_id, topic_id FROM vx_video_topics WHERE video_id IN ",
+            "<foreach collection='videoIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    List<VideoTopic> selectByVideoIds(@Param("videoIds") Collection<Long> videoIds);
+
+    /**
+     * 查询话题下最新发布的已审核视频关联（推荐候选扩展）
+     */
+    @Select({"<script>",
+            "SELECT vt.video_id, vt.topic_id FROM vx_video_topics vt",
+            "JOIN vx_videos v ON v.id = vt.video_id",
+            "WHERE vt.topic_id IN ",
+            "<foreach collection='topicIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "AND v.status = 'APPROVED' AND v.is_deleted = false",
+            "ORDER BY v.published_at DESC NULLS LAST",
+            "LIMIT #{limit}",
+            "</script>"})
+    List<VideoTopic> selectRecentByTopicIds(@Param("topicIds") Collection<Long> topicIds, @Param("limit") int limit);
 }
@@ -28,4 +28,9 @@ public class NotificationQueryDTO {
      * 每页数量
      */
     private Integer pageSize = 20;
+
+    /**
+     * 游标（游标分页接口使用，首次请求为空）
+     */
+    private String cursor;
 }
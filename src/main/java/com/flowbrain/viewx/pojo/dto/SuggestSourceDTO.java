@@ -0,0 +1,13 @@
+package com.flowbrain.viewx.pojo.dto;
+
+import lombok.Data;
+
+/**
+ * 前缀补全词条来源（话题名、视频标题、用户昵称及其排序计数）
+ */
+@Data
+public class SuggestSourceDTO {
+    private Long id;
+    private String text;
+    private Long count;
+}
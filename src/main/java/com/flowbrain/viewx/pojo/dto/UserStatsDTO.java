@@ -0,0 +1,15 @@
+package com.flowbrain.viewx.pojo.dto;
+
+import lombok.Data;
+
+/**
+ * 用户统计计数（粉丝数、关注数、视频数、获赞数）
+ */
+@Data
+public class UserStatsDTO {
+    private Long userId;
+    private Long followers;
+    private Long following;
+    private Long videos;
+    private Long likes;
+}
@@ -0,0 +1,12 @@
+package com.flowbrain.viewx.pojo.dto;
+
+import lombok.Data;
+
+/**
+ * 视频内容向量（vx_videos.content_embedding）
+ */
+@Data
+public class VideoEmbeddingDTO {
+    private Long videoId;
+    private float[] embedding;
+}
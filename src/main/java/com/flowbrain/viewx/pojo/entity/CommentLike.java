@@ -0,0 +1,16 @@
+package com.flowbrain.viewx.pojo.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 评论点赞记录（vx_comment_likes）
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommentLike {
+    private Long commentId;
+    private Long userId;
+}
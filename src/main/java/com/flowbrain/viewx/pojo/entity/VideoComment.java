@@ -43,4 +43,8 @@ public class VideoComment {
 
     @TableField(exist = false)
     private String avatar;
+
+    // 回复总数（批量加载回复预览时由窗口函数计算）
+    @TableField(exist = false)
+    private Integer replyCount;
 }
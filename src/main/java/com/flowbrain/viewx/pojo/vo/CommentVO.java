@@ -28,4 +28,7 @@ public class CommentVO {
     // 回复列表 (嵌套评论)
     private List<CommentVO> replies;
     private Integer replyCount;
+
+    // 加载更多回复的游标（回复未全部返回时非空，传给回复列表接口）
+    private String repliesCursor;
 }
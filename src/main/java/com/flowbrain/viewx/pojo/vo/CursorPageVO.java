@@ -0,0 +1,28 @@
+package com.flowbrain.viewx.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 游标分页结果 VO
+ * nextCursor 为不透明字符串，客户端原样回传即可获取下一页
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageVO<T> {
+    private List<T> list;
+
+    // 下一页游标（没有更多数据时为 null）
+    private String nextCursor;
+
+    private Boolean hasMore;
+
+    public static <T> CursorPageVO<T> empty() {
+        return new CursorPageVO<>(Collections.emptyList(), null, false);
+    }
+}
@@ -0,0 +1,20 @@
+package com.flowbrain.viewx.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 搜索框联想词
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionVO {
+    /**
+     * 类型：topic / video / user
+     */
+    private String type;
+    private Long id;
+    private String text;
+}
@@ -2,6 +2,8 @@ package com.flowbrain.viewx.pojo.vo;
 
 import lombok.Data;
 
+import java.time.LocalDateTime;
+
 @Data
 public class UserSummaryVO {
     private Long id;
@@ -9,4 +11,5 @@ public class UserSummaryVO {
     private String nickname;
     private String avatar;
     private Boolean isFollowing; // whether the current user follows this user
+    private LocalDateTime followedAt; // follow time, only set in follower/following lists
 }
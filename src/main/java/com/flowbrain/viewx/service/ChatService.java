@@ -3,6 +3,7 @@ package com.flowbrain.viewx.service;
 import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.pojo.dto.MessageDTO;
 import com.flowbrain.viewx.pojo.vo.ConversationVO;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.MessageVO;
 
 import java.util.List;
@@ -22,11 +23,21 @@ public interface ChatService {
      */
     Result<List<MessageVO>> getChatHistory(Long userId, Long otherUserId, int page, int size);
 
+    /**
+     * 获取聊天历史（游标分页，从最新消息往前翻，cursor 为空时返回最新一页）
+     */
+    Result<CursorPageVO<MessageVO>> getChatHistoryByCursor(Long userId, Long otherUserId, String cursor, int size);
+
     /**
      * 获取会话列表
      */
     Result<List<ConversationVO>> getConversations(Long userId);
 
+    /**
+     * 获取会话列表（游标分页，按最后消息时间倒序，cursor 为空时返回最新一页）
+     */
+    Result<CursorPageVO<ConversationVO>> getConversationsByCursor(Long userId, String cursor, int size);
+
     /**
      * 标记消息为已读
      */
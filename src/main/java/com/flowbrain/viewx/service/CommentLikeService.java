@@ -0,0 +1,375 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.flowbrain.viewx.dao.CommentLikeMapper;
+import com.flowbrain.viewx.dao.CommentMapper;
+import com.flowbrain.viewx.pojo.entity.CommentLike;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 评论点赞服务
+ *
+ * 点赞的热路径只访问 Redis：
+ * 1. 用户点赞过的评论保存在 Set 中（首次访问时从数据库加载最近的点赞），切换点赞用 Lua 原子完成
+ *    "判断 + 增删成员 + 记录操作 + 累加增量"
+ * 2. 点赞操作按 (评论, 用户) 记录最终状态，点赞数按评论累加增量，都写入"待落库"Hash
+ * 3. 定时任务把"待落库"改名为"落库中"，批量写入 vx_comment_likes 并按实际生效的行数更新 like_count
+ * 4. 展示的点赞数 = 数据库值 + 待落库增量 + 落库中增量
+ *
+ * 落库用 INSERT ... ON CONFLICT DO NOTHING / DELETE ... RETURNING 得到实际生效的行，
+ * like_count 只按生效的行累加，落库失败重试不会重复计数
+ */
+@Slf4j
+@Service
+public class CommentLikeService {
+
+    /**
+     * 切换点赞状态
+     * KEYS[1]=用户点赞集合 KEYS[2]=待落库操作 KEYS[3]=待落库增量
+     * ARGV[1]=commentId ARGV[2]=操作字段 ARGV[3]=集合过期秒数
+     * 返回 1 点赞、0 取消点赞、-1 点赞集合未加载
+     */
+    private static final DefaultRedisScript<Long> TOGGLE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end "
+                    + "local liked = 1 "
+                    + "if redis.call('SISMEMBER', KEYS[1], ARGV[1]) == 1 then "
+                    + "  redis.call('SREM', KEYS[1], ARGV[1]) "
+                    + "  liked = 0 "
+                    + "else "
+                    + "  redis.call('SADD', KEYS[1], ARGV[1]) "
+                    + "end "
+                    + "redis.call('HSET', KEYS[2], ARGV[2], tostring(liked)) "
+                    + "redis.call('HINCRBY', KEYS[3], ARGV[1], liked == 1 and 1 or -1) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                    + "return liked",
+            Long.class);
+
+    /**
+     * 取出待落库操作：若没有遗留的"落库中"操作，则把待落库的操作和增量一起改名过去，返回"落库中"操作的全部内容
+     * KEYS[1]=待落库操作 KEYS[2]=落库中操作 KEYS[3]=待落库增量 KEYS[4]=落库中增量
+     */
+    private static final DefaultRedisScript<List> TAKE_OPS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[2]) == 0 then "
+                    + "  if redis.call('EXISTS', KEYS[1]) == 0 then return {} end "
+                    + "  redis.call('RENAME', KEYS[1], KEYS[2]) "
+                    + "  if redis.call('EXISTS', KEYS[3]) == 1 then redis.call('RENAME', KEYS[3], KEYS[4]) end "
+                    + "end "
+                    + "return redis.call('HGETALL', KEYS[2])",
+            List.class);
+
+    private static final String FLUSH_LOCK = "comment:likes:flush";
+
+    /**
+     * 点赞集合中的占位成员，保证点赞数为 0 的用户集合也存在（区分"未加载"和"没有点赞"）
+     */
+    private static final String LOADED_MARKER = "0";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisLockService redisLockService;
+
+    @Autowired
+    private CommentLikeMapper commentLikeMapper;
+
+    @Autowired
+    private CommentMapper commentMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 热评缓存依赖评论加载器，加载器又依赖本服务，延迟注入打破循环
+    @Autowired
+    @Lazy
+    private HotCommentService hotCommentService;
+
+    /**
+     * 每条 SQL 写入的点赞操作数上限（PostgreSQL 单条语句绑定参数上限 65535）
+     */
+    @Value("${viewx.comment.like.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${viewx.comment.like.liked-set-ttl-days:7}")
+    private int likedSetTtlDays;
+
+    /**
+     * 加载用户点赞集合时取最近的点赞数，更早的点赞在集合中视为未点赞，
+     * 再次点赞时由 ON CONFLICT 忽略，点赞数在下一次落库后自动修正
+     */
+    @Value("${viewx.comment.like.liked-set-load-limit:10000}")
+    private int likedSetLoadLimit;
+
+    /**
+     * 切换点赞状态
+     *
+     * @return true 点赞，false 取消点赞
+     */
+    public boolean toggleLike(Long userId, Long commentId) {
+        try {
+            String likedKey = RedisKeyConstants.Comment.getLikedSetKey(userId);
+            Long result = executeToggle(likedKey, userId, commentId);
+            if (result != null && result < 0) {
+                loadLikedSet(userId);
+                result = executeToggle(likedKey, userId, commentId);
+            }
+            if (result == null || result < 0) {
+                throw new IllegalStateException("点赞集合加载失败");
+            }
+            return result == 1;
+        } catch (Exception e) {
+            // Redis 不可用时直接写库，保证点赞不丢
+            log.warn("评论点赞写入缓冲失败，直接写库: userId={}, commentId={}", userId, commentId, e);
+            return toggleInDatabase(userId, commentId);
+        }
+    }
+
+    /**
+     * 批量查询评论的点赞状态：一次 pipeline 完成当前用户的成员检查和点赞数增量查询
+     *
+     * @param userId 当前用户，未登录时为 null
+     */
+    public LikeStates getLikeStates(Long userId, Collection<Long> commentIds) {
+        if (commentIds == null || commentIds.isEmpty()) {
+            return LikeStates.EMPTY;
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(commentIds));
+        byte[][] fields = new byte[ids.size()][];
+        for (int i = 0; i < ids.size(); i++) {
+            fields[i] = raw(ids.get(i).toString());
+        }
+
+        try {
+            byte[] likedKey = userId == null ? null : raw(RedisKeyConstants.Comment.getLikedSetKey(userId));
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hashCommands().hMGet(raw(RedisKeyConstants.Comment.getPendingLikeDeltaKey()), fields);
+                connection.hashCommands().hMGet(raw(RedisKeyConstants.Comment.getFlushingLikeDeltaKey()), fields);
+                if (likedKey != null) {
+                    connection.keyCommands().exists(likedKey);
+                    connection.setCommands().sMIsMember(likedKey, fields);
+                }
+                return null;
+            });
+
+            Map<Long, Long> deltas = new HashMap<>();
+            List<?> pendingValues = (List<?>) results.get(0);
+            List<?> flushingValues = (List<?>) results.get(1);
+            for (int i = 0; i < ids.size(); i++) {
+                long delta = toLong(pendingValues.get(i)) + toLong(flushingValues.get(i));
+                if (delta != 0) {
+                    deltas.put(ids.get(i), delta);
+                }
+            }
+
+            Set<Long> liked = new HashSet<>();
+            if (likedKey != null) {
+                if (Boolean.TRUE.equals(results.get(2))) {
+                    List<?> members = (List<?>) results.get(3);
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (Boolean.TRUE.equals(members.get(i))) {
+                            liked.add(ids.get(i));
+                        }
+                    }
+                } else {
+                    Set<Long> loaded = loadLikedSet(userId);
+                    for (Long id : ids) {
+                        if (loaded.contains(id)) {
+                            liked.add(id);
+                        }
+                    }
+                }
+            }
+            return new LikeStates(liked, deltas);
+        } catch (Exception e) {
+            log.warn("查询评论点赞状态失败，返回数据库值", e);
+            return LikeStates.EMPTY;
+        }
+    }
+
+    /**
+     * 定时把缓冲的点赞操作批量写入数据库，默认每 5 秒一次
+     * 多实例部署时通过分布式锁保证同一时刻只有一个实例在落库
+     */
+    @Scheduled(fixedDelayString = "${viewx.comment.like.flush-interval-ms:5000}")
+    public void flush() {
+        String lockToken = redisLockService.tryLock(FLUSH_LOCK, Duration.ofMinutes(1));
+        if (lockToken == null) {
+            return;
+        }
+
+        try {
+            int applied = flushOps();
+            if (applied > 0) {
+                log.debug("评论点赞落库完成: {} 条评论点赞数变化", applied);
+            }
+        } catch (Exception e) {
+            log.error("评论点赞落库失败，下一轮重试", e);
+        } finally {
+            redisLockService.unlock(FLUSH_LOCK, lockToken);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int flushOps() {
+        RedisSerializer stringSerializer = redisTemplate.getStringSerializer();
+        List<?> entries = redisTemplate.execute(TAKE_OPS_SCRIPT, stringSerializer, stringSerializer,
+                List.of(RedisKeyConstants.Comment.getPendingLikeOpsKey(),
+                        RedisKeyConstants.Comment.getFlushingLikeOpsKey(),
+                        RedisKeyConstants.Comment.getPendingLikeDeltaKey(),
+                        RedisKeyConstants.Comment.getFlushingLikeDeltaKey()));
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+
+        List<CommentLike> likes = new ArrayList<>();
+        List<CommentLike> unlikes = new ArrayList<>();
+        for (int i = 0; i + 1 < entries.size(); i += 2) {
+            String field = entries.get(i).toString();
+            int sep = field.indexOf(':');
+            CommentLike like = new CommentLike(Long.parseLong(field.substring(0, sep)),
+                    Long.parseLong(field.substring(sep + 1)));
+            if ("1".equals(entries.get(i + 1).toString())) {
+                likes.add(like);
+            } else {
+                unlikes.add(like);
+            }
+        }
+
+        // 每批一个事务；已提交的批次重试时 INSERT/DELETE 不再生效，like_count 不会重复累加
+        Set<Long> changed = new HashSet<>();
+        for (int from = 0; from < likes.size(); from += batchSize) {
+            applyBatch(likes.subList(from, Math.min(from + batchSize, likes.size())), true, changed);
+        }
+        for (int from = 0; from < unlikes.size(); from += batchSize) {
+            applyBatch(unlikes.subList(from, Math.min(from + batchSize, unlikes.size())), false, changed);
+        }
+
+        // 写入成功后才删除"落库中"的操作和增量
+        redisTemplate.delete(List.of(RedisKeyConstants.Comment.getFlushingLikeOpsKey(),
+                RedisKeyConstants.Comment.getFlushingLikeDeltaKey()));
+        hotCommentService.onLikesChanged(changed);
+        return changed.size();
+    }
+
+    /**
+     * @param changedIds 收集实际生效的评论ID
+     * @return 实际生效的行数
+     */
+    private int applyBatch(List<CommentLike> batch, boolean like, Set<Long> changedIds) {
+        Integer applied = transactionTemplate.execute(status -> {
+            List<Long> changed = like ? commentLikeMapper.insertLikes(batch) : commentLikeMapper.deleteLikes(batch);
+            if (changed.isEmpty()) {
+                return 0;
+            }
+            Map<Long, Long> deltas = new HashMap<>();
+            for (Long commentId : changed) {
+                deltas.merge(commentId, like ? 1L : -1L, Long::sum);
+            }
+            commentMapper.batchIncrementLikeCount(deltas);
+            changedIds.addAll(deltas.keySet());
+            return changed.size();
+        });
+        return applied == null ? 0 : applied;
+    }
+
+    private Long executeToggle(String likedKey, Long userId, Long commentId) {
+        // 参数按字符串序列化，与集合成员、Hash 字段的写法一致；整数结果不经过结果序列化器
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        return redisTemplate.execute(TOGGLE_SCRIPT, stringSerializer, (RedisSerializer<Long>) null,
+                List.of(likedKey, RedisKeyConstants.Comment.getPendingLikeOpsKey(),
+                        RedisKeyConstants.Comment.getPendingLikeDeltaKey()),
+                commentId.toString(), commentId + ":" + userId,
+                String.valueOf(Duration.ofDays(likedSetTtlDays).toSeconds()));
+    }
+
+    /**
+     * 从数据库加载用户最近的点赞写入 Redis 集合
+     */
+    private Set<Long> loadLikedSet(Long userId) {
+        List<Long> commentIds = commentLikeMapper.selectLikedCommentIds(userId, likedSetLoadLimit);
+        byte[] key = raw(RedisKeyConstants.Comment.getLikedSetKey(userId));
+        byte[][] members = new byte[commentIds.size() + 1][];
+        members[0] = raw(LOADED_MARKER);
+        for (int i = 0; i < commentIds.size(); i++) {
+            members[i + 1] = raw(commentIds.get(i).toString());
+        }
+        long ttl = Duration.ofDays(likedSetTtlDays).toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.setCommands().sAdd(key, members);
+            connection.keyCommands().expire(key, ttl);
+            return null;
+        });
+        return new HashSet<>(commentIds);
+    }
+
+    private boolean toggleInDatabase(Long userId, Long commentId) {
+        List<CommentLike> single = Collections.singletonList(new CommentLike(commentId, userId));
+        Set<Long> changed = new HashSet<>();
+        boolean liked = applyBatch(single, false, changed) == 0;
+        if (liked) {
+            applyBatch(single, true, changed);
+        }
+        hotCommentService.onLikesChanged(changed);
+        return liked;
+    }
+
+    private long toLong(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+
+    private byte[] raw(String value) {
+        return redisTemplate.getStringSerializer().serialize(value);
+    }
+
+    /**
+     * 一页评论的点赞状态
+     */
+    public static final class LikeStates {
+
+        static final LikeStates EMPTY = new LikeStates(Collections.emptySet(), Collections.emptyMap());
+
+        private final Set<Long> liked;
+
+        private final Map<Long, Long> deltas;
+
+        LikeStates(Set<Long> liked, Map<Long, Long> deltas) {
+            this.liked = liked;
+            this.deltas = deltas;
+        }
+
+        public boolean isLiked(Long commentId) {
+            return liked.contains(commentId);
+        }
+
+        /**
+         * 尚未落库的点赞数增量
+         */
+        public long pendingDelta(Long commentId) {
+            return deltas.getOrDefault(commentId, 0L);
+        }
+    }
+}
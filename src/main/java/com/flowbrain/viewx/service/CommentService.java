@@ -1,5 +1,6 @@
 package com.flowbrain.viewx.service;
 
+import com.flowbrain.viewx.common.EventType;
 import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.dao.CommentMapper;
 import com.flowbrain.viewx.pojo.entity.VideoComment;
@@ -10,6 +11,8 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -22,7 +25,10 @@ public class CommentService {
     private CommentMapper commentMapper;
 
     @Autowired
-    private RecommendService recommendService;
+    private TrendingScoreService trendingScoreService;
+
+    @Autowired
+    private HotCommentService hotCommentService;
 
     @Transactional
     public Result<VideoComment> addComment(Long userId, Long videoId, String content, Long parentId) {
@@ -35,8 +41,10 @@ public class CommentService {
 
         commentMapper.insertComment(comment);
         commentMapper.incrementVideoCommentCount(videoId);
+        hotCommentService.onCommentCreated(comment);
 
-        recommendService.updateVideoScore(videoId);
+        // 事务回滚的评论不计入热度
+        afterCommit(() -> trendingScoreService.recordEvent(videoId, EventType.COMMENT_CREATE, null));
 
         return Result.success("Comment added", comment);
     }
@@ -65,6 +73,26 @@ public class CommentService {
         return Result.success(replyVOs);
     }
 
+    private void afterCommit(Runnable task) {
+        Runnable safeTask = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.warn("评论热度更新失败", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safeTask.run();
+                }
+            });
+            return;
+        }
+        safeTask.run();
+    }
+
     private CommentVO convertToVO(VideoComment comment) {
         CommentVO vo = new CommentVO();
         BeanUtils.copyProperties(comment, vo);
@@ -0,0 +1,199 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.dao.CommentMapper;
+import com.flowbrain.viewx.pojo.entity.VideoComment;
+import com.flowbrain.viewx.pojo.vo.CommentVO;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
+import com.flowbrain.viewx.pojo.vo.UserBriefVO;
+import com.flowbrain.viewx.util.CursorCodec;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 评论楼层加载器
+ *
+ * 一页评论的查询次数固定，与评论数、回复数无关：
+ * 1. 一级评论（调用方查询）
+ * 2. 所有一级评论的前 K 条回复 + 回复总数（窗口函数，一次查询）
+ * 3. 评论者与回复者的用户信息（一次批量查询）
+ * 4. 当前用户的点赞状态与未落库的点赞数（一次 Redis pipeline）
+ *
+ * 回复超过 K 条时在一级评论上返回 repliesCursor，客户端用它调用回复列表接口继续加载
+ */
+@Service
+public class CommentThreadLoader {
+
+    private static final UserBriefVO EMPTY_AUTHOR = new UserBriefVO();
+
+    @Autowired
+    private CommentMapper commentMapper;
+
+    @Autowired
+    private VideoHydrationService videoHydrationService;
+
+    @Autowired
+    private CommentLikeService commentLikeService;
+
+    /**
+     * 每个一级评论随列表返回的回复条数
+     */
+    @Value("${viewx.comment.reply-preview-size:3}")
+    private int replyPreviewSize;
+
+    /**
+     * 组装一级评论及其回复预览
+     *
+     * @param currentUserId 当前用户，未登录时为 null
+     */
+    public List<CommentVO> loadThreads(List<VideoComment> roots, Long currentUserId) {
+        return applyLikeStates(buildThreads(roots), currentUserId);
+    }
+
+    /**
+     * 组装一级评论及其回复预览，点赞数为数据库值、isLiked 为 false（与用户无关，可缓存）
+     */
+    List<CommentVO> buildThreads(List<VideoComment> roots) {
+        if (roots.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, List<VideoComment>> repliesByParent = new LinkedHashMap<>();
+        Set<Long> userIds = new HashSet<>();
+        for (VideoComment root : roots) {
+            repliesByParent.put(root.getId(), new ArrayList<>());
+            userIds.add(root.getUserId());
+        }
+        if (replyPreviewSize > 0) {
+            for (VideoComment reply : commentMapper.selectTopReplies(repliesByParent.keySet(), replyPreviewSize)) {
+                repliesByParent.get(reply.getParentId()).add(reply);
+                userIds.add(reply.getUserId());
+            }
+        }
+        Map<Long, UserBriefVO> authors = videoHydrationService.loadUserBriefs(userIds);
+
+        List<CommentVO> result = new ArrayList<>(roots.size());
+        for (VideoComment root : roots) {
+            CommentVO vo = toVO(root, authors);
+            List<VideoComment> replies = repliesByParent.get(root.getId());
+            List<CommentVO> replyVOs = new ArrayList<>(replies.size());
+            for (VideoComment reply : replies) {
+                replyVOs.add(toVO(reply, authors));
+            }
+            int replyCount = replies.isEmpty() || replies.get(0).getReplyCount() == null
+                    ? replies.size() : replies.get(0).getReplyCount();
+            vo.setReplies(replyVOs);
+            vo.setReplyCount(replyCount);
+            if (replyCount > replies.size()) {
+                VideoComment last = replies.get(replies.size() - 1);
+                vo.setRepliesCursor(CursorCodec.encodeTimeId(last.getCreatedAt(), last.getId()));
+            }
+            result.add(vo);
+        }
+        return result;
+    }
+
+    /**
+     * 填充当前用户的点赞状态，并把未落库的点赞数增量合并到点赞数上（含回复预览）
+     *
+     * @param currentUserId 当前用户，未登录时为 null
+     */
+    public List<CommentVO> applyLikeStates(List<CommentVO> comments, Long currentUserId) {
+        List<Long> commentIds = new ArrayList<>();
+        for (CommentVO comment : comments) {
+            commentIds.add(comment.getId());
+            if (comment.getReplies() != null) {
+                for (CommentVO reply : comment.getReplies()) {
+                    commentIds.add(reply.getId());
+                }
+            }
+        }
+        CommentLikeService.LikeStates likes = commentLikeService.getLikeStates(currentUserId, commentIds);
+        for (CommentVO comment : comments) {
+            applyLikeState(comment, likes);
+            if (comment.getReplies() != null) {
+                for (CommentVO reply : comment.getReplies()) {
+                    applyLikeState(reply, likes);
+                }
+            }
+        }
+        return comments;
+    }
+
+    private void applyLikeState(CommentVO comment, CommentLikeService.LikeStates likes) {
+        long likeCount = (comment.getLikeCount() == null ? 0 : comment.getLikeCount())
+                + likes.pendingDelta(comment.getId());
+        comment.setLikeCount((int) Math.max(likeCount, 0));
+        comment.setIsLiked(likes.isLiked(comment.getId()));
+    }
+
+    /**
+     * 回复列表（游标分页，按时间正序）
+     *
+     * @param cursor 为空时从第一条回复开始，否则取 repliesCursor / nextCursor 之后的回复
+     */
+    public CursorPageVO<CommentVO> loadReplies(Long parentId, Long currentUserId, String cursor, int size) {
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            cursorTime = CursorCodec.parseTime(parts[0]);
+            cursorId = CursorCodec.parseLong(parts[1]);
+        }
+
+        // 多取一条用于判断是否还有下一页
+        List<VideoComment> replies = commentMapper.selectRepliesAfter(parentId, cursorTime, cursorId, size + 1);
+        boolean hasMore = replies.size() > size;
+        if (hasMore) {
+            replies = replies.subList(0, size);
+        }
+        if (replies.isEmpty()) {
+            return CursorPageVO.empty();
+        }
+
+        Set<Long> userIds = new HashSet<>();
+        for (VideoComment reply : replies) {
+            userIds.add(reply.getUserId());
+        }
+        Map<Long, UserBriefVO> authors = videoHydrationService.loadUserBriefs(userIds);
+        List<CommentVO> list = new ArrayList<>(replies.size());
+        for (VideoComment reply : replies) {
+            list.add(toVO(reply, authors));
+        }
+        applyLikeStates(list, currentUserId);
+        VideoComment last = replies.get(replies.size() - 1);
+        String nextCursor = hasMore ? CursorCodec.encodeTimeId(last.getCreatedAt(), last.getId()) : null;
+        return new CursorPageVO<>(list, nextCursor, hasMore);
+    }
+
+    /**
+     * 单条评论转 VO（发表评论后返回）
+     */
+    public CommentVO toVO(VideoComment comment) {
+        return toVO(comment, videoHydrationService.loadUserBriefs(Collections.singleton(comment.getUserId())));
+    }
+
+    private CommentVO toVO(VideoComment comment, Map<Long, UserBriefVO> authors) {
+        CommentVO vo = new CommentVO();
+        // replyCount 在回复行上是其所属楼层的总数，不复制
+        BeanUtils.copyProperties(comment, vo, "replyCount");
+
+        UserBriefVO author = authors.getOrDefault(comment.getUserId(), EMPTY_AUTHOR);
+        vo.setUsername(author.getUsername());
+        vo.setNickname(author.getNickname());
+        vo.setAvatar(author.getAvatarUrl());
+
+        vo.setIsLiked(false);
+        return vo;
+    }
+}
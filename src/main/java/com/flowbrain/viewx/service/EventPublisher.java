@@ -6,6 +6,8 @@ import com.flowbrain.viewx.pojo.dto.BaseEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -39,6 +41,19 @@ public class EventPublisher {
 
         // 根据事件类型路由到不同的队列
         routeEvent(event);
+
+        // 搜索索引和关注流的消费者会按视频ID回查数据库，关注图广播会让各节点重新加载邻接表：
+        // 处于事务中时这几路推迟到提交之后发送，避免读到提交前的旧数据或应用已回滚的关注；其余队列仍立即发送
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    routeCommittedReads(event);
+                }
+            });
+        } else {
+            routeCommittedReads(event);
+        }
     }
 
     /**
@@ -71,13 +86,6 @@ public class EventPublisher {
                 sendToQueue(RabbitMQConfig.ROUTING_KEY_NOTIFICATION, event);
             }
 
-            // 需要更新搜索索引的事件
-            if (EventType.VIDEO_UPLOAD.equals(eventType) ||
-                    EventType.VIDEO_APPROVED.equals(eventType) ||
-                    EventType.VIDEO_DELETE.equals(eventType)) {
-                sendToQueue(RabbitMQConfig.ROUTING_KEY_SEARCH, event);
-            }
-
             // 需要发送邮件的事件
             if (EventType.USER_REGISTER.equals(eventType) ||
                     EventType.VIDEO_APPROVED.equals(eventType) ||
@@ -99,6 +107,37 @@ public class EventPublisher {
         }
     }
 
+    /**
+     * 路由需要回查数据库的事件（搜索索引、关注流、关注图），由 publishEvent 在事务提交后调用
+     */
+    private void routeCommittedReads(BaseEvent event) {
+        String eventType = event.getEventType();
+
+        try {
+            // 需要更新搜索索引的事件
+            if (EventType.VIDEO_UPLOAD.equals(eventType) ||
+                    EventType.VIDEO_APPROVED.equals(eventType) ||
+                    EventType.VIDEO_UPDATE.equals(eventType) ||
+                    EventType.VIDEO_DELETE.equals(eventType)) {
+                sendToQueue(RabbitMQConfig.ROUTING_KEY_SEARCH, event);
+            }
+
+            // 视频发布，推入粉丝的关注流
+            if (EventType.VIDEO_APPROVED.equals(eventType)) {
+                sendToQueue(RabbitMQConfig.ROUTING_KEY_TIMELINE, event);
+            }
+
+            // 关注关系变化，广播给所有节点的内存关注图
+            if (EventType.USER_FOLLOW.equals(eventType) ||
+                    EventType.USER_UNFOLLOW.equals(eventType)) {
+                sendToQueue(RabbitMQConfig.ROUTING_KEY_FOLLOW_GRAPH, event);
+            }
+        } catch (Exception e) {
+            log.error("事件发布失败: eventId={}, eventType={}",
+                    event.getEventId(), event.getEventType(), e);
+        }
+    }
+
     /**
      * 发送消息到指定队列
      */
@@ -200,4 +239,13 @@ public class EventPublisher {
 
         log.info("延迟事件发布成功: eventId={}, delay={}ms", event.getEventId(), delayMillis);
     }
+
+    /**
+     * 发布视频变更事件（删除、更新等），用于刷新搜索索引
+     */
+    public void publishVideoChangeEvent(String eventType, Long userId, Long videoId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("videoId", videoId);
+        publishEvent(eventType, userId, data);
+    }
 }
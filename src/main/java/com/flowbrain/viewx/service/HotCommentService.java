@@ -0,0 +1,419 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.flowbrain.viewx.dao.CommentMapper;
+import com.flowbrain.viewx.pojo.entity.VideoComment;
+import com.flowbrain.viewx.pojo.vo.CommentVO;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
+import com.flowbrain.viewx.util.CursorCodec;
+import com.flowbrain.viewx.util.CustomJsonRedisSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 视频热评缓存
+ *
+ * 每个视频在 Redis 中维护一个有界的热评排行（ZSet）和对应的评论快照（Hash，含回复预览），
+ * 热度 = log10(点赞 + replyWeight·回复) + 发布时间/decaySeconds，置顶评论始终在最前：
+ * - 读：一次 Lua 取出排名区间内的快照，再一次 pipeline 查当前用户的点赞状态，不访问数据库
+ * - 写：发表/删除评论、点赞落库后只刷新受影响的一级评论（事务提交后执行，未缓存的视频直接跳过）
+ * - 快照记录构建时间，超过 ttl-seconds 视为过期：只有抢到重建锁的一个请求回源重建，其余请求继续返回旧快照；
+ *   Redis 中的键保留 2 倍 ttl，过期时间同时限制作者昵称、头像等快照字段的陈旧程度
+ * - 缓存不存在时同一节点上的并发请求只回源一次
+ *
+ * 快照中的点赞数是数据库值，读取时再合并未落库的增量（与评论列表一致）
+ */
+@Slf4j
+@Service
+public class HotCommentService {
+
+    /**
+     * 置顶评论的热度加成，保证置顶评论排在所有普通评论之前
+     */
+    private static final double PINNED_BONUS = 1_000_000D;
+
+    /**
+     * 快照 Hash 中的构建时间字段（epoch 秒）：Hash 存在即表示该视频的热评已构建（没有评论的视频也会缓存）
+     */
+    private static final String BUILT_MARKER = "_built";
+
+    /**
+     * 写入快照并按容量淘汰热度最低的评论
+     * KEYS[1]=热评排行 KEYS[2]=快照
+     * ARGV[1]=1 只在已缓存时写入 / 0 重建（先清空） ARGV[2]=容量 ARGV[3]=过期秒数 ARGV[4]=构建时间
+     * ARGV[5..]=commentId, 热度, 快照 三个一组
+     */
+    private static final String UPSERT_SCRIPT =
+            "if ARGV[1] == '1' then "
+                    + "  if redis.call('EXISTS', KEYS[2]) == 0 then return 0 end "
+                    + "else "
+                    + "  redis.call('DEL', KEYS[1], KEYS[2]) "
+                    + "  redis.call('HSET', KEYS[2], '" + BUILT_MARKER + "', ARGV[4]) "
+                    + "end "
+                    + "for i = 5, #ARGV, 3 do "
+                    + "  redis.call('ZADD', KEYS[1], ARGV[i + 1], ARGV[i]) "
+                    + "  redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 2]) "
+                    + "end "
+                    + "local extra = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[2]) "
+                    + "if extra > 0 then "
+                    + "  local dropped = redis.call('ZRANGE', KEYS[1], 0, extra - 1) "
+                    + "  redis.call('ZREMRANGEBYRANK', KEYS[1], 0, extra - 1) "
+                    + "  redis.call('HDEL', KEYS[2], unpack(dropped)) "
+                    + "end "
+                    + "if ARGV[1] == '0' then "
+                    + "  redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                    + "  redis.call('EXPIRE', KEYS[2], ARGV[3]) "
+                    + "end "
+                    + "return 1";
+
+    /**
+     * 读取排名区间内的快照：未缓存时返回 nil，否则返回 {总数, 构建时间, 快照...}
+     * KEYS[1]=热评排行 KEYS[2]=快照 ARGV[1]=起始排名 ARGV[2]=结束排名（含）
+     */
+    private static final String READ_SCRIPT =
+            "if redis.call('EXISTS', KEYS[2]) == 0 then return false end "
+                    + "local ids = redis.call('ZREVRANGE', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "local result = {redis.call('ZCARD', KEYS[1]), "
+                    + "  tonumber(redis.call('HGET', KEYS[2], '" + BUILT_MARKER + "')) or 0} "
+                    + "if #ids > 0 then "
+                    + "  local bodies = redis.call('HMGET', KEYS[2], unpack(ids)) "
+                    + "  for i = 1, #bodies do result[i + 2] = bodies[i] end "
+                    + "end "
+                    + "return result";
+
+    private static final String REBUILD_LOCK = "comment:hot:rebuild:";
+
+    private static final CustomJsonRedisSerializer<CommentVO> SNAPSHOT_SERIALIZER =
+            new CustomJsonRedisSerializer<>(CommentVO.class, false);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private CommentMapper commentMapper;
+
+    @Autowired
+    private CommentThreadLoader commentThreadLoader;
+
+    @Autowired
+    private RedisLockService redisLockService;
+
+    /**
+     * 本节点正在回源的视频：videoId -> 重建结果
+     */
+    private final ConcurrentMap<Long, CompletableFuture<List<CommentVO>>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${viewx.comment.hot.max-entries:200}")
+    private int maxEntries;
+
+    @Value("${viewx.comment.hot.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${viewx.comment.hot.reply-weight:2}")
+    private double replyWeight;
+
+    @Value("${viewx.comment.hot.decay-seconds:45000}")
+    private double decaySeconds;
+
+    /**
+     * 热评列表（按热度排名分页）
+     *
+     * @param cursor 为空时从第一名开始，否则为上一页返回的 nextCursor
+     */
+    public CursorPageVO<CommentVO> getHotComments(Long videoId, Long currentUserId, String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        int offset = CursorCodec.isBlank(cursor) ? 0
+                : (int) Math.max(0, CursorCodec.parseLong(CursorCodec.decode(cursor, 1)[0]));
+        if (offset >= maxEntries) {
+            return CursorPageVO.empty();
+        }
+
+        List<CommentVO> page = null;
+        long total = 0;
+        boolean stale = false;
+        try {
+            List<?> cached = read(videoId, offset, size);
+            if (cached != null) {
+                total = ((Number) cached.get(0)).longValue();
+                long builtAt = ((Number) cached.get(1)).longValue();
+                stale = System.currentTimeMillis() / 1000 - builtAt >= ttlSeconds;
+                page = new ArrayList<>(cached.size() - 2);
+                for (int i = 2; i < cached.size(); i++) {
+                    // 并发淘汰时快照可能已被删除
+                    if (cached.get(i) instanceof byte[] body) {
+                        page.add(SNAPSHOT_SERIALIZER.deserialize(body));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取热评缓存失败，从数据库加载: videoId={}", videoId, e);
+        }
+
+        List<CommentVO> all = null;
+        if (page == null) {
+            all = loadOnce(videoId);
+        } else if (stale) {
+            // 快照已过期：抢到重建锁的请求回源，其余请求继续返回旧快照
+            String lockName = REBUILD_LOCK + videoId;
+            String lockToken = redisLockService.tryLock(lockName, Duration.ofSeconds(30));
+            if (lockToken != null) {
+                try {
+                    all = rebuild(videoId);
+                } catch (Exception e) {
+                    log.warn("重建热评缓存失败，返回旧快照: videoId={}", videoId, e);
+                } finally {
+                    redisLockService.unlock(lockName, lockToken);
+                }
+            }
+        }
+        if (all != null) {
+            total = all.size();
+            page = offset < all.size() ? new ArrayList<>(all.subList(offset, Math.min(offset + size, all.size())))
+                    : new ArrayList<>();
+        }
+        if (page.isEmpty()) {
+            return CursorPageVO.empty();
+        }
+
+        commentThreadLoader.applyLikeStates(page, currentUserId);
+        int next = offset + size;
+        boolean hasMore = next < Math.min(total, maxEntries);
+        return new CursorPageVO<>(page, hasMore ? CursorCodec.encode(next) : null, hasMore);
+    }
+
+    /**
+     * 发表评论后刷新所属一级评论（一级评论本身或回复所在的楼层）
+     */
+    public void onCommentCreated(VideoComment comment) {
+        Long rootId = comment.getParentId() != null ? comment.getParentId() : comment.getId();
+        afterCommit(() -> refreshRoots(Map.of(comment.getVideoId(), Set.of(rootId))));
+    }
+
+    /**
+     * 删除评论后：一级评论移出热评，回复则刷新所在楼层
+     */
+    public void onCommentDeleted(VideoComment comment) {
+        if (comment.getParentId() == null) {
+            afterCommit(() -> remove(comment.getVideoId(), Collections.singleton(comment.getId())));
+        } else {
+            afterCommit(() -> refreshRoots(Map.of(comment.getVideoId(), Set.of(comment.getParentId()))));
+        }
+    }
+
+    /**
+     * 点赞数落库后刷新受影响的一级评论（回复的点赞数变化刷新其所在楼层的回复预览）
+     */
+    public void onLikesChanged(Collection<Long> commentIds) {
+        if (commentIds == null || commentIds.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Long, Set<Long>> rootsByVideo = new HashMap<>();
+            for (VideoComment comment : commentMapper.selectBatchIds(commentIds)) {
+                Long rootId = comment.getParentId() != null ? comment.getParentId() : comment.getId();
+                rootsByVideo.computeIfAbsent(comment.getVideoId(), k -> new HashSet<>()).add(rootId);
+            }
+            refreshRoots(rootsByVideo);
+        } catch (Exception e) {
+            log.warn("点赞后刷新热评失败: comments={}", commentIds.size(), e);
+        }
+    }
+
+    /**
+     * 缓存不存在时回源：同一节点上同一视频的并发请求共享一次重建
+     */
+    private List<CommentVO> loadOnce(Long videoId) {
+        CompletableFuture<List<CommentVO>> mine = new CompletableFuture<>();
+        CompletableFuture<List<CommentVO>> existing = inFlight.putIfAbsent(videoId, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            List<CommentVO> result = rebuild(videoId);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(videoId, mine);
+        }
+    }
+
+    /**
+     * 从数据库重建视频热评缓存
+     *
+     * @return 按热度排序的全部快照
+     */
+    private List<CommentVO> rebuild(Long videoId) {
+        List<VideoComment> roots = commentMapper.selectHotRootComments(videoId, replyWeight, decaySeconds, maxEntries);
+        List<CommentVO> snapshots = new ArrayList<>(commentThreadLoader.buildThreads(roots));
+        snapshots.sort(Comparator.comparingDouble(this::score).reversed());
+        try {
+            write(videoId, snapshots, false);
+        } catch (Exception e) {
+            log.warn("写入热评缓存失败: videoId={}", videoId, e);
+        }
+        return snapshots;
+    }
+
+    /**
+     * 刷新已缓存视频中的若干一级评论；已删除的评论移出热评
+     */
+    private void refreshRoots(Map<Long, Set<Long>> rootsByVideo) {
+        List<Long> videoIds = new ArrayList<>(rootsByVideo.keySet());
+        List<Object> exists = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long videoId : videoIds) {
+                connection.keyCommands().exists(raw(RedisKeyConstants.Comment.getHotDataKey(videoId)));
+            }
+            return null;
+        });
+
+        Map<Long, Set<Long>> cachedRoots = new LinkedHashMap<>();
+        Set<Long> rootIds = new HashSet<>();
+        for (int i = 0; i < videoIds.size(); i++) {
+            if (Boolean.TRUE.equals(exists.get(i))) {
+                cachedRoots.put(videoIds.get(i), rootsByVideo.get(videoIds.get(i)));
+                rootIds.addAll(rootsByVideo.get(videoIds.get(i)));
+            }
+        }
+        if (rootIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<CommentVO>> snapshotsByVideo = new HashMap<>();
+        Set<Long> alive = new HashSet<>();
+        for (CommentVO snapshot : commentThreadLoader.buildThreads(commentMapper.selectBatchIds(rootIds))) {
+            snapshotsByVideo.computeIfAbsent(snapshot.getVideoId(), k -> new ArrayList<>()).add(snapshot);
+            alive.add(snapshot.getId());
+        }
+        cachedRoots.forEach((videoId, ids) -> {
+            List<CommentVO> snapshots = snapshotsByVideo.get(videoId);
+            if (snapshots != null) {
+                write(videoId, snapshots, true);
+            }
+            Set<Long> deleted = new HashSet<>(ids);
+            deleted.removeAll(alive);
+            remove(videoId, deleted);
+        });
+    }
+
+    private void write(Long videoId, List<CommentVO> snapshots, boolean onlyIfCached) {
+        byte[][] keysAndArgs = new byte[6 + snapshots.size() * 3][];
+        keysAndArgs[0] = raw(RedisKeyConstants.Comment.getHotRankKey(videoId));
+        keysAndArgs[1] = raw(RedisKeyConstants.Comment.getHotDataKey(videoId));
+        keysAndArgs[2] = raw(onlyIfCached ? "1" : "0");
+        keysAndArgs[3] = raw(String.valueOf(maxEntries));
+        // 键保留 2 倍 ttl：逻辑过期后仍可返回旧快照，等待单个请求重建
+        keysAndArgs[4] = raw(String.valueOf(ttlSeconds * 2));
+        keysAndArgs[5] = raw(String.valueOf(System.currentTimeMillis() / 1000));
+        int i = 6;
+        for (CommentVO snapshot : snapshots) {
+            keysAndArgs[i++] = raw(snapshot.getId().toString());
+            keysAndArgs[i++] = raw(String.valueOf(score(snapshot)));
+            keysAndArgs[i++] = SNAPSHOT_SERIALIZER.serialize(snapshot);
+        }
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.scriptingCommands().eval(
+                UPSERT_SCRIPT.getBytes(StandardCharsets.UTF_8), ReturnType.INTEGER, 2, keysAndArgs));
+    }
+
+    private List<?> read(Long videoId, int offset, int size) {
+        byte[][] keysAndArgs = {
+                raw(RedisKeyConstants.Comment.getHotRankKey(videoId)),
+                raw(RedisKeyConstants.Comment.getHotDataKey(videoId)),
+                raw(String.valueOf(offset)),
+                raw(String.valueOf(offset + size - 1))
+        };
+        return redisTemplate.execute((RedisCallback<List<?>>) connection -> connection.scriptingCommands().eval(
+                READ_SCRIPT.getBytes(StandardCharsets.UTF_8), ReturnType.MULTI, 2, keysAndArgs));
+    }
+
+    private void remove(Long videoId, Collection<Long> commentIds) {
+        if (commentIds.isEmpty()) {
+            return;
+        }
+        byte[][] members = new byte[commentIds.size()][];
+        int i = 0;
+        for (Long commentId : commentIds) {
+            members[i++] = raw(commentId.toString());
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zRem(raw(RedisKeyConstants.Comment.getHotRankKey(videoId)), members);
+            connection.hashCommands().hDel(raw(RedisKeyConstants.Comment.getHotDataKey(videoId)), members);
+            return null;
+        });
+    }
+
+    /**
+     * 热度：log10(点赞 + replyWeight·回复) + 发布时间/decaySeconds，与 selectHotRootComments 的排序一致
+     */
+    private double score(CommentVO comment) {
+        long likes = comment.getLikeCount() == null ? 0 : comment.getLikeCount();
+        long replies = comment.getReplyCount() == null ? 0 : comment.getReplyCount();
+        LocalDateTime createdAt = comment.getCreatedAt() != null ? comment.getCreatedAt() : LocalDateTime.now();
+        double score = Math.log10(Math.max(1D, likes + replyWeight * replies))
+                + createdAt.toEpochSecond(ZoneOffset.UTC) / decaySeconds;
+        return Boolean.TRUE.equals(comment.getIsPinned()) ? score + PINNED_BONUS : score;
+    }
+
+    /**
+     * 处于事务中时推迟到提交之后执行，刷新时读到的是已提交的数据；缓存维护失败不影响主流程
+     */
+    private void afterCommit(Runnable task) {
+        Runnable safeTask = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.warn("热评缓存维护失败", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safeTask.run();
+                }
+            });
+            return;
+        }
+        safeTask.run();
+    }
+
+    private byte[] raw(String value) {
+        return redisTemplate.getStringSerializer().serialize(value);
+    }
+}
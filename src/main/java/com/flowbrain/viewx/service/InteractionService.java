@@ -3,6 +3,7 @@ package com.flowbrain.viewx.service;
 import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.pojo.dto.CommentCreateDTO;
 import com.flowbrain.viewx.pojo.vo.CommentVO;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.UserSummaryVO;
 
 import java.util.List;
@@ -54,6 +55,21 @@ public interface InteractionService {
      */
     Result<List<CommentVO>> getVideoComments(Long videoId, Long currentUserId, int page, int size);
 
+    /**
+     * 获取视频的评论列表（游标分页，cursor 为空时返回第一页）
+     */
+    Result<CursorPageVO<CommentVO>> getVideoCommentsByCursor(Long videoId, Long currentUserId, String cursor, int size);
+
+    /**
+     * 获取视频热评（按热度排名分页，第一页只访问 Redis）
+     */
+    Result<CursorPageVO<CommentVO>> getHotComments(Long videoId, Long currentUserId, String cursor, int size);
+
+    /**
+     * 获取评论的回复列表（游标分页，首次可传一级评论上的 repliesCursor 跳过已展示的回复）
+     */
+    Result<CursorPageVO<CommentVO>> getCommentReplies(Long parentId, Long currentUserId, String cursor, int size);
+
     /**
      * 点赞评论
      */
@@ -95,4 +111,14 @@ public interface InteractionService {
      * 获取关注列表
      */
     Result<List<UserSummaryVO>> getFollowing(Long userId, Long currentUserId, int page, int size);
+
+    /**
+     * 获取粉丝列表（游标分页，cursor 为空时返回第一页）
+     */
+    Result<CursorPageVO<UserSummaryVO>> getFollowersByCursor(Long userId, Long currentUserId, String cursor, int size);
+
+    /**
+     * 获取关注列表（游标分页，cursor 为空时返回第一页）
+     */
+    Result<CursorPageVO<UserSummaryVO>> getFollowingByCursor(Long userId, Long currentUserId, String cursor, int size);
 }
@@ -65,7 +65,7 @@ public class NotificationConsumerService {
      */
     private void sendWebSocketNotification(Long userId, Notification notification) {
         try {
-            String destination = "/topic/notifications/" + userId;
+            String destination = "/topic/notifications." + userId;
             messagingTemplate.convertAndSend(destination, notification);
             log.debug("Sent WebSocket notification to user: {}", userId);
         } catch (Exception e) {
@@ -7,7 +7,9 @@ import com.flowbrain.viewx.dao.NotificationMapper;
 import com.flowbrain.viewx.pojo.dto.NotificationQueryDTO;
 import com.flowbrain.viewx.pojo.entity.Notification;
 import com.flowbrain.viewx.common.enums.NotificationType;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.NotificationVO;
+import com.flowbrain.viewx.util.CursorCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
@@ -66,22 +68,68 @@ public class NotificationService {
                     userId,
                     queryDTO.getNotificationType() != null ? queryDTO.getNotificationType().name() : null,
                     queryDTO.getUnreadOnly(),
+                    null,
+                    null,
                     queryDTO.getPageSize(),
                     offset);
+            fillDescriptions(notifications);
+            return Result.success(notifications);
+        } catch (Exception e) {
+            log.error("获取通知列表失败", e);
+            return Result.serverError("获取通知列表失败");
+        }
+    }
 
-            // 添加时间描述
-            notifications.forEach(n -> {
-                n.setNotificationTypeDesc(n.getNotificationType().getDescription());
-                n.setTimeDesc(getTimeDesc(n.getCreatedAt()));
-            });
+    /**
+     * 获取通知列表（游标分页，cursor 为空时返回最新一页）
+     */
+    public Result<CursorPageVO<NotificationVO>> getNotificationsByCursor(Long userId, NotificationQueryDTO queryDTO) {
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (!CursorCodec.isBlank(queryDTO.getCursor())) {
+            String[] parts = CursorCodec.decode(queryDTO.getCursor(), 2);
+            cursorTime = CursorCodec.parseTime(parts[0]);
+            cursorId = CursorCodec.parseLong(parts[1]);
+        }
 
-            return Result.success(notifications);
+        try {
+            int size = CursorCodec.clampSize(queryDTO.getPageSize());
+            // 多取一条用于判断是否还有下一页
+            List<NotificationVO> notifications = notificationMapper.selectNotificationList(
+                    userId,
+                    queryDTO.getNotificationType() != null ? queryDTO.getNotificationType().name() : null,
+                    queryDTO.getUnreadOnly(),
+                    cursorTime,
+                    cursorId,
+                    size + 1,
+                    0);
+            boolean hasMore = notifications.size() > size;
+            if (hasMore) {
+                notifications = notifications.subList(0, size);
+            }
+            if (notifications.isEmpty()) {
+                return Result.success(CursorPageVO.empty());
+            }
+            fillDescriptions(notifications);
+            NotificationVO last = notifications.get(notifications.size() - 1);
+            String nextCursor = hasMore ? CursorCodec.encodeTimeId(last.getCreatedAt(), last.getId()) : null;
+            return Result.success(new CursorPageVO<>(notifications, nextCursor, hasMore));
         } catch (Exception e) {
             log.error("获取通知列表失败", e);
             return Result.serverError("获取通知列表失败");
         }
     }
 
+    /**
+     * 添加类型和时间描述
+     */
+    private void fillDescriptions(List<NotificationVO> notifications) {
+        notifications.forEach(n -> {
+            n.setNotificationTypeDesc(n.getNotificationType().getDescription());
+            n.setTimeDesc(getTimeDesc(n.getCreatedAt()));
+        });
+    }
+
     /**
      * 获取未读通知数量
      */
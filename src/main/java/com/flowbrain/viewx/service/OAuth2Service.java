@@ -7,12 +7,15 @@ import com.flowbrain.viewx.dao.UserMapper;
 import com.flowbrain.viewx.pojo.dto.UserDTO;
 import com.flowbrain.viewx.pojo.entity.SocialUser;
 import com.flowbrain.viewx.pojo.entity.User;
+import com.flowbrain.viewx.service.search.SuggestService;
 import com.flowbrain.viewx.util.IdGenerator;
 import com.flowbrain.viewx.util.JwtUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.UUID;
@@ -30,6 +33,9 @@ public class OAuth2Service {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private SuggestService suggestService;
+
     /**
      * Handle OAuth2 Login Success
      * 1. Check if social user exists
@@ -57,10 +63,13 @@ public class OAuth2Service {
             user.setUsername(username);
             user.setEmail(email != null ? email : username + "@placeholder.com"); // Handle missing email
             user.setPassword("OAUTH2_NO_PASSWORD"); // Placeholder
+            user.setNickname(nickname);
             user.setRole(Role.USER);
 
             userMapper.insertUser(user);
             userMapper.insertUserDetail(user.getId());
+            Long userId = user.getId();
+            afterCommit(() -> suggestService.upsertUser(userId, nickname));
 
             // 2. Create Social Link
             socialUser = new SocialUser();
@@ -91,4 +100,27 @@ public class OAuth2Service {
                 user.getStatus());
         return Result.success("Login successful", userDTO);
     }
+
+    /**
+     * 事务提交后执行（无事务时立即执行），失败只记录日志
+     */
+    private void afterCommit(Runnable task) {
+        Runnable safeTask = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.warn("更新搜索联想失败: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safeTask.run();
+                }
+            });
+        } else {
+            safeTask.run();
+        }
+    }
 }
@@ -0,0 +1,441 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.flowbrain.viewx.dao.VideoTopicMapper;
+import com.flowbrain.viewx.pojo.entity.VideoTopic;
+import com.flowbrain.viewx.util.LongBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 个性化推荐流服务
+ *
+ * 离线（异步）生成、在线直读：
+ * 1. 召回：取用户兴趣模型中得分最高的视频作为种子，按 vx_video_topics 统计种子话题权重，
+ *    再召回这些话题下的最新视频，按共现话题权重累加得到个性化分；
+ *    同时以种子的内容向量做 pgvector 近邻召回（见 VectorCandidateService），两路归一化后合并
+ * 2. 过滤：用观看历史构建布隆过滤器，剔除已看过的视频和种子视频
+ * 3. 融合：个性化分与热度榜排名分按 personal-weight 加权
+ * 4. 写入：结果写入 Recommend.getFeedKey(userId)（ZSET），先写临时键再 RENAME，读者不会看到半成品
+ *
+ * 推荐流请求只做一次 ZREVRANGE + 批量回填，不在请求路径上做任何召回计算
+ */
+@Slf4j
+@Service
+public class PersonalizedFeedService {
+
+    private static final String INTEREST_PREFIX = "video:";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private VideoTopicMapper videoTopicMapper;
+
+    @Autowired
+    private VectorCandidateService vectorCandidateService;
+
+    @Autowired
+    @Qualifier("feedRebuildExecutor")
+    private Executor executor;
+
+    /**
+     * 参与召回的兴趣种子数量
+     */
+    @Value("${viewx.recommend.feed.seed-size:20}")
+    private int seedSize;
+
+    /**
+     * 参与召回的话题数量上限
+     */
+    @Value("${viewx.recommend.feed.topic-size:50}")
+    private int topicSize;
+
+    /**
+     * 话题召回的候选视频数量上限
+     */
+    @Value("${viewx.recommend.feed.candidate-size:1000}")
+    private int candidateSize;
+
+    /**
+     * 向量召回的候选视频数量
+     */
+    @Value("${viewx.recommend.vector.candidate-size:200}")
+    private int vectorCandidateSize;
+
+    /**
+     * 向量召回相对话题召回的权重
+     */
+    @Value("${viewx.recommend.vector.weight:0.8}")
+    private double vectorWeight;
+
+    /**
+     * 参与融合的热度榜视频数量
+     */
+    @Value("${viewx.recommend.feed.trending-size:200}")
+    private int trendingSize;
+
+    /**
+     * 用于过滤的最近观看记录数量
+     */
+    @Value("${viewx.recommend.feed.history-size:5000}")
+    private int historySize;
+
+    /**
+     * 推荐流保留的视频数量
+     */
+    @Value("${viewx.recommend.feed.feed-size:500}")
+    private int feedSize;
+
+    /**
+     * 个性化分的权重，其余为热度分
+     */
+    @Value("${viewx.recommend.feed.personal-weight:0.7}")
+    private double personalWeight;
+
+    @Value("${viewx.recommend.feed.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    /**
+     * 同一用户两次重建的最小间隔
+     */
+    @Value("${viewx.recommend.feed.rebuild-interval-seconds:60}")
+    private long rebuildIntervalSeconds;
+
+    /**
+     * 读取推荐流的一段
+     *
+     * @param start 起始下标（从 0 开始）
+     * @param count 条数
+     * @return 视频ID列表；推荐流不存在时返回 null，超出末尾时返回空列表
+     */
+    public List<Long> getFeedPage(Long userId, long start, int count) {
+        String feedKey = RedisKeyConstants.Recommend.getFeedKey(userId);
+        byte[] rawFeedKey = rawKey(feedKey);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zRevRange(rawFeedKey, start, start + count - 1);
+            connection.zSetCommands().zCard(rawFeedKey);
+            return null;
+        });
+
+        Long total = (Long) results.get(1);
+        if (total == null || total == 0) {
+            return null;
+        }
+        Collection<?> members = (Collection<?>) results.get(0);
+        return members == null ? Collections.emptyList() : toIds(members);
+    }
+
+    /**
+     * 推荐流中的全部视频ID，推荐流不存在或读取失败时返回空集合
+     */
+    public Set<Long> getFeedIds(Long userId) {
+        try {
+            Set<Object> members = redisTemplate.opsForZSet()
+                    .range(RedisKeyConstants.Recommend.getFeedKey(userId), 0, -1);
+            return members == null ? Collections.emptySet() : new HashSet<>(toIds(members));
+        } catch (Exception e) {
+            log.warn("读取推荐流失败: userId={}, error={}", userId, e.getMessage());
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * 推荐流中的视频数量
+     */
+    public long getFeedSize(Long userId) {
+        Long size = redisTemplate.opsForZSet().zCard(RedisKeyConstants.Recommend.getFeedKey(userId));
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * 请求异步重建推荐流（带节流，同一用户 rebuild-interval-seconds 内最多重建一次）
+     */
+    public void requestRebuild(Long userId) {
+        requestRebuild(Collections.singleton(userId));
+    }
+
+    /**
+     * 批量请求异步重建推荐流，节流检查合并为一次管道
+     */
+    public void requestRebuild(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        List<Long> users = new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<Object> acquired;
+        try {
+            byte[] value = rawValue("1");
+            Expiration ttl = Expiration.from(rebuildIntervalSeconds, TimeUnit.SECONDS);
+            acquired = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long userId : users) {
+                    connection.stringCommands().set(rawKey(RedisKeyConstants.Recommend.getFeedRebuildKey(userId)),
+                            value, ttl, RedisStringCommands.SetOption.SET_IF_ABSENT);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("推荐流重建节流检查失败: users={}, error={}", users.size(), e.getMessage());
+            return;
+        }
+
+        for (int i = 0; i < users.size(); i++) {
+            if (Boolean.TRUE.equals(acquired.get(i))) {
+                Long userId = users.get(i);
+                try {
+                    executor.execute(() -> {
+                        try {
+                            rebuildFeed(userId);
+                        } catch (Exception e) {
+                            log.error("重建推荐流失败: userId={}", userId, e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // 重建队列已满：跳过本次重建并撤销节流标记，下次请求再触发
+                    log.debug("推荐流重建队列已满，跳过: userId={}", userId);
+                    redisTemplate.delete(RedisKeyConstants.Recommend.getFeedRebuildKey(userId));
+                }
+            }
+        }
+    }
+
+    /**
+     * 同步重建用户的推荐流
+     *
+     * @return 写入推荐流的视频数量
+     */
+    public int rebuildFeed(Long userId) {
+        long begin = System.currentTimeMillis();
+
+        // 1. 兴趣种子：video:{id} -> 兴趣分
+        Map<Long, Double> seeds = loadSeeds(userId);
+
+        // 2. 话题共现召回 + 向量召回
+        Map<Long, Double> personal = seeds.isEmpty() ? Collections.emptyMap() : recall(userId, seeds);
+
+        // 3. 观看历史布隆过滤器（种子视频也视为已看过）
+        LongBloomFilter seen = loadWatched(userId);
+        seeds.keySet().forEach(seen::put);
+
+        // 4. 与热度榜融合
+        Map<Long, Double> blended = blend(personal, loadTrendingRanks(), seen);
+        if (blended.isEmpty()) {
+            redisTemplate.delete(RedisKeyConstants.Recommend.getFeedKey(userId));
+            log.debug("推荐流无候选视频: userId={}", userId);
+            return 0;
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(blended.entrySet());
+        ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed());
+        if (ranked.size() > feedSize) {
+            ranked = ranked.subList(0, feedSize);
+        }
+
+        write(userId, ranked);
+        log.debug("推荐流重建完成: userId={}, seeds={}, personal={}, size={}, cost={}ms",
+                userId, seeds.size(), personal.size(), ranked.size(), System.currentTimeMillis() - begin);
+        return ranked.size();
+    }
+
+    private Map<Long, Double> loadSeeds(Long userId) {
+        Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                .reverseRangeWithScores(RedisKeyConstants.Recommend.getUserInterestKey(userId), 0, seedSize - 1);
+        if (tuples == null || tuples.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, Double> seeds = new HashMap<>();
+        for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+            String member = String.valueOf(tuple.getValue());
+            double score = tuple.getScore() == null ? 0 : tuple.getScore();
+            // 取消点赞等操作可能让兴趣分降到 0 以下，不作为种子
+            if (score > 0 && member.startsWith(INTEREST_PREFIX)) {
+                try {
+                    seeds.put(Long.parseLong(member.substring(INTEREST_PREFIX.length())), score);
+                } catch (NumberFormatException e) {
+                    log.warn("无效的兴趣成员: userId={}, member={}", userId, member);
+                }
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * 合并两路召回：各自按最大值归一化后，向量召回乘以 vector.weight 累加
+     * 向量召回失败（如未安装 pgvector）时只使用话题召回
+     */
+    private Map<Long, Double> recall(Long userId, Map<Long, Double> seeds) {
+        Map<Long, Double> personal = new HashMap<>();
+        mergeNormalized(personal, expandByTopics(seeds), 1.0);
+
+        if (vectorCandidateService.isEnabled()) {
+            try {
+                mergeNormalized(personal, vectorCandidateService.retrieve(seeds, vectorCandidateSize), vectorWeight);
+            } catch (Exception e) {
+                log.warn("向量召回失败，仅使用话题召回: userId={}, error={}", userId, e.getMessage());
+            }
+        }
+        return personal;
+    }
+
+    private void mergeNormalized(Map<Long, Double> target, Map<Long, Double> scores, double weight) {
+        double max = scores.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        if (max <= 0) {
+            return;
+        }
+        scores.forEach((videoId, score) -> {
+            if (score > 0) {
+                target.merge(videoId, weight * score / max, Double::sum);
+            }
+        });
+    }
+
+    /**
+     * 按种子视频的话题权重召回同话题视频
+     * 种子的兴趣分平均分摊到它的各个话题上，候选视频的分数为其所属话题权重之和
+     */
+    private Map<Long, Double> expandByTopics(Map<Long, Double> seeds) {
+        List<VideoTopic> seedTopics = videoTopicMapper.selectByVideoIds(seeds.keySet());
+        if (seedTopics.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, Integer> topicCountPerSeed = new HashMap<>();
+        for (VideoTopic vt : seedTopics) {
+            topicCountPerSeed.merge(vt.getVideoId(), 1, Integer::sum);
+        }
+        Map<Long, Double> topicWeights = new HashMap<>();
+        for (VideoTopic vt : seedTopics) {
+            double share = seeds.get(vt.getVideoId()) / topicCountPerSeed.get(vt.getVideoId());
+            topicWeights.merge(vt.getTopicId(), share, Double::sum);
+        }
+
+        List<Long> topTopics = topicWeights.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(topicSize)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        Map<Long, Double> candidates = new HashMap<>();
+        for (VideoTopic vt : videoTopicMapper.selectRecentByTopicIds(topTopics, candidateSize)) {
+            candidates.merge(vt.getVideoId(), topicWeights.get(vt.getTopicId()), Double::sum);
+        }
+        return candidates;
+    }
+
+    private LongBloomFilter loadWatched(Long userId) {
+        Set<Object> watched = redisTemplate.opsForZSet()
+                .reverseRange(RedisKeyConstants.Recommend.getWatchHistoryKey(userId), 0, historySize - 1);
+        int expected = (watched == null ? 0 : watched.size()) + seedSize;
+        LongBloomFilter filter = new LongBloomFilter(expected, 0.01);
+        if (watched != null) {
+            toIds(watched).forEach(filter::put);
+        }
+        return filter;
+    }
+
+    /**
+     * 热度榜前 trending-size 名，按排名换算为 (0, 1] 的热度分
+     * （热度榜分数处于对数空间且随 epoch 漂移，用排名比直接用分数更稳定）
+     */
+    private Map<Long, Double> loadTrendingRanks() {
+        Set<Object> members = redisTemplate.opsForZSet()
+                .reverseRange(RedisKeyConstants.Recommend.getTrendingKey(), 0, trendingSize - 1);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Long> ids = toIds(members);
+        Map<Long, Double> ranks = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            ranks.put(ids.get(i), 1.0 - (double) i / ids.size());
+        }
+        return ranks;
+    }
+
+    /**
+     * 融合分 = personal-weight × 归一化个性化分 + (1 - personal-weight) × 热度分
+     */
+    private Map<Long, Double> blend(Map<Long, Double> personal, Map<Long, Double> trending, LongBloomFilter seen) {
+        double maxPersonal = personal.values().stream().mapToDouble(Double::doubleValue).max().orElse(1.0);
+
+        Map<Long, Double> blended = new HashMap<>();
+        personal.forEach((videoId, score) -> {
+            if (!seen.mightContain(videoId)) {
+                blended.merge(videoId, personalWeight * score / maxPersonal, Double::sum);
+            }
+        });
+        trending.forEach((videoId, score) -> {
+            if (!seen.mightContain(videoId)) {
+                blended.merge(videoId, (1 - personalWeight) * score, Double::sum);
+            }
+        });
+        return blended;
+    }
+
+    /**
+     * 写入临时键后 RENAME 覆盖正式键（RENAME 会保留临时键上的过期时间）
+     */
+    private void write(Long userId, List<Map.Entry<Long, Double>> ranked) {
+        byte[] buildingKey = rawKey(RedisKeyConstants.Recommend.getFeedBuildingKey(userId));
+        byte[] feedKey = rawKey(RedisKeyConstants.Recommend.getFeedKey(userId));
+        long ttlSeconds = Duration.ofMinutes(ttlMinutes).getSeconds();
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.keyCommands().del(buildingKey);
+            for (Map.Entry<Long, Double> entry : ranked) {
+                connection.zSetCommands().zAdd(buildingKey, entry.getValue(), rawValue(entry.getKey().toString()));
+            }
+            connection.keyCommands().expire(buildingKey, ttlSeconds);
+            connection.keyCommands().rename(buildingKey, feedKey);
+            return null;
+        });
+    }
+
+    /**
+     * ZSET 成员经 JSON 反序列化后可能是字符串或数字，统一转换为 Long
+     */
+    private List<Long> toIds(Collection<?> members) {
+        List<Long> ids = new ArrayList<>(members.size());
+        for (Object member : members) {
+            if (member instanceof Number number) {
+                ids.add(number.longValue());
+            } else if (member != null) {
+                ids.add(Long.parseLong(member.toString()));
+            }
+        }
+        return ids;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    private byte[] rawKey(String key) {
+        return redisTemplate.getStringSerializer().serialize(key);
+    }
+}
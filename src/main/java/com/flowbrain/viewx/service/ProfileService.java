@@ -1,14 +1,15 @@
 package com.flowbrain.viewx.service;
 
 import com.flowbrain.viewx.common.Result;
-import com.flowbrain.viewx.dao.ProfileMapper;
 import com.flowbrain.viewx.dao.UserDetailMapper;
 import com.flowbrain.viewx.dao.UserMapper;
 import com.flowbrain.viewx.pojo.dto.UserProfileDTO;
+import com.flowbrain.viewx.pojo.dto.UserStatsDTO;
 import com.flowbrain.viewx.pojo.entity.User;
 import com.flowbrain.viewx.pojo.entity.UserDetail;
 import com.flowbrain.viewx.pojo.vo.UserProfileVO;
 import com.flowbrain.viewx.service.impl.LocalStorageStrategy;
+import com.flowbrain.viewx.service.search.SuggestService;
 import com.flowbrain.viewx.util.FilePathUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,9 +25,6 @@ import org.springframework.web.multipart.MultipartFile;
 @Slf4j
 public class ProfileService {
 
-    @Autowired
-    private ProfileMapper profileMapper;
-
     @Autowired
     private UserMapper userMapper;
 
@@ -36,6 +34,12 @@ public class ProfileService {
     @Autowired
     private VideoService videoService;
 
+    @Autowired
+    private SuggestService suggestService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
     /**
      * 获取用户资料
      * 流程：Entity -> VO
@@ -69,10 +73,11 @@ public class ProfileService {
             UserProfileVO vo = convertToVO(user);
 
             // 4. 补充统计信息
-            vo.setFollowersCount(profileMapper.countFollowers(userId));
-            vo.setFollowingCount(profileMapper.countFollowing(userId));
-            vo.setVideoCount(profileMapper.countVideos(userId));
-            vo.setLikeCount(profileMapper.countTotalLikes(userId));
+            UserStatsDTO stats = userStatsService.getStats(userId);
+            vo.setFollowersCount(stats.getFollowers().intValue());
+            vo.setFollowingCount(stats.getFollowing().intValue());
+            vo.setVideoCount(stats.getVideos().intValue());
+            vo.setLikeCount(stats.getLikes().intValue());
 
             // 5. 获取用户的视频列表
             Result<java.util.List<com.flowbrain.viewx.pojo.entity.Video>> videosResult = videoService
@@ -126,6 +131,9 @@ public class ProfileService {
                 existingUser.setPhone(dto.getPhone());
 
             userMapper.updateById(existingUser);
+            if (dto.getNickname() != null) {
+                suggestService.upsertUser(userId, dto.getNickname());
+            }
 
             // 4. 更新或创建 UserDetail 表
             if (needsDetailUpdate(dto)) {
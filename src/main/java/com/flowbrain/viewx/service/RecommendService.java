@@ -1,5 +1,6 @@
 package com.flowbrain.viewx.service;
 
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.VideoListVO;
 import java.util.List;
 
@@ -26,6 +27,36 @@ public interface RecommendService {
      */
     List<VideoListVO> getTrendingVideos(int page, int size);
 
+    /**
+     * Get trending videos with a stable score-ordered cursor.
+     * 
+     * @param cursor Opaque cursor returned by the previous page (null for first page)
+     * @param size   Page size
+     * @return Page of trending videos with the next cursor
+     */
+    CursorPageVO<VideoListVO> getTrendingVideosByCursor(String cursor, int size);
+
+    /**
+     * Get the personalized feed with a cursor.
+     * The precomputed feed is served first, then trending videos not already in the feed.
+     * A session that starts while the feed is missing stays on trending until it restarts.
+     * 
+     * @param userId Current user (null for guest, trending only)
+     * @param cursor Opaque cursor returned by the previous page (null for first page)
+     * @param size   Page size
+     * @return Page of recommended videos with the next cursor
+     */
+    CursorPageVO<VideoListVO> getRecommendedVideosByCursor(Long userId, String cursor, int size);
+
+    /**
+     * Get latest approved videos with a (created_at, id) keyset cursor.
+     * 
+     * @param cursor Opaque cursor returned by the previous page (null for first page)
+     * @param size   Page size
+     * @return Page of latest videos with the next cursor
+     */
+    CursorPageVO<VideoListVO> getLatestVideosByCursor(String cursor, int size);
+
     /**
      * Update video score (async usually).
      * 
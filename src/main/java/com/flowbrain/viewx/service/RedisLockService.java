@@ -0,0 +1,68 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Redis 分布式锁
+ *
+ * 加锁时写入随机令牌，释放时比较令牌后再删除：
+ * 任务执行超过锁的过期时间、锁已被其他节点拿到时，不会误删别人的锁
+ */
+@Slf4j
+@Service
+public class RedisLockService {
+
+    /**
+     * 令牌一致才删除 KEYS[1]=锁 ARGV[1]=令牌
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+                    + "return 0",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * @param name 锁名，实际 key 为 RedisKeyConstants.System.getLockKey(name)
+     * @return 加锁成功返回令牌，已被占用或 Redis 不可用返回 null
+     */
+    public String tryLock(String name, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean locked = redisTemplate.opsForValue()
+                    .setIfAbsent(RedisKeyConstants.System.getLockKey(name), token, ttl);
+            return Boolean.TRUE.equals(locked) ? token : null;
+        } catch (Exception e) {
+            log.debug("获取分布式锁失败: {} {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 释放锁，令牌不一致（锁已过期并被他人持有）时不做任何操作
+     */
+    public void unlock(String name, String token) {
+        if (token == null) {
+            return;
+        }
+        try {
+            Long released = redisTemplate.execute(RELEASE_SCRIPT,
+                    List.of(RedisKeyConstants.System.getLockKey(name)), token);
+            if (released == null || released == 0) {
+                log.warn("分布式锁已过期，未释放: {}", name);
+            }
+        } catch (Exception e) {
+            log.warn("释放分布式锁失败: {}", name, e);
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.flowbrain.viewx.dao.FollowMapper;
+import com.flowbrain.viewx.dao.VideoMapper;
+import com.flowbrain.viewx.pojo.entity.Video;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
+import com.flowbrain.viewx.pojo.vo.VideoListVO;
+import com.flowbrain.viewx.service.graph.FollowGraphService;
+import com.flowbrain.viewx.util.CursorCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 关注流服务（写扩散 + 大V读扩散）
+ *
+ * 1. 写：视频审核通过后（TimelineConsumer），写入作者发件箱；普通作者再按粉丝ID分批
+ *    推入每个粉丝的收件箱。收件箱只对已存在的推入（闲置用户的收件箱过期后不再写入），并裁剪到固定长度
+ * 2. 大V：粉丝数达到阈值的作者记入大V集合，不再写扩散，粉丝读取时从其发件箱拉取；
+ *    每个用户另存一份"所关注的大V"集合，关注、取关、作者晋升大V时增量维护，读取时不再遍历完整关注列表
+ * 3. 读：收件箱与所关注大V的发件箱各取一页（一次 pipeline），按发布时间多路归并，
+ *    代价只与页大小和所关注的大V数有关；收件箱不存在时从数据库按关注关系重建
+ *
+ * 收件箱与发件箱均为 ZSet（member=videoId，score=发布时间毫秒），按（发布时间，videoId 字符串）倒序排列，
+ * 与 ZREVRANGEBYSCORE 对同分成员的顺序一致；游标为上一页最后一条的（发布时间，videoId），同一毫秒发布的视频跨页时不会遗漏
+ */
+@Slf4j
+@Service
+public class TimelineService {
+
+    /**
+     * 空收件箱占位成员（score=0），使"已建立但暂无内容"的收件箱也存在，读取时排除
+     */
+    private static final String PLACEHOLDER = "0";
+
+    /**
+     * KEYS[1]=收件箱 ARGV[1]=videoId ARGV[2]=score ARGV[3]=保留条数
+     */
+    private static final DefaultRedisScript<Long> PUSH_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+                    + "redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1]) "
+                    + "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[3]) - 1) "
+                    + "return 1",
+            Long.class);
+
+    /**
+     * KEYS[1]=收件箱 KEYS[2]=被关注者发件箱 ARGV[1]=保留条数
+     */
+    private static final DefaultRedisScript<Long> MERGE_OUTBOX_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 or redis.call('EXISTS', KEYS[2]) == 0 then return 0 end "
+                    + "redis.call('ZUNIONSTORE', KEYS[1], 2, KEYS[1], KEYS[2], 'AGGREGATE', 'MAX') "
+                    + "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[1]) - 1) "
+                    + "return 1",
+            Long.class);
+
+    /**
+     * 所关注大V集合存在时才加入，不存在的集合由下次读取时重建
+     * KEYS[1]=所关注大V集合 ARGV[1]=大V用户ID
+     */
+    private static final DefaultRedisScript<Long> ADD_FOLLOWED_CELEBRITY_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+                    + "return redis.call('SADD', KEYS[1], ARGV[1])",
+            Long.class);
+
+    /**
+     * 重建所关注大V集合：与晋升大V的脚本互斥执行，晋升发生在重建之前或之后都不会遗漏
+     * KEYS[1]=所关注大V集合 KEYS[2]=大V集合 ARGV[1]=过期秒数 ARGV[2..]=关注的用户ID
+     */
+    private static final DefaultRedisScript<Long> BUILD_FOLLOWED_CELEBRITIES_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) "
+                    + "redis.call('SADD', KEYS[1], '" + PLACEHOLDER + "') "
+                    + "for i = 2, #ARGV do "
+                    + "  if redis.call('SISMEMBER', KEYS[2], ARGV[i]) == 1 then redis.call('SADD', KEYS[1], ARGV[i]) end "
+                    + "end "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1]) "
+                    + "return redis.call('SCARD', KEYS[1]) - 1",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private VideoMapper videoMapper;
+
+    @Autowired
+    private FollowMapper followMapper;
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private VideoHydrationService videoHydrationService;
+
+    @Value("${viewx.timeline.max-size:500}")
+    private int maxSize;
+
+    @Value("${viewx.timeline.outbox-size:200}")
+    private int outboxSize;
+
+    /**
+     * 粉丝数达到该值的作者改为读扩散
+     */
+    @Value("${viewx.timeline.celebrity-followers:10000}")
+    private long celebrityFollowers;
+
+    @Value("${viewx.timeline.ttl-hours:72}")
+    private long ttlHours;
+
+    @Value("${viewx.timeline.fanout-batch-size:1000}")
+    private int fanoutBatchSize;
+
+    /**
+     * 视频审核通过：写入作者发件箱，普通作者推入粉丝收件箱
+     */
+    public void fanOut(Long videoId) {
+        List<Video> videos = videoMapper.selectApprovedByIds(Collections.singletonList(videoId));
+        if (videos.isEmpty()) {
+            return;
+        }
+        Video video = videos.get(0);
+        Long uploaderId = video.getUploaderId();
+        byte[] member = raw(String.valueOf(videoId));
+        double score = toScore(video.getPublishedAt() != null ? video.getPublishedAt() : video.getCreatedAt());
+
+        byte[] outboxKey = raw(RedisKeyConstants.User.getOutboxKey(uploaderId));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zAdd(outboxKey, score, member);
+            connection.zSetCommands().zRemRange(outboxKey, 0, -outboxSize - 1L);
+            return null;
+        });
+
+        if (isCelebrity(uploaderId)) {
+            // 一旦成为大V不再移出，避免粉丝数在阈值附近波动时两种模式来回切换导致重复或遗漏
+            Long promoted = redisTemplate.opsForSet().add(RedisKeyConstants.User.getCelebritiesKey(), uploaderId.toString());
+            if (promoted != null && promoted > 0) {
+                onPromoted(uploaderId);
+            }
+            return;
+        }
+
+        byte[] scoreArg = raw(String.valueOf((long) score));
+        byte[] sizeArg = raw(String.valueOf(maxSize));
+        int followers = forEachFollower(uploaderId, PUSH_SCRIPT, (followerId, sha, connection) ->
+                connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, 1,
+                        raw(RedisKeyConstants.User.getTimelineKey(followerId)), member, scoreArg, sizeArg));
+        log.debug("关注流写扩散完成: videoId={}, uploaderId={}, followers={}", videoId, uploaderId, followers);
+    }
+
+    /**
+     * 作者晋升大V：加入各粉丝已有的所关注大V集合（每个作者只发生一次）
+     */
+    private void onPromoted(Long uploaderId) {
+        byte[] member = raw(uploaderId.toString());
+        int followers = forEachFollower(uploaderId, ADD_FOLLOWED_CELEBRITY_SCRIPT, (followerId, sha, connection) ->
+                connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, 1,
+                        raw(RedisKeyConstants.User.getFollowedCelebritiesKey(followerId)), member));
+        log.info("作者晋升大V: uploaderId={}, followers={}", uploaderId, followers);
+    }
+
+    /**
+     * 按粉丝ID分批，对每个粉丝在 pipeline 中执行一次脚本（先确保脚本已加载，pipeline 中只发送 EVALSHA）
+     *
+     * @return 处理的粉丝数
+     */
+    private int forEachFollower(Long uploaderId, DefaultRedisScript<?> script, FollowerCommand command) {
+        byte[] sha = raw(redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8))));
+        long afterId = 0;
+        int followers = 0;
+        while (true) {
+            List<Long> batch = followMapper.selectFollowerIdsAfter(uploaderId, afterId, fanoutBatchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long followerId : batch) {
+                    command.apply(followerId, sha, connection);
+                }
+                return null;
+            });
+            followers += batch.size();
+            if (batch.size() < fanoutBatchSize) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1);
+        }
+        return followers;
+    }
+
+    /**
+     * 新关注：把被关注者发件箱中的视频并入关注者已有的收件箱（大V由读取时拉取，无需合并，只记入所关注大V集合）
+     */
+    public void onFollow(Long followerId, Long followedId) {
+        afterCommit(() -> {
+            if (Boolean.TRUE.equals(redisTemplate.opsForSet()
+                    .isMember(RedisKeyConstants.User.getCelebritiesKey(), followedId.toString()))) {
+                redisTemplate.execute(ADD_FOLLOWED_CELEBRITY_SCRIPT, redisTemplate.getStringSerializer(), (RedisSerializer<Long>) null,
+                        List.of(RedisKeyConstants.User.getFollowedCelebritiesKey(followerId)), followedId.toString());
+                return;
+            }
+            RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+            redisTemplate.execute(MERGE_OUTBOX_SCRIPT, stringSerializer, (RedisSerializer<Long>) null,
+                    List.of(RedisKeyConstants.User.getTimelineKey(followerId), RedisKeyConstants.User.getOutboxKey(followedId)),
+                    String.valueOf(maxSize));
+        });
+    }
+
+    /**
+     * 取关：移出所关注大V集合；收件箱中已推入的视频不处理，读取时过滤已取关作者的视频
+     */
+    public void onUnfollow(Long followerId, Long followedId) {
+        afterCommit(() -> redisTemplate.opsForSet()
+                .remove(RedisKeyConstants.User.getFollowedCelebritiesKey(followerId), followedId.toString()));
+    }
+
+    /**
+     * 关注流（游标分页，按发布时间倒序）
+     *
+     * @param cursor 为空时从最新开始，否则取上一页 nextCursor 之前的视频
+     */
+    public CursorPageVO<VideoListVO> getFollowingFeed(Long userId, String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        Range.Bound<Double> upper = Range.Bound.unbounded();
+        Range<Double> tieRange = null;
+        String cursorMember = null;
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            double cursorScore = CursorCodec.parseLong(parts[0]);
+            cursorMember = String.valueOf(CursorCodec.parseLong(parts[1]));
+            upper = Range.Bound.exclusive(cursorScore);
+            // 与游标同一毫秒的视频单独取出，按 videoId 过滤已返回的部分
+            tieRange = Range.closed(cursorScore, cursorScore);
+        }
+        // 下界排除占位成员
+        Range<Double> range = Range.of(Range.Bound.exclusive(0D), upper);
+        Range<Double> ties = tieRange;
+
+        String timelineKey = RedisKeyConstants.User.getTimelineKey(userId);
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(timelineKey))) {
+            seed(userId);
+        }
+        byte[] celebritiesKey = raw(RedisKeyConstants.User.getFollowedCelebritiesKey(userId));
+        List<byte[]> sources = new ArrayList<>();
+        sources.add(raw(timelineKey));
+        for (Long celebrityId : followedCelebrities(userId, celebritiesKey)) {
+            sources.add(raw(RedisKeyConstants.User.getOutboxKey(celebrityId)));
+        }
+
+        int fetch = size + 1;
+        long ttlSeconds = Duration.ofHours(ttlHours).toSeconds();
+        List<Object> pages = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] source : sources) {
+                if (ties != null) {
+                    connection.zSetCommands().zRevRangeByScoreWithScores(source, ties);
+                }
+                connection.zSetCommands().zRevRangeByScoreWithScores(source, range, Limit.limit().count(fetch));
+            }
+            connection.keyCommands().expire(sources.get(0), ttlSeconds);
+            connection.keyCommands().expire(celebritiesKey, ttlSeconds);
+            return null;
+        }, redisTemplate.getStringSerializer());
+
+        // 多路归并：每个来源已按分数倒序，堆中只保留各来源的当前头部
+        List<List<Object[]>> lists = new ArrayList<>(sources.size());
+        int perSource = ties != null ? 2 : 1;
+        for (int i = 0; i < sources.size(); i++) {
+            List<Object[]> entries = new ArrayList<>();
+            if (ties != null) {
+                for (Object[] entry : toEntries((Collection<?>) pages.get(i * perSource))) {
+                    if (((String) entry[2]).compareTo(cursorMember) < 0) {
+                        entries.add(entry);
+                    }
+                }
+            }
+            entries.addAll(toEntries((Collection<?>) pages.get(i * perSource + perSource - 1)));
+            lists.add(entries);
+        }
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                compareEntries(lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1])));
+        for (int i = 0; i < lists.size(); i++) {
+            if (!lists.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<Long> videoIds = new ArrayList<>(fetch);
+        Set<Long> seen = new HashSet<>();
+        Object[] last = null;
+        while (videoIds.size() < fetch && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            Object[] entry = lists.get(head[0]).get(head[1]);
+            if (seen.add((Long) entry[0])) {
+                videoIds.add((Long) entry[0]);
+                if (videoIds.size() <= size) {
+                    last = entry;
+                }
+            }
+            if (head[1] + 1 < lists.get(head[0]).size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+
+        boolean hasMore = videoIds.size() > size;
+        if (hasMore) {
+            videoIds = videoIds.subList(0, size);
+        }
+        if (videoIds.isEmpty()) {
+            return CursorPageVO.empty();
+        }
+
+        // 已删除/下架的视频在装配时丢弃，取关后残留在收件箱中的视频在这里过滤
+        List<VideoListVO> list = new ArrayList<>(videoIds.size());
+        for (VideoListVO video : videoHydrationService.hydrateByIds(videoIds)) {
+            if (followGraphService.isFollowing(userId, video.getUploaderId())) {
+                list.add(video);
+            }
+        }
+        String nextCursor = hasMore ? CursorCodec.encode(((Double) last[1]).longValue(), last[0]) : null;
+        return new CursorPageVO<>(list, nextCursor, hasMore);
+    }
+
+    /**
+     * 从数据库按关注关系重建收件箱（含大V的视频，读取时与其发件箱去重）
+     */
+    private void seed(Long userId) {
+        List<Video> videos = videoMapper.selectFollowingTimelineSeed(userId, maxSize);
+        byte[] key = raw(RedisKeyConstants.User.getTimelineKey(userId));
+        long ttlSeconds = Duration.ofHours(ttlHours).toSeconds();
+        // ZADD 合并而非覆盖，保留重建期间写扩散推入的视频
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zAdd(key, 0, raw(PLACEHOLDER));
+            for (Video video : videos) {
+                connection.zSetCommands().zAdd(key, toScore(video.getPublishedAt()), raw(String.valueOf(video.getId())));
+            }
+            connection.keyCommands().expire(key, ttlSeconds);
+            return null;
+        });
+    }
+
+    /**
+     * 用户关注的大V：读取所关注大V集合，代价只与关注的大V数有关；集合不存在时按关注列表重建一次
+     */
+    private List<Long> followedCelebrities(Long userId, byte[] key) {
+        Set<byte[]> members = redisTemplate.execute((RedisCallback<Set<byte[]>>) connection ->
+                connection.setCommands().sMembers(key));
+        if (members == null || members.isEmpty()) {
+            long[] followingIds = followGraphService.getFollowingIds(userId);
+            Object[] args = new Object[followingIds.length + 1];
+            args[0] = String.valueOf(Duration.ofHours(ttlHours).toSeconds());
+            for (int i = 0; i < followingIds.length; i++) {
+                args[i + 1] = String.valueOf(followingIds[i]);
+            }
+            redisTemplate.execute(BUILD_FOLLOWED_CELEBRITIES_SCRIPT, redisTemplate.getStringSerializer(), (RedisSerializer<Long>) null,
+                    List.of(RedisKeyConstants.User.getFollowedCelebritiesKey(userId), RedisKeyConstants.User.getCelebritiesKey()),
+                    args);
+            members = redisTemplate.execute((RedisCallback<Set<byte[]>>) connection ->
+                    connection.setCommands().sMembers(key));
+            if (members == null) {
+                return Collections.emptyList();
+            }
+        }
+        List<Long> result = new ArrayList<>(members.size());
+        for (byte[] member : members) {
+            String id = new String(member, StandardCharsets.UTF_8);
+            if (!PLACEHOLDER.equals(id)) {
+                result.add(Long.valueOf(id));
+            }
+        }
+        return result;
+    }
+
+    private boolean isCelebrity(Long uploaderId) {
+        Long followers = userStatsService.getStats(uploaderId).getFollowers();
+        return followers != null && followers >= celebrityFollowers;
+    }
+
+    /**
+     * 按（发布时间，videoId 字符串）倒序比较，与 ZREVRANGEBYSCORE 的同分排序一致
+     */
+    private int compareEntries(Object[] a, Object[] b) {
+        int byScore = Double.compare((Double) b[1], (Double) a[1]);
+        return byScore != 0 ? byScore : ((String) b[2]).compareTo((String) a[2]);
+    }
+
+    /**
+     * pipeline 结果转 [videoId, score, member]，排除占位成员
+     */
+    private List<Object[]> toEntries(Collection<?> tuples) {
+        if (tuples == null || tuples.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object[]> entries = new ArrayList<>(tuples.size());
+        for (Object tuple : tuples) {
+            Object value;
+            Double score;
+            if (tuple instanceof ZSetOperations.TypedTuple) {
+                value = ((ZSetOperations.TypedTuple<?>) tuple).getValue();
+                score = ((ZSetOperations.TypedTuple<?>) tuple).getScore();
+            } else {
+                value = ((Tuple) tuple).getValue();
+                score = ((Tuple) tuple).getScore();
+            }
+            String member = value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : String.valueOf(value);
+            if (!PLACEHOLDER.equals(member) && score != null) {
+                entries.add(new Object[]{Long.parseLong(member), score, member});
+            }
+        }
+        return entries;
+    }
+
+    private double toScore(LocalDateTime time) {
+        return time == null ? System.currentTimeMillis() : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 处于事务中时推迟到提交之后执行；收件箱更新失败不影响主流程，收件箱过期后从数据库重建
+     */
+    private void afterCommit(Runnable task) {
+        Runnable safeTask = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.warn("关注流更新失败: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safeTask.run();
+                }
+            });
+            return;
+        }
+        safeTask.run();
+    }
+
+    @FunctionalInterface
+    private interface FollowerCommand {
+        void apply(Long followerId, byte[] sha, RedisConnection connection);
+    }
+
+    private byte[] raw(String value) {
+        return redisTemplate.getStringSerializer().serialize(value);
+    }
+}
@@ -0,0 +1,227 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.common.EventType;
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 热度榜增量打分服务（对数空间时间衰减）
+ *
+ * 热度定义为 Σ weight · e^(-λ·(now - t_event))。由于 e^(-λ·now) 对所有视频相同，
+ * 排序只需维护 Σ weight · e^(λ·(t_event - epoch))：
+ * 1. 每个事件（或每批事件按视频聚合后）一次 ZINCRBY，O(1) Redis 操作，不读数据库
+ * 2. 定时任务把 epoch 前移到当前时间，并把所有分数统一乘以 e^(-λ·Δ)，防止数值无限增长
+ *
+ * epoch 保存在 Redis 中，与 ZSET 在同一个 Lua 脚本内读写，多实例下保持一致
+ */
+@Slf4j
+@Service
+public class TrendingScoreService {
+
+    private static final double MILLIS_PER_HOUR = 3_600_000D;
+
+    /**
+     * 各事件类型的热度权重（与全量计算公式中的系数保持一致）
+     */
+    private static final Map<String, Double> EVENT_WEIGHTS = Map.of(
+            EventType.VIDEO_PLAY, 0.4,
+            EventType.VIDEO_LIKE, 0.3,
+            EventType.VIDEO_UNLIKE, -0.3,
+            EventType.VIDEO_FAVORITE, 0.5,
+            EventType.VIDEO_SHARE, 0.5,
+            EventType.COMMENT_CREATE, 0.2);
+
+    /**
+     * 批量增量打分：调用方已把各事件权重换算到"当前时刻"，脚本统一乘以 e^(λ·(now - epoch)) 后 ZINCRBY
+     * KEYS[1]=热度榜 KEYS[2]=epoch；ARGV[1]=当前时间 ARGV[2]=λ(每小时) ARGV[3..]=member, delta 成对出现
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local epoch = tonumber(redis.call('GET', KEYS[2])) "
+                    + "if not epoch then epoch = tonumber(ARGV[1]) redis.call('SET', KEYS[2], ARGV[1]) end "
+                    + "local factor = math.exp(tonumber(ARGV[2]) * (tonumber(ARGV[1]) - epoch) / " + MILLIS_PER_HOUR + ") "
+                    + "for i = 3, #ARGV, 2 do "
+                    + "  redis.call('ZINCRBY', KEYS[1], tonumber(ARGV[i + 1]) * factor, ARGV[i]) "
+                    + "end "
+                    + "return (#ARGV - 2) / 2",
+            Long.class);
+
+    /**
+     * 全量覆盖：把"当前时刻"的热度换算到 epoch 空间后 ZADD
+     * KEYS[1]=热度榜 KEYS[2]=epoch；ARGV[1]=member ARGV[2]=当前热度 ARGV[3]=当前时间 ARGV[4]=λ(每小时)
+     */
+    private static final DefaultRedisScript<Long> SET_SCRIPT = new DefaultRedisScript<>(
+            "local epoch = tonumber(redis.call('GET', KEYS[2])) "
+                    + "if not epoch then epoch = tonumber(ARGV[3]) redis.call('SET', KEYS[2], ARGV[3]) end "
+                    + "local hours = (tonumber(ARGV[3]) - epoch) / " + MILLIS_PER_HOUR + " "
+                    + "redis.call('ZADD', KEYS[1], tonumber(ARGV[2]) * math.exp(tonumber(ARGV[4]) * hours), ARGV[1]) "
+                    + "return 1",
+            Long.class);
+
+    /**
+     * 重归一化：所有分数乘以 e^(-λ·Δ)，epoch 前移到当前时间，并清理低于阈值的长尾
+     * 缩放前先按排名裁剪到 ARGV[4] 个，脚本内逐条 ZADD 的数量有上限，不会因长尾无限增长而长时间阻塞 Redis
+     * 多实例同时执行时，第二次执行的 Δ≈0，相当于空操作
+     * KEYS[1]=热度榜 KEYS[2]=epoch；ARGV[1]=当前时间 ARGV[2]=λ(每小时) ARGV[3]=清理阈值 ARGV[4]=保留数量
+     */
+    private static final DefaultRedisScript<Long> RENORMALIZE_SCRIPT = new DefaultRedisScript<>(
+            "local epoch = tonumber(redis.call('GET', KEYS[2])) "
+                    + "if not epoch then redis.call('SET', KEYS[2], ARGV[1]) return 0 end "
+                    + "local hours = (tonumber(ARGV[1]) - epoch) / " + MILLIS_PER_HOUR + " "
+                    + "if hours <= 0 then return 0 end "
+                    + "local factor = math.exp(-tonumber(ARGV[2]) * hours) "
+                    + "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[4]) - 1) "
+                    + "local entries = redis.call('ZRANGE', KEYS[1], 0, -1, 'WITHSCORES') "
+                    + "for i = 1, #entries, 2 do "
+                    + "  redis.call('ZADD', KEYS[1], tonumber(entries[i + 1]) * factor, entries[i]) "
+                    + "end "
+                    + "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[3]) "
+                    + "redis.call('SET', KEYS[2], ARGV[1]) "
+                    + "return #entries / 2",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 衰减系数 λ（每小时），默认 0.01，与原全量公式 e^(-0.01·hours) 一致
+     */
+    @Value("${viewx.recommend.trending.decay-per-hour:0.01}")
+    private double decayPerHour;
+
+    /**
+     * 重归一化后低于该分数的视频移出热度榜
+     */
+    @Value("${viewx.recommend.trending.prune-below:0.000001}")
+    private double pruneBelow;
+
+    /**
+     * 重归一化时热度榜最多保留的视频数，排名更靠后的直接移除
+     */
+    @Value("${viewx.recommend.trending.max-size:10000}")
+    private int maxSize;
+
+    /**
+     * 记录一次互动事件对热度的贡献
+     *
+     * @param videoId   视频ID
+     * @param eventType 事件类型（EventType 常量）
+     * @param eventTime 事件发生时间，为空时取当前时间
+     */
+    public void recordEvent(Long videoId, String eventType, LocalDateTime eventTime) {
+        long now = System.currentTimeMillis();
+        double delta = weightAt(eventType, eventTime, now);
+        if (videoId == null || delta == 0) {
+            return;
+        }
+
+        redisTemplate.execute(INCREMENT_SCRIPT, keys(), now, decayPerHour, videoId.toString(), delta);
+        log.debug("热度增量更新: videoId={}, eventType={}, delta={}", videoId, eventType, delta);
+    }
+
+    /**
+     * 事件在当前时刻的热度贡献：weight · e^(-λ·(now - t_event))
+     * 同一视频的多个事件可以直接相加后一次写入
+     *
+     * @param eventType 事件类型
+     * @param eventTime 事件发生时间，为空时视为当前时间
+     * @param nowMillis 当前时间戳
+     * @return 热度贡献，未计分的事件类型返回 0
+     */
+    public double weightAt(String eventType, LocalDateTime eventTime, long nowMillis) {
+        Double weight = EVENT_WEIGHTS.get(eventType);
+        if (weight == null) {
+            return 0;
+        }
+        if (eventTime == null) {
+            return weight;
+        }
+        long eventMillis = eventTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        double hours = Math.max(0, nowMillis - eventMillis) / MILLIS_PER_HOUR;
+        return weight * Math.exp(-decayPerHour * hours);
+    }
+
+    /**
+     * 在调用方的管道中追加一次批量热度增量（单条 EVAL，整批原子生效）
+     *
+     * @param connection 处于管道模式的连接
+     * @param deltas     videoId -> 当前时刻的热度增量（由 weightAt 累加得到）
+     * @param nowMillis  计算增量时使用的当前时间戳
+     */
+    public void incrementBatch(RedisConnection connection, Map<Long, Double> deltas, long nowMillis) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        byte[][] keysAndArgs = new byte[4 + deltas.size() * 2][];
+        int i = 0;
+        for (String key : keys()) {
+            keysAndArgs[i++] = rawKey(key);
+        }
+        keysAndArgs[i++] = rawValue(nowMillis);
+        keysAndArgs[i++] = rawValue(decayPerHour);
+        for (Map.Entry<Long, Double> entry : deltas.entrySet()) {
+            keysAndArgs[i++] = rawValue(entry.getKey().toString());
+            keysAndArgs[i++] = rawValue(entry.getValue());
+        }
+
+        connection.scriptingCommands().eval(
+                INCREMENT_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8),
+                ReturnType.INTEGER, 2, keysAndArgs);
+    }
+
+    /**
+     * 以全量计算出的"当前时刻热度"覆盖视频分数（上传、审核通过、初始化时使用）
+     *
+     * @param videoId      视频ID
+     * @param currentScore 按当前时间衰减后的热度
+     */
+    public void setScore(Long videoId, double currentScore) {
+        redisTemplate.execute(SET_SCRIPT, keys(),
+                videoId.toString(), currentScore, System.currentTimeMillis(), decayPerHour);
+    }
+
+    /**
+     * 定时重归一化，默认每天凌晨 4:30 执行
+     */
+    @Scheduled(cron = "${viewx.recommend.trending.renormalize-cron:0 30 4 * * ?}")
+    public void renormalize() {
+        try {
+            Long size = redisTemplate.execute(RENORMALIZE_SCRIPT, keys(),
+                    System.currentTimeMillis(), decayPerHour, pruneBelow, Math.max(1, maxSize));
+            log.info("热度榜重归一化完成: {} 个视频", size);
+        } catch (Exception e) {
+            log.error("热度榜重归一化失败", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    private byte[] rawKey(String key) {
+        return redisTemplate.getStringSerializer().serialize(key);
+    }
+
+    private List<String> keys() {
+        return Arrays.asList(
+                RedisKeyConstants.Recommend.getTrendingKey(),
+                RedisKeyConstants.Recommend.getTrendingEpochKey());
+    }
+}
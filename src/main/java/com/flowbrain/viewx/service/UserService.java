@@ -7,6 +7,7 @@ import com.flowbrain.viewx.dao.UserMapper;
 import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.common.enums.UserStatus;
 import com.flowbrain.viewx.pojo.entity.User;
+import com.flowbrain.viewx.service.search.SuggestService;
 import com.flowbrain.viewx.util.IdGenerator;
 import com.flowbrain.viewx.util.PageUtils;
 import org.slf4j.Logger;
@@ -15,6 +16,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 
@@ -27,6 +30,9 @@ public class UserService {
     @Autowired
     PasswordEncoder passwordEncoder;
 
+    @Autowired
+    SuggestService suggestService;
+
     private static final Logger log = LoggerFactory.getLogger(UserService.class);
 
     /**
@@ -74,6 +80,9 @@ public class UserService {
             int insertedDetail = userMapper.insertUserDetail(user.getId());
 
             if ((insertedUser & insertedDetail) > 0) {
+                Long userId = user.getId();
+                String nickname = user.getNickname();
+                afterCommit(() -> suggestService.upsertUser(userId, nickname));
                 log.info("用户创建成功，用户名: {}", user.getUsername());
                 return Result.success("用户创建成功", "账号为：" + user.getUsername());
             }
@@ -98,9 +107,11 @@ public class UserService {
         if (id == null) {
             return Result.badRequest("ID不能为空");
         }
-        return userMapper.deleteUserById(id)
-                ? Result.success("删除成功")
-                : Result.serverError("删除失败");
+        if (!userMapper.deleteUserById(id)) {
+            return Result.serverError("删除失败");
+        }
+        suggestService.removeUser(id);
+        return Result.success("删除成功");
     }
 
     /**
@@ -413,4 +424,27 @@ public class UserService {
                     user.isCredentialsNonExpired());
         }
     }
+
+    /**
+     * 事务提交后执行（无事务时立即执行），失败只记录日志
+     */
+    private void afterCommit(Runnable task) {
+        Runnable safeTask = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.warn("更新搜索联想失败: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safeTask.run();
+                }
+            });
+        } else {
+            safeTask.run();
+        }
+    }
 }
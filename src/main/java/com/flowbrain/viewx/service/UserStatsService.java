@@ -0,0 +1,321 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.flowbrain.viewx.dao.ProfileMapper;
+import com.flowbrain.viewx.pojo.dto.UserStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户统计计数服务（粉丝数、关注数、视频数、获赞数）
+ *
+ * 计数物化在 Redis Hash 中，资料页不再每次做四个聚合查询：
+ * 1. 读取：命中直接返回；未命中用一条查询算出四个计数写入 Redis
+ * 2. 更新：关注/取关、点赞/取消点赞、上传/删除视频的事务提交后，Lua 原子 HINCRBY；
+ *    Hash 不存在时不创建（下次读取从数据库加载），同时把用户记入"待对账"集合
+ * 3. 对账：后台任务批量取出待对账用户，与数据库重新计算的结果比较，修正并记录漂移
+ *
+ * 加载与增量并发、Redis 写入失败等情况产生的偏差都会在下一轮对账中修正；
+ * 对账覆盖期间发生的增量会再次把用户记入待对账集合，不会被永久覆盖
+ */
+@Slf4j
+@Service
+public class UserStatsService {
+
+    public static final String FOLLOWERS = "followers";
+
+    public static final String FOLLOWING = "following";
+
+    public static final String VIDEOS = "videos";
+
+    public static final String LIKES = "likes";
+
+    /**
+     * KEYS[1]=用户计数 KEYS[2]=待对账集合 ARGV[1]=userId ARGV[2..]=字段, 增量 成对出现
+     */
+    private static final String INCREMENT_SCRIPT =
+            "redis.call('SADD', KEYS[2], ARGV[1]) "
+                    + "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+                    + "for i = 2, #ARGV, 2 do "
+                    + "  redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1]) "
+                    + "end "
+                    + "return 1";
+
+    private static final String RECONCILE_LOCK = "user:stats:reconcile";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisLockService redisLockService;
+
+    @Autowired
+    private ProfileMapper profileMapper;
+
+    @Value("${viewx.user-stats.ttl-hours:24}")
+    private long ttlHours;
+
+    /**
+     * 每轮对账最多处理的用户数，每批一次数据库查询
+     */
+    @Value("${viewx.user-stats.reconcile-batch-size:500}")
+    private int reconcileBatchSize;
+
+    @Value("${viewx.user-stats.reconcile-max-batches:20}")
+    private int reconcileMaxBatches;
+
+    /**
+     * 查询用户统计
+     */
+    public UserStatsDTO getStats(Long userId) {
+        try {
+            Map<byte[], byte[]> cached = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                    connection.hashCommands().hGetAll(raw(RedisKeyConstants.User.getStatsKey(userId))));
+            if (cached != null && !cached.isEmpty()) {
+                return fromHash(userId, cached);
+            }
+        } catch (Exception e) {
+            log.warn("读取用户计数缓存失败，查询数据库: userId={}", userId, e);
+            return load(userId);
+        }
+
+        UserStatsDTO stats = load(userId);
+        try {
+            write(Collections.singletonList(stats), true);
+        } catch (Exception e) {
+            log.warn("写入用户计数缓存失败: userId={}", userId, e);
+        }
+        return stats;
+    }
+
+    /**
+     * 关注关系变化
+     */
+    public void onFollow(Long followerId, Long followedId, boolean followed) {
+        long delta = followed ? 1 : -1;
+        afterCommit(() -> {
+            increment(followerId, Map.of(FOLLOWING, delta));
+            increment(followedId, Map.of(FOLLOWERS, delta));
+        });
+    }
+
+    /**
+     * 视频获赞数变化
+     *
+     * @param uploaderId 视频作者
+     */
+    public void onVideoLike(Long uploaderId, long delta) {
+        afterCommit(() -> increment(uploaderId, Map.of(LIKES, delta)));
+    }
+
+    /**
+     * 上传视频
+     */
+    public void onVideoCreated(Long uploaderId) {
+        afterCommit(() -> increment(uploaderId, Map.of(VIDEOS, 1L)));
+    }
+
+    /**
+     * 删除视频：视频数减一，获赞数减去该视频的点赞数
+     */
+    public void onVideoDeleted(Long uploaderId, long videoLikes) {
+        afterCommit(() -> increment(uploaderId, Map.of(VIDEOS, -1L, LIKES, -videoLikes)));
+    }
+
+    /**
+     * 定时对账：取出待对账用户，按数据库重新计算，修正 Redis 中已有的计数
+     */
+    @Scheduled(fixedDelayString = "${viewx.user-stats.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        String lockToken = redisLockService.tryLock(RECONCILE_LOCK, Duration.ofMinutes(5));
+        if (lockToken == null) {
+            return;
+        }
+
+        try {
+            int checked = 0;
+            int drifted = 0;
+            for (int batch = 0; batch < reconcileMaxBatches; batch++) {
+                List<Long> userIds = popTouched();
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                checked += userIds.size();
+                drifted += reconcileBatch(userIds);
+            }
+            if (drifted > 0) {
+                log.warn("用户计数对账发现漂移并已修正: checked={}, drifted={}", checked, drifted);
+            } else if (checked > 0) {
+                log.debug("用户计数对账完成: checked={}", checked);
+            }
+        } catch (Exception e) {
+            log.error("用户计数对账失败", e);
+        } finally {
+            redisLockService.unlock(RECONCILE_LOCK, lockToken);
+        }
+    }
+
+    /**
+     * @return 计数与数据库不一致的用户数
+     */
+    private int reconcileBatch(List<Long> userIds) {
+        List<UserStatsDTO> actual = profileMapper.selectUserStats(userIds);
+        List<Object> cached = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (UserStatsDTO stats : actual) {
+                connection.hashCommands().hGetAll(raw(RedisKeyConstants.User.getStatsKey(stats.getUserId())));
+            }
+            return null;
+        });
+
+        List<UserStatsDTO> drifted = new ArrayList<>();
+        for (int i = 0; i < actual.size(); i++) {
+            UserStatsDTO expected = actual.get(i);
+            Map<?, ?> hash = (Map<?, ?>) cached.get(i);
+            // 未缓存的用户下次读取时从数据库加载，无需修正
+            if (hash == null || hash.isEmpty()) {
+                continue;
+            }
+            UserStatsDTO current = fromHash(expected.getUserId(), hash);
+            if (!current.equals(expected)) {
+                log.debug("用户计数漂移: cached={}, actual={}", current, expected);
+                drifted.add(expected);
+            }
+        }
+        if (!drifted.isEmpty()) {
+            write(drifted, false);
+        }
+        return drifted.size();
+    }
+
+    private List<Long> popTouched() {
+        List<byte[]> members = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.setCommands().sPop(raw(RedisKeyConstants.User.getStatsTouchedKey()), reconcileBatchSize));
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> userIds = new ArrayList<>(members.size());
+        for (byte[] member : members) {
+            userIds.add(Long.parseLong(text(member)));
+        }
+        return userIds;
+    }
+
+    private void increment(Long userId, Map<String, Long> deltas) {
+        if (userId == null) {
+            return;
+        }
+        byte[][] keysAndArgs = new byte[3 + deltas.size() * 2][];
+        keysAndArgs[0] = raw(RedisKeyConstants.User.getStatsKey(userId));
+        keysAndArgs[1] = raw(RedisKeyConstants.User.getStatsTouchedKey());
+        keysAndArgs[2] = raw(userId.toString());
+        int i = 3;
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            keysAndArgs[i++] = raw(entry.getKey());
+            keysAndArgs[i++] = raw(entry.getValue().toString());
+        }
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.scriptingCommands().eval(
+                INCREMENT_SCRIPT.getBytes(StandardCharsets.UTF_8), ReturnType.INTEGER, 2, keysAndArgs));
+    }
+
+    /**
+     * 写入计数
+     *
+     * @param resetTtl 是否重置过期时间（新加载时重置；对账修正保留原有过期时间）
+     */
+    private void write(List<UserStatsDTO> statsList, boolean resetTtl) {
+        long ttlSeconds = Duration.ofHours(ttlHours).toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (UserStatsDTO stats : statsList) {
+                byte[] key = raw(RedisKeyConstants.User.getStatsKey(stats.getUserId()));
+                Map<byte[], byte[]> hash = new HashMap<>();
+                hash.put(raw(FOLLOWERS), raw(String.valueOf(stats.getFollowers())));
+                hash.put(raw(FOLLOWING), raw(String.valueOf(stats.getFollowing())));
+                hash.put(raw(VIDEOS), raw(String.valueOf(stats.getVideos())));
+                hash.put(raw(LIKES), raw(String.valueOf(stats.getLikes())));
+                connection.hashCommands().hMSet(key, hash);
+                if (resetTtl) {
+                    connection.keyCommands().expire(key, ttlSeconds);
+                }
+            }
+            return null;
+        });
+    }
+
+    private UserStatsDTO load(Long userId) {
+        List<UserStatsDTO> rows = profileMapper.selectUserStats(Collections.singletonList(userId));
+        if (!rows.isEmpty()) {
+            return rows.get(0);
+        }
+        UserStatsDTO empty = new UserStatsDTO();
+        empty.setUserId(userId);
+        empty.setFollowers(0L);
+        empty.setFollowing(0L);
+        empty.setVideos(0L);
+        empty.setLikes(0L);
+        return empty;
+    }
+
+    /**
+     * Hash 转计数：字段和值可能是原始字节（连接层返回）或已反序列化的对象（pipeline 返回）
+     */
+    private UserStatsDTO fromHash(Long userId, Map<?, ?> hash) {
+        Map<String, Long> values = new HashMap<>();
+        for (Map.Entry<?, ?> entry : hash.entrySet()) {
+            values.put(text(entry.getKey()), Long.parseLong(text(entry.getValue())));
+        }
+        UserStatsDTO stats = new UserStatsDTO();
+        stats.setUserId(userId);
+        stats.setFollowers(Math.max(0, values.getOrDefault(FOLLOWERS, 0L)));
+        stats.setFollowing(Math.max(0, values.getOrDefault(FOLLOWING, 0L)));
+        stats.setVideos(Math.max(0, values.getOrDefault(VIDEOS, 0L)));
+        stats.setLikes(Math.max(0, values.getOrDefault(LIKES, 0L)));
+        return stats;
+    }
+
+    private String text(Object value) {
+        return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : value.toString();
+    }
+
+    /**
+     * 处于事务中时推迟到提交之后执行；计数更新失败不影响主流程，偏差在缓存过期后消失
+     */
+    private void afterCommit(Runnable task) {
+        Runnable safeTask = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.warn("用户计数更新失败: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safeTask.run();
+                }
+            });
+            return;
+        }
+        safeTask.run();
+    }
+
+    private byte[] raw(String value) {
+        return redisTemplate.getStringSerializer().serialize(value);
+    }
+}
@@ -0,0 +1,149 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.dao.VideoMapper;
+import com.flowbrain.viewx.pojo.dto.VideoEmbeddingDTO;
+import com.flowbrain.viewx.util.VectorMath;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 向量召回服务（pgvector ANN）
+ *
+ * 1. 查询向量：兴趣种子视频的内容向量按兴趣分加权求和后归一化
+ * 2. 近邻召回：在同一只读事务内先 SET LOCAL ivfflat.probes，再按余弦距离走 idx_videos_embedding 取 ID
+ * 3. 精排：候选向量从 VideoEmbeddingCache 读取（未命中的批量以二进制格式回源），
+ *    在 Java 中计算与查询向量及各种子向量的余弦相似度，取前 K 个
+ *
+ * 注：vx_user_behavior.user_preference_vector 为 300 维，与 content_embedding（512 维）不在同一向量空间，
+ * 因此查询向量由种子视频的内容向量合成
+ */
+@Slf4j
+@Service
+public class VectorCandidateService {
+
+    @Autowired
+    private VideoMapper videoMapper;
+
+    @Autowired
+    private VideoEmbeddingCache embeddingCache;
+
+    @Value("${viewx.recommend.vector.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * ivfflat 每次检索的探测列表数，越大召回率越高、越慢
+     */
+    @Value("${viewx.recommend.vector.probes:10}")
+    private int probes;
+
+    /**
+     * ANN 召回数量相对最终候选数的倍数，留出精排空间
+     */
+    @Value("${viewx.recommend.vector.oversample:3}")
+    private int oversample;
+
+    /**
+     * 精排分中"最相似种子"所占权重，其余为与查询向量的相似度
+     */
+    @Value("${viewx.recommend.vector.max-sim-weight:0.5}")
+    private double maxSimWeight;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 以兴趣种子召回相似视频
+     *
+     * @param seeds videoId -> 兴趣分（> 0）
+     * @param topK  返回的候选数量
+     * @return videoId -> 相似度分（不含种子视频），按分数从高到低
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Double> retrieve(Map<Long, Double> seeds, int topK) {
+        if (!enabled || seeds.isEmpty() || topK <= 0) {
+            return Collections.emptyMap();
+        }
+
+        // 1. 种子向量（缓存未命中的一次回源）
+        load(seeds.keySet());
+        double maxSeed = seeds.values().stream().mapToDouble(Double::doubleValue).max().orElse(1.0);
+        Map<Long, Float> seedWeights = new HashMap<>();
+        float[] query = new float[embeddingCache.getDimension()];
+        seeds.forEach((videoId, score) -> {
+            float weight = (float) (score / maxSeed);
+            if (embeddingCache.addTo(videoId, weight, query)) {
+                seedWeights.put(videoId, weight);
+            }
+        });
+        if (seedWeights.isEmpty() || VectorMath.normalize(query) == 0f) {
+            return Collections.emptyMap();
+        }
+
+        // 2. ANN 召回
+        videoMapper.setIvfflatProbes(String.valueOf(probes));
+        List<Long> ids = videoMapper.selectNearestIds(query, topK * Math.max(1, oversample));
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // 3. Java 内精排
+        load(ids);
+        List<Map.Entry<Long, Double>> scored = new ArrayList<>(ids.size());
+        for (Long videoId : ids) {
+            if (seeds.containsKey(videoId)) {
+                continue;
+            }
+            float queryCos = embeddingCache.cosine(videoId, query);
+            if (Float.isNaN(queryCos)) {
+                continue;
+            }
+            float maxSim = 0f;
+            for (Map.Entry<Long, Float> seed : seedWeights.entrySet()) {
+                float cos = embeddingCache.cosine(videoId, seed.getKey());
+                if (!Float.isNaN(cos)) {
+                    maxSim = Math.max(maxSim, cos * seed.getValue());
+                }
+            }
+            double score = (1 - maxSimWeight) * queryCos + maxSimWeight * maxSim;
+            scored.add(Map.entry(videoId, score));
+        }
+
+        scored.sort(Map.Entry.<Long, Double>comparingByValue().reversed());
+        Map<Long, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<Long, Double> entry : scored.subList(0, Math.min(topK, scored.size()))) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        log.debug("向量召回完成: seeds={}, ann={}, result={}", seedWeights.size(), ids.size(), result.size());
+        return result;
+    }
+
+    /**
+     * 把缓存中缺失的向量批量读入缓存
+     */
+    private void load(Collection<Long> videoIds) {
+        List<Long> missing = new ArrayList<>();
+        for (Long videoId : videoIds) {
+            if (!embeddingCache.contains(videoId)) {
+                missing.add(videoId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        for (VideoEmbeddingDTO row : videoMapper.selectEmbeddingsByIds(missing)) {
+            embeddingCache.put(row.getVideoId(), row.getEmbedding());
+        }
+    }
+}
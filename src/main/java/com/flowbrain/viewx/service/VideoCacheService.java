@@ -1,13 +1,31 @@
 package com.flowbrain.viewx.service;
 
+import com.flowbrain.viewx.common.RedisKeyConstants;
 import com.flowbrain.viewx.pojo.vo.VideoListVO;
+import com.flowbrain.viewx.util.CursorCodec;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 /**
  * 视频缓存服务（内存优化版本）
@@ -16,17 +34,59 @@ import java.util.List;
  * 1. 只缓存前 3 页数据（深度分页不缓存）- 节省内存
  * 2. 使用条件缓存，避免缓存冷数据
  * 3. 缓存时间通过Redis TTL控制（5分钟）
- * 
+ * 4. 反向索引：记录每个视频 / 用户出现在哪些缓存页中，失效时只清除受影响的页
+ * 5. 单飞加载：同一缓存页并发未命中时只有一个线程回源，其余线程等待其结果
+ * 6. 失效代数：回源期间发生失效时，加载结果写入后立即删除，避免旧数据在失效之后写回
+ * 7. 缓存页中的播放量存为"播放量 - 当时的累计播放次数"，读取时加上最新累计次数，
+ *    命中缓存也能看到实时播放量（Redis 不可用时累计次数读不到，播放量会暂时偏低）
+ *
  * 适用于1.6GB内存服务器的优化配置
  */
 @Slf4j
 @Service
 public class VideoCacheService {
 
+    private static final String TRENDING_CACHE = "trending-videos";
+
+    private static final String RECOMMENDED_CACHE = "recommended-videos";
+
+    // 只缓存前 N 页
+    private static final int CACHED_PAGES = 3;
+
+    // 反向索引有效期，需不短于各缓存页的 TTL
+    private static final Duration INDEX_TTL = Duration.ofMinutes(10);
+
+    private static final String INDEX_SEPARATOR = "|";
+
+    /**
+     * 原子地取出并删除反向索引：取出与删除之间登记的缓存页不会丢失索引
+     * KEYS[1]=反向索引
+     */
+    private static final DefaultRedisScript<List> DRAIN_INDEX_SCRIPT = new DefaultRedisScript<>(
+            "local entries = redis.call('SMEMBERS', KEYS[1]) "
+                    + "redis.call('DEL', KEYS[1]) "
+                    + "return entries",
+            List.class);
+
     private final RecommendService recommendService;
 
-    public VideoCacheService(RecommendService recommendService) {
+    private final CacheManager cacheManager;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final ViewCountService viewCountService;
+
+    /**
+     * 正在回源的缓存页：缓存名::key -> 加载结果
+     */
+    private final ConcurrentMap<String, CompletableFuture<List<VideoListVO>>> inFlight = new ConcurrentHashMap<>();
+
+    public VideoCacheService(RecommendService recommendService, CacheManager cacheManager,
+                             RedisTemplate<String, Object> redisTemplate, ViewCountService viewCountService) {
         this.recommendService = recommendService;
+        this.cacheManager = cacheManager;
+        this.redisTemplate = redisTemplate;
+        this.viewCountService = viewCountService;
     }
 
     /**
@@ -34,10 +94,18 @@ public class VideoCacheService {
      * 只缓存前 3 页，深度分页不缓存
      * 缓存时间：5分钟（通过Redis配置）
      */
-    @Cacheable(value = "trending-videos", key = "'page:' + #page + ':size:' + #size", condition = "#page <= 3")
     public List<VideoListVO> getTrendingVideos(int page, int size) {
-        log.debug("从数据库查询热门视频列表: page={}, size={}", page, size);
-        return recommendService.getTrendingVideos(page, size);
+        // 先校验再拼缓存键，非法页码不进入缓存，每页条数不同的请求不会各占一份缓存
+        CursorCodec.requirePage(page);
+        int pageSize = CursorCodec.clampSize(size);
+        if (page > CACHED_PAGES) {
+            return recommendService.getTrendingVideos(page, pageSize);
+        }
+        String key = "page:" + page + ":size:" + pageSize;
+        return getOrLoad(TRENDING_CACHE, key, null, () -> {
+            log.debug("从数据库查询热门视频列表: page={}, size={}", page, pageSize);
+            return recommendService.getTrendingVideos(page, pageSize);
+        });
     }
 
     /**
@@ -45,10 +113,17 @@ public class VideoCacheService {
      * 只缓存前 3 页
      * 缓存时间：3分钟
      */
-    @Cacheable(value = "recommended-videos", key = "'user:' + #userId + ':page:' + #page + ':size:' + #size", condition = "#page <= 3")
     public List<VideoListVO> getRecommendedVideos(Long userId, int page, int size) {
-        log.debug("从数据库查询推荐视频列表: userId={}, page={}, size={}", userId, page, size);
-        return recommendService.getRecommendedVideos(userId, page, size);
+        CursorCodec.requirePage(page);
+        int pageSize = CursorCodec.clampSize(size);
+        if (page > CACHED_PAGES) {
+            return recommendService.getRecommendedVideos(userId, page, pageSize);
+        }
+        String key = "user:" + userId + ":page:" + page + ":size:" + pageSize;
+        return getOrLoad(RECOMMENDED_CACHE, key, userId, () -> {
+            log.debug("从数据库查询推荐视频列表: userId={}, page={}, size={}", userId, page, pageSize);
+            return recommendService.getRecommendedVideos(userId, page, pageSize);
+        });
     }
 
     /**
@@ -56,40 +131,46 @@ public class VideoCacheService {
      * 场景：视频更新、删除时调用
      */
     @Caching(evict = {
-            @CacheEvict(value = "trending-videos", allEntries = true),
-            @CacheEvict(value = "recommended-videos", allEntries = true)
+            @CacheEvict(value = TRENDING_CACHE, allEntries = true),
+            @CacheEvict(value = RECOMMENDED_CACHE, allEntries = true)
     })
     public void evictAllVideoCache() {
+        bumpGeneration(TRENDING_CACHE);
+        bumpGeneration(RECOMMENDED_CACHE);
         log.info("清除所有视频缓存");
     }
 
     /**
      * 清除特定视频的缓存
      * 场景：视频更新、删除时调用
+     * 只清除包含该视频的缓存页（热门、推荐），其余页不受影响
      */
-    @Caching(evict = {
-            @CacheEvict(value = "trending-videos", allEntries = true),
-            @CacheEvict(value = "recommended-videos", allEntries = true)
-    })
     public void evictVideoCache(Long videoId) {
-        log.info("清除视频缓存: videoId={}", videoId);
+        // 正在回源的页尚未写入反向索引，按缓存整体推进代数
+        bumpGeneration(TRENDING_CACHE);
+        bumpGeneration(RECOMMENDED_CACHE);
+        int evicted = evictIndexed(RedisKeyConstants.Video.getCachedPagesKey(videoId));
+        log.info("清除视频缓存: videoId={}, pages={}", videoId, evicted);
     }
 
     /**
      * 清除用户相关的推荐缓存
      * 场景：用户上传新视频、关注/取关时调用
+     * 只清除该用户自己的推荐页
      */
-    @CacheEvict(value = "recommended-videos", allEntries = true)
     public void evictUserRecommendationsCache(Long userId) {
-        log.info("清除用户推荐缓存: userId={}", userId);
+        bumpGeneration(RECOMMENDED_CACHE);
+        int evicted = evictIndexed(RedisKeyConstants.User.getCachedFeedPagesKey(userId));
+        log.info("清除用户推荐缓存: userId={}, pages={}", userId, evicted);
     }
 
     /**
      * 清除热门视频缓存
-     * 场景：视频浏览量大幅变化时调用
+     * 场景：新视频上榜等排名整体变化时调用
      */
-    @CacheEvict(value = "trending-videos", allEntries = true)
+    @CacheEvict(value = TRENDING_CACHE, allEntries = true)
     public void evictTrendingVideosCache() {
+        bumpGeneration(TRENDING_CACHE);
         log.info("清除热门视频缓存");
     }
 
@@ -107,4 +188,224 @@ public class VideoCacheService {
             log.error("视频缓存预热失败", e);
         }
     }
+
+    /**
+     * 读缓存，未命中时单飞回源并写回缓存和反向索引
+     *
+     * @param ownerUserId 推荐页所属用户，热门页传 null
+     */
+    private List<VideoListVO> getOrLoad(String cacheName, String pageKey, Long ownerUserId,
+                                        Supplier<List<VideoListVO>> loader) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return loader.get();
+        }
+
+        // 缓存页中的播放量相对某个周期的累计次数保存，键带周期号，跨周期后重新回源
+        long epoch = viewCountService.currentEpoch();
+        String key = pageKey + ":e:" + epoch;
+        List<VideoListVO> cached = readCache(cache, key);
+        if (cached != null) {
+            return withLiveViews(cached, epoch);
+        }
+
+        // 单飞结果由多个调用方共享，各自拿一份副本
+        return copyOf(loadOnce(cacheName + "::" + key, () -> {
+            // 抢到回源权后再查一次，避免上一轮回源刚写入缓存又重复加载
+            List<VideoListVO> again = readCache(cache, key);
+            if (again != null) {
+                return withLiveViews(again, epoch);
+            }
+
+            // 先读代数再回源：回源期间若有失效，写入后代数已变化
+            long generation = generation(cacheName);
+            List<VideoListVO> loaded = loader.get();
+            if (loaded != null) {
+                try {
+                    cache.put(key, withBaseViews(loaded, epoch));
+                    if (generation(cacheName) != generation) {
+                        // 回源期间发生了失效，刚写入的可能是旧数据
+                        cache.evict(key);
+                    } else {
+                        index(cacheName, key, loaded, ownerUserId);
+                    }
+                } catch (Exception e) {
+                    log.warn("写入视频缓存失败: cache={}, key={}, error={}", cacheName, key, e.getMessage());
+                }
+            }
+            return loaded;
+        }));
+    }
+
+    /**
+     * 写入缓存的副本：播放量减去当前累计播放次数
+     */
+    private List<VideoListVO> withBaseViews(List<VideoListVO> videos, long epoch) {
+        Map<Long, Long> recorded = viewCountService.getRecordedViews(idsOf(videos), epoch);
+        List<VideoListVO> copy = copyOf(videos);
+        for (VideoListVO vo : copy) {
+            vo.setViewCount((vo.getViewCount() == null ? 0 : vo.getViewCount())
+                    - recorded.getOrDefault(vo.getId(), 0L));
+        }
+        return copy;
+    }
+
+    /**
+     * 返回给调用方的副本：缓存中的播放量加上最新累计播放次数
+     * 缓存中的列表（L1 中是同一个对象）不直接交给调用方，避免调用方修改 VO 污染缓存
+     */
+    private List<VideoListVO> withLiveViews(List<VideoListVO> cached, long epoch) {
+        Map<Long, Long> recorded = viewCountService.getRecordedViews(idsOf(cached), epoch);
+        List<VideoListVO> copy = copyOf(cached);
+        for (VideoListVO vo : copy) {
+            long views = (vo.getViewCount() == null ? 0 : vo.getViewCount()) + recorded.getOrDefault(vo.getId(), 0L);
+            vo.setViewCount(Math.max(views, 0));
+        }
+        return copy;
+    }
+
+    private List<Long> idsOf(List<VideoListVO> videos) {
+        List<Long> ids = new ArrayList<>(videos.size());
+        for (VideoListVO video : videos) {
+            if (video.getId() != null) {
+                ids.add(video.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 缓存的失效代数，Redis 不可用时返回 -1
+     */
+    private long generation(String cacheName) {
+        try {
+            byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands()
+                    .get(rawKey(RedisKeyConstants.Video.getCacheGenerationKey(cacheName))));
+            return value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void bumpGeneration(String cacheName) {
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.stringCommands()
+                    .incr(rawKey(RedisKeyConstants.Video.getCacheGenerationKey(cacheName))));
+        } catch (Exception e) {
+            log.warn("推进视频缓存代数失败: cache={}, error={}", cacheName, e.getMessage());
+        }
+    }
+
+    private byte[] rawKey(String key) {
+        return redisTemplate.getStringSerializer().serialize(key);
+    }
+
+    private List<VideoListVO> copyOf(List<VideoListVO> videos) {
+        if (videos == null) {
+            return null;
+        }
+        List<VideoListVO> copy = new ArrayList<>(videos.size());
+        for (VideoListVO video : videos) {
+            VideoListVO vo = new VideoListVO();
+            BeanUtils.copyProperties(video, vo);
+            copy.add(vo);
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<VideoListVO> readCache(Cache cache, String key) {
+        try {
+            Cache.ValueWrapper wrapper = cache.get(key);
+            return wrapper == null ? null : (List<VideoListVO>) wrapper.get();
+        } catch (Exception e) {
+            // 缓存不可用时直接回源
+            log.warn("读取视频缓存失败: cache={}, key={}, error={}", cache.getName(), key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 单飞：同一 flightKey 同时只有一个线程执行 loader，其余线程共享结果（或异常）
+     */
+    private List<VideoListVO> loadOnce(String flightKey, Supplier<List<VideoListVO>> loader) {
+        CompletableFuture<List<VideoListVO>> mine = new CompletableFuture<>();
+        CompletableFuture<List<VideoListVO>> existing = inFlight.putIfAbsent(flightKey, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            List<VideoListVO> result = loader.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, mine);
+        }
+    }
+
+    /**
+     * 记录反向索引：视频ID / 用户ID -> 缓存页（一次管道）
+     */
+    private void index(String cacheName, String key, List<VideoListVO> videos, Long ownerUserId) {
+        String entry = cacheName + INDEX_SEPARATOR + key;
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (VideoListVO video : videos) {
+                    if (video.getId() != null) {
+                        String indexKey = RedisKeyConstants.Video.getCachedPagesKey(video.getId());
+                        ops.opsForSet().add(indexKey, entry);
+                        ops.expire(indexKey, INDEX_TTL);
+                    }
+                }
+                if (ownerUserId != null) {
+                    String indexKey = RedisKeyConstants.User.getCachedFeedPagesKey(ownerUserId);
+                    ops.opsForSet().add(indexKey, entry);
+                    ops.expire(indexKey, INDEX_TTL);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 按反向索引逐页清除缓存
+     *
+     * @return 清除的缓存页数量
+     */
+    private int evictIndexed(String indexKey) {
+        try {
+            List<?> entries = redisTemplate.execute(DRAIN_INDEX_SCRIPT, List.of(indexKey));
+            if (entries == null || entries.isEmpty()) {
+                return 0;
+            }
+
+            int evicted = 0;
+            for (Object entry : entries) {
+                String[] parts = entry.toString().split("\\" + INDEX_SEPARATOR, 2);
+                Cache cache = parts.length == 2 ? cacheManager.getCache(parts[0]) : null;
+                if (cache != null) {
+                    cache.evict(parts[1]);
+                    evicted++;
+                }
+            }
+            return evicted;
+        } catch (Exception e) {
+            log.warn("按索引清除视频缓存失败: indexKey={}, error={}", indexKey, e.getMessage());
+            return 0;
+        }
+    }
 }
@@ -0,0 +1,147 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.util.VectorMath;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 热门视频内容向量的进程内 LRU 缓存
+ *
+ * 所有向量（归一化后）连续存放在一个 float[] 中，每个视频占一个定长槽位，
+ * 不为每个向量单独分配对象，GC 压力小、点积时顺序访问内存。
+ * 容量满时淘汰最久未访问的视频并复用其槽位。
+ *
+ * 默认 10000 × 512 维 ≈ 20MB
+ */
+@Slf4j
+@Component
+public class VideoEmbeddingCache {
+
+    private final int dimension;
+
+    private final int capacity;
+
+    private final float[] slab;
+
+    /**
+     * videoId -> 槽位，按访问顺序排列（最久未访问的在前）
+     */
+    private final LinkedHashMap<Long, Integer> slots;
+
+    private long hits;
+
+    private long misses;
+
+    public VideoEmbeddingCache(@Value("${viewx.recommend.vector.dimension:512}") int dimension,
+                               @Value("${viewx.recommend.vector.cache-size:10000}") int capacity,
+                               MeterRegistry meterRegistry) {
+        this.dimension = dimension;
+        this.capacity = Math.max(0, capacity);
+        this.slab = new float[this.capacity * dimension];
+        this.slots = new LinkedHashMap<>(Math.max(16, this.capacity * 4 / 3), 0.75f, true);
+
+        meterRegistry.gauge("viewx.recommend.embedding.cache.size", this, VideoEmbeddingCache::size);
+        meterRegistry.gauge("viewx.recommend.embedding.cache.hit.ratio", this, VideoEmbeddingCache::hitRatio);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public synchronized boolean contains(Long videoId) {
+        return slots.containsKey(videoId);
+    }
+
+    /**
+     * 写入向量（写入前归一化），维度不符时忽略
+     */
+    public synchronized void put(Long videoId, float[] embedding) {
+        if (capacity == 0 || embedding == null || embedding.length != dimension) {
+            return;
+        }
+
+        Integer slot = slots.get(videoId);
+        if (slot == null) {
+            if (slots.size() < capacity) {
+                slot = slots.size();
+            } else {
+                Iterator<Map.Entry<Long, Integer>> eldest = slots.entrySet().iterator();
+                slot = eldest.next().getValue();
+                eldest.remove();
+            }
+            slots.put(videoId, slot);
+        }
+
+        int offset = slot * dimension;
+        System.arraycopy(embedding, 0, slab, offset, dimension);
+        float norm = (float) Math.sqrt(VectorMath.dot(slab, offset, slab, offset, dimension));
+        if (norm > 0f) {
+            float inv = 1f / norm;
+            for (int i = offset; i < offset + dimension; i++) {
+                slab[i] *= inv;
+            }
+        }
+    }
+
+    /**
+     * 将缓存中的归一化向量累加到 target（target += weight × v）
+     *
+     * @return 缓存中是否存在该视频
+     */
+    public synchronized boolean addTo(Long videoId, float weight, float[] target) {
+        Integer slot = lookup(videoId);
+        if (slot == null) {
+            return false;
+        }
+        int offset = slot * dimension;
+        for (int i = 0; i < dimension; i++) {
+            target[i] += weight * slab[offset + i];
+        }
+        return true;
+    }
+
+    /**
+     * 与单位向量 query 的余弦相似度，缓存中不存在时返回 NaN
+     */
+    public synchronized float cosine(Long videoId, float[] query) {
+        Integer slot = lookup(videoId);
+        return slot == null ? Float.NaN : VectorMath.dot(slab, slot * dimension, query, 0, dimension);
+    }
+
+    /**
+     * 两个已缓存视频的余弦相似度，任一不存在时返回 NaN
+     */
+    public synchronized float cosine(Long videoId, Long otherVideoId) {
+        Integer slot = slots.get(videoId);
+        Integer other = slots.get(otherVideoId);
+        if (slot == null || other == null) {
+            return Float.NaN;
+        }
+        return VectorMath.dot(slab, slot * dimension, slab, other * dimension, dimension);
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    private Integer lookup(Long videoId) {
+        Integer slot = slots.get(videoId);
+        if (slot == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return slot;
+    }
+
+    private synchronized double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+}
@@ -0,0 +1,154 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.dao.UserMapper;
+import com.flowbrain.viewx.dao.VideoMapper;
+import com.flowbrain.viewx.pojo.entity.Video;
+import com.flowbrain.viewx.pojo.vo.UserBriefVO;
+import com.flowbrain.viewx.pojo.vo.VideoListVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 视频列表批量装配服务
+ *
+ * 所有 Feed 路径（热门、推荐、搜索）统一通过此服务把视频ID/实体转换为 VideoListVO：
+ * 1. 视频：一次 WHERE id IN (...) 查询
+ * 2. 上传者：一次联表 vx_user_details 的批量查询
+ * 3. 播放量：合并 Redis 中尚未落库的增量
+ * 4. 结果保持调用方给定的ID顺序
+ *
+ * 无论页大小如何，每页固定 2 次数据库往返
+ */
+@Slf4j
+@Service
+public class VideoHydrationService {
+
+    @Autowired
+    private VideoMapper videoMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private StorageStrategy storageStrategy;
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    /**
+     * 根据视频ID列表批量装配，保持原ID顺序
+     * 不存在、未审核或已删除的视频会被跳过
+     *
+     * @param videoIds 有序的视频ID列表
+     * @return 有序的视频列表 VO
+     */
+    public List<VideoListVO> hydrateByIds(List<Long> videoIds) {
+        if (videoIds == null || videoIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<Long> uniqueIds = new LinkedHashSet<>(videoIds);
+        List<Video> fetched = videoMapper.selectApprovedByIds(uniqueIds);
+
+        Map<Long, Video> videoMap = new HashMap<>(fetched.size() * 2);
+        for (Video video : fetched) {
+            videoMap.put(video.getId(), video);
+        }
+
+        List<Video> ordered = new ArrayList<>(uniqueIds.size());
+        for (Long id : uniqueIds) {
+            Video video = videoMap.get(id);
+            if (video != null) {
+                ordered.add(video);
+            }
+        }
+
+        if (ordered.size() < uniqueIds.size()) {
+            log.debug("批量装配时有 {} 个视频已失效", uniqueIds.size() - ordered.size());
+        }
+        return toVideoListVOs(ordered);
+    }
+
+    /**
+     * 将已查询出的视频实体批量转换为 VO，上传者信息一次性批量填充
+     *
+     * @param videos 视频实体列表（顺序即输出顺序）
+     * @return 视频列表 VO
+     */
+    public List<VideoListVO> toVideoListVOs(List<Video> videos) {
+        if (videos == null || videos.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<Long> uploaderIds = new LinkedHashSet<>();
+        List<Long> videoIds = new ArrayList<>(videos.size());
+        for (Video video : videos) {
+            videoIds.add(video.getId());
+            if (video.getUploaderId() != null) {
+                uploaderIds.add(video.getUploaderId());
+            }
+        }
+        Map<Long, UserBriefVO> uploaders = loadUserBriefs(uploaderIds);
+        // 合并尚未落库的播放量（一次 Redis 管道）
+        Map<Long, Long> pendingViews = viewCountService.getPendingViews(videoIds);
+
+        List<VideoListVO> result = new ArrayList<>(videos.size());
+        for (Video video : videos) {
+            VideoListVO vo = new VideoListVO();
+            BeanUtils.copyProperties(video, vo);
+            Long pending = pendingViews.get(video.getId());
+            if (pending != null) {
+                vo.setViewCount((vo.getViewCount() == null ? 0 : vo.getViewCount()) + pending);
+            }
+
+            UserBriefVO uploader = uploaders.get(video.getUploaderId());
+            if (uploader != null) {
+                vo.setUploaderNickname(uploader.getNickname());
+                vo.setUploaderAvatar(uploader.getAvatarUrl());
+            }
+            result.add(vo);
+        }
+        return result;
+    }
+
+    /**
+     * 批量加载用户简要信息（昵称回退为用户名，头像转换为完整URL）
+     *
+     * @param userIds 用户ID集合
+     * @return userId -> 简要信息
+     */
+    public Map<Long, UserBriefVO> loadUserBriefs(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<UserBriefVO> briefs = userMapper.selectBriefsByIds(userIds);
+        Map<Long, UserBriefVO> map = new HashMap<>(briefs.size() * 2);
+        for (UserBriefVO brief : briefs) {
+            if (brief.getNickname() == null || brief.getNickname().isEmpty()) {
+                brief.setNickname(brief.getUsername());
+            }
+            brief.setAvatarUrl(resolveAvatarUrl(brief.getAvatarUrl()));
+            map.put(brief.getId(), brief);
+        }
+        return map;
+    }
+
+    private String resolveAvatarUrl(String avatarUrl) {
+        if (avatarUrl == null || avatarUrl.startsWith("http")) {
+            return avatarUrl;
+        }
+        return storageStrategy.getFileUrl(avatarUrl);
+    }
+}
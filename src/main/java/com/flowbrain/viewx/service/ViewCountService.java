@@ -0,0 +1,304 @@
+package com.flowbrain.viewx.service;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.flowbrain.viewx.dao.VideoMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 播放量写回缓冲服务
+ *
+ * 播放量不再在每次访问时 read-modify-write 整行 vx_videos，而是：
+ * 1. 访问时 HINCRBY 到 Redis 分片 Hash（按 videoId 取模分片）
+ * 2. 定时任务把分片改名为"落库中"，用一条 UPDATE ... FROM (VALUES ...) 批量累加到数据库，成功后删除
+ * 3. 读取时把"待落库 + 落库中"的增量合并到数据库值上，用户看到的仍是实时数字
+ * 4. 另按周期记一份只增不减的累计次数（不随落库清零），缓存页用两次读数之差刷新播放量；
+ *    每个周期一组 Hash，过期后整体删除，缓存页的键带周期号，跨周期后重新回源
+ *
+ * 落库失败时"落库中"的分片保留，下一轮优先重试（至少一次语义：
+ * UPDATE 提交后、删除分片前崩溃，该分片会被重复累加一次）
+ */
+@Slf4j
+@Service
+public class ViewCountService {
+
+    /**
+     * 取出分片待落库增量：若没有遗留的"落库中"分片，则把待落库分片改名过去，返回"落库中"分片的全部内容
+     * KEYS[1]=待落库 KEYS[2]=落库中
+     */
+    private static final DefaultRedisScript<List> TAKE_SHARD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[2]) == 0 then "
+                    + "  if redis.call('EXISTS', KEYS[1]) == 0 then return {} end "
+                    + "  redis.call('RENAME', KEYS[1], KEYS[2]) "
+                    + "end "
+                    + "return redis.call('HGETALL', KEYS[2])",
+            List.class);
+
+    private static final String FLUSH_LOCK = "video:views:flush";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisLockService redisLockService;
+
+    @Autowired
+    private VideoMapper videoMapper;
+
+    /**
+     * 分片数量
+     */
+    @Value("${viewx.video.view-count.shards:16}")
+    private int shards;
+
+    /**
+     * 累计次数的周期长度，需大于视频缓存页的过期时间
+     */
+    @Value("${viewx.video.view-count.recorded-epoch-minutes:60}")
+    private long recordedEpochMinutes;
+
+    /**
+     * 记录一次播放
+     *
+     * @param videoId 视频ID
+     * @return 当前尚未落库的播放量增量（含本次）
+     */
+    public long recordView(Long videoId) {
+        try {
+            int shard = shardOf(videoId);
+            byte[] field = rawField(videoId);
+            byte[] recordedKey = rawKey(RedisKeyConstants.Video.getRecordedViewsKey(currentEpoch(), shard));
+            // 保留两个周期，跨周期时上一周期的缓存页仍可能在读
+            long recordedTtlSeconds = Duration.ofMinutes(recordedEpochMinutes * 2).toSeconds();
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hashCommands().hIncrBy(rawKey(RedisKeyConstants.Video.getPendingViewsKey(shard)), field, 1);
+                connection.hashCommands().hGet(rawKey(RedisKeyConstants.Video.getFlushingViewsKey(shard)), field);
+                connection.hashCommands().hIncrBy(recordedKey, field, 1);
+                connection.keyCommands().expire(recordedKey, recordedTtlSeconds);
+                return null;
+            });
+            return toLong(results.get(0)) + toLong(results.get(1));
+        } catch (Exception e) {
+            // Redis 不可用时直接原子累加数据库，保证不丢计数
+            log.warn("播放量写入缓冲失败，直接写库: videoId={}", videoId, e);
+            videoMapper.incrementViewCount(videoId, 1);
+            return 0;
+        }
+    }
+
+    /**
+     * 批量查询尚未落库的播放量增量
+     *
+     * @param videoIds 视频ID集合
+     * @return videoId -> 未落库增量（无增量的视频不在结果中）
+     */
+    public Map<Long, Long> getPendingViews(Collection<Long> videoIds) {
+        if (videoIds == null || videoIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Integer, List<Long>> byShard = new LinkedHashMap<>();
+        for (Long videoId : new LinkedHashSet<>(videoIds)) {
+            byShard.computeIfAbsent(shardOf(videoId), k -> new ArrayList<>()).add(videoId);
+        }
+
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byShard.forEach((shard, ids) -> {
+                    byte[][] fields = new byte[ids.size()][];
+                    for (int i = 0; i < ids.size(); i++) {
+                        fields[i] = rawField(ids.get(i));
+                    }
+                    connection.hashCommands().hMGet(rawKey(RedisKeyConstants.Video.getPendingViewsKey(shard)), fields);
+                    connection.hashCommands().hMGet(rawKey(RedisKeyConstants.Video.getFlushingViewsKey(shard)), fields);
+                });
+                return null;
+            });
+
+            Map<Long, Long> pending = new HashMap<>();
+            int r = 0;
+            for (List<Long> ids : byShard.values()) {
+                List<?> pendingValues = (List<?>) results.get(r++);
+                List<?> flushingValues = (List<?>) results.get(r++);
+                for (int i = 0; i < ids.size(); i++) {
+                    long delta = toLong(pendingValues.get(i)) + toLong(flushingValues.get(i));
+                    if (delta != 0) {
+                        pending.put(ids.get(i), delta);
+                    }
+                }
+            }
+            return pending;
+        } catch (Exception e) {
+            log.warn("查询未落库播放量失败，返回数据库值", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 当前累计次数周期号
+     */
+    public long currentEpoch() {
+        return System.currentTimeMillis() / Duration.ofMinutes(recordedEpochMinutes).toMillis();
+    }
+
+    /**
+     * 批量查询某个周期内通过缓冲记录的累计播放次数（周期内只增不减，与是否已落库无关）
+     * 同一周期内两次查询的差值即为期间新增的播放量，供缓存页在不回源的情况下刷新播放量
+     *
+     * @return videoId -> 累计次数（无记录的视频不在结果中），Redis 不可用时返回空
+     */
+    public Map<Long, Long> getRecordedViews(Collection<Long> videoIds, long epoch) {
+        if (videoIds == null || videoIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Integer, List<Long>> byShard = new LinkedHashMap<>();
+        for (Long videoId : new LinkedHashSet<>(videoIds)) {
+            byShard.computeIfAbsent(shardOf(videoId), k -> new ArrayList<>()).add(videoId);
+        }
+
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byShard.forEach((shard, ids) -> {
+                    byte[][] fields = new byte[ids.size()][];
+                    for (int i = 0; i < ids.size(); i++) {
+                        fields[i] = rawField(ids.get(i));
+                    }
+                    connection.hashCommands().hMGet(rawKey(RedisKeyConstants.Video.getRecordedViewsKey(epoch, shard)), fields);
+                });
+                return null;
+            });
+
+            Map<Long, Long> recorded = new HashMap<>();
+            int r = 0;
+            for (List<Long> ids : byShard.values()) {
+                List<?> values = (List<?>) results.get(r++);
+                for (int i = 0; i < ids.size(); i++) {
+                    long count = toLong(values.get(i));
+                    if (count != 0) {
+                        recorded.put(ids.get(i), count);
+                    }
+                }
+            }
+            return recorded;
+        } catch (Exception e) {
+            log.warn("查询累计播放次数失败", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 视频删除后清除其累计次数（当前和上一周期）
+     */
+    public void onVideoDeleted(Long videoId) {
+        int shard = shardOf(videoId);
+        byte[] field = rawField(videoId);
+        long epoch = currentEpoch();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hashCommands().hDel(rawKey(RedisKeyConstants.Video.getRecordedViewsKey(epoch, shard)), field);
+                connection.hashCommands().hDel(rawKey(RedisKeyConstants.Video.getRecordedViewsKey(epoch - 1, shard)), field);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("清除视频累计播放次数失败: videoId={}", videoId, e);
+        }
+    }
+
+    /**
+     * 定时把缓冲的播放量批量写回数据库，默认每 5 秒一次
+     * 多实例部署时通过分布式锁保证同一时刻只有一个实例在落库
+     */
+    @Scheduled(fixedDelayString = "${viewx.video.view-count.flush-interval-ms:5000}")
+    public void flush() {
+        String lockToken = redisLockService.tryLock(FLUSH_LOCK, Duration.ofMinutes(1));
+        if (lockToken == null) {
+            return;
+        }
+
+        try {
+            long total = 0;
+            for (int shard = 0; shard < shards; shard++) {
+                total += flushShard(shard);
+            }
+            if (total > 0) {
+                log.debug("播放量落库完成: {} 次播放", total);
+            }
+        } catch (Exception e) {
+            log.error("播放量落库失败，下一轮重试", e);
+        } finally {
+            redisLockService.unlock(FLUSH_LOCK, lockToken);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private long flushShard(int shard) {
+        String pendingKey = RedisKeyConstants.Video.getPendingViewsKey(shard);
+        String flushingKey = RedisKeyConstants.Video.getFlushingViewsKey(shard);
+
+        // 结果按元素用字符串反序列化：HGETALL 返回 field、value 交替的列表
+        RedisSerializer stringSerializer = redisTemplate.getStringSerializer();
+        List<?> entries = redisTemplate.execute(TAKE_SHARD_SCRIPT, stringSerializer, stringSerializer,
+                List.of(pendingKey, flushingKey));
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        long total = 0;
+        for (int i = 0; i + 1 < entries.size(); i += 2) {
+            long delta = Long.parseLong(entries.get(i + 1).toString());
+            if (delta != 0) {
+                deltas.put(Long.parseLong(entries.get(i).toString()), delta);
+                total += delta;
+            }
+        }
+
+        // 每个分片一条 UPDATE，语句本身是原子的：UPDATE 失败时整片保留重试，不会少算
+        // UPDATE 已提交但删除"落库中"分片前进程崩溃时，下一轮会再累加一次（至少一次语义，播放量可接受）
+        // 单分片行数过多时应调大分片数（PostgreSQL 单条语句绑定参数上限 65535）
+        if (!deltas.isEmpty()) {
+            videoMapper.batchIncrementViewCount(deltas);
+        }
+
+        // 写入成功后才删除"落库中"分片
+        redisTemplate.delete(flushingKey);
+        return total;
+    }
+
+    private int shardOf(Long videoId) {
+        return (int) Math.floorMod(videoId, (long) shards);
+    }
+
+    private long toLong(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+
+    private byte[] rawKey(String key) {
+        return redisTemplate.getStringSerializer().serialize(key);
+    }
+
+    private byte[] rawField(Long videoId) {
+        return redisTemplate.getStringSerializer().serialize(videoId.toString());
+    }
+}
@@ -0,0 +1,479 @@
+package com.flowbrain.viewx.service.chat;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.flowbrain.viewx.dao.ConversationMapper;
+import com.flowbrain.viewx.dao.MessageMapper;
+import com.flowbrain.viewx.pojo.entity.Message;
+import com.flowbrain.viewx.pojo.vo.ConversationVO;
+import com.flowbrain.viewx.pojo.vo.MessageVO;
+import com.flowbrain.viewx.pojo.vo.UserBriefVO;
+import com.flowbrain.viewx.service.VideoHydrationService;
+import com.flowbrain.viewx.util.CustomJsonRedisSerializer;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 聊天热路径缓存
+ *
+ * 1. 用户简要信息：进程内 Caffeine 缓存，发送消息时的接收者校验和发送者资料不访问数据库
+ * 2. 会话最近消息：Redis ZSet（messageId -> 发送时间）+ Hash（messageId -> MessageVO），
+ *    发送时写入并裁剪到固定条数；首次读取时从数据库加载最近一段并打上 _seeded 标记，
+ *    之后聊天记录首页直接由缓存返回（包括尚未落库的消息）。撤回、删除、已读时原地修改对应条目，
+ *    不整体失效，避免丢掉缓存中尚未落库的消息
+ * 3. 未读计数：Redis Hash（对方用户ID -> 未读数），发送时只对已加载的 Hash 累加，
+ *    未加载时从会话表读取；偏差在过期后重新加载时消失
+ * 4. 非互关首条消息限制：Redis 标记代替每次 COUNT 查询
+ */
+@Slf4j
+@Service
+public class ChatCacheService {
+
+    /**
+     * 最近消息 Hash 中的加载标记字段：值为 all 表示缓存包含会话全部消息，1 表示包含最近一段
+     */
+    private static final String SEEDED_FIELD = "_seeded";
+
+    private static final String SEEDED_ALL = "all";
+
+    private static final String SEEDED_RECENT = "1";
+
+    /**
+     * 未读 Hash 中的占位字段（值为 0），使"没有未读"的用户 Hash 也存在
+     */
+    private static final String UNREAD_PLACEHOLDER = "_";
+
+    /**
+     * KEYS[1]=最近消息 ZSet KEYS[2]=最近消息 Hash
+     * ARGV[1]=保留条数 ARGV[2]=过期秒数 ARGV[3]=加载标记（空串不修改） ARGV[4..]=messageId, score, JSON 三个一组
+     */
+    private static final String PUT_RECENT_SCRIPT =
+            "for i = 4, #ARGV, 3 do "
+                    + "  redis.call('ZADD', KEYS[1], ARGV[i + 1], ARGV[i]) "
+                    + "  redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 2]) "
+                    + "end "
+                    + "if ARGV[3] ~= '' then redis.call('HSET', KEYS[2], '" + SEEDED_FIELD + "', ARGV[3]) end "
+                    + "local overflow = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[1]) "
+                    + "if overflow > 0 then "
+                    + "  local old = redis.call('ZRANGE', KEYS[1], 0, overflow - 1) "
+                    + "  redis.call('ZREMRANGEBYRANK', KEYS[1], 0, overflow - 1) "
+                    + "  redis.call('HDEL', KEYS[2], unpack(old)) "
+                    + "  if redis.call('HGET', KEYS[2], '" + SEEDED_FIELD + "') == '" + SEEDED_ALL + "' then "
+                    + "    redis.call('HSET', KEYS[2], '" + SEEDED_FIELD + "', '" + SEEDED_RECENT + "') "
+                    + "  end "
+                    + "end "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+                    + "redis.call('EXPIRE', KEYS[2], ARGV[2]) "
+                    + "return 1";
+
+    /**
+     * KEYS[1]=最近消息 ZSet KEYS[2]=最近消息 Hash ARGV[1]=条数
+     * 返回 {加载标记, 消息JSON...}，未加载时返回空列表
+     */
+    private static final String READ_RECENT_SCRIPT =
+            "local seeded = redis.call('HGET', KEYS[2], '" + SEEDED_FIELD + "') "
+                    + "if not seeded then return {} end "
+                    + "local result = {seeded} "
+                    + "local ids = redis.call('ZREVRANGE', KEYS[1], 0, tonumber(ARGV[1]) - 1) "
+                    + "if #ids > 0 then "
+                    + "  local bodies = redis.call('HMGET', KEYS[2], unpack(ids)) "
+                    + "  for i = 1, #bodies do "
+                    + "    if bodies[i] then result[#result + 1] = bodies[i] end "
+                    + "  end "
+                    + "end "
+                    + "return result";
+
+    /**
+     * 只覆盖仍在缓存中的条目（并发裁剪掉的不再写回）
+     * KEYS[1]=最近消息 Hash ARGV[1..]=messageId, JSON 两个一组
+     */
+    private static final String REPLACE_RECENT_SCRIPT =
+            "local n = 0 "
+                    + "for i = 1, #ARGV, 2 do "
+                    + "  if redis.call('HEXISTS', KEYS[1], ARGV[i]) == 1 then "
+                    + "    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) "
+                    + "    n = n + 1 "
+                    + "  end "
+                    + "end "
+                    + "return n";
+
+    /**
+     * KEYS[1]=未读 Hash ARGV[1]=对方用户ID
+     */
+    private static final String INCREMENT_UNREAD_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+                    + "redis.call('HINCRBY', KEYS[1], ARGV[1], 1) "
+                    + "return 1";
+
+    private static final CustomJsonRedisSerializer<MessageVO> MESSAGE_SERIALIZER =
+            new CustomJsonRedisSerializer<>(MessageVO.class, false);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private VideoHydrationService videoHydrationService;
+
+    /**
+     * 每个会话缓存的最近消息条数
+     */
+    @Value("${viewx.chat.recent.size:200}")
+    private int recentSize;
+
+    @Value("${viewx.chat.recent.ttl-hours:24}")
+    private long recentTtlHours;
+
+    @Value("${viewx.chat.unread.ttl-minutes:30}")
+    private long unreadTtlMinutes;
+
+    @Value("${viewx.chat.sent-marker-ttl-days:30}")
+    private long sentMarkerTtlDays;
+
+    private final LoadingCache<Long, UserBriefVO> users;
+
+    public ChatCacheService(@Value("${viewx.chat.user-cache.size:10000}") long userCacheSize,
+                            @Value("${viewx.chat.user-cache.ttl-minutes:5}") long userCacheTtlMinutes) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(userCacheSize)
+                .expireAfterWrite(Duration.ofMinutes(userCacheTtlMinutes))
+                .build(userId -> videoHydrationService.loadUserBriefs(Collections.singleton(userId)).get(userId));
+    }
+
+    /**
+     * 用户简要信息（昵称回退为用户名，头像为完整URL）
+     *
+     * @return 用户不存在时返回 null
+     */
+    public UserBriefVO getUserBrief(Long userId) {
+        return userId == null ? null : users.get(userId);
+    }
+
+    /**
+     * 用户名（WebSocket 推送的用户目的地）
+     *
+     * @return 用户不存在时返回 null
+     */
+    public String getUsername(Long userId) {
+        UserBriefVO user = getUserBrief(userId);
+        return user == null ? null : user.getUsername();
+    }
+
+    /**
+     * 非互关用户发送消息前调用：占用"只能发送一条"的名额
+     *
+     * @return true 表示这是第一条消息，允许发送
+     */
+    public boolean acquireFirstMessage(Long senderId, Long receiverId) {
+        String key = RedisKeyConstants.Chat.getSentMarkerKey(senderId, receiverId);
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                return false;
+            }
+            Duration ttl = Duration.ofDays(sentMarkerTtlDays);
+            if (countSent(senderId, receiverId) > 0) {
+                redisTemplate.opsForValue().set(key, "1", ttl);
+                return false;
+            }
+            // 并发发送时只有一条能占到名额
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, "1", ttl));
+        } catch (Exception e) {
+            log.warn("读取消息发送标记失败，查询数据库: {} -> {}", senderId, receiverId, e);
+            return countSent(senderId, receiverId) == 0;
+        }
+    }
+
+    /**
+     * 消息发送后写入会话最近消息并累加接收者未读数（一次 pipeline）
+     */
+    public void onMessageSent(MessageVO message) {
+        byte[][] recentKeysAndArgs = {
+                raw(RedisKeyConstants.Chat.getRecentKey(message.getSenderId(), message.getReceiverId())),
+                raw(RedisKeyConstants.Chat.getRecentDataKey(message.getSenderId(), message.getReceiverId())),
+                raw(String.valueOf(recentSize)),
+                raw(String.valueOf(Duration.ofHours(recentTtlHours).toSeconds())),
+                raw(""),
+                raw(String.valueOf(message.getId())),
+                raw(String.valueOf(toScore(message))),
+                MESSAGE_SERIALIZER.serialize(message)
+        };
+        byte[][] unreadKeysAndArgs = {
+                raw(RedisKeyConstants.Chat.getUnreadKey(message.getReceiverId())),
+                raw(String.valueOf(message.getSenderId()))
+        };
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.scriptingCommands().eval(PUT_RECENT_SCRIPT.getBytes(StandardCharsets.UTF_8),
+                        ReturnType.INTEGER, 2, recentKeysAndArgs);
+                connection.scriptingCommands().eval(INCREMENT_UNREAD_SCRIPT.getBytes(StandardCharsets.UTF_8),
+                        ReturnType.INTEGER, 1, unreadKeysAndArgs);
+                return null;
+            });
+        } catch (Exception e) {
+            // 缓存中缺少的消息会在会话缓存失效后从数据库重新加载
+            log.warn("写入聊天缓存失败: messageId={}", message.getId(), e);
+            evictConversation(message.getSenderId(), message.getReceiverId());
+        }
+    }
+
+    /**
+     * 会话最近消息（按发送时间倒序）
+     *
+     * @param limit  条数，超过缓存容量时返回 null
+     * @param loader 缓存未加载时从数据库读取最近 n 条消息
+     * @return 缓存无法回答时返回 null，调用方应查询数据库
+     */
+    public List<MessageVO> getRecentMessages(Long userId, Long otherUserId, int limit,
+                                             IntFunction<List<MessageVO>> loader) {
+        if (limit > recentSize) {
+            return null;
+        }
+        try {
+            List<MessageVO> cached = readRecent(userId, otherUserId, limit);
+            if (cached != null) {
+                return cached;
+            }
+            List<MessageVO> loaded = loader.apply(recentSize);
+            seedRecent(userId, otherUserId, loaded, loaded.size() < recentSize ? SEEDED_ALL : SEEDED_RECENT);
+            // 重新读取，合并加载期间发送、尚未落库的消息
+            return readRecent(userId, otherUserId, limit);
+        } catch (Exception e) {
+            log.warn("读取会话最近消息缓存失败，查询数据库: {} <-> {}", userId, otherUserId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 标记已读：把缓存中对方发给 readerId 的消息改为已读
+     */
+    public void markReadInRecent(Long readerId, Long otherUserId) {
+        try {
+            Map<byte[], byte[]> entries = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                    connection.hashCommands().hGetAll(raw(RedisKeyConstants.Chat.getRecentDataKey(readerId, otherUserId))));
+            if (entries == null || entries.isEmpty()) {
+                return;
+            }
+            List<MessageVO> changed = new ArrayList<>();
+            for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+                if (SEEDED_FIELD.equals(new String(entry.getKey(), StandardCharsets.UTF_8))) {
+                    continue;
+                }
+                MessageVO message = MESSAGE_SERIALIZER.deserialize(entry.getValue());
+                if (message != null && readerId.equals(message.getReceiverId())
+                        && !Boolean.TRUE.equals(message.getIsRead())) {
+                    message.setIsRead(true);
+                    changed.add(message);
+                }
+            }
+            replaceRecent(readerId, otherUserId, changed);
+        } catch (Exception e) {
+            log.warn("更新会话最近消息已读状态失败: {} <- {}", readerId, otherUserId, e);
+            evictConversation(readerId, otherUserId);
+        }
+    }
+
+    /**
+     * 消息撤回后更新缓存中的对应条目
+     *
+     * @param message 撤回后的消息（含撤回时间）
+     */
+    public void onMessageRecalled(Message message) {
+        Long senderId = message.getSenderId();
+        Long receiverId = message.getReceiverId();
+        try {
+            byte[] body = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.hashCommands().hGet(
+                    raw(RedisKeyConstants.Chat.getRecentDataKey(senderId, receiverId)),
+                    raw(String.valueOf(message.getId()))));
+            MessageVO cached = body == null ? null : MESSAGE_SERIALIZER.deserialize(body);
+            if (cached == null) {
+                return;
+            }
+            cached.setIsRecalled(true);
+            cached.setRecalledAt(message.getRecalledAt());
+            replaceRecent(senderId, receiverId, Collections.singletonList(cached));
+        } catch (Exception e) {
+            log.warn("更新会话最近消息撤回状态失败: messageId={}", message.getId(), e);
+            evictConversation(senderId, receiverId);
+        }
+    }
+
+    /**
+     * 消息删除后从缓存中移除对应条目
+     */
+    public void onMessageDeleted(Message message) {
+        byte[] member = raw(String.valueOf(message.getId()));
+        byte[] recentKey = raw(RedisKeyConstants.Chat.getRecentKey(message.getSenderId(), message.getReceiverId()));
+        byte[] dataKey = raw(RedisKeyConstants.Chat.getRecentDataKey(message.getSenderId(), message.getReceiverId()));
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.zSetCommands().zRem(recentKey, member);
+                connection.hashCommands().hDel(dataKey, member);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("移除会话最近消息失败: messageId={}", message.getId(), e);
+            evictConversation(message.getSenderId(), message.getReceiverId());
+        }
+    }
+
+    /**
+     * 整体失效会话最近消息缓存（只在缓存写入失败时使用，缓存中尚未落库的消息会暂时看不到）
+     */
+    public void evictConversation(Long userId, Long otherUserId) {
+        try {
+            redisTemplate.delete(List.of(RedisKeyConstants.Chat.getRecentKey(userId, otherUserId),
+                    RedisKeyConstants.Chat.getRecentDataKey(userId, otherUserId)));
+        } catch (Exception e) {
+            log.warn("清除会话最近消息缓存失败: {} <-> {}", userId, otherUserId, e);
+        }
+    }
+
+    /**
+     * 用户总未读数
+     */
+    public int getTotalUnread(Long userId) {
+        String key = RedisKeyConstants.Chat.getUnreadKey(userId);
+        try {
+            List<Object> values = redisTemplate.opsForHash().values(key);
+            if (values.isEmpty()) {
+                return loadUnread(userId);
+            }
+            int total = 0;
+            for (Object value : values) {
+                total += Integer.parseInt(value.toString());
+            }
+            return total;
+        } catch (Exception e) {
+            log.warn("读取未读计数缓存失败，查询数据库: userId={}", userId, e);
+            return messageMapper.getTotalUnreadCount(userId);
+        }
+    }
+
+    /**
+     * 清空用户与某个对方的未读数
+     */
+    public void clearUnread(Long userId, Long otherUserId) {
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.hashCommands()
+                    .hDel(raw(RedisKeyConstants.Chat.getUnreadKey(userId)), raw(String.valueOf(otherUserId))));
+        } catch (Exception e) {
+            log.warn("清除未读计数缓存失败: userId={}", userId, e);
+        }
+    }
+
+    private int loadUnread(Long userId) {
+        List<ConversationVO> rows = conversationMapper.selectUnreadCounts(userId);
+        Map<byte[], byte[]> hash = new HashMap<>();
+        hash.put(raw(UNREAD_PLACEHOLDER), raw("0"));
+        int total = 0;
+        for (ConversationVO row : rows) {
+            hash.put(raw(String.valueOf(row.getOtherUserId())), raw(String.valueOf(row.getUnreadCount())));
+            total += row.getUnreadCount();
+        }
+        byte[] key = raw(RedisKeyConstants.Chat.getUnreadKey(userId));
+        long ttlSeconds = Duration.ofMinutes(unreadTtlMinutes).toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hMSet(key, hash);
+            connection.keyCommands().expire(key, ttlSeconds);
+            return null;
+        });
+        return total;
+    }
+
+    /**
+     * @return 缓存未加载或条数不足以确定这一页时返回 null
+     */
+    private List<MessageVO> readRecent(Long userId, Long otherUserId, int limit) {
+        byte[][] keysAndArgs = {
+                raw(RedisKeyConstants.Chat.getRecentKey(userId, otherUserId)),
+                raw(RedisKeyConstants.Chat.getRecentDataKey(userId, otherUserId)),
+                raw(String.valueOf(limit))
+        };
+        List<byte[]> result = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.scriptingCommands().eval(READ_RECENT_SCRIPT.getBytes(StandardCharsets.UTF_8),
+                        ReturnType.MULTI, 2, keysAndArgs));
+        if (result == null || result.isEmpty()) {
+            return null;
+        }
+        boolean all = SEEDED_ALL.equals(new String(result.get(0), StandardCharsets.UTF_8));
+        if (!all && result.size() - 1 < limit) {
+            return null;
+        }
+        List<MessageVO> messages = new ArrayList<>(result.size() - 1);
+        for (int i = 1; i < result.size(); i++) {
+            MessageVO message = MESSAGE_SERIALIZER.deserialize(result.get(i));
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private void replaceRecent(Long userId, Long otherUserId, List<MessageVO> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        byte[][] keysAndArgs = new byte[1 + messages.size() * 2][];
+        keysAndArgs[0] = raw(RedisKeyConstants.Chat.getRecentDataKey(userId, otherUserId));
+        int i = 1;
+        for (MessageVO message : messages) {
+            keysAndArgs[i++] = raw(String.valueOf(message.getId()));
+            keysAndArgs[i++] = MESSAGE_SERIALIZER.serialize(message);
+        }
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.scriptingCommands().eval(
+                REPLACE_RECENT_SCRIPT.getBytes(StandardCharsets.UTF_8), ReturnType.INTEGER, 1, keysAndArgs));
+    }
+
+    private void seedRecent(Long userId, Long otherUserId, List<MessageVO> messages, String seeded) {
+        byte[][] keysAndArgs = new byte[5 + messages.size() * 3][];
+        keysAndArgs[0] = raw(RedisKeyConstants.Chat.getRecentKey(userId, otherUserId));
+        keysAndArgs[1] = raw(RedisKeyConstants.Chat.getRecentDataKey(userId, otherUserId));
+        keysAndArgs[2] = raw(String.valueOf(recentSize));
+        keysAndArgs[3] = raw(String.valueOf(Duration.ofHours(recentTtlHours).toSeconds()));
+        keysAndArgs[4] = raw(seeded);
+        int i = 5;
+        for (MessageVO message : messages) {
+            keysAndArgs[i++] = raw(String.valueOf(message.getId()));
+            keysAndArgs[i++] = raw(String.valueOf(toScore(message)));
+            keysAndArgs[i++] = MESSAGE_SERIALIZER.serialize(message);
+        }
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.scriptingCommands().eval(
+                PUT_RECENT_SCRIPT.getBytes(StandardCharsets.UTF_8), ReturnType.INTEGER, 2, keysAndArgs));
+    }
+
+    private long countSent(Long senderId, Long receiverId) {
+        return messageMapper.selectCount(new QueryWrapper<Message>()
+                .eq("sender_id", senderId)
+                .eq("receiver_id", receiverId));
+    }
+
+    private long toScore(MessageVO message) {
+        return message.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private byte[] raw(String value) {
+        return redisTemplate.getStringSerializer().serialize(value);
+    }
+}
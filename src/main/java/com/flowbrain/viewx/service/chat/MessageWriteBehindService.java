@@ -0,0 +1,357 @@
+package com.flowbrain.viewx.service.chat;
+
+import com.flowbrain.viewx.common.RedisKeyConstants;
+import com.flowbrain.viewx.dao.ConversationMapper;
+import com.flowbrain.viewx.dao.MessageMapper;
+import com.flowbrain.viewx.exception.BusinessException;
+import com.flowbrain.viewx.pojo.entity.Conversation;
+import com.flowbrain.viewx.pojo.entity.Message;
+import com.flowbrain.viewx.service.RedisLockService;
+import com.flowbrain.viewx.util.CustomJsonRedisSerializer;
+import com.flowbrain.viewx.util.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 聊天消息异步批量落库服务
+ *
+ * 发送消息不再同步写 vx_messages / vx_conversations：
+ * 1. 发送时消息（已分配雪花ID和时间）RPUSH 到 Redis 待落库列表，Redis 不可用时直接写库
+ * 2. 定时任务把待落库列表改名为"落库中"，按批 INSERT ... ON CONFLICT DO NOTHING RETURNING id，
+ *    只对实际插入的消息累加会话未读数和最后消息，成功后删除"落库中"列表
+ * 3. 撤回、删除依赖数据库中的消息，由控制器在事务之外先调用 flushNow() 把积压消息落库
+ * 4. 标记已读不等待落库：记录已读水位，落库时早于水位的消息直接写为已读、不累加未读数
+ *
+ * 落库失败时"落库中"列表保留，下一轮优先重试；重试时已提交的消息被忽略，未读数不会重复累加。
+ * 某批因数据本身的错误（非法字符、约束冲突等）写入失败时对半拆分重试，最终定位到的坏消息
+ * 和无法解析的内容移入死信列表，不阻塞其余消息
+ */
+@Slf4j
+@Service
+public class MessageWriteBehindService {
+
+    /**
+     * 取出待落库消息：若没有遗留的"落库中"列表，则把待落库列表改名过去，返回"落库中"列表的全部内容
+     * KEYS[1]=待落库 KEYS[2]=落库中
+     */
+    private static final String TAKE_SCRIPT =
+            "if redis.call('EXISTS', KEYS[2]) == 0 then "
+                    + "  if redis.call('EXISTS', KEYS[1]) == 0 then return {} end "
+                    + "  redis.call('RENAME', KEYS[1], KEYS[2]) "
+                    + "end "
+                    + "return redis.call('LRANGE', KEYS[2], 0, -1)";
+
+    private static final String FLUSH_LOCK = "chat:messages:flush";
+
+    private static final CustomJsonRedisSerializer<Message> MESSAGE_SERIALIZER =
+            new CustomJsonRedisSerializer<>(Message.class, false);
+
+    /**
+     * 已读水位保留时间，远大于消息在缓冲中停留的时间
+     */
+    private static final Duration READ_MARK_TTL = Duration.ofHours(1);
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisLockService redisLockService;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    /**
+     * 独立事务：每批消息单独提交，不加入调用方可能存在的事务
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 每条 INSERT 写入的消息数上限
+     */
+    @Value("${viewx.chat.write-behind.batch-size:500}")
+    private int batchSize;
+
+    public MessageWriteBehindService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 消息加入待落库列表
+     */
+    public void enqueue(Message message) {
+        try {
+            byte[] body = MESSAGE_SERIALIZER.serialize(message);
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.listCommands()
+                    .rPush(raw(RedisKeyConstants.Chat.getPendingMessagesKey()), body));
+        } catch (Exception e) {
+            // Redis 不可用时直接写库，保证不丢消息
+            log.warn("消息写入落库缓冲失败，直接写库: messageId={}", message.getId(), e);
+            persist(Collections.singletonList(message));
+        }
+    }
+
+    /**
+     * 定时把缓冲的消息批量写入数据库
+     * 多实例部署时通过分布式锁保证同一时刻只有一个实例在落库
+     */
+    @Scheduled(fixedDelayString = "${viewx.chat.write-behind.flush-interval-ms:500}")
+    public void flush() {
+        tryFlush();
+    }
+
+    /**
+     * 立即把积压的消息落库，必须在事务之外调用
+     *
+     * @throws BusinessException 其他节点正在落库或落库失败，调用方应稍后重试
+     */
+    public void flushNow() {
+        Long backlog = redisTemplate.execute((RedisCallback<Long>) connection -> connection.keyCommands().exists(
+                raw(RedisKeyConstants.Chat.getPendingMessagesKey()),
+                raw(RedisKeyConstants.Chat.getFlushingMessagesKey())));
+        if (backlog != null && backlog == 0) {
+            return;
+        }
+        if (!tryFlush()) {
+            throw new BusinessException(503, "消息正在同步，请稍后重试");
+        }
+    }
+
+    /**
+     * 记录已读水位：此刻之前发送、尚未落库的消息落库时直接写为已读
+     */
+    public void markRead(Long readerId, Long otherUserId) {
+        try {
+            redisTemplate.opsForValue().set(RedisKeyConstants.Chat.getReadMarkKey(readerId, otherUserId),
+                    String.valueOf(System.currentTimeMillis()), READ_MARK_TTL);
+        } catch (Exception e) {
+            log.warn("记录已读水位失败: {} <- {}", readerId, otherUserId, e);
+        }
+    }
+
+    /**
+     * @return 是否拿到落库锁并执行了一轮落库（包括无消息可落的情况）
+     */
+    private boolean tryFlush() {
+        String lockToken = redisLockService.tryLock(FLUSH_LOCK, Duration.ofMinutes(1));
+        if (lockToken == null) {
+            return false;
+        }
+
+        try {
+            int persisted = flushPending();
+            if (persisted > 0) {
+                log.debug("消息落库完成: {} 条", persisted);
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("消息落库失败，下一轮重试", e);
+            return false;
+        } finally {
+            redisLockService.unlock(FLUSH_LOCK, lockToken);
+        }
+    }
+
+    private int flushPending() {
+        byte[][] keys = {
+                raw(RedisKeyConstants.Chat.getPendingMessagesKey()),
+                raw(RedisKeyConstants.Chat.getFlushingMessagesKey())
+        };
+        List<byte[]> bodies = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.scriptingCommands().eval(TAKE_SCRIPT.getBytes(StandardCharsets.UTF_8),
+                        ReturnType.MULTI, 2, keys));
+        if (bodies == null || bodies.isEmpty()) {
+            return 0;
+        }
+
+        List<Message> messages = new ArrayList<>(bodies.size());
+        for (byte[] body : bodies) {
+            try {
+                Message message = MESSAGE_SERIALIZER.deserialize(body);
+                if (message != null) {
+                    messages.add(message);
+                }
+            } catch (Exception e) {
+                log.error("无法解析待落库消息，移入死信列表", e);
+                deadLetter(body);
+            }
+        }
+        int persisted = persist(messages);
+
+        // 写入成功后才删除"落库中"列表
+        redisTemplate.delete(RedisKeyConstants.Chat.getFlushingMessagesKey());
+        return persisted;
+    }
+
+    /**
+     * 分批写入消息并更新会话，每批一个事务
+     *
+     * @return 实际插入的消息数
+     */
+    private int persist(List<Message> messages) {
+        applyReadMarks(messages);
+        int persisted = 0;
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            persisted += persistIsolating(messages.subList(from, Math.min(from + batchSize, messages.size())));
+        }
+        return persisted;
+    }
+
+    /**
+     * 写入一批消息；数据错误时对半拆分，单条仍失败则移入死信列表
+     * 连接失败等非数据错误直接抛出，整个"落库中"列表下一轮重试
+     */
+    private int persistIsolating(List<Message> batch) {
+        try {
+            return persistBatch(batch);
+        } catch (RuntimeException e) {
+            if (!isDataError(e)) {
+                throw e;
+            }
+            if (batch.size() == 1) {
+                Message message = batch.get(0);
+                log.error("消息无法落库，移入死信列表: messageId={}, senderId={}, receiverId={}",
+                        message.getId(), message.getSenderId(), message.getReceiverId(), e);
+                deadLetter(MESSAGE_SERIALIZER.serialize(message));
+                return 0;
+            }
+            int middle = batch.size() / 2;
+            return persistIsolating(batch.subList(0, middle)) + persistIsolating(batch.subList(middle, batch.size()));
+        }
+    }
+
+    private int persistBatch(List<Message> batch) {
+        Integer inserted = transactionTemplate.execute(status -> {
+            Set<Long> insertedIds = new HashSet<>(messageMapper.insertMessages(batch));
+            if (insertedIds.isEmpty()) {
+                return 0;
+            }
+            conversationMapper.upsertConversations(toConversations(batch, insertedIds));
+            return insertedIds.size();
+        });
+        return inserted == null ? 0 : inserted;
+    }
+
+    /**
+     * 是否为数据本身的错误（约束冲突、非法字符等），重试不会成功
+     */
+    private boolean isDataError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataIntegrityViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 坏消息写入死信列表；写入失败时抛出，"落库中"列表保留，下一轮重试
+     */
+    private void deadLetter(byte[] body) {
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.listCommands()
+                .rPush(raw(RedisKeyConstants.Chat.getDeadMessagesKey()), body));
+    }
+
+    /**
+     * 早于接收方已读水位的消息标记为已读（一次 MGET）
+     */
+    private void applyReadMarks(List<Message> messages) {
+        List<String> keys = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+        for (Message message : messages) {
+            String key = RedisKeyConstants.Chat.getReadMarkKey(message.getReceiverId(), message.getSenderId());
+            if (indexes.putIfAbsent(key, keys.size()) == null) {
+                keys.add(key);
+            }
+        }
+        List<Object> marks;
+        try {
+            marks = redisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.warn("读取已读水位失败，消息按未读写入", e);
+            return;
+        }
+        if (marks == null) {
+            return;
+        }
+        for (Message message : messages) {
+            Object mark = marks.get(indexes.get(
+                    RedisKeyConstants.Chat.getReadMarkKey(message.getReceiverId(), message.getSenderId())));
+            if (mark != null && message.getCreatedAt() != null && toMillis(message.getCreatedAt())
+                    <= Long.parseLong(mark.toString())) {
+                message.setIsRead(true);
+            }
+        }
+    }
+
+    /**
+     * 按用户对聚合：未读数按接收方累加（已读的消息不计），最后一条消息取时间最新的一条
+     */
+    private List<Conversation> toConversations(List<Message> messages, Set<Long> insertedIds) {
+        Map<String, Conversation> byPair = new LinkedHashMap<>();
+        for (Message message : messages) {
+            if (!insertedIds.contains(message.getId())) {
+                continue;
+            }
+            Long user1Id = Math.min(message.getSenderId(), message.getReceiverId());
+            Long user2Id = Math.max(message.getSenderId(), message.getReceiverId());
+            Conversation conversation = byPair.computeIfAbsent(user1Id + ":" + user2Id, k -> {
+                Conversation c = new Conversation();
+                c.setId(IdGenerator.nextId());
+                c.setUser1Id(user1Id);
+                c.setUser2Id(user2Id);
+                c.setUnreadCountUser1(0);
+                c.setUnreadCountUser2(0);
+                return c;
+            });
+            if (conversation.getLastMessageTime() == null
+                    || !message.getCreatedAt().isBefore(conversation.getLastMessageTime())) {
+                conversation.setLastMessageId(message.getId());
+                conversation.setLastMessageTime(message.getCreatedAt());
+            }
+            if (Boolean.TRUE.equals(message.getIsRead())) {
+                continue;
+            }
+            if (message.getReceiverId().equals(user1Id)) {
+                conversation.setUnreadCountUser1(conversation.getUnreadCountUser1() + 1);
+            } else {
+                conversation.setUnreadCountUser2(conversation.getUnreadCountUser2() + 1);
+            }
+        }
+        return new ArrayList<>(byPair.values());
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private byte[] raw(String value) {
+        return redisTemplate.getStringSerializer().serialize(value);
+    }
+}
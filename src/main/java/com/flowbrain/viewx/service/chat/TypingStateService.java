@@ -0,0 +1,220 @@
+package com.flowbrain.viewx.service.chat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 正在输入状态合并服务
+ *
+ * 客户端每次按键都会发送 /app/chat.typing，这里按（发送者，接收者）合并：
+ * 1. 首个信号推送"开始输入"（/queue/typing，内容为发送者ID，与原协议一致）
+ * 2. 之后的信号只刷新最后输入时间，不推送；持续输入时每个刷新间隔最多再推送一次，
+ *    防止客户端的自动消失计时（3 秒）把状态清掉
+ * 3. 超过闲置时间没有新信号，或发送者发出了消息，推送"停止输入"（/queue/typing-stop）
+ *
+ * 超时检测使用单个时间轮：每个（发送者，接收者）只占一个槽位条目，由一个专用线程按刻度推进，
+ * 不为每个会话创建定时任务，也不与其他 @Scheduled 任务争用共享调度线程池。状态只保存在本节点内存中，
+ * 同一发送者的帧总是由其 WebSocket 会话所在节点处理
+ */
+@Slf4j
+@Service
+public class TypingStateService {
+
+    private static final String TYPING_DESTINATION = "/queue/typing";
+
+    private static final String TYPING_STOP_DESTINATION = "/queue/typing-stop";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ChatCacheService chatCacheService;
+
+    private final long tickMs;
+
+    private final long idleTimeoutMs;
+
+    private final long refreshIntervalMs;
+
+    /**
+     * 正在输入的会话，key 为 "发送者:接收者"
+     */
+    private final Map<String, TypingState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 时间轮槽位，第 n 个刻度到期的条目放在 wheel[n % wheel.length]
+     */
+    private final Queue<TypingState>[] wheel;
+
+    private final long startMs = System.currentTimeMillis();
+
+    /**
+     * 已处理到的刻度，只由时间轮线程推进
+     */
+    private volatile long currentTick;
+
+    /**
+     * 时间轮专用的单线程调度器
+     */
+    private ScheduledExecutorService ticker;
+
+    @SuppressWarnings("unchecked")
+    public TypingStateService(@Value("${viewx.chat.typing.tick-ms:100}") long tickMs,
+                              @Value("${viewx.chat.typing.idle-timeout-ms:2500}") long idleTimeoutMs,
+                              @Value("${viewx.chat.typing.refresh-interval-ms:2000}") long refreshIntervalMs) {
+        this.tickMs = Math.max(tickMs, 10);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.refreshIntervalMs = refreshIntervalMs;
+        // 槽位数覆盖最长的到期时间，条目在一圈之内必然被处理
+        int slots = (int) (Math.max(idleTimeoutMs, refreshIntervalMs) / this.tickMs) + 2;
+        this.wheel = new Queue[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * 收到正在输入信号
+     */
+    public void onTyping(Long senderId, Long receiverId) {
+        if (senderId == null || receiverId == null || senderId.equals(receiverId)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String key = senderId + ":" + receiverId;
+        TypingState existing = states.get(key);
+        if (existing != null) {
+            // 合并：只记录时间，由时间轮决定是否刷新或停止
+            existing.lastSignalAt = now;
+            return;
+        }
+
+        String receiverName = chatCacheService.getUsername(receiverId);
+        if (receiverName == null) {
+            return;
+        }
+        TypingState state = new TypingState(key, senderId, receiverName, now);
+        if (states.putIfAbsent(key, state) != null) {
+            return;
+        }
+        schedule(state, now + Math.min(idleTimeoutMs, refreshIntervalMs));
+        send(state, TYPING_DESTINATION);
+    }
+
+    /**
+     * 发送者已发出消息，立即结束正在输入状态
+     */
+    public void stop(Long senderId, Long receiverId) {
+        TypingState state = states.remove(senderId + ":" + receiverId);
+        if (state != null) {
+            // 时间轮中的条目在到期时发现已不在 states 中，直接丢弃
+            send(state, TYPING_STOP_DESTINATION);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * 推进时间轮，处理到期条目（落后时逐个刻度追赶）
+     */
+    void tick() {
+        long targetTick = (System.currentTimeMillis() - startMs) / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+            Queue<TypingState> slot = wheel[(int) (currentTick % wheel.length)];
+            TypingState state;
+            while ((state = slot.poll()) != null) {
+                try {
+                    expire(state);
+                } catch (Exception e) {
+                    log.warn("处理正在输入状态失败: {}", state.key, e);
+                }
+            }
+        }
+    }
+
+    private void expire(TypingState state) {
+        if (states.get(state.key) != state) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long lastSignalAt = state.lastSignalAt;
+        if (now - lastSignalAt >= idleTimeoutMs) {
+            if (states.remove(state.key, state)) {
+                send(state, TYPING_STOP_DESTINATION);
+            }
+            return;
+        }
+        if (lastSignalAt > state.lastEmitAt && now - state.lastEmitAt >= refreshIntervalMs) {
+            state.lastEmitAt = now;
+            send(state, TYPING_DESTINATION);
+        }
+        long deadline = lastSignalAt + idleTimeoutMs;
+        if (lastSignalAt > state.lastEmitAt) {
+            deadline = Math.min(deadline, state.lastEmitAt + refreshIntervalMs);
+        }
+        schedule(state, deadline);
+    }
+
+    private void schedule(TypingState state, long deadlineMs) {
+        long tick = (deadlineMs - startMs + tickMs - 1) / tickMs;
+        long current = currentTick;
+        // 至少放到下一个刻度之后，且不超过一圈；提前到期的条目会在 expire 中重新排期
+        tick = Math.min(Math.max(tick, current + 2), current + wheel.length - 1);
+        wheel[(int) (tick % wheel.length)].offer(state);
+    }
+
+    private void send(TypingState state, String destination) {
+        messagingTemplate.convertAndSendToUser(state.receiverName, destination, state.senderId);
+    }
+
+    private static final class TypingState {
+
+        private final String key;
+
+        private final Long senderId;
+
+        private final String receiverName;
+
+        private volatile long lastSignalAt;
+
+        /**
+         * 最近一次推送"开始输入"的时间，只由首个信号和时间轮线程写入
+         */
+        private volatile long lastEmitAt;
+
+        private TypingState(String key, Long senderId, String receiverName, long now) {
+            this.key = key;
+            this.senderId = senderId;
+            this.receiverName = receiverName;
+            this.lastSignalAt = now;
+            this.lastEmitAt = now;
+        }
+    }
+}
@@ -4,59 +4,215 @@ import com.flowbrain.viewx.config.RabbitMQConfig;
 import com.flowbrain.viewx.dao.ActionLogMapper;
 import com.flowbrain.viewx.pojo.dto.BaseEvent;
 import com.flowbrain.viewx.pojo.entity.ActionLog;
+import com.flowbrain.viewx.util.IdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * 行为日志消费者
  * 功能：记录所有用户行为到数据库，用于数据分析和审计
+ *
+ * 批量写入：攒满一批（默认 500 条）或空闲 1 秒后，以多行 INSERT 一次写入 vx_action_logs，
+ * 写入成功后整批 ACK；数据库不可用等错误抛出异常，整批重新投递；
+ * 只有数据错误（约束冲突、非法字符）才改为逐条写入并丢弃坏数据。
+ * 每个分块单独提交，日志ID由事件ID派生并 ON CONFLICT DO NOTHING，重新投递时已提交的行不会重复写入。
+ *
+ * 监控指标（/actuator/metrics）：
+ * - viewx.action.log.queue.depth    队列积压消息数
+ * - viewx.action.log.batch.size     最近一批的消息数
+ * - viewx.action.log.flush          批量写入耗时
+ * - viewx.action.log.written        成功写入的日志条数
+ * - viewx.action.log.dropped        因数据错误被丢弃的日志条数
  */
 @Service
 @Slf4j
 public class ActionLogConsumer {
 
+    /**
+     * 单条 INSERT 的最大行数（PostgreSQL 单条语句最多 65535 个绑定参数，每行 7 个）
+     */
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+
     @Autowired
     private ActionLogMapper actionLogMapper;
 
-    @RabbitListener(queues = RabbitMQConfig.QUEUE_ACTION_LOG)
-    public void handleActionLog(BaseEvent event) {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+
+    private Timer flushTimer;
+
+    private Counter writtenCounter;
+
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        flushTimer = Timer.builder("viewx.action.log.flush")
+                .description("行为日志批量写入耗时")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("viewx.action.log.written")
+                .description("成功写入的行为日志条数")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("viewx.action.log.dropped")
+                .description("因数据错误被丢弃的行为日志条数")
+                .register(meterRegistry);
+        Gauge.builder("viewx.action.log.batch.size", lastBatchSize, AtomicInteger::get)
+                .description("最近一批行为日志的消息数")
+                .register(meterRegistry);
+        Gauge.builder("viewx.action.log.queue.depth", this, ActionLogConsumer::queueDepth)
+                .description("行为日志队列积压消息数")
+                .register(meterRegistry);
+    }
+
+    @RabbitListener(queues = RabbitMQConfig.QUEUE_ACTION_LOG,
+            containerFactory = RabbitMQConfig.ACTION_LOG_LISTENER_FACTORY)
+    public void handleActionLog(List<BaseEvent> events) {
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+        lastBatchSize.set(events.size());
+
+        List<ActionLog> logs = new ArrayList<>(events.size());
+        for (BaseEvent event : events) {
+            logs.add(toActionLog(event));
+        }
+
         try {
-            log.info("接收到行为日志事件: eventId={}, eventType={}, userId={}",
-                    event.getEventId(), event.getEventType(), event.getUserId());
-
-            // 创建行为日志记录
-            ActionLog actionLog = new ActionLog();
-            actionLog.setUserId(event.getUserId());
-            actionLog.setActionType(event.getEventType());
-
-            // 从事件数据中提取 videoId
-            if (event.getData() != null && event.getData().containsKey("videoId")) {
-                Object videoIdObj = event.getData().get("videoId");
-                if (videoIdObj instanceof Long) {
-                    actionLog.setVideoId((Long) videoIdObj);
-                } else if (videoIdObj instanceof Integer) {
-                    actionLog.setVideoId(((Integer) videoIdObj).longValue());
-                } else if (videoIdObj instanceof String) {
-                    actionLog.setVideoId(Long.parseLong((String) videoIdObj));
+            flushTimer.record(() -> flush(logs));
+            log.debug("行为日志批量保存成功: size={}", logs.size());
+            // 方法正常返回后 Spring AMQP 整批 ACK
+
+        } catch (Exception e) {
+            log.error("处理行为日志失败: size={}", logs.size(), e);
+
+            // 抛出异常，整批消息重新入队
+            throw new RuntimeException("处理行为日志失败", e);
+        }
+    }
+
+    /**
+     * 分块执行多行 INSERT
+     */
+    private void flush(List<ActionLog> logs) {
+        for (int from = 0; from < logs.size(); from += MAX_ROWS_PER_INSERT) {
+            List<ActionLog> chunk = logs.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, logs.size()));
+            try {
+                writtenCounter.increment(actionLogMapper.insertBatch(chunk));
+            } catch (RuntimeException e) {
+                if (!isDataError(e)) {
+                    // 连接失败、超时等非数据错误，整批重新投递
+                    throw e;
                 }
+                log.warn("行为日志批量写入失败，改为逐条写入: size={}", chunk.size(), e);
+                insertOneByOne(chunk);
             }
+        }
+    }
 
-            // 保存到数据库（ID 和 createdAt 会自动生成）
-            actionLogMapper.insert(actionLog);
+    /**
+     * 逐条写入，隔离个别脏数据，避免一条坏消息拖住整批
+     * 只丢弃数据错误的行；遇到连接失败等非数据错误立即抛出，由 MQ 重新投递
+     */
+    private void insertOneByOne(List<ActionLog> logs) {
+        int failed = 0;
+        for (ActionLog actionLog : logs) {
+            try {
+                writtenCounter.increment(actionLogMapper.insertBatch(Collections.singletonList(actionLog)));
+            } catch (RuntimeException e) {
+                if (!isDataError(e)) {
+                    throw e;
+                }
+                failed++;
+                log.error("行为日志写入失败，丢弃: actionType={}, userId={}, videoId={}",
+                        actionLog.getActionType(), actionLog.getUserId(), actionLog.getVideoId(), e);
+            }
+        }
+        droppedCounter.increment(failed);
+    }
 
-            log.info("行为日志保存成功: eventId={}", event.getEventId());
+    /**
+     * 是否为数据本身的错误（约束冲突、非法字符等），重试不会成功
+     */
+    private boolean isDataError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataIntegrityViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            // Spring AMQP 会自动 ACK 成功处理的消息
+    /**
+     * 将事件转换为行为日志记录
+     */
+    private ActionLog toActionLog(BaseEvent event) {
+        ActionLog actionLog = new ActionLog();
+        // 批量 INSERT 不经过 MyBatis-Plus 自动填充，ID 和创建时间在此设置
+        actionLog.setId(toLogId(event.getEventId()));
+        actionLog.setUserId(event.getUserId());
+        actionLog.setActionType(event.getEventType());
+        actionLog.setCreatedAt(event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now());
 
-        } catch (Exception e) {
-            log.error("处理行为日志失败: eventId={}", event.getEventId(), e);
+        // 从事件数据中提取 videoId
+        Map<String, Object> data = event.getData();
+        if (data != null && data.containsKey("videoId")) {
+            Object videoIdObj = data.get("videoId");
+            if (videoIdObj instanceof Number) {
+                actionLog.setVideoId(((Number) videoIdObj).longValue());
+            } else if (videoIdObj instanceof String) {
+                actionLog.setVideoId(Long.parseLong((String) videoIdObj));
+            }
+        }
+        return actionLog;
+    }
 
-            // 抛出异常，让 Spring AMQP 根据配置决定是否重试
-            // 如果配置了重试机制，消息会重新入队
-            // 如果超过重试次数，会发送到死信队列
-            throw new RuntimeException("处理行为日志失败", e);
+    /**
+     * 由事件ID（UUID）派生日志ID，同一事件重新投递时ID不变；事件ID缺失或非法时退回雪花ID
+     */
+    private long toLogId(String eventId) {
+        if (eventId != null) {
+            try {
+                UUID uuid = UUID.fromString(eventId);
+                return (uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits()) & Long.MAX_VALUE;
+            } catch (IllegalArgumentException e) {
+                log.debug("事件ID不是 UUID: {}", eventId);
+            }
+        }
+        return IdGenerator.nextId();
+    }
+
+    /**
+     * 查询队列积压数量，MQ 不可用时返回 NaN
+     */
+    private double queueDepth() {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(RabbitMQConfig.QUEUE_ACTION_LOG);
+            return info == null ? Double.NaN : info.getMessageCount();
+        } catch (Exception e) {
+            return Double.NaN;
         }
     }
 
@@ -0,0 +1,45 @@
+package com.flowbrain.viewx.service.consumer;
+
+import com.flowbrain.viewx.common.EventType;
+import com.flowbrain.viewx.config.RabbitMQConfig;
+import com.flowbrain.viewx.pojo.dto.BaseEvent;
+import com.flowbrain.viewx.service.graph.FollowGraphService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 关注图更新消费者
+ * 每个节点各自有一个临时队列，关注/取关事件广播到所有节点，用于维护各节点的内存关注图
+ */
+@Service
+@Slf4j
+public class FollowGraphConsumer {
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    @RabbitListener(queues = "#{" + RabbitMQConfig.FOLLOW_GRAPH_QUEUE_BEAN + ".name}",
+            containerFactory = RabbitMQConfig.BATCH_LISTENER_FACTORY)
+    public void handleFollowEvents(List<BaseEvent> events) {
+        // 同一队列内按发布顺序投递，逐条应用即可得到最终状态
+        for (BaseEvent event : events) {
+            Long followedId = toLong(event.getData(), "followedId");
+            if (event.getUserId() == null || followedId == null) {
+                log.warn("关注事件缺少用户ID，丢弃: {}", event);
+                continue;
+            }
+            followGraphService.applyFollow(event.getUserId(), followedId,
+                    EventType.USER_FOLLOW.equals(event.getEventType()));
+        }
+    }
+
+    private Long toLong(Map<String, Object> data, String field) {
+        Object value = data == null ? null : data.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+}
@@ -4,133 +4,266 @@ import com.flowbrain.viewx.config.RabbitMQConfig;
 import com.flowbrain.viewx.common.EventType;
 import com.flowbrain.viewx.common.RedisKeyConstants;
 import com.flowbrain.viewx.pojo.dto.BaseEvent;
-import com.flowbrain.viewx.service.RecommendService;
+import com.flowbrain.viewx.service.PersonalizedFeedService;
+import com.flowbrain.viewx.service.TrendingScoreService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 推荐算法更新消费者
  * 功能：根据用户行为实时更新推荐算法的数据
+ * 采用批量消费模式（默认 200 条 / 50ms 一批），每批固定 2 次 Redis 往返
  */
 @Service
 @Slf4j
 public class RecommendConsumer {
 
+    // 幂等键有效期（分钟）
+    private static final long PROCESSED_TTL_MINUTES = 5;
+
+    @Autowired
+    private TrendingScoreService trendingScoreService;
+
     @Autowired
-    private RecommendService recommendService;
+    private PersonalizedFeedService personalizedFeedService;
 
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
-    @RabbitListener(queues = RabbitMQConfig.QUEUE_RECOMMEND_UPDATE, concurrency = "3-10")
-    public void handleRecommendUpdate(BaseEvent event) {
+    /**
+     * 批量消费推荐更新事件
+     * 1. 一次管道 SET NX 完成整批幂等检查
+     * 2. 在内存中按 (用户, 视频) 聚合兴趣增量、按视频聚合热度增量
+     * 3. 所有写操作合并为一次 Redis 管道提交
+     * 写入失败时释放本批幂等键并抛出异常，整批重新投递
+     */
+    @RabbitListener(queues = RabbitMQConfig.QUEUE_RECOMMEND_UPDATE,
+            containerFactory = RabbitMQConfig.BATCH_LISTENER_FACTORY, concurrency = "3-10")
+    public void handleRecommendUpdate(List<BaseEvent> events) {
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+
+        List<BaseEvent> fresh = filterProcessed(events);
+        if (fresh.isEmpty()) {
+            log.debug("整批事件均已处理，跳过: size={}", events.size());
+            return;
+        }
+
+        RecommendDelta delta;
         try {
-            log.info("接收到推荐更新事件: eventId={}, eventType={}", event.getEventId(), event.getEventType());
+            delta = aggregate(fresh);
+            flush(delta);
+            log.info("推荐数据批量更新成功: received={}, processed={}", events.size(), fresh.size());
+            // Spring AMQP 自动 ACK
+        } catch (Exception e) {
+            log.error("推荐批量更新失败: size={}", fresh.size(), e);
+            releaseProcessed(fresh);
+            throw new RuntimeException("推荐更新失败", e);
+        }
 
-            String eventType = event.getEventType();
-            Long userId = event.getUserId();
-            Long videoId = (Long) event.getData().get("videoId");
+        // 兴趣模型变化的用户异步重建个性化推荐流（带节流）
+        // 增量已写入，重建失败只记录日志，不能再释放幂等键让整批重新累加
+        try {
+            personalizedFeedService.requestRebuild(delta.interests.keySet());
+        } catch (Exception e) {
+            log.warn("请求重建推荐流失败: users={}", delta.interests.size(), e);
+        }
+    }
+
+    /**
+     * 幂等性检查：批内去重后一次管道执行 SET NX，返回首次出现的事件
+     */
+    private List<BaseEvent> filterProcessed(List<BaseEvent> events) {
+        Map<String, BaseEvent> unique = new LinkedHashMap<>();
+        for (BaseEvent event : events) {
+            if (event == null || event.getEventId() == null || toLong(event.getData(), "videoId") == null) {
+                log.warn("推荐事件缺少必要字段，丢弃: {}", event);
+                continue;
+            }
+            unique.putIfAbsent(event.getEventId(), event);
+        }
+        if (unique.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            // 幂等性检查（防止重复消费）- 使用标准 Key
-            String idempotentKey = RedisKeyConstants.Recommend.getProcessedEventKey(event.getEventId());
-            Boolean isProcessed = redisTemplate.opsForValue().setIfAbsent(idempotentKey, "1", 5, TimeUnit.MINUTES);
+        byte[] value = rawValue("1");
+        Expiration ttl = Expiration.from(PROCESSED_TTL_MINUTES, TimeUnit.MINUTES);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String eventId : unique.keySet()) {
+                connection.stringCommands().set(rawKey(RedisKeyConstants.Recommend.getProcessedEventKey(eventId)),
+                        value, ttl, RedisStringCommands.SetOption.SET_IF_ABSENT);
+            }
+            return null;
+        });
 
-            if (Boolean.FALSE.equals(isProcessed)) {
+        List<BaseEvent> fresh = new ArrayList<>(unique.size());
+        int i = 0;
+        for (BaseEvent event : unique.values()) {
+            if (Boolean.TRUE.equals(results.get(i++))) {
+                fresh.add(event);
+            } else {
                 log.warn("事件已处理，跳过: eventId={}", event.getEventId());
-                return; // Spring AMQP 会自动 ACK
             }
+        }
+        return fresh;
+    }
+
+    /**
+     * 在内存中聚合本批事件的所有增量
+     */
+    private RecommendDelta aggregate(List<BaseEvent> events) {
+        RecommendDelta delta = new RecommendDelta(System.currentTimeMillis());
+
+        for (BaseEvent event : events) {
+            String eventType = event.getEventType();
+            Long userId = event.getUserId();
+            Long videoId = toLong(event.getData(), "videoId");
 
-            // 根据事件类型更新推荐数据
             switch (eventType) {
                 case EventType.VIDEO_PLAY:
-                    handleVideoPlay(userId, videoId, event);
+                    handleVideoPlay(delta, userId, videoId, event);
                     break;
                 case EventType.VIDEO_LIKE:
-                    handleVideoLike(userId, videoId);
+                    delta.addInterest(userId, videoId, 3.0);
                     break;
                 case EventType.VIDEO_UNLIKE:
-                    handleVideoUnlike(userId, videoId);
+                    delta.addInterest(userId, videoId, -3.0);
                     break;
                 case EventType.VIDEO_FAVORITE:
-                    handleVideoFavorite(userId, videoId);
+                    delta.addInterest(userId, videoId, 5.0);
                     break;
                 case EventType.VIDEO_SHARE:
-                    handleVideoShare(userId, videoId);
+                    delta.addInterest(userId, videoId, 2.0);
                     break;
                 default:
                     log.warn("未处理的事件类型: {}", eventType);
             }
 
-            // 更新视频热度分数
-            recommendService.updateVideoScore(videoId);
-
-            log.info("推荐数据更新成功: eventId={}", event.getEventId());
-            // Spring AMQP 自动 ACK
-
-        } catch (Exception e) {
-            log.error("推荐更新失败: eventId={}", event.getEventId(), e);
-            throw new RuntimeException("推荐更新失败", e);
+            // 视频热度增量（换算到当前时刻后按视频累加）
+            double score = trendingScoreService.weightAt(eventType, event.getTimestamp(), delta.nowMillis);
+            if (score != 0) {
+                delta.scores.merge(videoId, score, Double::sum);
+            }
         }
+        return delta;
     }
 
     /**
-     * 处理视频播放事件
+     * 处理视频播放事件：记录观看历史，观看超过30秒视为有效观看
      */
-    private void handleVideoPlay(Long userId, Long videoId, BaseEvent event) {
-        Integer watchDuration = (Integer) event.getData().get("watchDuration");
+    private void handleVideoPlay(RecommendDelta delta, Long userId, Long videoId, BaseEvent event) {
+        if (userId == null) {
+            return;
+        }
 
-        // 更新用户观看历史 - 使用标准 Key
-        String historyKey = RedisKeyConstants.Recommend.getWatchHistoryKey(userId);
-        redisTemplate.opsForZSet().add(historyKey, videoId, System.currentTimeMillis());
+        long watchedAt = event.getTimestamp() == null ? delta.nowMillis
+                : event.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        delta.history.computeIfAbsent(userId, k -> new HashMap<>()).merge(videoId, watchedAt, Math::max);
 
-        // 如果观看时长超过30秒，认为是有效观看
+        Long watchDuration = toLong(event.getData(), "watchDuration");
         if (watchDuration != null && watchDuration > 30) {
-            String interestKey = RedisKeyConstants.Recommend.getUserInterestKey(userId);
-            redisTemplate.opsForZSet().incrementScore(interestKey, "video:" + videoId, 1.0);
+            delta.addInterest(userId, videoId, 1.0);
         }
-
-        log.info("更新用户观看历史: userId={}, videoId={}, duration={}", userId, videoId, watchDuration);
     }
 
     /**
-     * 处理点赞事件
+     * 一次管道提交所有聚合结果
      */
-    private void handleVideoLike(Long userId, Long videoId) {
-        String interestKey = RedisKeyConstants.Recommend.getUserInterestKey(userId);
-        redisTemplate.opsForZSet().incrementScore(interestKey, "video:" + videoId, 3.0);
-        log.info("更新用户兴趣（点赞）: userId={}, videoId={}", userId, videoId);
+    private void flush(RecommendDelta delta) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            // 用户观看历史 (ZSet: videoId -> timestamp)
+            delta.history.forEach((userId, videos) -> {
+                byte[] key = rawKey(RedisKeyConstants.Recommend.getWatchHistoryKey(userId));
+                videos.forEach((videoId, watchedAt) ->
+                        connection.zSetCommands().zAdd(key, watchedAt, rawValue(videoId)));
+            });
+
+            // 用户兴趣模型 (ZSet: video:videoId -> score)，互相抵消的增量不写入
+            delta.interests.forEach((userId, videos) -> {
+                byte[] key = rawKey(RedisKeyConstants.Recommend.getUserInterestKey(userId));
+                videos.forEach((videoId, increment) -> {
+                    if (increment != 0) {
+                        connection.zSetCommands().zIncrBy(key, increment, rawValue("video:" + videoId));
+                    }
+                });
+            });
+
+            // 视频热度（单条 EVAL）
+            trendingScoreService.incrementBatch(connection, delta.scores, delta.nowMillis);
+            return null;
+        });
     }
 
     /**
-     * 处理取消点赞事件
+     * 释放幂等键，保证整批重新投递时能被再次处理
      */
-    private void handleVideoUnlike(Long userId, Long videoId) {
-        String interestKey = RedisKeyConstants.Recommend.getUserInterestKey(userId);
-        redisTemplate.opsForZSet().incrementScore(interestKey, "video:" + videoId, -3.0);
-        log.info("更新用户兴趣（取消点赞）: userId={}, videoId={}", userId, videoId);
+    private void releaseProcessed(List<BaseEvent> events) {
+        try {
+            List<String> keys = new ArrayList<>(events.size());
+            for (BaseEvent event : events) {
+                keys.add(RedisKeyConstants.Recommend.getProcessedEventKey(event.getEventId()));
+            }
+            redisTemplate.delete(keys);
+        } catch (Exception e) {
+            log.error("释放幂等键失败: size={}", events.size(), e);
+        }
     }
 
     /**
-     * 处理收藏事件
+     * 事件数据经 JSON 反序列化后数字类型不固定（Integer / Long），统一转换
      */
-    private void handleVideoFavorite(Long userId, Long videoId) {
-        String interestKey = RedisKeyConstants.Recommend.getUserInterestKey(userId);
-        redisTemplate.opsForZSet().incrementScore(interestKey, "video:" + videoId, 5.0);
-        log.info("更新用户兴趣（收藏）: userId={}, videoId={}", userId, videoId);
+    private Long toLong(Map<String, Object> data, String field) {
+        Object value = data == null ? null : data.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    private byte[] rawKey(String key) {
+        return redisTemplate.getStringSerializer().serialize(key);
     }
 
     /**
-     * 处理分享事件
+     * 单批事件的聚合结果
      */
-    private void handleVideoShare(Long userId, Long videoId) {
-        String interestKey = RedisKeyConstants.Recommend.getUserInterestKey(userId);
-        redisTemplate.opsForZSet().incrementScore(interestKey, "video:" + videoId, 2.0);
-        log.info("更新用户兴趣（分享）: userId={}, videoId={}", userId, videoId);
+    private static class RecommendDelta {
+        private final long nowMillis;
+        // userId -> (videoId -> 观看时间)
+        private final Map<Long, Map<Long, Long>> history = new HashMap<>();
+        // userId -> (videoId -> 兴趣增量)
+        private final Map<Long, Map<Long, Double>> interests = new HashMap<>();
+        // videoId -> 当前时刻的热度增量
+        private final Map<Long, Double> scores = new HashMap<>();
+
+        private RecommendDelta(long nowMillis) {
+            this.nowMillis = nowMillis;
+        }
+
+        private void addInterest(Long userId, Long videoId, double increment) {
+            if (userId != null) {
+                interests.computeIfAbsent(userId, k -> new HashMap<>()).merge(videoId, increment, Double::sum);
+            }
+        }
     }
 
     /**
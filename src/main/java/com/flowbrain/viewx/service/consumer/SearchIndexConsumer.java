@@ -0,0 +1,64 @@
+package com.flowbrain.viewx.service.consumer;
+
+import com.flowbrain.viewx.config.RabbitMQConfig;
+import com.flowbrain.viewx.pojo.dto.BaseEvent;
+import com.flowbrain.viewx.service.search.SuggestService;
+import com.flowbrain.viewx.service.search.VideoSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 搜索索引更新消费者
+ * 功能：视频上传、审核通过、更新、删除后刷新内存搜索索引和标题联想词
+ *
+ * 事件只用来定位视频，索引内容一律按数据库最新状态重建，因此重复投递、乱序都不会写入脏数据
+ */
+@Service
+@Slf4j
+public class SearchIndexConsumer {
+
+    @Autowired
+    private VideoSearchService videoSearchService;
+
+    @Autowired
+    private SuggestService suggestService;
+
+    @RabbitListener(queues = RabbitMQConfig.QUEUE_SEARCH_INDEX,
+            containerFactory = RabbitMQConfig.BATCH_LISTENER_FACTORY)
+    public void handleSearchIndex(List<BaseEvent> events) {
+        Set<Long> videoIds = new LinkedHashSet<>();
+        for (BaseEvent event : events) {
+            Long videoId = toLong(event.getData(), "videoId");
+            if (videoId == null) {
+                log.warn("搜索索引事件缺少 videoId，丢弃: {}", event);
+                continue;
+            }
+            videoIds.add(videoId);
+        }
+        if (videoIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            videoSearchService.reindex(videoIds);
+            suggestService.refreshVideos(videoIds);
+            log.debug("搜索索引更新成功: events={}, videos={}", events.size(), videoIds.size());
+        } catch (Exception e) {
+            log.error("搜索索引更新失败: videos={}", videoIds.size(), e);
+            // 抛出异常，整批消息重新入队
+            throw new RuntimeException("搜索索引更新失败", e);
+        }
+    }
+
+    private Long toLong(Map<String, Object> data, String field) {
+        Object value = data == null ? null : data.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+}
@@ -0,0 +1,57 @@
+package com.flowbrain.viewx.service.consumer;
+
+import com.flowbrain.viewx.config.RabbitMQConfig;
+import com.flowbrain.viewx.pojo.dto.BaseEvent;
+import com.flowbrain.viewx.service.TimelineService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 关注流写扩散消费者
+ * 功能：视频审核通过后写入作者发件箱，并推入粉丝的关注流收件箱
+ *
+ * 收件箱以 videoId 为成员，重复投递只会覆盖同一成员，不会产生重复条目
+ */
+@Service
+@Slf4j
+public class TimelineConsumer {
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @RabbitListener(queues = RabbitMQConfig.QUEUE_TIMELINE,
+            containerFactory = RabbitMQConfig.BATCH_LISTENER_FACTORY)
+    public void handleVideoApproved(List<BaseEvent> events) {
+        Set<Long> videoIds = new LinkedHashSet<>();
+        for (BaseEvent event : events) {
+            Long videoId = toLong(event.getData(), "videoId");
+            if (videoId == null) {
+                log.warn("关注流事件缺少 videoId，丢弃: {}", event);
+                continue;
+            }
+            videoIds.add(videoId);
+        }
+
+        for (Long videoId : videoIds) {
+            try {
+                timelineService.fanOut(videoId);
+            } catch (Exception e) {
+                log.error("关注流写扩散失败: videoId={}", videoId, e);
+                // 抛出异常，整批消息重新入队
+                throw new RuntimeException("关注流写扩散失败", e);
+            }
+        }
+    }
+
+    private Long toLong(Map<String, Object> data, String field) {
+        Object value = data == null ? null : data.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+}
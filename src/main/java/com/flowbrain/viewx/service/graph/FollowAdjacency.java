@@ -0,0 +1,111 @@
+package com.flowbrain.viewx.service.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 单个用户的关注列表（不可变）
+ *
+ * 用户ID是雪花ID，稀疏且超出 int 范围，不适合直接做位图下标；这里用升序 long[] 存储：
+ * - 每条边 8 字节，没有装箱和哈希表开销
+ * - 成员判断二分查找 O(log n)，求交集双指针归并 O(n + m)
+ * - 关注/取关时复制出新数组，读方始终看到完整的快照，无需加锁
+ */
+final class FollowAdjacency {
+
+    static final FollowAdjacency EMPTY = new FollowAdjacency(new long[0]);
+
+    private final long[] ids;
+
+    private FollowAdjacency(long[] ids) {
+        this.ids = ids;
+    }
+
+    static FollowAdjacency of(Collection<Long> userIds) {
+        long[] ids = new long[userIds.size()];
+        int n = 0;
+        for (Long id : userIds) {
+            if (id != null) {
+                ids[n++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, n);
+        // 去重
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (size == 0 || ids[size - 1] != ids[i]) {
+                ids[size++] = ids[i];
+            }
+        }
+        return size == 0 ? EMPTY : new FollowAdjacency(size == ids.length ? ids : Arrays.copyOf(ids, size));
+    }
+
+    boolean contains(long userId) {
+        return Arrays.binarySearch(ids, userId) >= 0;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long[] toArray() {
+        return ids.clone();
+    }
+
+    /**
+     * 加入一个用户，已存在时返回自身
+     */
+    FollowAdjacency with(long userId) {
+        int pos = Arrays.binarySearch(ids, userId);
+        if (pos >= 0) {
+            return this;
+        }
+        int insert = -pos - 1;
+        long[] next = new long[ids.length + 1];
+        System.arraycopy(ids, 0, next, 0, insert);
+        next[insert] = userId;
+        System.arraycopy(ids, insert, next, insert + 1, ids.length - insert);
+        return new FollowAdjacency(next);
+    }
+
+    /**
+     * 移除一个用户，不存在时返回自身
+     */
+    FollowAdjacency without(long userId) {
+        int pos = Arrays.binarySearch(ids, userId);
+        if (pos < 0) {
+            return this;
+        }
+        if (ids.length == 1) {
+            return EMPTY;
+        }
+        long[] next = new long[ids.length - 1];
+        System.arraycopy(ids, 0, next, 0, pos);
+        System.arraycopy(ids, pos + 1, next, pos, ids.length - pos - 1);
+        return new FollowAdjacency(next);
+    }
+
+    /**
+     * 交集（升序）
+     */
+    long[] intersect(FollowAdjacency other) {
+        long[] a = ids;
+        long[] b = other.ids;
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+}
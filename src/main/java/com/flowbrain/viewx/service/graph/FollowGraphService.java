@@ -0,0 +1,108 @@
+package com.flowbrain.viewx.service.graph;
+
+import com.flowbrain.viewx.dao.FollowMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * 内存关注图（每个节点缓存"我关注了谁"）
+ *
+ * - 懒加载：首次查询某用户时从 vx_user_follows 加载其关注列表，按边数计权的 Caffeine 缓存限制总内存
+ * - 增量维护：本节点关注/取关后立即更新；其他节点通过 USER_FOLLOW/USER_UNFOLLOW 广播事件更新
+ *   （FollowGraphConsumer），只更新已加载的用户，未加载的下次查询时读到数据库最新状态
+ * - 过期兜底：expireAfterWrite 限制漏收事件（如 MQ 中断）时的陈旧时间
+ *
+ * 事件携带的是关注后的状态而不是增量，重复投递不影响结果
+ */
+@Slf4j
+@Service
+public class FollowGraphService {
+
+    @Autowired
+    private FollowMapper followMapper;
+
+    private final LoadingCache<Long, FollowAdjacency> following;
+
+    public FollowGraphService(@Value("${viewx.follow-graph.max-edges:5000000}") long maxEdges,
+                              @Value("${viewx.follow-graph.expire-after-write-minutes:30}") long expireMinutes) {
+        // 加载与事件更新都经过缓存内部的 compute，同一用户的加载进行中时，事件更新会等待加载完成后再应用
+        this.following = Caffeine.newBuilder()
+                .maximumWeight(maxEdges)
+                .weigher((Long userId, FollowAdjacency adjacency) -> adjacency.size() + 1)
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .build(userId -> FollowAdjacency.of(followMapper.getFollowingUserIds(userId)));
+    }
+
+    /**
+     * followerId 是否关注了 followedId
+     */
+    public boolean isFollowing(Long followerId, Long followedId) {
+        if (followerId == null || followedId == null) {
+            return false;
+        }
+        return following.get(followerId).contains(followedId);
+    }
+
+    /**
+     * 两个用户是否互相关注
+     */
+    public boolean isMutualFollow(Long userId1, Long userId2) {
+        return isFollowing(userId1, userId2) && isFollowing(userId2, userId1);
+    }
+
+    /**
+     * 用户关注的全部用户ID（升序）
+     */
+    public long[] getFollowingIds(Long userId) {
+        return following.get(userId).toArray();
+    }
+
+    /**
+     * 两个用户的共同关注（升序用户ID）
+     */
+    public long[] getCommonFollowing(Long userId1, Long userId2) {
+        return following.get(userId1).intersect(following.get(userId2));
+    }
+
+    /**
+     * 应用一次关注关系变化（本节点写库后调用，或收到广播事件时调用）
+     * 处于事务中时推迟到提交之后，事务回滚时不修改
+     *
+     * @param followed true 关注，false 取消关注
+     */
+    public void applyFollow(Long followerId, Long followedId, boolean followed) {
+        if (followerId == null || followedId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update(followerId, followedId, followed);
+                }
+            });
+            return;
+        }
+        update(followerId, followedId, followed);
+    }
+
+    private void update(Long followerId, Long followedId, boolean followed) {
+        following.asMap().computeIfPresent(followerId,
+                (id, adjacency) -> followed ? adjacency.with(followedId) : adjacency.without(followedId));
+    }
+
+    /**
+     * 丢弃某用户的缓存（如批量修改关注关系后），下次查询重新加载
+     */
+    public void invalidate(Long userId) {
+        following.invalidate(userId);
+    }
+}
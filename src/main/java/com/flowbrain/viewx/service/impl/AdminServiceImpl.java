@@ -13,6 +13,7 @@ import com.flowbrain.viewx.pojo.entity.Video;
 import com.flowbrain.viewx.pojo.vo.VideoReviewVO;
 import com.flowbrain.viewx.service.AdminService;
 import com.flowbrain.viewx.service.EventPublisher;
+import com.flowbrain.viewx.service.search.SuggestService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,6 +46,9 @@ public class AdminServiceImpl implements AdminService {
     @Autowired
     private EventPublisher eventPublisher;
 
+    @Autowired
+    private SuggestService suggestService;
+
     @Autowired
     private LocalStorageStrategy storageStrategy;
 
@@ -52,7 +56,13 @@ public class AdminServiceImpl implements AdminService {
     private com.flowbrain.viewx.service.RecommendService recommendService;
 
     @Autowired
-    private org.springframework.data.redis.core.RedisTemplate<String, Object> redisTemplate;
+    private com.flowbrain.viewx.service.VideoCacheService videoCacheService;
+
+    @Autowired
+    private com.flowbrain.viewx.service.UserStatsService userStatsService;
+
+    @Autowired
+    private com.flowbrain.viewx.service.ViewCountService viewCountService;
 
     @Override
     public Result<List<VideoReviewVO>> getPendingVideos(int page, int size) {
@@ -159,6 +169,12 @@ public class AdminServiceImpl implements AdminService {
             video.setUpdatedAt(LocalDateTime.now());
             videoMapper.updateById(video);
 
+            // 从热度榜中移除
+            removeFromTrending(videoId);
+
+            // 从搜索索引中移除
+            eventPublisher.publishVideoChangeEvent(EventType.VIDEO_DELETE, video.getUploaderId(), videoId);
+
             // 发布视频审核拒绝事件（用于通知用户）
             Map<String, Object> eventData = new HashMap<>();
             eventData.put("videoId", videoId);
@@ -184,6 +200,14 @@ public class AdminServiceImpl implements AdminService {
 
             // 软删除
             videoMapper.deleteById(videoId);
+            userStatsService.onVideoDeleted(video.getUploaderId(), video.getLikeCount() == null ? 0 : video.getLikeCount());
+            viewCountService.onVideoDeleted(videoId);
+
+            // 从热度榜中移除
+            removeFromTrending(videoId);
+
+            // 从搜索索引中移除
+            eventPublisher.publishVideoChangeEvent(EventType.VIDEO_DELETE, video.getUploaderId(), videoId);
 
             log.info("管理员删除视频成功，视频ID: {}", videoId);
             return Result.success("视频已删除");
@@ -236,22 +260,33 @@ public class AdminServiceImpl implements AdminService {
         }).collect(Collectors.toList());
     }
 
+    /**
+     * 将视频移出热度榜
+     * 视频被拒绝或删除时调用，避免热度榜分页读取到失效视频
+     */
+    private void removeFromTrending(Long videoId) {
+        try {
+            // updateVideoScore 会将非 APPROVED / 已删除的视频移出热度榜
+            recommendService.updateVideoScore(videoId);
+        } catch (Exception e) {
+            log.warn("移出热度榜失败，视频ID: {}, 原因: {}", videoId, e.getMessage());
+        }
+        try {
+            // 只清除包含该视频的缓存页
+            videoCacheService.evictVideoCache(videoId);
+        } catch (Exception e) {
+            log.warn("清除视频缓存失败，视频ID: {}, 原因: {}", videoId, e.getMessage());
+        }
+    }
+
     /**
      * 清除 trending 视频的分页缓存
      * 当有新视频审核通过时调用，确保前端能立即看到更新
      */
     private void clearTrendingCache() {
         try {
-            // 使用通配符删除所有 trending 分页缓存
-            String pattern = com.flowbrain.viewx.common.RedisKeyConstants.Recommend.getTrendingKey() + ":page:*";
-            java.util.Set<String> keys = redisTemplate.keys(pattern);
-
-            if (keys != null && !keys.isEmpty()) {
-                redisTemplate.delete(keys);
-                log.info("已清除 {} 个 trending 缓存键", keys.size());
-            } else {
-                log.debug("没有找到需要清除的 trending 缓存");
-            }
+            // 新视频可能进入任意一页，清空热门缓存（单飞加载避免回源风暴）
+            videoCacheService.evictTrendingVideosCache();
         } catch (Exception e) {
             log.warn("清除 trending 缓存失败: {}", e.getMessage());
         }
@@ -373,6 +408,7 @@ public class AdminServiceImpl implements AdminService {
             UserDetail detail = new UserDetail();
             detail.setUserId(user.getId());
             userDetailMapper.insert(detail);
+            suggestService.upsertUser(user.getId(), user.getNickname());
 
             log.info("管理员创建用户成功，用户ID: {}, 用户名: {}", user.getId(), user.getUsername());
             return Result.success(user.getId());
@@ -3,16 +3,17 @@ package com.flowbrain.viewx.service.impl;
 import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.dao.ConversationMapper;
 import com.flowbrain.viewx.dao.MessageMapper;
-import com.flowbrain.viewx.dao.UserMapper;
 import com.flowbrain.viewx.pojo.dto.MessageDTO;
-import com.flowbrain.viewx.pojo.entity.Conversation;
 import com.flowbrain.viewx.pojo.entity.Message;
-import com.flowbrain.viewx.pojo.entity.User;
 import com.flowbrain.viewx.pojo.vo.ConversationVO;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.MessageVO;
+import com.flowbrain.viewx.pojo.vo.UserBriefVO;
 import com.flowbrain.viewx.service.ChatService;
-import com.flowbrain.viewx.dao.FollowMapper;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.flowbrain.viewx.service.chat.ChatCacheService;
+import com.flowbrain.viewx.service.chat.MessageWriteBehindService;
+import com.flowbrain.viewx.service.graph.FollowGraphService;
+import com.flowbrain.viewx.util.CursorCodec;
 import com.flowbrain.viewx.util.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -24,6 +25,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -39,9 +41,6 @@ public class ChatServiceImpl implements ChatService {
     @Autowired
     private ConversationMapper conversationMapper;
 
-    @Autowired
-    private UserMapper userMapper;
-
     @Autowired
     private LocalStorageStrategy storageStrategy;
 
@@ -49,19 +48,37 @@ public class ChatServiceImpl implements ChatService {
     private RedisTemplate<String, Object> redisTemplate;
 
     @Autowired
-    private FollowMapper followMapper;
+    private FollowGraphService followGraphService;
+
+    @Autowired
+    private ChatCacheService chatCacheService;
+
+    @Autowired
+    private MessageWriteBehindService messageWriteBehindService;
 
     private static final String ONLINE_USER_KEY = "chat:online:";
 
+    private static final Set<String> MESSAGE_TYPES = Set.of("TEXT", "IMAGE", "VIDEO", "EMOJI");
+
     @Override
-    @Transactional
     public Result<MessageVO> sendMessage(Long senderId, MessageDTO messageDTO) {
         try {
-            // 1. 验证接收者是否存在
-            User receiver = userMapper.selectById(messageDTO.getReceiverId());
+            // 1. 验证接收者是否存在（本地缓存）
+            UserBriefVO receiver = chatCacheService.getUserBrief(messageDTO.getReceiverId());
             if (receiver == null) {
                 return Result.notFound("接收者不存在");
             }
+            if (receiver.getId().equals(senderId)) {
+                return Result.badRequest("不能给自己发送消息");
+            }
+            // 消息异步落库，不合法的内容必须在这里拦下，否则整批写入失败
+            String messageType = messageDTO.getMessageType() != null ? messageDTO.getMessageType() : "TEXT";
+            if (!MESSAGE_TYPES.contains(messageType)) {
+                return Result.badRequest("不支持的消息类型");
+            }
+            if (messageDTO.getContent() == null || messageDTO.getContent().isEmpty()) {
+                return Result.badRequest("消息内容不能为空");
+            }
 
             // 2. 检查关注关系
             boolean isMutualFollow = checkMutualFollow(senderId, messageDTO.getReceiverId());
@@ -69,17 +86,12 @@ public class ChatServiceImpl implements ChatService {
             // 3. 如果不是互相关注，检查消息限制
             if (!isMutualFollow) {
                 // 检查内容长度（限制100字）
-                if (messageDTO.getContent() != null && messageDTO.getContent().length() > 100) {
+                if (messageDTO.getContent().length() > 100) {
                     return Result.badRequest("非互关用户发送消息不能超过100字");
                 }
 
                 // 检查是否已经发送过消息
-                long sentCount = messageMapper.selectCount(
-                        new QueryWrapper<Message>()
-                                .eq("sender_id", senderId)
-                                .eq("receiver_id", messageDTO.getReceiverId()));
-
-                if (sentCount >= 1) {
+                if (!chatCacheService.acquireFirstMessage(senderId, messageDTO.getReceiverId())) {
                     return Result.forbidden("非互关用户只能发送一条消息，请先互相关注");
                 }
             }
@@ -90,35 +102,29 @@ public class ChatServiceImpl implements ChatService {
             message.setSenderId(senderId);
             message.setReceiverId(messageDTO.getReceiverId());
             message.setContent(messageDTO.getContent());
-            message.setMessageType(messageDTO.getMessageType() != null ? messageDTO.getMessageType() : "TEXT");
+            message.setMessageType(messageType);
             message.setIsRead(false);
             message.setCreatedAt(LocalDateTime.now());
 
-            // 5. 保存消息
-            messageMapper.insert(message);
+            // 5. 保存消息（异步批量落库，会话由落库任务一并更新）
+            messageWriteBehindService.enqueue(message);
 
-            // 6. 更新或创建会话
-            updateConversation(senderId, messageDTO.getReceiverId(), message.getId(), message.getCreatedAt());
-
-            // 7. 构建返回的 MessageVO
+            // 6. 构建返回的 MessageVO
             MessageVO messageVO = new MessageVO();
             BeanUtils.copyProperties(message, messageVO);
 
-            // 获取发送者信息
-            User sender = userMapper.selectById(senderId);
-            messageVO.setSenderUsername(sender.getUsername());
-            messageVO.setSenderNickname(sender.getNickname());
-
-            // 处理头像 URL
-            if (sender.getDetails() != null && sender.getDetails().getAvatarUrl() != null) {
-                String avatar = sender.getDetails().getAvatarUrl();
-                if (!avatar.startsWith("http")) {
-                    avatar = storageStrategy.getFileUrl(avatar);
-                }
-                messageVO.setSenderAvatar(avatar);
+            // 获取发送者信息（本地缓存，头像已是完整 URL）
+            UserBriefVO sender = chatCacheService.getUserBrief(senderId);
+            if (sender != null) {
+                messageVO.setSenderUsername(sender.getUsername());
+                messageVO.setSenderNickname(sender.getNickname());
+                messageVO.setSenderAvatar(sender.getAvatarUrl());
             }
 
-            log.info("消息发送成功: {} -> {}", senderId, messageDTO.getReceiverId());
+            // 7. 写入会话最近消息缓存与接收者未读数
+            chatCacheService.onMessageSent(messageVO);
+
+            log.debug("消息发送成功: {} -> {}", senderId, messageDTO.getReceiverId());
             return Result.success(messageVO);
 
         } catch (Exception e) {
@@ -130,16 +136,15 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public Result<List<MessageVO>> getChatHistory(Long userId, Long otherUserId, int page, int size) {
         try {
-            int offset = (page - 1) * size;
-            List<MessageVO> messages = messageMapper.getChatHistory(userId, otherUserId, offset, size);
-
-            // 处理头像 URL
-            for (MessageVO message : messages) {
-                if (message.getSenderAvatar() != null && !message.getSenderAvatar().startsWith("http")) {
-                    message.setSenderAvatar(storageStrategy.getFileUrl(message.getSenderAvatar()));
+            if (page == 1) {
+                List<MessageVO> recent = getRecentMessages(userId, otherUserId, size);
+                if (recent != null) {
+                    return Result.success(recent.size() > size ? recent.subList(0, size) : recent);
                 }
             }
-
+            int offset = (page - 1) * size;
+            List<MessageVO> messages = messageMapper.getChatHistory(userId, otherUserId, null, null, offset, size);
+            fillSenderAvatars(messages);
             return Result.success(messages);
         } catch (Exception e) {
             log.error("获取聊天历史失败", e);
@@ -148,80 +153,137 @@ public class ChatServiceImpl implements ChatService {
     }
 
     @Override
-    public Result<List<ConversationVO>> getConversations(Long userId) {
+    public Result<CursorPageVO<MessageVO>> getChatHistoryByCursor(Long userId, Long otherUserId, String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            cursorTime = CursorCodec.parseTime(parts[0]);
+            cursorId = CursorCodec.parseLong(parts[1]);
+        }
+
         try {
-            // 查询用户的所有会话
-            List<Conversation> conversations = conversationMapper.selectList(
-                    new com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<Conversation>()
-                            .and(wrapper -> wrapper.eq("user1_id", userId).or().eq("user2_id", userId))
-                            .orderByDesc("last_message_time"));
-
-            List<ConversationVO> conversationVOs = new ArrayList<>();
-
-            for (Conversation conversation : conversations) {
-                ConversationVO vo = new ConversationVO();
-                vo.setConversationId(conversation.getId());
-
-                // 确定对方用户 ID
-                Long otherUserId = conversation.getUser1Id().equals(userId)
-                        ? conversation.getUser2Id()
-                        : conversation.getUser1Id();
-
-                // 获取对方用户信息（包括详情）
-                User otherUser = userMapper.selectUserWithDetailsById(otherUserId);
-                if (otherUser != null) {
-                    vo.setOtherUserId(otherUserId);
-                    vo.setOtherUserUsername(otherUser.getUsername());
-                    vo.setOtherUserNickname(otherUser.getNickname());
-                    vo.setOtherUserAvatar(otherUser.getDetails().getAvatarUrl());
-
-                    // 处理头像
-                    if (otherUser.getDetails() != null && otherUser.getDetails().getAvatarUrl() != null) {
-                        String avatar = otherUser.getDetails().getAvatarUrl();
-                        if (!avatar.startsWith("http")) {
-                            avatar = storageStrategy.getFileUrl(avatar);
-                        }
-                        vo.setOtherUserAvatar(avatar);
-                    }
-
-                    // 检查在线状态
-                    Boolean isOnline = redisTemplate.hasKey(ONLINE_USER_KEY + otherUserId);
-                    vo.setIsOnline(isOnline != null && isOnline);
-                }
+            // 多取一条用于判断是否还有更早的消息；首页优先由会话缓存返回
+            List<MessageVO> messages = cursorTime == null ? getRecentMessages(userId, otherUserId, size + 1) : null;
+            if (messages == null) {
+                messages = messageMapper.getChatHistory(userId, otherUserId, cursorTime, cursorId, 0, size + 1);
+                fillSenderAvatars(messages);
+            }
+            boolean hasMore = messages.size() > size;
+            if (hasMore) {
+                messages = messages.subList(0, size);
+            }
+            if (messages.isEmpty()) {
+                return Result.success(CursorPageVO.empty());
+            }
+            MessageVO last = messages.get(messages.size() - 1);
+            String nextCursor = hasMore ? CursorCodec.encodeTimeId(last.getCreatedAt(), last.getId()) : null;
+            return Result.success(new CursorPageVO<>(messages, nextCursor, hasMore));
+        } catch (Exception e) {
+            log.error("获取聊天历史失败", e);
+            return Result.serverError("获取聊天历史失败");
+        }
+    }
 
-                // 获取最后一条消息
-                if (conversation.getLastMessageId() != null) {
-                    Message lastMessage = messageMapper.selectById(conversation.getLastMessageId());
-                    if (lastMessage != null) {
-                        vo.setLastMessage(lastMessage.getContent());
-                        vo.setLastMessageType(lastMessage.getMessageType());
-                    }
-                }
+    /**
+     * 会话最近消息（缓存），缓存无法回答时返回 null
+     */
+    private List<MessageVO> getRecentMessages(Long userId, Long otherUserId, int limit) {
+        return chatCacheService.getRecentMessages(userId, otherUserId, limit, n -> {
+            List<MessageVO> messages = messageMapper.getChatHistory(userId, otherUserId, null, null, 0, n);
+            fillSenderAvatars(messages);
+            return messages;
+        });
+    }
 
-                vo.setLastMessageTime(conversation.getLastMessageTime());
+    /**
+     * 处理头像 URL
+     */
+    private void fillSenderAvatars(List<MessageVO> messages) {
+        for (MessageVO message : messages) {
+            if (message.getSenderAvatar() != null && !message.getSenderAvatar().startsWith("http")) {
+                message.setSenderAvatar(storageStrategy.getFileUrl(message.getSenderAvatar()));
+            }
+        }
+    }
+
+    @Override
+    public Result<List<ConversationVO>> getConversations(Long userId) {
+        try {
+            List<ConversationVO> conversations = conversationMapper.selectConversationPage(userId, null, null, null);
+            fillConversations(conversations);
+            return Result.success(conversations);
+        } catch (Exception e) {
+            log.error("获取会话列表失败", e);
+            return Result.serverError("获取会话列表失败");
+        }
+    }
 
-                // 获取未读数
-                int unreadCount = conversation.getUser1Id().equals(userId)
-                        ? conversation.getUnreadCountUser1()
-                        : conversation.getUnreadCountUser2();
-                vo.setUnreadCount(unreadCount);
+    @Override
+    public Result<CursorPageVO<ConversationVO>> getConversationsByCursor(Long userId, String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            cursorTime = CursorCodec.parseTime(parts[0]);
+            cursorId = CursorCodec.parseLong(parts[1]);
+        }
 
-                conversationVOs.add(vo);
+        try {
+            // 多取一条用于判断是否还有下一页
+            List<ConversationVO> conversations = conversationMapper.selectConversationPage(
+                    userId, cursorTime, cursorId, size + 1);
+            boolean hasMore = conversations.size() > size;
+            if (hasMore) {
+                conversations = conversations.subList(0, size);
             }
-
-            return Result.success(conversationVOs);
+            if (conversations.isEmpty()) {
+                return Result.success(CursorPageVO.empty());
+            }
+            fillConversations(conversations);
+            ConversationVO last = conversations.get(conversations.size() - 1);
+            String nextCursor = hasMore
+                    ? CursorCodec.encodeTimeId(last.getLastMessageTime(), last.getConversationId()) : null;
+            return Result.success(new CursorPageVO<>(conversations, nextCursor, hasMore));
         } catch (Exception e) {
             log.error("获取会话列表失败", e);
             return Result.serverError("获取会话列表失败");
         }
     }
 
+    /**
+     * 处理对方头像 URL，并用一次 MGET 填充在线状态
+     */
+    private void fillConversations(List<ConversationVO> conversations) {
+        if (conversations.isEmpty()) {
+            return;
+        }
+        List<String> onlineKeys = new ArrayList<>(conversations.size());
+        for (ConversationVO conversation : conversations) {
+            String avatar = conversation.getOtherUserAvatar();
+            if (avatar != null && !avatar.startsWith("http")) {
+                conversation.setOtherUserAvatar(storageStrategy.getFileUrl(avatar));
+            }
+            onlineKeys.add(ONLINE_USER_KEY + conversation.getOtherUserId());
+        }
+        List<Object> online = redisTemplate.opsForValue().multiGet(onlineKeys);
+        for (int i = 0; i < conversations.size(); i++) {
+            conversations.get(i).setIsOnline(online != null && online.get(i) != null);
+        }
+    }
+
     @Override
     @Transactional
     public Result<Void> markAsRead(Long userId, Long otherUserId) {
         try {
+            // 尚未落库的消息由已读水位覆盖，落库时直接写为已读
+            messageWriteBehindService.markRead(userId, otherUserId);
             messageMapper.markAsRead(userId, otherUserId);
             conversationMapper.clearUnreadCount(userId, otherUserId);
+            chatCacheService.clearUnread(userId, otherUserId);
+            chatCacheService.markReadInRecent(userId, otherUserId);
             return Result.success("标记已读成功");
         } catch (Exception e) {
             log.error("标记已读失败", e);
@@ -232,7 +294,7 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public Result<Integer> getTotalUnreadCount(Long userId) {
         try {
-            int count = messageMapper.getTotalUnreadCount(userId);
+            int count = chatCacheService.getTotalUnread(userId);
             return Result.success(count);
         } catch (Exception e) {
             log.error("获取未读消息数失败", e);
@@ -255,6 +317,10 @@ public class ChatServiceImpl implements ChatService {
             int rows = messageMapper.recallMessage(messageId, userId);
 
             if (rows > 0) {
+                Message message = messageMapper.selectById(messageId);
+                if (message != null) {
+                    chatCacheService.onMessageRecalled(message);
+                }
                 log.info("消息撤回成功: messageId={}, userId={}", messageId, userId);
                 return Result.success("消息撤回成功");
             } else {
@@ -281,6 +347,10 @@ public class ChatServiceImpl implements ChatService {
             int rows = messageMapper.deleteMessage(messageId, userId);
 
             if (rows > 0) {
+                Message message = messageMapper.selectById(messageId);
+                if (message != null) {
+                    chatCacheService.onMessageDeleted(message);
+                }
                 log.info("消息删除成功: messageId={}, userId={}", messageId, userId);
                 return Result.success("消息删除成功");
             } else {
@@ -292,34 +362,6 @@ public class ChatServiceImpl implements ChatService {
         }
     }
 
-    /**
-     * 更新或创建会话
-     */
-    private void updateConversation(Long user1Id, Long user2Id, Long messageId, LocalDateTime messageTime) {
-        // 确保 user1Id < user2Id
-        Long smallerId = Math.min(user1Id, user2Id);
-        Long largerId = Math.max(user1Id, user2Id);
-
-        Conversation conversation = conversationMapper.getConversation(smallerId, largerId);
-
-        if (conversation == null) {
-            // 创建新会话
-            conversation = new Conversation();
-            conversation.setId(IdGenerator.nextId());
-            conversation.setUser1Id(smallerId);
-            conversation.setUser2Id(largerId);
-            conversation.setLastMessageId(messageId);
-            conversation.setLastMessageTime(messageTime);
-            conversation.setUnreadCountUser1(smallerId.equals(user2Id) ? 1 : 0);
-            conversation.setUnreadCountUser2(largerId.equals(user2Id) ? 1 : 0);
-            conversation.setCreatedAt(LocalDateTime.now());
-            conversationMapper.insert(conversation);
-        } else {
-            // 更新现有会话
-            conversationMapper.updateLastMessage(conversation.getId(), messageId, messageTime, user2Id);
-        }
-    }
-
     /**
      * 设置用户在线状态
      */
@@ -338,12 +380,7 @@ public class ChatServiceImpl implements ChatService {
      * 检查两个用户是否互相关注
      */
     private boolean checkMutualFollow(Long user1Id, Long user2Id) {
-        // 检查 user1 是否关注 user2
-        int user1FollowsUser2 = followMapper.checkFollow(user1Id, user2Id);
-        // 检查 user2 是否关注 user1
-        int user2FollowsUser1 = followMapper.checkFollow(user2Id, user1Id);
-
-        // 只有双方都关注了对方才返回 true
-        return user1FollowsUser2 > 0 && user2FollowsUser1 > 0;
+        // 只有双方都关注了对方才返回 true（内存关注图，不访问数据库）
+        return followGraphService.isMutualFollow(user1Id, user2Id);
     }
 }
@@ -5,16 +5,22 @@ import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.dao.*;
 import com.flowbrain.viewx.pojo.dto.CommentCreateDTO;
 import com.flowbrain.viewx.pojo.entity.VideoComment;
-import com.flowbrain.viewx.pojo.entity.User;
-import com.flowbrain.viewx.pojo.entity.UserDetail;
 import com.flowbrain.viewx.pojo.entity.UserFollow;
 import com.flowbrain.viewx.pojo.vo.CommentVO;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.UserSummaryVO;
+import com.flowbrain.viewx.service.CommentLikeService;
+import com.flowbrain.viewx.service.CommentThreadLoader;
 import com.flowbrain.viewx.service.EventPublisher;
+import com.flowbrain.viewx.service.HotCommentService;
 import com.flowbrain.viewx.service.InteractionService;
 import com.flowbrain.viewx.service.NotificationProducerService;
-import com.flowbrain.viewx.service.RecommendService;
 import com.flowbrain.viewx.service.StorageStrategy;
+import com.flowbrain.viewx.service.TimelineService;
+import com.flowbrain.viewx.service.UserStatsService;
+import com.flowbrain.viewx.service.VideoCacheService;
+import com.flowbrain.viewx.service.graph.FollowGraphService;
+import com.flowbrain.viewx.util.CursorCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,7 +30,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * 用户交互服务实现类
@@ -43,13 +48,22 @@ public class InteractionServiceImpl implements InteractionService {
     private FollowMapper followMapper;
 
     @Autowired
-    private UserMapper userMapper;
+    private CommentThreadLoader commentThreadLoader;
 
     @Autowired
-    private UserDetailMapper userDetailMapper;
+    private CommentLikeService commentLikeService;
 
     @Autowired
-    private RecommendService recommendService;
+    private HotCommentService hotCommentService;
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private TimelineService timelineService;
 
     @Autowired
     private EventPublisher eventPublisher;
@@ -60,23 +74,28 @@ public class InteractionServiceImpl implements InteractionService {
     @Autowired
     private NotificationProducerService notificationProducerService;
 
+    @Autowired
+    private VideoCacheService videoCacheService;
+
     // ==================== 点赞相关 ====================
 
     @Override
     @Transactional
     public Result<String> toggleLike(Long userId, Long videoId) {
+        Long videoOwnerId = interactionMapper.getVideoOwnerId(videoId);
         if (interactionMapper.checkLike(userId, videoId) > 0) {
             interactionMapper.deleteLike(userId, videoId);
             interactionMapper.decrementVideoLikeCount(videoId);
+            userStatsService.onVideoLike(videoOwnerId, -1);
             eventPublisher.publishLikeEvent(userId, videoId, false);
             return Result.success("取消点赞");
         } else {
             interactionMapper.insertLike(userId, videoId);
             interactionMapper.incrementVideoLikeCount(videoId);
+            userStatsService.onVideoLike(videoOwnerId, 1);
             eventPublisher.publishLikeEvent(userId, videoId, true);
 
             // Send like notification to video owner
-            Long videoOwnerId = interactionMapper.getVideoOwnerId(videoId);
             if (videoOwnerId != null) {
                 notificationProducerService.sendLikeNotification(videoOwnerId, userId, videoId);
             }
@@ -101,7 +120,6 @@ public class InteractionServiceImpl implements InteractionService {
         } else {
             interactionMapper.insertFavorite(userId, videoId);
             eventPublisher.publishFavoriteEvent(userId, videoId);
-            recommendService.updateVideoScore(videoId);
 
             // Send favorite notification to video owner
             Long videoOwnerId = interactionMapper.getVideoOwnerId(videoId);
@@ -140,6 +158,7 @@ public class InteractionServiceImpl implements InteractionService {
 
             // 更新视频评论数
             commentMapper.incrementVideoCommentCount(dto.getVideoId());
+            hotCommentService.onCommentCreated(comment);
 
             // 发布评论事件（异步通知、统计等）
             eventPublisher.publishCommentEvent(userId, dto.getVideoId(), comment.getId(), dto.getContent());
@@ -152,7 +171,7 @@ public class InteractionServiceImpl implements InteractionService {
             }
 
             // 转换为 VO 返回
-            CommentVO vo = convertToCommentVO(comment, userId);
+            CommentVO vo = commentThreadLoader.toVO(comment);
             return Result.success(vo);
         } catch (Exception e) {
             log.error("发表评论失败", e);
@@ -176,44 +195,89 @@ public class InteractionServiceImpl implements InteractionService {
 
         // 软删除评论
         commentMapper.deleteById(commentId);
+        hotCommentService.onCommentDeleted(comment);
         return Result.success("删除成功");
     }
 
     @Override
     public Result<List<CommentVO>> getVideoComments(Long videoId, Long currentUserId, int page, int size) {
+        // 页码分页为兼容旧客户端保留，新接口见 getVideoCommentsByCursor
         try {
-            // 查询一级评论
-            QueryWrapper<VideoComment> query = new QueryWrapper<>();
-            query.eq("video_id", videoId)
-                    .isNull("parent_id")
-                    .orderByDesc("is_pinned")
-                    .orderByDesc("created_at")
+            QueryWrapper<VideoComment> query = rootCommentQuery(videoId)
                     .last("LIMIT " + size + " OFFSET " + ((page - 1) * size));
+            return Result.success(commentThreadLoader.loadThreads(commentMapper.selectList(query), currentUserId));
+        } catch (Exception e) {
+            log.error("获取评论列表失败", e);
+            return Result.serverError("获取评论列表失败");
+        }
+    }
 
-            List<VideoComment> comments = commentMapper.selectList(query);
+    @Override
+    public Result<CursorPageVO<CommentVO>> getVideoCommentsByCursor(Long videoId, Long currentUserId,
+                                                                    String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        // 游标 = 上一页最后一条的 (is_pinned, created_at, id)，与排序键一致
+        QueryWrapper<VideoComment> query = rootCommentQuery(videoId);
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 3);
+            query.apply("(is_pinned, created_at, id) < ({0}, {1}, {2})",
+                    Boolean.parseBoolean(parts[0]), CursorCodec.parseTime(parts[1]), CursorCodec.parseLong(parts[2]));
+        }
+        query.last("LIMIT " + (size + 1));
 
-            // 转换为 VO 并填充回复
-            List<CommentVO> vos = comments.stream()
-                    .map(comment -> {
-                        CommentVO vo = convertToCommentVO(comment, currentUserId);
-                        // 加载回复
-                        vo.setReplies(loadReplies(comment.getId(), currentUserId));
-                        return vo;
-                    })
-                    .collect(Collectors.toList());
-
-            return Result.success(vos);
+        try {
+            List<VideoComment> comments = commentMapper.selectList(query);
+            boolean hasMore = comments.size() > size;
+            if (hasMore) {
+                comments = comments.subList(0, size);
+            }
+            if (comments.isEmpty()) {
+                return Result.success(CursorPageVO.empty());
+            }
+            VideoComment last = comments.get(comments.size() - 1);
+            String nextCursor = hasMore
+                    ? CursorCodec.encode(Boolean.TRUE.equals(last.getIsPinned()), last.getCreatedAt(), last.getId())
+                    : null;
+            return Result.success(new CursorPageVO<>(commentThreadLoader.loadThreads(comments, currentUserId), nextCursor, hasMore));
         } catch (Exception e) {
             log.error("获取评论列表失败", e);
             return Result.serverError("获取评论列表失败");
         }
     }
 
+    /**
+     * 一级评论查询：置顶优先，其次按时间倒序，id 区分同一时刻的评论
+     * 对应索引 idx_comments_root_keyset
+     */
+    private QueryWrapper<VideoComment> rootCommentQuery(Long videoId) {
+        QueryWrapper<VideoComment> query = new QueryWrapper<>();
+        query.eq("video_id", videoId)
+                .isNull("parent_id")
+                .orderByDesc("is_pinned")
+                .orderByDesc("created_at")
+                .orderByDesc("id");
+        return query;
+    }
+
+    @Override
+    public Result<CursorPageVO<CommentVO>> getHotComments(Long videoId, Long currentUserId, String cursor, int size) {
+        return Result.success(hotCommentService.getHotComments(videoId, currentUserId, cursor, size));
+    }
+
+    @Override
+    public Result<CursorPageVO<CommentVO>> getCommentReplies(Long parentId, Long currentUserId, String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        return Result.success(commentThreadLoader.loadReplies(parentId, currentUserId, cursor, size));
+    }
+
     @Override
-    @Transactional
     public Result<String> toggleCommentLike(Long userId, Long commentId) {
-        // TODO: 实现评论点赞功能（需要创建评论点赞表）
-        return Result.error(501, "功能开发中");
+        // 已删除或不存在的评论不能点赞，避免脏 ID 写入点赞集合和增量缓冲（@TableLogic 自动过滤已删除评论）
+        if (commentId == null || commentMapper.selectCount(new QueryWrapper<VideoComment>().eq("id", commentId)) == 0) {
+            return Result.notFound("评论不存在");
+        }
+        boolean liked = commentLikeService.toggleLike(userId, commentId);
+        return Result.success(liked ? "点赞成功" : "取消点赞");
     }
 
     // ==================== 关注相关 ====================
@@ -226,9 +290,14 @@ public class InteractionServiceImpl implements InteractionService {
             return Result.badRequest("不能关注自己");
         }
 
+        // 写路径仍以数据库为准
         if (followMapper.checkFollow(followerId, followedId) > 0) {
             followMapper.deleteFollow(followerId, followedId);
+            followGraphService.applyFollow(followerId, followedId, false);
+            userStatsService.onFollow(followerId, followedId, false);
+            timelineService.onUnfollow(followerId, followedId);
             eventPublisher.publishFollowEvent(followerId, followedId, false);
+            evictRecommendations(followerId);
             return Result.success("取消关注");
         } else {
             UserFollow follow = new UserFollow();
@@ -236,7 +305,11 @@ public class InteractionServiceImpl implements InteractionService {
             follow.setFollowedId(followedId);
             follow.setCreatedAt(LocalDateTime.now());
             followMapper.insertFollow(follow);
+            followGraphService.applyFollow(followerId, followedId, true);
+            userStatsService.onFollow(followerId, followedId, true);
+            timelineService.onFollow(followerId, followedId);
             eventPublisher.publishFollowEvent(followerId, followedId, true);
+            evictRecommendations(followerId);
 
             // Send follow notification
             notificationProducerService.sendFollowNotification(followedId, followerId);
@@ -245,118 +318,111 @@ public class InteractionServiceImpl implements InteractionService {
         }
     }
 
+    /**
+     * 关注关系变化后只清除该用户自己的推荐缓存页
+     */
+    private void evictRecommendations(Long userId) {
+        try {
+            videoCacheService.evictUserRecommendationsCache(userId);
+        } catch (Exception e) {
+            log.warn("清除用户推荐缓存失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
     @Override
     public boolean isFollowing(Long followerId, Long followedId) {
-        return followMapper.checkFollow(followerId, followedId) > 0;
+        return followGraphService.isFollowing(followerId, followedId);
     }
 
     @Override
     public boolean isMutualFollow(Long userId1, Long userId2) {
-        // 检查双向关注
-        return followMapper.checkFollow(userId1, userId2) > 0
-                && followMapper.checkFollow(userId2, userId1) > 0;
+        return followGraphService.isMutualFollow(userId1, userId2);
     }
 
     @Override
     public long getFollowerCount(Long userId) {
-        return followMapper.getFollowerCount(userId);
+        return userStatsService.getStats(userId).getFollowers();
     }
 
     @Override
     public long getFollowingCount(Long userId) {
-        return followMapper.getFollowingCount(userId);
+        return userStatsService.getStats(userId).getFollowing();
     }
 
     @Override
     public Result<List<UserSummaryVO>> getFollowers(Long userId, Long currentUserId, int page, int size) {
         int offset = (page - 1) * size;
-        List<UserSummaryVO> list = followMapper.getFollowers(userId, offset, size);
-
-        // 批量获取当前用户关注的所有用户ID（避免N+1查询）
-        java.util.Set<Long> followingIds = new java.util.HashSet<>();
-        if (currentUserId != null) {
-            followingIds.addAll(followMapper.getFollowingUserIds(currentUserId));
-        }
-
-        // Process avatars and follow status
-        for (UserSummaryVO user : list) {
-            if (user.getAvatar() != null && !user.getAvatar().startsWith("http")) {
-                user.setAvatar(storageStrategy.getFileUrl(user.getAvatar()));
-            }
-            // 使用 Set 快速判断，O(1) 时间复杂度
-            user.setIsFollowing(followingIds.contains(user.getId()));
-        }
+        List<UserSummaryVO> list = followMapper.getFollowers(userId, null, null, offset, size);
+        fillFollowInfo(list, currentUserId);
         return Result.success(list);
     }
 
     @Override
     public Result<List<UserSummaryVO>> getFollowing(Long userId, Long currentUserId, int page, int size) {
         int offset = (page - 1) * size;
-        List<UserSummaryVO> list = followMapper.getFollowing(userId, offset, size);
+        List<UserSummaryVO> list = followMapper.getFollowing(userId, null, null, offset, size);
+        fillFollowInfo(list, currentUserId);
+        return Result.success(list);
+    }
 
-        // 批量获取当前用户关注的所有用户ID（避免N+1查询）
-        java.util.Set<Long> followingIds = new java.util.HashSet<>();
-        if (currentUserId != null) {
-            followingIds.addAll(followMapper.getFollowingUserIds(currentUserId));
+    @Override
+    public Result<CursorPageVO<UserSummaryVO>> getFollowersByCursor(Long userId, Long currentUserId,
+                                                                   String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            cursorTime = CursorCodec.parseTime(parts[0]);
+            cursorId = CursorCodec.parseLong(parts[1]);
         }
+        return Result.success(toFollowPage(
+                followMapper.getFollowers(userId, cursorTime, cursorId, 0, size + 1), currentUserId, size));
+    }
 
-        // Process avatars and follow status
-        for (UserSummaryVO user : list) {
-            if (user.getAvatar() != null && !user.getAvatar().startsWith("http")) {
-                user.setAvatar(storageStrategy.getFileUrl(user.getAvatar()));
-            }
-            // 使用 Set 快速判断，O(1) 时间复杂度
-            user.setIsFollowing(followingIds.contains(user.getId()));
+    @Override
+    public Result<CursorPageVO<UserSummaryVO>> getFollowingByCursor(Long userId, Long currentUserId,
+                                                                   String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            cursorTime = CursorCodec.parseTime(parts[0]);
+            cursorId = CursorCodec.parseLong(parts[1]);
         }
-        return Result.success(list);
+        return Result.success(toFollowPage(
+                followMapper.getFollowing(userId, cursorTime, cursorId, 0, size + 1), currentUserId, size));
     }
 
-    // ==================== 私有辅助方法 ====================
-
     /**
-     * 转换评论实体为 VO
+     * 多查的一条用于判断是否还有下一页，游标取本页最后一条的 (关注时间, 用户ID)
      */
-    private CommentVO convertToCommentVO(VideoComment comment, Long currentUserId) {
-        CommentVO vo = new CommentVO();
-        BeanUtils.copyProperties(comment, vo);
-
-        // 填充用户信息
-        User user = userMapper.selectById(comment.getUserId());
-        if (user != null) {
-            vo.setUsername(user.getUsername());
-            vo.setNickname(user.getNickname() != null ? user.getNickname() : user.getUsername());
-
-            // 获取头像
-            QueryWrapper<UserDetail> detailQuery = new QueryWrapper<>();
-            detailQuery.eq("user_id", comment.getUserId());
-            UserDetail detail = userDetailMapper.selectOne(detailQuery);
-            if (detail != null && detail.getAvatarUrl() != null) {
-                if (!detail.getAvatarUrl().startsWith("http")) {
-                    vo.setAvatar(storageStrategy.getFileUrl(detail.getAvatarUrl()));
-                } else {
-                    vo.setAvatar(detail.getAvatarUrl());
-                }
-            }
+    private CursorPageVO<UserSummaryVO> toFollowPage(List<UserSummaryVO> list, Long currentUserId, int size) {
+        boolean hasMore = list.size() > size;
+        if (hasMore) {
+            list = list.subList(0, size);
         }
-
-        // 检查当前用户是否点赞了该评论
-        // TODO: 实现评论点赞检查
-        vo.setIsLiked(false);
-
-        return vo;
+        if (list.isEmpty()) {
+            return CursorPageVO.empty();
+        }
+        fillFollowInfo(list, currentUserId);
+        UserSummaryVO last = list.get(list.size() - 1);
+        String nextCursor = hasMore ? CursorCodec.encodeTimeId(last.getFollowedAt(), last.getId()) : null;
+        return new CursorPageVO<>(list, nextCursor, hasMore);
     }
 
     /**
-     * 加载评论的回复列表
+     * 处理头像地址并填充当前用户的关注状态
      */
-    private List<CommentVO> loadReplies(Long parentId, Long currentUserId) {
-        QueryWrapper<VideoComment> query = new QueryWrapper<>();
-        query.eq("parent_id", parentId)
-                .orderByAsc("created_at");
-
-        List<VideoComment> replies = commentMapper.selectList(query);
-        return replies.stream()
-                .map(reply -> convertToCommentVO(reply, currentUserId))
-                .collect(Collectors.toList());
+    private void fillFollowInfo(List<UserSummaryVO> list, Long currentUserId) {
+        // Process avatars and follow status
+        for (UserSummaryVO user : list) {
+            if (user.getAvatar() != null && !user.getAvatar().startsWith("http")) {
+                user.setAvatar(storageStrategy.getFileUrl(user.getAvatar()));
+            }
+            // 内存关注图判断，不再为一页数据加载当前用户的全部关注列表
+            user.setIsFollowing(followGraphService.isFollowing(currentUserId, user.getId()));
+        }
     }
 }
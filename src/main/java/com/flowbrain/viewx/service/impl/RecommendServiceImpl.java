@@ -1,146 +1,329 @@
 package com.flowbrain.viewx.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.flowbrain.viewx.common.RedisKeyConstants;
 import com.flowbrain.viewx.common.Result;
 
-import com.flowbrain.viewx.dao.UserDetailMapper;
-import com.flowbrain.viewx.dao.UserMapper;
 import com.flowbrain.viewx.dao.VideoMapper;
-import com.flowbrain.viewx.pojo.entity.UserDetail;
+import com.flowbrain.viewx.exception.ValidationException;
 import com.flowbrain.viewx.pojo.entity.Video;
+import com.flowbrain.viewx.pojo.vo.CursorPageVO;
 import com.flowbrain.viewx.pojo.vo.VideoListVO;
+import com.flowbrain.viewx.service.PersonalizedFeedService;
 import com.flowbrain.viewx.service.RecommendService;
-import com.flowbrain.viewx.service.StorageStrategy;
+import com.flowbrain.viewx.service.TrendingScoreService;
+import com.flowbrain.viewx.service.VideoHydrationService;
+import com.flowbrain.viewx.service.search.VideoSearchService;
+import com.flowbrain.viewx.util.CursorCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class RecommendServiceImpl implements RecommendService {
 
+    private static final String FEED_PHASE = "feed";
+
+    private static final String TRENDING_PHASE = "trending";
+
     @Autowired
     private VideoMapper videoMapper;
 
     @Autowired
-    private UserMapper userMapper;
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private VideoHydrationService videoHydrationService;
 
     @Autowired
-    private UserDetailMapper userDetailMapper;
+    private TrendingScoreService trendingScoreService;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private PersonalizedFeedService personalizedFeedService;
 
     @Autowired
-    private StorageStrategy storageStrategy;
+    private VideoSearchService videoSearchService;
 
     @Override
     public List<VideoListVO> getTrendingVideos(int page, int size) {
-        int offset = (page - 1) * size;
-        String cacheKey = RedisKeyConstants.Recommend.getTrendingKey() + ":page:" + page + ":size:" + size;
-
-        // 1. 尝试从 Redis 缓存获取
-        @SuppressWarnings("unchecked")
-        List<Long> cachedVideoIds = (List<Long>) redisTemplate.opsForValue().get(cacheKey);
-
-        List<Video> videos;
-
-        if (cachedVideoIds != null && !cachedVideoIds.isEmpty()) {
-            // 缓存命中
-            log.info("Cache HIT for page: {}, size: {} - {} video IDs found", page, size, cachedVideoIds.size());
-            videos = cachedVideoIds.stream()
-                    .map(videoMapper::selectById)
-                    .filter(v -> v != null)
-                    .collect(Collectors.toList());
-        } else {
-            // 缓存未命中，查询数据库
-            log.info("Cache MISS - Fetching videos from database (Testing Mode) - page: {}, size: {}", page, size);
-            videos = videoMapper.selectLatestVideos(offset, size);
-
-            if (videos.isEmpty()) {
-                log.warn("No approved videos found in database");
-            } else {
-                log.info("Found {} videos from database, caching result", videos.size());
-
-                // 2. 将查询结果缓存到 Redis（只缓存视频 ID 列表）
-                List<Long> videoIds = videos.stream()
-                        .map(Video::getId)
-                        .collect(Collectors.toList());
-
-                // 缓存 5 分钟（300 秒）
-                redisTemplate.opsForValue().set(cacheKey, videoIds, java.time.Duration.ofMinutes(5));
-                log.info("Cached {} video IDs with key: {}", videoIds.size(), cacheKey);
-            }
+        CursorCodec.requirePage(page);
+        size = CursorCodec.clampSize(size);
+        String trendingKey = RedisKeyConstants.Recommend.getTrendingKey();
+        long start = (long) (page - 1) * size;
+
+        // 1. 直接按分数倒序分页读取热度榜 ZSET（ZREVRANGE，O(log n + size)）
+        Set<Object> members = redisTemplate.opsForZSet().reverseRange(trendingKey, start, start + size - 1);
+
+        if (members != null && !members.isEmpty()) {
+            log.debug("Trending page from ZSET - page: {}, size: {}, hits: {}", page, size, members.size());
+            return videoHydrationService.hydrateByIds(toIdList(members));
+        }
+
+        // 2. 热度榜为空（Redis 冷启动或被清空）时回退到数据库最新视频
+        Long total = redisTemplate.opsForZSet().zCard(trendingKey);
+        if (total != null && total > 0) {
+            // 热度榜有数据，只是页码超出范围
+            return Collections.emptyList();
         }
 
-        // 转换为 VO 并填充用户信息
-        return videos.stream().map(this::convertToVO).collect(Collectors.toList());
+        log.info("Trending ZSET is empty - falling back to latest videos, page: {}, size: {}", page, size);
+        List<Video> videos = videoMapper.selectLatestVideos((int) start, size);
+        if (videos.isEmpty()) {
+            log.warn("No approved videos found in database");
+        }
+        return videoHydrationService.toVideoListVOs(videos);
     }
 
-    private com.flowbrain.viewx.pojo.vo.VideoListVO convertToVO(Video video) {
-        com.flowbrain.viewx.pojo.vo.VideoListVO vo = new com.flowbrain.viewx.pojo.vo.VideoListVO();
-        org.springframework.beans.BeanUtils.copyProperties(video, vo);
-
-        // 填充用户信息
-        if (video.getUploaderId() != null) {
-            // 获取 User (nickname)
-            com.flowbrain.viewx.pojo.entity.User uploader = userMapper.selectById(video.getUploaderId());
-            if (uploader != null) {
-                if (uploader.getNickname() != null && !uploader.getNickname().isEmpty()) {
-                    vo.setUploaderNickname(uploader.getNickname());
+    @Override
+    public CursorPageVO<VideoListVO> getTrendingVideosByCursor(String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+
+        // 游标 = 上一页最后一条的分数 + 已返回的同分条目数（用于跳过并列分数，保证翻页稳定）
+        double maxScore = Double.POSITIVE_INFINITY;
+        long skip = 0;
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            maxScore = parseScore(parts[0]);
+            skip = CursorCodec.parseLong(parts[1]);
+        }
+
+        TrendingSlice slice = readTrending(maxScore, skip, size, Collections.emptySet());
+        if (slice.ids.isEmpty()) {
+            return CursorPageVO.empty();
+        }
+        String nextCursor = slice.hasMore ? CursorCodec.encode(slice.lastScore, slice.ties) : null;
+        return new CursorPageVO<>(videoHydrationService.hydrateByIds(slice.ids), nextCursor, slice.hasMore);
+    }
+
+    /**
+     * 按分数倒序读取热度榜的一段
+     * 位置 (lastScore, ties) 表示已读到分数 lastScore 的第 ties 个条目，被排除的条目也计入位置
+     *
+     * @param exclude 跳过的视频（如已在推荐流中出现过的）
+     */
+    private TrendingSlice readTrending(double maxScore, long skip, int size, Set<Long> exclude) {
+        String trendingKey = RedisKeyConstants.Recommend.getTrendingKey();
+        TrendingSlice slice = new TrendingSlice(maxScore, skip);
+        int batch = size + 1;
+        while (true) {
+            // ZREVRANGEBYSCORE ... LIMIT ties batch，多取一条用于判断是否还有下一页
+            Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(trendingKey, Double.NEGATIVE_INFINITY, slice.lastScore,
+                            slice.ties, batch);
+            if (tuples == null || tuples.isEmpty()) {
+                return slice;
+            }
+            for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                if (slice.ids.size() == size) {
+                    slice.hasMore = true;
+                    return slice;
+                }
+                double score = tuple.getScore() == null ? 0 : tuple.getScore();
+                if (score == slice.lastScore) {
+                    slice.ties++;
                 } else {
-                    vo.setUploaderNickname(uploader.getUsername());
+                    slice.lastScore = score;
+                    slice.ties = 1;
                 }
+                Long videoId = Long.parseLong(String.valueOf(tuple.getValue()));
+                if (!exclude.contains(videoId)) {
+                    slice.ids.add(videoId);
+                }
+            }
+            if (tuples.size() < batch) {
+                return slice;
             }
+        }
+    }
 
-            // 获取 UserDetail (avatar)
-            QueryWrapper<UserDetail> query = new QueryWrapper<>();
-            query.eq("user_id", video.getUploaderId());
-            UserDetail detail = userDetailMapper.selectOne(query);
-
-            if (detail != null) {
-                if (detail.getAvatarUrl() != null) {
-                    // 处理头像URL
-                    if (!detail.getAvatarUrl().startsWith("http")) {
-                        String fullUrl = storageStrategy.getFileUrl(detail.getAvatarUrl());
-                        vo.setUploaderAvatar(fullUrl);
-                    } else {
-                        vo.setUploaderAvatar(detail.getAvatarUrl());
-                    }
-                }
+    private double parseScore(String part) {
+        try {
+            return Double.parseDouble(part);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("无效的分页游标");
+        }
+    }
+
+    private static final class TrendingSlice {
+
+        private final List<Long> ids = new ArrayList<>();
+
+        private double lastScore;
+
+        private long ties;
+
+        private boolean hasMore;
+
+        private TrendingSlice(double lastScore, long ties) {
+            this.lastScore = lastScore;
+            this.ties = ties;
+        }
+    }
+
+    @Override
+    public CursorPageVO<VideoListVO> getLatestVideosByCursor(String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (!CursorCodec.isBlank(cursor)) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            cursorTime = CursorCodec.parseTime(parts[0]);
+            cursorId = CursorCodec.parseLong(parts[1]);
+        }
+
+        // 多取一条用于判断是否还有下一页
+        List<Video> videos = videoMapper.selectLatestVideosBefore(cursorTime, cursorId, size + 1);
+        boolean hasMore = videos.size() > size;
+        if (hasMore) {
+            videos = videos.subList(0, size);
+        }
+        if (videos.isEmpty()) {
+            return CursorPageVO.empty();
+        }
+
+        Video last = videos.get(videos.size() - 1);
+        String nextCursor = hasMore ? CursorCodec.encodeTimeId(last.getCreatedAt(), last.getId()) : null;
+        return new CursorPageVO<>(videoHydrationService.toVideoListVOs(videos), nextCursor, hasMore);
+    }
+
+    /**
+     * 将 Redis 中反序列化出的ID集合统一转换为 Long
+     * （无类型信息的 JSON 反序列化时，数字可能被还原为 Integer，ZSET 成员则为字符串）
+     */
+    private List<Long> toIdList(Collection<?> values) {
+        List<Long> ids = new ArrayList<>(values.size());
+        for (Object item : values) {
+            if (item instanceof Number number) {
+                ids.add(number.longValue());
+            } else if (item != null) {
+                ids.add(Long.parseLong(item.toString()));
             }
         }
-        return vo;
+        return ids;
     }
 
     @Override
     public List<com.flowbrain.viewx.pojo.vo.VideoListVO> getRecommendedVideos(Long userId, int page, int size) {
+        CursorCodec.requirePage(page);
+        size = CursorCodec.clampSize(size);
         // 1. If user is guest or no preferences, return trending
         if (userId == null) {
             return getTrendingVideos(page, size);
         }
 
-        // TODO: Implement personalized recommendation
-        return getTrendingVideos(page, size);
+        // 2. 直接读取预计算的个性化推荐流（一次管道 ZREVRANGE + ZCARD）
+        long start = (long) (page - 1) * size;
+        List<Long> ids;
+        try {
+            ids = personalizedFeedService.getFeedPage(userId, start, size);
+        } catch (Exception e) {
+            log.warn("读取个性化推荐流失败，回退到热门: userId={}, error={}", userId, e.getMessage());
+            return getTrendingVideos(page, size);
+        }
+
+        // 3. 推荐流尚未生成或已过期：异步重建，本次先返回热门
+        if (ids == null) {
+            personalizedFeedService.requestRebuild(userId);
+            return getTrendingVideos(page, size);
+        }
+
+        // 4. 推荐流已翻完：接着热门榜继续翻页
+        // 页码分页在推荐流重建前后可能重复或跳过，无限滚动应使用 getRecommendedVideosByCursor
+        if (ids.isEmpty()) {
+            long feedPages = (personalizedFeedService.getFeedSize(userId) + size - 1) / size;
+            return getTrendingVideos((int) Math.max(1, page - feedPages), size);
+        }
+
+        return videoHydrationService.hydrateByIds(ids);
+    }
+
+    @Override
+    public CursorPageVO<VideoListVO> getRecommendedVideosByCursor(Long userId, String cursor, int size) {
+        size = CursorCodec.clampSize(size);
+
+        // 游标 = (阶段, 位置)：推荐流阶段为下标，热门阶段为热度榜位置 (分数, 同分条目数)
+        String phase = FEED_PHASE;
+        String[] parts = null;
+        if (!CursorCodec.isBlank(cursor)) {
+            parts = CursorCodec.decode(cursor, 3);
+            phase = parts[0];
+        }
+        if (userId == null) {
+            phase = TRENDING_PHASE;
+        }
+
+        if (FEED_PHASE.equals(phase)) {
+            long offset = parts == null ? 0 : CursorCodec.parseLong(parts[1]);
+            List<Long> ids;
+            try {
+                ids = personalizedFeedService.getFeedPage(userId, offset, size + 1);
+            } catch (Exception e) {
+                log.warn("读取个性化推荐流失败，回退到热门: userId={}, error={}", userId, e.getMessage());
+                ids = null;
+            }
+            if (ids == null) {
+                // 推荐流尚未生成或已过期：异步重建，本次会话从热门第一页开始，不在中途切回推荐流
+                personalizedFeedService.requestRebuild(userId);
+                return trendingPage(Double.POSITIVE_INFINITY, 0, size, Collections.emptySet());
+            }
+            if (ids.size() > size) {
+                return new CursorPageVO<>(videoHydrationService.hydrateByIds(ids.subList(0, size)),
+                        CursorCodec.encode(FEED_PHASE, offset + size, 0), true);
+            }
+            if (!ids.isEmpty()) {
+                // 推荐流最后一页，下一页从热门榜开头继续
+                return new CursorPageVO<>(videoHydrationService.hydrateByIds(ids),
+                        CursorCodec.encode(TRENDING_PHASE, Double.POSITIVE_INFINITY, 0), true);
+            }
+            // 推荐流恰好在上一页翻完
+            return trendingPage(Double.POSITIVE_INFINITY, 0, size, personalizedFeedService.getFeedIds(userId));
+        }
+
+        if (!TRENDING_PHASE.equals(phase) || parts == null) {
+            throw new ValidationException("无效的分页游标");
+        }
+        Set<Long> exclude = userId == null ? Collections.emptySet() : personalizedFeedService.getFeedIds(userId);
+        return trendingPage(parseScore(parts[1]), CursorCodec.parseLong(parts[2]), size, exclude);
+    }
+
+    /**
+     * 推荐流之后的热门阶段：跳过推荐流中已出现的视频，游标记录热度榜位置
+     */
+    private CursorPageVO<VideoListVO> trendingPage(double maxScore, long skip, int size, Set<Long> exclude) {
+        TrendingSlice slice = readTrending(maxScore, skip, size, exclude);
+        String nextCursor = slice.hasMore ? CursorCodec.encode(TRENDING_PHASE, slice.lastScore, slice.ties) : null;
+        return new CursorPageVO<>(videoHydrationService.hydrateByIds(slice.ids), nextCursor, slice.hasMore);
     }
 
     @Override
     public void updateVideoScore(Long videoId) {
+        String trendingKey = RedisKeyConstants.Recommend.getTrendingKey();
+
         Video video = videoMapper.selectById(videoId);
-        if (video == null)
+        if (video == null || !"APPROVED".equals(video.getStatus()) || Boolean.TRUE.equals(video.getIsDeleted())) {
+            // 热度榜只保留已审核通过的视频，避免分页读取时出现空洞
+            redisTemplate.opsForZSet().remove(trendingKey, videoId.toString());
             return;
+        }
 
+        // 全量重算（上传/审核通过时使用），换算到热度榜的 epoch 空间后覆盖
+        // 日常互动事件走 TrendingScoreService.recordEvent 增量更新，不再回读数据库
         double score = calculateScore(video);
 
-        String trendingKey = RedisKeyConstants.Recommend.getTrendingKey();
-        redisTemplate.opsForZSet().add(trendingKey, videoId.toString(), score);
+        trendingScoreService.setScore(videoId, score);
         log.debug("Updated score for video {}: {}", videoId, score);
     }
 
@@ -160,12 +343,11 @@ public class RecommendServiceImpl implements RecommendService {
             return;
         }
 
-        String trendingKey = RedisKeyConstants.Recommend.getTrendingKey();
         int count = 0;
 
         for (Video video : allVideos) {
             double score = calculateScore(video);
-            redisTemplate.opsForZSet().add(trendingKey, video.getId().toString(), score);
+            trendingScoreService.setScore(video.getId(), score);
             count++;
         }
 
@@ -198,8 +380,24 @@ public class RecommendServiceImpl implements RecommendService {
     @Override
     public Result<List<com.flowbrain.viewx.pojo.vo.VideoListVO>> searchVideos(String keyword, Long userId, int page,
             int size) {
+        CursorCodec.requirePage(page);
+        int pageSize = CursorCodec.clampSize(size);
         try {
-            // 使用 MyBatis-Plus 的 QueryWrapper 进行搜索
+            long offsetLong = (long) (page - 1) * pageSize;
+            if (offsetLong > Integer.MAX_VALUE) {
+                return Result.success(Collections.emptyList());
+            }
+            int offset = (int) offsetLong;
+
+            // 1. 索引已就绪：内存倒排索引检索（BM25），只对结果页做一次批量回填
+            if (videoSearchService.isReady()) {
+                List<Long> ids = videoSearchService.search(keyword, offset, pageSize);
+                List<com.flowbrain.viewx.pojo.vo.VideoListVO> videoVOs = videoHydrationService.hydrateByIds(ids);
+                log.info("搜索视频成功，关键词: {}, 结果数: {}", keyword, videoVOs.size());
+                return Result.success(videoVOs);
+            }
+
+            // 2. 索引构建中：回退到数据库模糊查询
             QueryWrapper<Video> query = new QueryWrapper<>();
             query.eq("is_deleted", false)
                     .eq("status", "APPROVED")
@@ -207,17 +405,15 @@ public class RecommendServiceImpl implements RecommendService {
                             .like("title", keyword)
                             .or()
                             .like("description", keyword))
-                    .orderByDesc("created_at")
-                    .last("LIMIT " + size + " OFFSET " + ((page - 1) * size));
+                    .orderByDesc("created_at");
 
-            List<Video> videos = videoMapper.selectList(query);
+            Page<Video> result = videoMapper.selectPage(new Page<>(page, pageSize, false), query);
 
-            // 转换为 VO 并填充额外信息
-            List<com.flowbrain.viewx.pojo.vo.VideoListVO> videoVOs = videos.stream()
-                    .map(this::convertToVO)
-                    .collect(Collectors.toList());
+            // 批量转换为 VO 并填充上传者信息
+            List<com.flowbrain.viewx.pojo.vo.VideoListVO> videoVOs = videoHydrationService
+                    .toVideoListVOs(result.getRecords());
 
-            log.info("搜索视频成功，关键词: {}, 结果数: {}", keyword, videoVOs.size());
+            log.info("搜索视频成功（数据库），关键词: {}, 结果数: {}", keyword, videoVOs.size());
             return Result.success(videoVOs);
         } catch (Exception e) {
             log.error("搜索视频失败，关键词: {}", keyword, e);
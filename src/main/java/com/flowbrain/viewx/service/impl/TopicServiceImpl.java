@@ -5,6 +5,7 @@ import com.flowbrain.viewx.dao.VideoTopicMapper;
 import com.flowbrain.viewx.pojo.entity.Topic;
 import com.flowbrain.viewx.pojo.entity.VideoTopic;
 import com.flowbrain.viewx.service.TopicService;
+import com.flowbrain.viewx.service.search.SuggestService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -27,6 +28,9 @@ public class TopicServiceImpl implements TopicService {
     @Autowired
     private VideoTopicMapper videoTopicMapper;
 
+    @Autowired
+    private SuggestService suggestService;
+
     // 匹配以#开头的话题，支持中英文、数字、下划线
     private static final Pattern TOPIC_PATTERN = Pattern.compile("#([\\u4e00-\\u9fa5a-zA-Z0-9_]+)");
 
@@ -70,6 +74,7 @@ public class TopicServiceImpl implements TopicService {
                 videoTopicMapper.insert(videoTopic);
                 // 增加话题的视频计数
                 topicMapper.incrementVideoCount(topic.getId());
+                suggestService.adjustTopic(topic.getId(), topic.getName(), 1);
                 log.info("视频 {} 关联话题 {} 成功", videoId, topicName);
             } catch (Exception e) {
                 // 可能是重复关联，忽略
@@ -113,6 +118,7 @@ public class TopicServiceImpl implements TopicService {
         // 减少每个话题的视频计数
         for (Long topicId : topicIds) {
             topicMapper.decrementVideoCount(topicId);
+            suggestService.adjustTopic(topicId, null, -1);
         }
 
         log.info("删除视频 {} 的所有话题关联，共 {} 个", videoId, topicIds.size());
@@ -1,6 +1,7 @@
 package com.flowbrain.viewx.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.flowbrain.viewx.common.EventType;
 import com.flowbrain.viewx.common.Result;
 import com.flowbrain.viewx.dao.UserMapper;
 import com.flowbrain.viewx.dao.VideoMapper;
@@ -55,6 +56,18 @@ public class VideoServiceImpl implements VideoService {
     @Autowired
     private com.flowbrain.viewx.service.RecommendService recommendService;
 
+    @Autowired
+    private com.flowbrain.viewx.service.ViewCountService viewCountService;
+
+    @Autowired
+    private com.flowbrain.viewx.service.VideoCacheService videoCacheService;
+
+    @Autowired
+    private com.flowbrain.viewx.service.EventPublisher eventPublisher;
+
+    @Autowired
+    private com.flowbrain.viewx.service.UserStatsService userStatsService;
+
     @Override
     public Result<VideoDetailVO> getVideoDetail(Long videoId, Long userId) {
         Video video = videoMapper.selectById(videoId);
@@ -69,12 +82,12 @@ public class VideoServiceImpl implements VideoService {
             }
         }
 
-        // 增加播放量 (简单实现，实际应异步或使用Redis)
-        video.setViewCount(video.getViewCount() + 1);
-        videoMapper.updateById(video);
+        // 增加播放量：写入 Redis 缓冲，定时批量落库；返回值合并未落库增量，保证展示实时
+        long pendingViews = viewCountService.recordView(videoId);
 
         VideoDetailVO vo = new VideoDetailVO();
         BeanUtils.copyProperties(video, vo);
+        vo.setViewCount((video.getViewCount() == null ? 0 : video.getViewCount()) + pendingViews);
 
         // 填充上传者信息
         User uploader = userMapper.selectById(video.getUploaderId());
@@ -133,6 +146,7 @@ public class VideoServiceImpl implements VideoService {
 
             videoMapper.insert(video);
             Long videoId = video.getId();
+            userStatsService.onVideoCreated(userId);
 
             // 2. 使用FilePathUtil生成文件路径
             String extension = FilePathUtil.extractExtension(videoFile.getOriginalFilename());
@@ -397,6 +411,8 @@ public class VideoServiceImpl implements VideoService {
         if (changed) {
             video.setUpdatedAt(LocalDateTime.now());
             videoMapper.updateById(video);
+            evictVideoCache(videoId);
+            eventPublisher.publishVideoChangeEvent(EventType.VIDEO_UPDATE, userId, videoId);
             return Result.success("视频更新成功");
         }
 
@@ -467,9 +483,31 @@ public class VideoServiceImpl implements VideoService {
         }
 
         videoMapper.deleteById(videoId);
+        userStatsService.onVideoDeleted(video.getUploaderId(), video.getLikeCount() == null ? 0 : video.getLikeCount());
+        viewCountService.onVideoDeleted(videoId);
+
+        // 从热度榜中移除（updateVideoScore 会清理已删除的视频）
+        try {
+            recommendService.updateVideoScore(videoId);
+        } catch (Exception e) {
+            log.warn("移出热度榜失败，不影响删除: {}", e.getMessage());
+        }
+        evictVideoCache(videoId);
+        eventPublisher.publishVideoChangeEvent(EventType.VIDEO_DELETE, userId, videoId);
         return Result.success("删除成功");
     }
 
+    /**
+     * 清除包含该视频的热门/推荐缓存页
+     */
+    private void evictVideoCache(Long videoId) {
+        try {
+            videoCacheService.evictVideoCache(videoId);
+        } catch (Exception e) {
+            log.warn("清除视频缓存失败: videoId={}, error={}", videoId, e.getMessage());
+        }
+    }
+
     @Override
     public Result<java.util.List<Video>> getMyVideos(Long userId) {
         com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<Video> query = new com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<>();
@@ -0,0 +1,236 @@
+package com.flowbrain.viewx.service.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 不可变索引段
+ *
+ * 文档、词典、倒排表全部存放在原始类型数组中：
+ * - docIds 升序，下标即段内文档序号
+ * - terms 升序，二分查找定位词项，postingStart[t] ~ postingStart[t + 1] 为其倒排表区间
+ * - postingDocs / postingFreqs 为段内文档序号与加权词频
+ *
+ * 段内容构建后不再变化，唯一可变的是删除标记（由 InvertedIndex 的写锁保护）
+ */
+final class IndexSegment {
+
+    final long[] docIds;
+
+    final int[] docLengths;
+
+    final String[] terms;
+
+    final int[] postingStart;
+
+    final int[] postingDocs;
+
+    final int[] postingFreqs;
+
+    private final BitSet deleted = new BitSet();
+
+    private int liveCount;
+
+    private long liveLength;
+
+    private IndexSegment(long[] docIds, int[] docLengths, String[] terms,
+                         int[] postingStart, int[] postingDocs, int[] postingFreqs) {
+        this.docIds = docIds;
+        this.docLengths = docLengths;
+        this.terms = terms;
+        this.postingStart = postingStart;
+        this.postingDocs = postingDocs;
+        this.postingFreqs = postingFreqs;
+        this.liveCount = docIds.length;
+        for (int length : docLengths) {
+            liveLength += length;
+        }
+    }
+
+    /**
+     * 由文档集合构建段
+     *
+     * @param docs videoId -> (词项 -> 加权词频)
+     */
+    static IndexSegment build(Map<Long, Map<String, Integer>> docs) {
+        long[] docIds = docs.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        int[] docLengths = new int[docIds.length];
+
+        // 词项 -> [文档序号, 词频, 文档序号, 词频, ...]（按文档序号递增追加）
+        TreeMap<String, IntList> byTerm = new TreeMap<>();
+        int postingCount = 0;
+        for (int ord = 0; ord < docIds.length; ord++) {
+            int length = 0;
+            for (Map.Entry<String, Integer> entry : docs.get(docIds[ord]).entrySet()) {
+                byTerm.computeIfAbsent(entry.getKey(), k -> new IntList()).add(ord, entry.getValue());
+                length += entry.getValue();
+                postingCount++;
+            }
+            docLengths[ord] = length;
+        }
+
+        String[] terms = new String[byTerm.size()];
+        int[] postingStart = new int[terms.length + 1];
+        int[] postingDocs = new int[postingCount];
+        int[] postingFreqs = new int[postingCount];
+        int t = 0;
+        int p = 0;
+        for (Map.Entry<String, IntList> entry : byTerm.entrySet()) {
+            terms[t] = entry.getKey();
+            postingStart[t] = p;
+            IntList list = entry.getValue();
+            for (int i = 0; i < list.size; i += 2) {
+                postingDocs[p] = list.values[i];
+                postingFreqs[p] = list.values[i + 1];
+                p++;
+            }
+            t++;
+        }
+        postingStart[terms.length] = p;
+        return new IndexSegment(docIds, docLengths, terms, postingStart, postingDocs, postingFreqs);
+    }
+
+    /**
+     * 还原本段存活文档的词频表（合并、快照时使用）
+     */
+    void collectLiveDocs(Map<Long, Map<String, Integer>> target) {
+        for (int t = 0; t < terms.length; t++) {
+            for (int p = postingStart[t]; p < postingStart[t + 1]; p++) {
+                int ord = postingDocs[p];
+                if (!deleted.get(ord)) {
+                    target.computeIfAbsent(docIds[ord], k -> new HashMap<>()).put(terms[t], postingFreqs[p]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 词项下标，不存在时返回负数
+     */
+    int termIndex(String term) {
+        return Arrays.binarySearch(terms, term);
+    }
+
+    /**
+     * 标记删除
+     *
+     * @return 本段是否包含该文档且此前未删除
+     */
+    boolean delete(long docId) {
+        int ord = Arrays.binarySearch(docIds, docId);
+        if (ord < 0 || deleted.get(ord)) {
+            return false;
+        }
+        deleted.set(ord);
+        liveCount--;
+        liveLength -= docLengths[ord];
+        return true;
+    }
+
+    boolean isDeleted(int ord) {
+        return deleted.get(ord);
+    }
+
+    /**
+     * 已删除的文档ID（合并期间用于把新产生的删除同步到新段）
+     */
+    List<Long> deletedDocIds() {
+        List<Long> ids = new ArrayList<>(docIds.length - liveCount);
+        for (int ord = deleted.nextSetBit(0); ord >= 0; ord = deleted.nextSetBit(ord + 1)) {
+            ids.add(docIds[ord]);
+        }
+        return ids;
+    }
+
+    int liveCount() {
+        return liveCount;
+    }
+
+    long liveLength() {
+        return liveLength;
+    }
+
+    int maxDoc() {
+        return docIds.length;
+    }
+
+    /**
+     * 写入快照（只写存活文档，调用方应先合并为单段）
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(docIds.length);
+        for (int i = 0; i < docIds.length; i++) {
+            out.writeLong(docIds[i]);
+            out.writeInt(docLengths[i]);
+        }
+        out.writeInt(terms.length);
+        for (int t = 0; t < terms.length; t++) {
+            out.writeUTF(terms[t]);
+            out.writeInt(postingStart[t]);
+        }
+        out.writeInt(postingDocs.length);
+        for (int p = 0; p < postingDocs.length; p++) {
+            out.writeInt(postingDocs[p]);
+            out.writeInt(postingFreqs[p]);
+        }
+        out.writeInt(deleted.cardinality());
+        for (int ord = deleted.nextSetBit(0); ord >= 0; ord = deleted.nextSetBit(ord + 1)) {
+            out.writeInt(ord);
+        }
+    }
+
+    static IndexSegment readFrom(DataInputStream in) throws IOException {
+        int docCount = in.readInt();
+        long[] docIds = new long[docCount];
+        int[] docLengths = new int[docCount];
+        for (int i = 0; i < docCount; i++) {
+            docIds[i] = in.readLong();
+            docLengths[i] = in.readInt();
+        }
+        int termCount = in.readInt();
+        String[] terms = new String[termCount];
+        int[] postingStart = new int[termCount + 1];
+        for (int t = 0; t < termCount; t++) {
+            terms[t] = in.readUTF();
+            postingStart[t] = in.readInt();
+        }
+        int postingCount = in.readInt();
+        postingStart[termCount] = postingCount;
+        int[] postingDocs = new int[postingCount];
+        int[] postingFreqs = new int[postingCount];
+        for (int p = 0; p < postingCount; p++) {
+            postingDocs[p] = in.readInt();
+            postingFreqs[p] = in.readInt();
+        }
+        IndexSegment segment = new IndexSegment(docIds, docLengths, terms, postingStart, postingDocs, postingFreqs);
+        int deletedCount = in.readInt();
+        for (int i = 0; i < deletedCount; i++) {
+            segment.delete(docIds[in.readInt()]);
+        }
+        return segment;
+    }
+
+    /**
+     * 可增长的 int 数组，避免构建时装箱
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int a, int b) {
+            if (size + 2 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = a;
+            values[size++] = b;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.flowbrain.viewx.service.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 视频标题/简介的内存倒排索引，BM25 排序
+ *
+ * 结构：若干不可变段（IndexSegment）+ 一个可变的增量段
+ * - 写入：先在所有段中标记删除旧版本，再写入增量段；增量段满 maxDeltaDocs 后冻结为不可变段
+ * - 合并：段数过多或段内删除比例过高时，后台把小段合并为一个新段（构建过程不持有锁）
+ * - 检索：遍历所有段和增量段的倒排表，跳过已删除文档
+ *
+ * 标题词频按 TITLE_BOOST 加权后与简介词频相加（简化的 BM25F），文档长度同样按加权后的词数计算。
+ * 文档频率 df 包含尚未合并掉的已删除文档，对排序影响可忽略。
+ */
+public class InvertedIndex {
+
+    static final int TITLE_BOOST = 3;
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    /**
+     * 段内删除比例超过该值时单独重写
+     */
+    private static final double MAX_DELETED_RATIO = 0.3;
+
+    private final int maxDeltaDocs;
+
+    private List<IndexSegment> segments = Collections.emptyList();
+
+    /**
+     * 增量段：词项 -> (视频ID -> 加权词频)
+     */
+    private final Map<String, Map<Long, Integer>> deltaPostings = new HashMap<>();
+
+    /**
+     * 增量段：视频ID -> (词项 -> 加权词频)
+     */
+    private final Map<Long, Map<String, Integer>> deltaDocs = new HashMap<>();
+
+    /**
+     * 增量段：视频ID -> 加权文档长度
+     */
+    private final Map<Long, Integer> deltaLengths = new HashMap<>();
+
+    private long deltaLength;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicBoolean merging = new AtomicBoolean(false);
+
+    public InvertedIndex() {
+        this(2000);
+    }
+
+    /**
+     * @param maxDeltaDocs 增量段文档数上限，达到后冻结为不可变段
+     */
+    public InvertedIndex(int maxDeltaDocs) {
+        this.maxDeltaDocs = Math.max(1, maxDeltaDocs);
+    }
+
+    /**
+     * 新增或覆盖一个视频
+     */
+    public void upsert(Long videoId, String title, String description) {
+        Map<String, Integer> tf = termFrequencies(title, description);
+        int length = 0;
+        for (int f : tf.values()) {
+            length += f;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(videoId);
+            if (tf.isEmpty()) {
+                return;
+            }
+            tf.forEach((term, f) -> deltaPostings.computeIfAbsent(term, k -> new HashMap<>()).put(videoId, f));
+            deltaDocs.put(videoId, tf);
+            deltaLengths.put(videoId, length);
+            deltaLength += length;
+
+            if (deltaDocs.size() >= maxDeltaDocs) {
+                freezeDeltaLocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long videoId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(videoId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = deltaDocs.size();
+            for (IndexSegment segment : segments) {
+                size += segment.liveCount();
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * BM25 检索（查询词之间为 OR 关系，命中的词越多、越稀有，分数越高）
+     *
+     * @return 按相关度从高到低的视频ID（同分时新视频在前）
+     */
+    public List<Long> search(String query, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(SearchTokenizer.tokenizeQuery(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            long docCount = deltaDocs.size();
+            long totalLength = deltaLength;
+            for (IndexSegment segment : segments) {
+                docCount += segment.liveCount();
+                totalLength += segment.liveLength();
+            }
+            if (docCount == 0) {
+                return Collections.emptyList();
+            }
+            double avgLength = (double) totalLength / docCount;
+
+            for (String term : terms) {
+                Map<Long, Integer> deltaList = deltaPostings.get(term);
+                int df = deltaList == null ? 0 : deltaList.size();
+                int[] termIndexes = new int[segments.size()];
+                for (int s = 0; s < segments.size(); s++) {
+                    IndexSegment segment = segments.get(s);
+                    termIndexes[s] = segment.termIndex(term);
+                    if (termIndexes[s] >= 0) {
+                        df += segment.postingStart[termIndexes[s] + 1] - segment.postingStart[termIndexes[s]];
+                    }
+                }
+                if (df == 0) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+
+                for (int s = 0; s < segments.size(); s++) {
+                    int t = termIndexes[s];
+                    if (t < 0) {
+                        continue;
+                    }
+                    IndexSegment segment = segments.get(s);
+                    for (int p = segment.postingStart[t]; p < segment.postingStart[t + 1]; p++) {
+                        int ord = segment.postingDocs[p];
+                        if (!segment.isDeleted(ord)) {
+                            double score = bm25(idf, segment.postingFreqs[p], segment.docLengths[ord], avgLength);
+                            scores.merge(segment.docIds[ord], score, Double::sum);
+                        }
+                    }
+                }
+                if (deltaList != null) {
+                    deltaList.forEach((videoId, f) ->
+                            scores.merge(videoId, bm25(idf, f, deltaLengths.get(videoId), avgLength), Double::sum));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return topK(scores, offset, limit);
+    }
+
+    /**
+     * 把增量段冻结为不可变段
+     *
+     * @return 是否有文档被冻结
+     */
+    public boolean flushDelta() {
+        lock.writeLock().lock();
+        try {
+            return freezeDeltaLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按需合并段：段数超过 maxSegments 时合并最小的 mergeFactor 个段，删除比例过高的段单独重写
+     * 新段在锁外构建，期间产生的删除在替换时补标记
+     *
+     * @return 是否执行了合并
+     */
+    public boolean maybeMerge(int maxSegments, int mergeFactor) {
+        if (!merging.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            List<IndexSegment> sources;
+            Map<Long, Map<String, Integer>> docs = new HashMap<>();
+            lock.readLock().lock();
+            try {
+                sources = selectMergeSources(maxSegments, mergeFactor);
+                if (sources.isEmpty()) {
+                    return false;
+                }
+                for (IndexSegment segment : sources) {
+                    segment.collectLiveDocs(docs);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            IndexSegment merged = docs.isEmpty() ? null : IndexSegment.build(docs);
+
+            lock.writeLock().lock();
+            try {
+                List<IndexSegment> next = new ArrayList<>(segments.size());
+                for (IndexSegment segment : segments) {
+                    if (!sources.contains(segment)) {
+                        next.add(segment);
+                    }
+                }
+                if (merged != null) {
+                    for (IndexSegment source : sources) {
+                        for (Long docId : source.deletedDocIds()) {
+                            merged.delete(docId);
+                        }
+                    }
+                    next.add(merged);
+                }
+                segments = Collections.unmodifiableList(next);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } finally {
+            merging.set(false);
+        }
+    }
+
+    /**
+     * 生成只含存活文档的单段副本（用于写快照，不改变当前索引）
+     */
+    public IndexSegment compactCopy() {
+        Map<Long, Map<String, Integer>> docs = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (IndexSegment segment : segments) {
+                segment.collectLiveDocs(docs);
+            }
+            deltaDocs.forEach((videoId, tf) -> docs.put(videoId, new HashMap<>(tf)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return IndexSegment.build(docs);
+    }
+
+    /**
+     * 用快照段替换当前索引的全部内容
+     */
+    public void load(IndexSegment segment) {
+        lock.writeLock().lock();
+        try {
+            segments = Collections.singletonList(segment);
+            deltaPostings.clear();
+            deltaDocs.clear();
+            deltaLengths.clear();
+            deltaLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<IndexSegment> selectMergeSources(int maxSegments, int mergeFactor) {
+        List<IndexSegment> sources = new ArrayList<>();
+        if (segments.size() > maxSegments) {
+            List<IndexSegment> bySize = new ArrayList<>(segments);
+            bySize.sort(Comparator.comparingInt(IndexSegment::liveCount));
+            sources.addAll(bySize.subList(0, Math.min(Math.max(2, mergeFactor), bySize.size())));
+        }
+        for (IndexSegment segment : segments) {
+            int deletedCount = segment.maxDoc() - segment.liveCount();
+            if (!sources.contains(segment) && deletedCount > segment.maxDoc() * MAX_DELETED_RATIO) {
+                sources.add(segment);
+            }
+        }
+        return sources;
+    }
+
+    private boolean freezeDeltaLocked() {
+        if (deltaDocs.isEmpty()) {
+            return false;
+        }
+        List<IndexSegment> next = new ArrayList<>(segments);
+        next.add(IndexSegment.build(deltaDocs));
+        segments = Collections.unmodifiableList(next);
+        deltaPostings.clear();
+        deltaDocs.clear();
+        deltaLengths.clear();
+        deltaLength = 0;
+        return true;
+    }
+
+    private static double bm25(double idf, int f, int docLength, double avgLength) {
+        double norm = K1 * (1 - B + B * docLength / avgLength);
+        return idf * f * (K1 + 1) / (f + norm);
+    }
+
+    /**
+     * 只保留前 offset + limit 个结果的小顶堆，避免对全部命中排序
+     */
+    private static List<Long> topK(Map<Long, Double> scores, int offset, int limit) {
+        if (offset < 0 || offset >= scores.size()) {
+            return Collections.emptyList();
+        }
+        // 不超过命中数，堆容量与 offset + limit 的大小无关
+        int k = (int) Math.min((long) offset + limit, scores.size());
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(k + 1, InvertedIndex::compareHit);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+
+        List<Long> ranked = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ranked.add(heap.poll().getKey());
+        }
+        Collections.reverse(ranked);
+        return offset >= ranked.size() ? Collections.emptyList() : ranked.subList(offset, ranked.size());
+    }
+
+    /**
+     * 分数升序；同分时ID小（更早发布的雪花ID）的排前，出堆后反转即为分数降序、新视频在前
+     */
+    private static int compareHit(Map.Entry<Long, Double> a, Map.Entry<Long, Double> b) {
+        int c = Double.compare(a.getValue(), b.getValue());
+        return c != 0 ? c : Long.compare(a.getKey(), b.getKey());
+    }
+
+    static Map<String, Integer> termFrequencies(String title, String description) {
+        Map<String, Integer> tf = new HashMap<>();
+        for (String term : SearchTokenizer.tokenize(title, true)) {
+            tf.merge(term, TITLE_BOOST, Integer::sum);
+        }
+        for (String term : SearchTokenizer.tokenize(description, false)) {
+            tf.merge(term, 1, Integer::sum);
+        }
+        return tf;
+    }
+
+    private void removeLocked(Long videoId) {
+        Map<String, Integer> tf = deltaDocs.remove(videoId);
+        if (tf != null) {
+            for (String term : tf.keySet()) {
+                Map<Long, Integer> list = deltaPostings.get(term);
+                if (list != null) {
+                    list.remove(videoId);
+                    if (list.isEmpty()) {
+                        deltaPostings.remove(term);
+                    }
+                }
+            }
+            deltaLength -= deltaLengths.remove(videoId);
+        }
+        for (IndexSegment segment : segments) {
+            segment.delete(videoId);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.flowbrain.viewx.service.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 搜索分词器
+ *
+ * - 中日韩文字：按二元组（bigram）切分，"推荐算法" -> 推荐 / 荐算 / 算法；单字片段保留单字
+ * - 字母、数字：按连续片段切成单词并转小写
+ * - 其余字符（空白、标点、表情）视为分隔符
+ *
+ * 索引与查询使用同一套规则，保证词项一致
+ */
+public final class SearchTokenizer {
+
+    /**
+     * 单个英文/数字词项的最大长度，超长部分截断
+     */
+    private static final int MAX_WORD_LENGTH = 32;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 分词
+     *
+     * @param text         原文
+     * @param withUnigrams 中日韩片段是否额外输出单字词项（标题使用，以支持单字查询）
+     */
+    public static List<String> tokenize(String text, boolean withUnigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder word = new StringBuilder();
+        List<Integer> cjkRun = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+                cjkRun.add(cp);
+            } else if (Character.isLetterOrDigit(cp)) {
+                flushCjk(cjkRun, tokens, withUnigrams);
+                if (word.length() < MAX_WORD_LENGTH) {
+                    word.appendCodePoint(Character.toLowerCase(cp));
+                }
+            } else {
+                flushWord(word, tokens);
+                flushCjk(cjkRun, tokens, withUnigrams);
+            }
+        }
+        flushWord(word, tokens);
+        flushCjk(cjkRun, tokens, withUnigrams);
+        return tokens;
+    }
+
+    /**
+     * 查询分词：长度大于 1 的中日韩片段只用二元组，单字片段用单字
+     */
+    public static List<String> tokenizeQuery(String query) {
+        return tokenize(query, false);
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(List<Integer> run, List<String> tokens, boolean withUnigrams) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (run.size() == 1) {
+            tokens.add(new String(Character.toChars(run.get(0))));
+        } else {
+            for (int j = 0; j + 1 < run.size(); j++) {
+                tokens.add(new StringBuilder().appendCodePoint(run.get(j)).appendCodePoint(run.get(j + 1)).toString());
+            }
+            if (withUnigrams) {
+                for (int cp : run) {
+                    tokens.add(new String(Character.toChars(cp)));
+                }
+            }
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,212 @@
+package com.flowbrain.viewx.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 前缀补全索引（不可变）
+ *
+ * 词条按规范化文本排序后存放在并行数组中，前缀对应的词条是一段连续区间：
+ * - 两次二分查找定位区间 [from, to)
+ * - 在按权重取最大值的线段树上做"区间最大值 + 拆分"，按权重从高到低逐条取出，
+ *   取 k 条只需 O(k·log n)，与前缀命中多少词条无关
+ *
+ * 构建后不再修改，查询无锁；更新时整体重建后替换引用
+ */
+final class SuggestIndex {
+
+    static final SuggestIndex EMPTY = build(Collections.emptyList());
+
+    /**
+     * 规范化后的文本，升序
+     */
+    final String[] keys;
+
+    final String[] texts;
+
+    final long[] ids;
+
+    final double[] weights;
+
+    final double maxWeight;
+
+    /**
+     * 线段树：叶子在 [n, 2n)，内部节点存子树中权重最大的词条下标
+     */
+    private final int[] tree;
+
+    private SuggestIndex(String[] keys, String[] texts, long[] ids, double[] weights) {
+        this.keys = keys;
+        this.texts = texts;
+        this.ids = ids;
+        this.weights = weights;
+        int n = keys.length;
+        this.tree = new int[2 * n];
+        double max = 0;
+        for (int i = 0; i < n; i++) {
+            tree[n + i] = i;
+            max = Math.max(max, weights[i]);
+        }
+        for (int node = n - 1; node > 0; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+        this.maxWeight = max;
+    }
+
+    /**
+     * 由词条构建索引，文本规范化后为空的词条忽略
+     */
+    static SuggestIndex build(Collection<Entry> entries) {
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            String key = normalize(entry.text);
+            if (!key.isEmpty()) {
+                rows.add(new Object[]{key, entry});
+            }
+        }
+        rows.sort((a, b) -> ((String) a[0]).compareTo((String) b[0]));
+
+        int n = rows.size();
+        String[] keys = new String[n];
+        String[] texts = new String[n];
+        long[] ids = new long[n];
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            Entry entry = (Entry) rows.get(i)[1];
+            keys[i] = (String) rows.get(i)[0];
+            texts[i] = entry.text.strip();
+            ids[i] = entry.id;
+            weights[i] = Math.log1p(Math.max(0, entry.count));
+        }
+        return new SuggestIndex(keys, texts, ids, weights);
+    }
+
+    /**
+     * 规范化：去掉首尾空白和话题前缀 #，小写，连续空白合并为一个空格
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String s = text.strip();
+        while (s.startsWith("#")) {
+            s = s.substring(1);
+        }
+        return s.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * 前缀补全
+     *
+     * @param prefix 已规范化的前缀
+     * @param limit  返回条数
+     * @return 词条下标，按权重从高到低；规范化文本相同的只保留权重最高的一条
+     */
+    int[] complete(String prefix, int limit) {
+        if (prefix.isEmpty() || limit <= 0 || keys.length == 0) {
+            return new int[0];
+        }
+        int from = lowerBound(prefix);
+        int to = lowerBound(prefix + Character.MAX_VALUE);
+        if (from >= to) {
+            return new int[0];
+        }
+
+        // 候选区间按区间内最大权重排序，每次取出一个词条后把区间拆成左右两段放回
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> compare(b[2], a[2]));
+        ranges.add(new int[]{from, to, argMax(from, to)});
+        int[] result = new int[limit];
+        int count = 0;
+        Set<String> seen = new HashSet<>();
+        while (count < limit && !ranges.isEmpty()) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            if (seen.add(keys[best])) {
+                result[count++] = best;
+            }
+            if (range[0] < best) {
+                ranges.add(new int[]{range[0], best, argMax(range[0], best)});
+            }
+            if (best + 1 < range[1]) {
+                ranges.add(new int[]{best + 1, range[1], argMax(best + 1, range[1])});
+            }
+        }
+        return count == limit ? result : Arrays.copyOf(result, count);
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * [from, to) 内权重最大的词条下标
+     */
+    private int argMax(int from, int to) {
+        int n = keys.length;
+        int best = from;
+        for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                best = better(best, tree[l++]);
+            }
+            if ((r & 1) == 1) {
+                best = better(best, tree[--r]);
+            }
+        }
+        return best;
+    }
+
+    private int better(int a, int b) {
+        return compare(a, b) >= 0 ? a : b;
+    }
+
+    /**
+     * 权重高的在前，权重相同时文本短的在前
+     */
+    private int compare(int a, int b) {
+        int c = Double.compare(weights[a], weights[b]);
+        if (c != 0) {
+            return c;
+        }
+        c = Integer.compare(keys[b].length(), keys[a].length());
+        return c != 0 ? c : Integer.compare(b, a);
+    }
+
+    /**
+     * 索引词条
+     */
+    static final class Entry {
+        final long id;
+        final String text;
+        /**
+         * 排序依据的计数（话题视频数、视频播放量、用户粉丝数），权重取 log(1 + count)
+         */
+        final long count;
+
+        Entry(long id, String text, long count) {
+            this.id = id;
+            this.text = text;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.flowbrain.viewx.service.search;
+
+import com.flowbrain.viewx.dao.TopicMapper;
+import com.flowbrain.viewx.dao.UserMapper;
+import com.flowbrain.viewx.dao.VideoMapper;
+import com.flowbrain.viewx.pojo.dto.SuggestSourceDTO;
+import com.flowbrain.viewx.pojo.entity.Video;
+import com.flowbrain.viewx.pojo.vo.SuggestionVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 搜索框前缀联想服务（话题名、视频标题、用户昵称）
+ *
+ * 每种类型维护一份可变的词条表（id -> 词条）和一份由其构建的不可变 SuggestIndex：
+ * - 查询只读 volatile 引用上的不可变数组，无锁、不访问数据库和 Redis
+ * - 增量变更（话题关联、视频事件、昵称修改）只改词条表并标记脏，由定时任务合并重建索引后替换引用
+ * - 定期从数据库全量重载，兜底其他节点上发生、本节点没有收到通知的变更
+ *
+ * 排序：话题按视频数，视频按播放量，用户按粉丝数；混合查询时各类型按本类型最大权重归一化后合并
+ */
+@Slf4j
+@Service
+public class SuggestService {
+
+    public static final String TYPE_TOPIC = "topic";
+
+    public static final String TYPE_VIDEO = "video";
+
+    public static final String TYPE_USER = "user";
+
+    private static final int MAX_LIMIT = 20;
+
+    @Autowired
+    private TopicMapper topicMapper;
+
+    @Autowired
+    private VideoMapper videoMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    @Qualifier("coreThreadPool")
+    private Executor executor;
+
+    /**
+     * 各类型全量加载的词条上限（按排序计数取前 N 个）
+     */
+    @Value("${viewx.search.suggest.topic-limit:50000}")
+    private int topicLimit;
+
+    @Value("${viewx.search.suggest.video-limit:100000}")
+    private int videoLimit;
+
+    @Value("${viewx.search.suggest.user-limit:100000}")
+    private int userLimit;
+
+    private final Source topics = new Source(TYPE_TOPIC);
+
+    private final Source videos = new Source(TYPE_VIDEO);
+
+    private final Source users = new Source(TYPE_USER);
+
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        executor.execute(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                log.error("联想词索引构建失败", e);
+            }
+        });
+    }
+
+    /**
+     * 从数据库全量重载词条并重建索引
+     */
+    public void reload() {
+        long begin = System.currentTimeMillis();
+        topics.replaceAll(topicMapper.selectSuggestSources(topicLimit));
+        videos.replaceAll(videoMapper.selectSuggestSources(videoLimit));
+        users.replaceAll(userMapper.selectSuggestSources(userLimit));
+        ready = true;
+        log.info("联想词索引构建完成: topics={}, videos={}, users={}, cost={}ms",
+                topics.index.size(), videos.index.size(), users.index.size(), System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 前缀联想
+     *
+     * @param prefix 用户已输入的内容
+     * @param type   topic / video / user，为空时三类混合
+     * @param limit  返回条数（最多 20）
+     */
+    public List<SuggestionVO> suggest(String prefix, String type, int limit) {
+        String key = SuggestIndex.normalize(prefix);
+        limit = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (type != null && !type.isBlank()) {
+            Source source = sourceOf(type);
+            return source == null ? Collections.emptyList() : source.complete(key, limit);
+        }
+
+        // 混合：每类各取 limit 条，按归一化权重合并
+        List<Object[]> merged = new ArrayList<>(limit * 3);
+        for (Source source : List.of(topics, users, videos)) {
+            SuggestIndex index = source.index;
+            for (int i : index.complete(key, limit)) {
+                double score = index.maxWeight > 0 ? index.weights[i] / index.maxWeight : 0;
+                merged.add(new Object[]{score, source.toVO(index, i)});
+            }
+        }
+        merged.sort((a, b) -> Double.compare((Double) b[0], (Double) a[0]));
+        List<SuggestionVO> result = new ArrayList<>(limit);
+        for (int i = 0; i < Math.min(limit, merged.size()); i++) {
+            result.add((SuggestionVO) merged.get(i)[1]);
+        }
+        return result;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 话题视频数变化（关联或解除关联视频）
+     *
+     * @param name  话题名，未知时传 null（只更新已有词条）
+     * @param delta 视频数变化量
+     */
+    public void adjustTopic(Long topicId, String name, long delta) {
+        topics.adjust(topicId, name, delta);
+    }
+
+    /**
+     * 用户昵称变化（注册、修改资料）
+     */
+    public void upsertUser(Long userId, String nickname) {
+        if (nickname == null || nickname.isBlank()) {
+            users.remove(userId);
+        } else {
+            users.adjust(userId, nickname, 0);
+        }
+    }
+
+    public void removeUser(Long userId) {
+        users.remove(userId);
+    }
+
+    /**
+     * 按数据库最新状态刷新若干视频的标题：已审核的写入，其余移除
+     */
+    public void refreshVideos(Collection<Long> videoIds) {
+        if (videoIds == null || videoIds.isEmpty()) {
+            return;
+        }
+        Set<Long> approved = new HashSet<>();
+        for (Video video : videoMapper.selectApprovedByIds(videoIds)) {
+            long views = video.getViewCount() == null ? 0 : video.getViewCount();
+            if (video.getTitle() == null || video.getTitle().isBlank()) {
+                continue;
+            }
+            videos.put(video.getId(), video.getTitle(), views);
+            approved.add(video.getId());
+        }
+        for (Long videoId : videoIds) {
+            if (!approved.contains(videoId)) {
+                videos.remove(videoId);
+            }
+        }
+    }
+
+    /**
+     * 把增量变更合并进索引（只重建有变化的类型）
+     */
+    @Scheduled(fixedDelayString = "${viewx.search.suggest.rebuild-interval-ms:1000}")
+    public void rebuildDirty() {
+        if (!ready) {
+            return;
+        }
+        try {
+            topics.rebuildIfDirty();
+            videos.rebuildIfDirty();
+            users.rebuildIfDirty();
+        } catch (Exception e) {
+            log.error("联想词索引增量重建失败", e);
+        }
+    }
+
+    /**
+     * 定期全量重载，兜底漏掉的变更并刷新播放量、粉丝数
+     */
+    @Scheduled(fixedDelayString = "${viewx.search.suggest.reload-interval-ms:1800000}",
+            initialDelayString = "${viewx.search.suggest.reload-interval-ms:1800000}")
+    public void scheduledReload() {
+        if (!ready) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("联想词索引全量重载失败", e);
+        }
+    }
+
+    private Source sourceOf(String type) {
+        switch (type) {
+            case TYPE_TOPIC:
+                return topics;
+            case TYPE_VIDEO:
+                return videos;
+            case TYPE_USER:
+                return users;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 单一类型的词条表与索引
+     */
+    private static final class Source {
+
+        private final String type;
+
+        private final Map<Long, SuggestIndex.Entry> entries = new ConcurrentHashMap<>();
+
+        private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+        private volatile SuggestIndex index = SuggestIndex.EMPTY;
+
+        private Source(String type) {
+            this.type = type;
+        }
+
+        private synchronized void replaceAll(List<SuggestSourceDTO> rows) {
+            entries.clear();
+            for (SuggestSourceDTO row : rows) {
+                if (row.getId() != null && row.getText() != null) {
+                    entries.put(row.getId(), new SuggestIndex.Entry(row.getId(), row.getText(),
+                            row.getCount() == null ? 0 : row.getCount()));
+                }
+            }
+            dirty.set(false);
+            index = SuggestIndex.build(entries.values());
+        }
+
+        private void put(Long id, String text, long count) {
+            entries.put(id, new SuggestIndex.Entry(id, text, count));
+            dirty.set(true);
+        }
+
+        private void adjust(Long id, String text, long delta) {
+            SuggestIndex.Entry old = entries.get(id);
+            if (old == null && text == null) {
+                return;
+            }
+            String newText = text != null ? text : old.text;
+            long count = Math.max(0, (old == null ? 0 : old.count) + delta);
+            put(id, newText, count);
+        }
+
+        private void remove(Long id) {
+            if (entries.remove(id) != null) {
+                dirty.set(true);
+            }
+        }
+
+        private synchronized void rebuildIfDirty() {
+            if (dirty.compareAndSet(true, false)) {
+                index = SuggestIndex.build(entries.values());
+            }
+        }
+
+        private List<SuggestionVO> complete(String key, int limit) {
+            SuggestIndex current = index;
+            int[] hits = current.complete(key, limit);
+            List<SuggestionVO> result = new ArrayList<>(hits.length);
+            for (int i : hits) {
+                result.add(toVO(current, i));
+            }
+            return result;
+        }
+
+        private SuggestionVO toVO(SuggestIndex index, int i) {
+            return new SuggestionVO(type, index.ids[i], index.texts[i]);
+        }
+    }
+}
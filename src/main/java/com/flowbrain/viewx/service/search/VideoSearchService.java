@@ -0,0 +1,341 @@
+package com.flowbrain.viewx.service.search;
+
+import com.flowbrain.viewx.dao.VideoMapper;
+import com.flowbrain.viewx.pojo.entity.Video;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 视频全文检索服务
+ *
+ * 启动：优先加载本地快照并与数据库对账（已下架/删除的移除，快照之后有更新的重建），
+ * 没有可用快照时从 vx_videos 分批全量构建。
+ * 运行：由 viewx.search.index 队列的事件增量维护（SearchIndexConsumer），
+ * 定时冻结增量段、合并小段，并在索引有变化时写快照（停机时也会写一次）。
+ *
+ * 索引只负责匹配和排序，检索过程不访问数据库；就绪前 isReady() 为 false，调用方应回退到数据库查询。
+ */
+@Slf4j
+@Service
+public class VideoSearchService {
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    private static final int SNAPSHOT_MAGIC = 0x56585349; // "VXSI"
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * 快照追赶时向前多查的时间，覆盖快照时刻附近尚未提交的事务
+     */
+    private static final long CATCH_UP_MARGIN_SECONDS = 60;
+
+    @Autowired
+    private VideoMapper videoMapper;
+
+    @Autowired
+    @Qualifier("coreThreadPool")
+    private Executor executor;
+
+    @Value("${viewx.search.index.snapshot-path:data/search-index.snapshot}")
+    private String snapshotPath;
+
+    @Value("${viewx.search.index.max-segments:8}")
+    private int maxSegments;
+
+    @Value("${viewx.search.index.merge-factor:4}")
+    private int mergeFactor;
+
+    private final InvertedIndex index;
+
+    private volatile boolean ready;
+
+    private volatile boolean building;
+
+    /**
+     * 上次写快照之后索引是否有变化
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    /**
+     * 构建期间收到变更事件的视频，构建完成后按数据库最新状态重放
+     */
+    private final Set<Long> changedDuringBuild = ConcurrentHashMap.newKeySet();
+
+    public VideoSearchService(@Value("${viewx.search.index.max-delta-docs:2000}") int maxDeltaDocs) {
+        this.index = new InvertedIndex(maxDeltaDocs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        executor.execute(() -> {
+            try {
+                if (!restoreFromSnapshot()) {
+                    rebuild();
+                }
+            } catch (Exception e) {
+                log.error("搜索索引构建失败，搜索将回退到数据库查询", e);
+            }
+        });
+    }
+
+    /**
+     * 全量构建：按主键游标分批读取，逐条写入索引
+     */
+    public void rebuild() {
+        long begin = System.currentTimeMillis();
+        building = true;
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Video> batch = videoMapper.selectSearchDocsAfter(afterId, BUILD_BATCH_SIZE);
+                for (Video video : batch) {
+                    index.upsert(video.getId(), video.getTitle(), video.getDescription());
+                }
+                if (batch.size() < BUILD_BATCH_SIZE) {
+                    break;
+                }
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        } finally {
+            building = false;
+        }
+
+        replayChangedDuringBuild();
+        index.flushDelta();
+        index.maybeMerge(1, Integer.MAX_VALUE);
+        dirty.set(true);
+        ready = true;
+        log.info("搜索索引构建完成: docs={}, cost={}ms", index.size(), System.currentTimeMillis() - begin);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 检索视频ID
+     *
+     * @param offset 跳过的条数
+     * @param limit  返回的条数
+     */
+    public List<Long> search(String keyword, int offset, int limit) {
+        if (keyword == null || keyword.isBlank()) {
+            return Collections.emptyList();
+        }
+        return index.search(keyword, offset, limit);
+    }
+
+    /**
+     * 按数据库最新状态重建若干视频的索引：已审核的写入，其余（删除、下架、待审核）移除
+     */
+    public void reindex(Collection<Long> videoIds) {
+        if (videoIds == null || videoIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = new LinkedHashSet<>(videoIds);
+        if (building) {
+            changedDuringBuild.addAll(ids);
+        }
+        apply(ids);
+    }
+
+    private void apply(Collection<Long> ids) {
+        Set<Long> indexed = new HashSet<>();
+        for (Video video : videoMapper.selectApprovedByIds(ids)) {
+            index.upsert(video.getId(), video.getTitle(), video.getDescription());
+            indexed.add(video.getId());
+        }
+        for (Long videoId : ids) {
+            if (!indexed.contains(videoId)) {
+                index.remove(videoId);
+            }
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * 后台维护：冻结增量段并按需合并
+     */
+    @Scheduled(fixedDelayString = "${viewx.search.index.maintain-interval-ms:10000}")
+    public void maintain() {
+        if (!ready) {
+            return;
+        }
+        try {
+            index.flushDelta();
+            if (index.maybeMerge(maxSegments, mergeFactor)) {
+                log.debug("搜索索引段合并完成: segments={}, docs={}", index.segmentCount(), index.size());
+            }
+        } catch (Exception e) {
+            log.error("搜索索引维护失败", e);
+        }
+    }
+
+    /**
+     * 索引有变化时写快照
+     */
+    @Scheduled(fixedDelayString = "${viewx.search.index.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!ready || !dirty.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (Exception e) {
+            dirty.set(true);
+            log.error("写入搜索索引快照失败: path={}", snapshotPath, e);
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+
+    /**
+     * 写快照：先写临时文件再原子替换，文件头记录快照时间用于重启后追赶
+     */
+    private void writeSnapshot() throws IOException {
+        long begin = System.currentTimeMillis();
+        long snapshotAt = begin;
+        IndexSegment compacted = index.compactCopy();
+
+        Path target = Paths.get(snapshotPath).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(snapshotAt);
+            compacted.writeTo(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("搜索索引快照已写入: path={}, docs={}, cost={}ms",
+                target, compacted.liveCount(), System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 加载快照并与数据库对账
+     *
+     * @return 快照是否可用
+     */
+    private boolean restoreFromSnapshot() {
+        Path path = Paths.get(snapshotPath).toAbsolutePath();
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+
+        long begin = System.currentTimeMillis();
+        long snapshotAt;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("搜索索引快照格式不兼容，重新构建: path={}", path);
+                return false;
+            }
+            snapshotAt = in.readLong();
+            index.load(IndexSegment.readFrom(in));
+        } catch (Exception e) {
+            log.warn("读取搜索索引快照失败，重新构建: path={}, error={}", path, e.getMessage());
+            return false;
+        }
+
+        building = true;
+        try {
+            catchUp(snapshotAt);
+        } finally {
+            building = false;
+        }
+        replayChangedDuringBuild();
+        ready = true;
+        log.info("搜索索引已从快照恢复: docs={}, cost={}ms", index.size(), System.currentTimeMillis() - begin);
+        return true;
+    }
+
+    /**
+     * 快照追赶：
+     * 1. 快照时间之后有更新的视频按数据库状态重建
+     * 2. 数据库中已不是"已审核"的视频从索引移除（软删除不会更新 updated_at）
+     */
+    private void catchUp(long snapshotAt) {
+        LocalDateTime since = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(snapshotAt).minusSeconds(CATCH_UP_MARGIN_SECONDS), ZoneId.systemDefault());
+        List<Long> updated = videoMapper.selectIdsUpdatedSince(since);
+        for (int from = 0; from < updated.size(); from += BUILD_BATCH_SIZE) {
+            apply(updated.subList(from, Math.min(from + BUILD_BATCH_SIZE, updated.size())));
+        }
+
+        IndexSegment current = index.compactCopy();
+        Set<Long> approved = new HashSet<>();
+        long afterId = 0;
+        while (true) {
+            List<Long> batch = videoMapper.selectApprovedIdsAfter(afterId, BUILD_BATCH_SIZE * 10);
+            approved.addAll(batch);
+            if (batch.size() < BUILD_BATCH_SIZE * 10) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1);
+        }
+
+        List<Long> stale = new ArrayList<>();
+        Set<Long> indexed = new HashSet<>();
+        for (long docId : current.docIds) {
+            indexed.add(docId);
+            if (!approved.contains(docId)) {
+                stale.add(docId);
+            }
+        }
+        stale.forEach(index::remove);
+
+        // 已审核但不在索引中的（标题、简介均为空的视频不入索引，会在这里被重复检查，代价很小）
+        List<Long> missing = new ArrayList<>();
+        for (Long videoId : approved) {
+            if (!indexed.contains(videoId)) {
+                missing.add(videoId);
+            }
+        }
+        for (int from = 0; from < missing.size(); from += BUILD_BATCH_SIZE) {
+            apply(missing.subList(from, Math.min(from + BUILD_BATCH_SIZE, missing.size())));
+        }
+        dirty.set(true);
+        log.info("搜索索引快照追赶完成: updated={}, removed={}, added={}", updated.size(), stale.size(), missing.size());
+    }
+
+    private void replayChangedDuringBuild() {
+        if (!changedDuringBuild.isEmpty()) {
+            List<Long> changed = new ArrayList<>(changedDuringBuild);
+            changedDuringBuild.removeAll(changed);
+            reindex(changed);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.flowbrain.viewx.util;
+
+import com.flowbrain.viewx.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 不透明游标编解码工具
+ * 将若干游标字段拼接后进行 URL 安全的 Base64 编码，客户端无需理解其内容
+ *
+ * 列表类接口统一使用 (created_at, id) 作为键集分页游标：按 created_at DESC, id DESC 排序，
+ * 下一页条件为 (created_at, id) < (游标时间, 游标ID)，id 用来区分同一时刻的多条记录
+ */
+public class CursorCodec {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 游标分页每页条数上限
+     */
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private CursorCodec() {
+    }
+
+    /**
+     * 编码游标
+     *
+     * @param parts 游标字段（按顺序）
+     * @return 不透明游标字符串
+     */
+    public static String encode(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     *
+     * @param cursor        游标字符串
+     * @param expectedParts 期望的字段数量
+     * @return 游标字段数组
+     * @throws ValidationException 游标格式非法
+     */
+    public static String[] decode(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != expectedParts) {
+                throw new ValidationException("无效的分页游标");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("无效的分页游标");
+        }
+    }
+
+    /**
+     * 把客户端传入的每页条数限制在 [1, MAX_PAGE_SIZE]
+     */
+    public static int clampSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+    }
+
+    /**
+     * 校验页码分页接口的页码（从 1 开始）
+     *
+     * @throws ValidationException 页码小于 1
+     */
+    public static void requirePage(int page) {
+        if (page < 1) {
+            throw new ValidationException("页码必须从 1 开始");
+        }
+    }
+
+    /**
+     * 游标是否为空（首次请求）
+     */
+    public static boolean isBlank(String cursor) {
+        return cursor == null || cursor.isBlank();
+    }
+
+    /**
+     * 编码 (时间, ID) 游标
+     */
+    public static String encodeTimeId(LocalDateTime time, Long id) {
+        return encode(time, id);
+    }
+
+    /**
+     * 解析游标中的时间字段（LocalDateTime.toString 格式，保留微秒精度）
+     */
+    public static LocalDateTime parseTime(String part) {
+        try {
+            return LocalDateTime.parse(part);
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("无效的分页游标");
+        }
+    }
+
+    /**
+     * 解析游标中的 ID 字段
+     */
+    public static long parseLong(String part) {
+        try {
+            return Long.parseLong(part);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("无效的分页游标");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.flowbrain.viewx.util;
+
+/**
+ * 长整型ID的布隆过滤器
+ * 用于在内存中快速判断"是否可能已存在"，不存在时一定返回 false，存在时有 fpp 概率误判
+ * 非线程安全，适合在单次计算中临时构建
+ */
+public class LongBloomFilter {
+
+    private final long[] bits;
+
+    private final int bitSize;
+
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 预计插入的元素个数
+     * @param fpp                期望误判率（0 ~ 1）
+     */
+    public LongBloomFilter(int expectedInsertions, double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+        }
+        int n = Math.max(1, expectedInsertions);
+        // m = -n * ln(p) / (ln2)^2，k = m / n * ln2
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitSize = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63L));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        this.bits = new long[(bitSize + 63) >>> 6];
+    }
+
+    public void put(long value) {
+        long hash = mix(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int index = indexOf(h1 + i * h2);
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+
+    public boolean mightContain(long value) {
+        long hash = mix(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int index = indexOf(h1 + i * h2);
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(int combined) {
+        return (combined & Integer.MAX_VALUE) % bitSize;
+    }
+
+    /**
+     * SplitMix64 混淆，保证连续ID也能均匀分布
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
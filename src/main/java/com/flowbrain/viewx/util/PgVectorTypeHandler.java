@@ -0,0 +1,72 @@
+package com.flowbrain.viewx.util;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.nio.ByteBuffer;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * pgvector 的 VECTOR 类型与 float[] 互转
+ *
+ * 读取：查询中用 vector_send(column) 取二进制格式（uint16 维度 + uint16 保留位 + 维度个大端 float4），
+ * 比默认的文本格式 "[0.1,0.2,...]" 体积小且无需解析浮点字符串
+ * 写入：以文本格式作为未指定类型的参数发送，由数据库推断为 vector（驱动为 runtime 依赖，不使用 PGobject）
+ */
+@MappedTypes(float[].class)
+@MappedJdbcTypes(JdbcType.BINARY)
+public class PgVectorTypeHandler extends BaseTypeHandler<float[]> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, float[] parameter, JdbcType jdbcType)
+            throws SQLException {
+        ps.setObject(i, toText(parameter), Types.OTHER);
+    }
+
+    @Override
+    public float[] getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return decode(rs.getBytes(columnName));
+    }
+
+    @Override
+    public float[] getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return decode(rs.getBytes(columnIndex));
+    }
+
+    @Override
+    public float[] getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return decode(cs.getBytes(columnIndex));
+    }
+
+    /**
+     * 解析 vector_send 的二进制输出
+     */
+    public static float[] decode(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int dimension = Short.toUnsignedInt(buffer.getShort());
+        buffer.getShort();
+        float[] vector = new float[dimension];
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    public static String toText(float[] vector) {
+        StringBuilder sb = new StringBuilder(vector.length * 10 + 2).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
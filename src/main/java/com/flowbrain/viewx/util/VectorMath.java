@@ -0,0 +1,50 @@
+package com.flowbrain.viewx.util;
+
+/**
+ * 向量运算工具
+ * 内层循环按 4 路展开、使用独立累加器，无分支、顺序访问连续 float[]，便于 JIT 生成 SIMD 指令
+ */
+public class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * 点积：a[aOffset, aOffset + length) · b[bOffset, bOffset + length)
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int upper = length & ~3;
+        for (; i < upper; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return dot(a, 0, b, 0, Math.min(a.length, b.length));
+    }
+
+    /**
+     * 原地归一化为单位向量，零向量保持不变
+     *
+     * @return 归一化前的模长
+     */
+    public static float normalize(float[] v) {
+        float norm = (float) Math.sqrt(dot(v, v));
+        if (norm > 0f) {
+            float inv = 1f / norm;
+            for (int i = 0; i < v.length; i++) {
+                v[i] *= inv;
+            }
+        }
+        return norm;
+    }
+}
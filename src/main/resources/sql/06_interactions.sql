@@ -31,4 +31,12 @@ CREATE TABLE vx_video_comments (
     deleted_at TIMESTAMP
 );
 
+-- 评论点赞记录表（由 Redis 缓冲批量写入）
+CREATE TABLE vx_comment_likes (
+    comment_id BIGINT NOT NULL REFERENCES vx_video_comments(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES vx_users(id) ON DELETE CASCADE,
+    created_at TIMESTAMP DEFAULT NOW(),
+    PRIMARY KEY (comment_id, user_id)
+);
+
 -- 注释：索引已移至 13_indexes_optimization.sql 统一管理
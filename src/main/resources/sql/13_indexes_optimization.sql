@@ -150,6 +150,13 @@ CREATE INDEX IF NOT EXISTS idx_videos_title_trgm ON vx_videos USING gin(title gi
 -- 2.8 优化描述搜索
 CREATE INDEX IF NOT EXISTS idx_videos_description_trgm ON vx_videos USING gin(description gin_trgm_ops);
 
+-- 2.9 优化搜索索引快照追赶（按更新时间查询变更视频）
+CREATE INDEX IF NOT EXISTS idx_videos_updated_at ON vx_videos(updated_at);
+
+-- 2.10 最新视频键集分页（(created_at, id) 游标）
+CREATE INDEX IF NOT EXISTS idx_videos_latest_keyset ON vx_videos(created_at DESC, id DESC)
+WHERE is_deleted = FALSE AND status = 'APPROVED';
+
 -- ========================================
 -- 3. 内容表 (vx_contents) 索引优化
 -- ========================================
@@ -230,6 +237,17 @@ WHERE is_deleted = FALSE AND is_pinned = FALSE;
 CREATE INDEX IF NOT EXISTS idx_comments_pinned ON vx_video_comments(video_id, is_pinned, created_at DESC) 
 WHERE is_deleted = FALSE AND is_pinned = TRUE;
 
+-- 一级评论键集分页（(is_pinned, created_at, id) 游标）
+CREATE INDEX IF NOT EXISTS idx_comments_root_keyset ON vx_video_comments(video_id, is_pinned DESC, created_at DESC, id DESC)
+WHERE is_deleted = FALSE AND parent_id IS NULL;
+
+-- 评论点赞：预热用户点赞集合（主键 (comment_id, user_id) 已覆盖按评论查询）
+CREATE INDEX IF NOT EXISTS idx_comment_likes_user_time ON vx_comment_likes(user_id, created_at DESC);
+
+-- 回复预览（窗口函数按 parent_id 分区）与回复键集分页
+CREATE INDEX IF NOT EXISTS idx_comments_replies_keyset ON vx_video_comments(parent_id, created_at, id)
+WHERE is_deleted = FALSE AND parent_id IS NOT NULL;
+
 -- ========================================
 -- 5. 消息表 (vx_messages) 索引优化
 -- ========================================
@@ -259,6 +277,9 @@ WHERE is_deleted = FALSE AND is_read = FALSE;
 CREATE INDEX IF NOT EXISTS idx_messages_not_recalled ON vx_messages(sender_id, receiver_id, created_at DESC) 
 WHERE is_deleted = FALSE AND is_recalled = FALSE;
 
+-- 5.4 聊天历史键集分页（每个方向一次范围扫描，(created_at, id) 游标）
+CREATE INDEX IF NOT EXISTS idx_messages_pair_keyset ON vx_messages(sender_id, receiver_id, created_at DESC, id DESC);
+
 -- ========================================
 -- 6. 会话表 (vx_conversations) 索引优化
 -- ========================================
@@ -278,6 +299,10 @@ WHERE unread_count_user1 > 0;
 CREATE INDEX IF NOT EXISTS idx_conversations_user2_unread ON vx_conversations(user2_id, last_message_time DESC) 
 WHERE unread_count_user2 > 0;
 
+-- 6.3 会话列表键集分页（两侧各一次范围扫描，(last_message_time, id) 游标）
+CREATE INDEX IF NOT EXISTS idx_conversations_user1_keyset ON vx_conversations(user1_id, last_message_time DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_conversations_user2_keyset ON vx_conversations(user2_id, last_message_time DESC, id DESC);
+
 -- ========================================
 -- 7. 关注表 (vx_user_follows) 索引优化
 -- ========================================
@@ -293,6 +318,15 @@ CREATE INDEX IF NOT EXISTS idx_follows_followers ON vx_user_follows(followed_id,
 -- 7.3 优化关注列表查询
 CREATE INDEX IF NOT EXISTS idx_follows_following ON vx_user_follows(follower_id, created_at DESC);
 
+-- 7.4 关注流写扩散：按 follower_id 游标分批读取某作者的全部粉丝
+CREATE INDEX IF NOT EXISTS idx_follows_fanout ON vx_user_follows(followed_id, follower_id);
+
+-- 7.5 粉丝列表键集分页（(created_at, follower_id) 游标）
+CREATE INDEX IF NOT EXISTS idx_follows_followers_keyset ON vx_user_follows(followed_id, created_at DESC, follower_id DESC);
+
+-- 7.6 关注列表键集分页（(created_at, followed_id) 游标）
+CREATE INDEX IF NOT EXISTS idx_follows_following_keyset ON vx_user_follows(follower_id, created_at DESC, followed_id DESC);
+
 -- ========================================
 -- 8. 话题表 (vx_topics) 索引优化
 -- ========================================
@@ -336,6 +370,10 @@ CREATE INDEX IF NOT EXISTS idx_notifications_type ON vx_notifications(recipient_
 CREATE INDEX IF NOT EXISTS idx_notifications_video ON vx_notifications(related_video_id, created_at DESC) 
 WHERE related_video_id IS NOT NULL;
 
+-- 10.4 通知列表键集分页（(created_at, id) 游标）
+CREATE INDEX IF NOT EXISTS idx_notifications_recipient_keyset ON vx_notifications(recipient_id, created_at DESC, id DESC)
+WHERE is_deleted = FALSE;
+
 -- ========================================
 -- 11. 安全审计表索引优化
 -- ========================================
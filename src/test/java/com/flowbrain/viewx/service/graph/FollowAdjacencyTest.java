@@ -0,0 +1,39 @@
+package com.flowbrain.viewx.service.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FollowAdjacencyTest {
+
+    @Test
+    void testMembershipAfterUpdates() {
+        FollowAdjacency adjacency = FollowAdjacency.of(List.of(1874000000000000003L, 5L, 42L, 5L));
+        assertEquals(3, adjacency.size());
+        assertTrue(adjacency.contains(5L));
+        assertTrue(adjacency.contains(1874000000000000003L));
+        assertFalse(adjacency.contains(6L));
+
+        FollowAdjacency added = adjacency.with(7L);
+        assertTrue(added.contains(7L));
+        assertFalse(adjacency.contains(7L));
+        assertSame(added, added.with(7L));
+
+        FollowAdjacency removed = added.without(42L);
+        assertFalse(removed.contains(42L));
+        assertEquals(3, removed.size());
+        assertSame(removed, removed.without(42L));
+        assertSame(FollowAdjacency.EMPTY, FollowAdjacency.of(List.of(9L)).without(9L));
+    }
+
+    @Test
+    void testIntersect() {
+        FollowAdjacency a = FollowAdjacency.of(List.of(1L, 3L, 5L, 7L, 9L));
+        FollowAdjacency b = FollowAdjacency.of(List.of(9L, 2L, 3L, 4L, 7L));
+        assertEquals("[3, 7, 9]", Arrays.toString(a.intersect(b)));
+        assertEquals(0, a.intersect(FollowAdjacency.EMPTY).length);
+    }
+}
@@ -0,0 +1,94 @@
+package com.flowbrain.viewx.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+
+    @Test
+    void testCjkBigramTokenize() {
+        assertEquals(List.of("推荐", "荐算", "算法", "java"), SearchTokenizer.tokenizeQuery("推荐算法 Java"));
+        assertEquals(List.of("猫"), SearchTokenizer.tokenizeQuery("猫!"));
+    }
+
+    @Test
+    void testTitleMatchRanksFirst() {
+        InvertedIndex index = new InvertedIndex();
+        index.upsert(1L, "旅行日记", "记录一次推荐算法的学习");
+        index.upsert(2L, "推荐算法入门", "从零开始");
+        index.upsert(3L, "做饭教程", "家常菜");
+
+        List<Long> hits = index.search("推荐算法", 0, 10);
+        assertEquals(List.of(2L, 1L), hits);
+        assertEquals(List.of(1L), index.search("推荐算法", 1, 10));
+    }
+
+    @Test
+    void testSingleCharacterQueryMatchesTitle() {
+        InvertedIndex index = new InvertedIndex();
+        index.upsert(1L, "可爱的猫咪", null);
+
+        assertEquals(List.of(1L), index.search("猫", 0, 10));
+    }
+
+    @Test
+    void testUpdateAndRemove() {
+        InvertedIndex index = new InvertedIndex();
+        index.upsert(1L, "Spring Boot", null);
+        index.upsert(1L, "Redis", null);
+
+        assertTrue(index.search("spring", 0, 10).isEmpty());
+        assertEquals(List.of(1L), index.search("REDIS", 0, 10));
+
+        index.remove(1L);
+        assertTrue(index.search("redis", 0, 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testDeleteAcrossSegmentsAndMerge() {
+        InvertedIndex index = new InvertedIndex(2);
+        index.upsert(1L, "Redis 缓存", null);
+        index.upsert(2L, "Redis 集群", null);
+        index.upsert(3L, "Redis 持久化", null);
+        index.flushDelta();
+        assertEquals(2, index.segmentCount());
+
+        // 旧版本在不可变段中被标记删除，新版本进入增量段
+        index.upsert(1L, "MySQL 索引", null);
+        index.remove(2L);
+        assertEquals(List.of(3L), index.search("redis", 0, 10));
+        assertEquals(List.of(1L), index.search("mysql", 0, 10));
+
+        assertTrue(index.maybeMerge(1, 10));
+        assertEquals(1, index.segmentCount());
+        assertEquals(List.of(3L), index.search("redis", 0, 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws Exception {
+        InvertedIndex index = new InvertedIndex(100);
+        index.upsert(1L, "推荐算法入门", "从零开始");
+        index.upsert(2L, "做饭教程", null);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            index.compactCopy().writeTo(out);
+        }
+
+        InvertedIndex restored = new InvertedIndex(100);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            restored.load(IndexSegment.readFrom(in));
+        }
+        assertEquals(2, restored.size());
+        assertEquals(List.of(1L), restored.search("算法", 0, 10));
+    }
+}
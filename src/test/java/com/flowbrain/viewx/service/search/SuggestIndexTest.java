@@ -0,0 +1,72 @@
+package com.flowbrain.viewx.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestIndexTest {
+
+    private static List<String> texts(SuggestIndex index, int[] hits) {
+        List<String> result = new ArrayList<>();
+        for (int i : hits) {
+            result.add(index.texts[i]);
+        }
+        return result;
+    }
+
+    @Test
+    void testPrefixRankedByCount() {
+        SuggestIndex index = SuggestIndex.build(List.of(
+                new SuggestIndex.Entry(1, "旅行", 10),
+                new SuggestIndex.Entry(2, "旅行日记", 500),
+                new SuggestIndex.Entry(3, "旅游攻略", 50),
+                new SuggestIndex.Entry(4, "美食", 1000),
+                new SuggestIndex.Entry(5, "#Java 入门", 80)));
+
+        assertEquals(List.of("旅行日记", "旅游攻略", "旅行"), texts(index, index.complete("旅", 10)));
+        assertEquals(List.of("旅行日记", "旅行"), texts(index, index.complete("旅行", 10)));
+        assertEquals(List.of("旅行日记"), texts(index, index.complete("旅", 1)));
+        assertEquals(List.of("#Java 入门"), texts(index, index.complete(SuggestIndex.normalize("java  入"), 10)));
+        assertEquals(0, index.complete("不存在", 10).length);
+    }
+
+    @Test
+    void testTopKMatchesBruteForce() {
+        List<SuggestIndex.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            entries.add(new SuggestIndex.Entry(i, "ab" + Integer.toString(i, 7), (i * 7919L) % 1000));
+        }
+        SuggestIndex index = SuggestIndex.build(entries);
+
+        int[] hits = index.complete("ab1", 20);
+        assertEquals(20, hits.length);
+        long matching = entries.stream().filter(e -> e.text.startsWith("ab1")).count();
+        double previous = Double.MAX_VALUE;
+        for (int i : hits) {
+            assertTrue(index.keys[i].startsWith("ab1"));
+            assertTrue(index.weights[i] <= previous);
+            previous = index.weights[i];
+        }
+        // 第 20 名的权重不低于任何未返回的匹配词条
+        double threshold = previous;
+        long above = entries.stream()
+                .filter(e -> e.text.startsWith("ab1") && Math.log1p(e.count) > threshold)
+                .count();
+        assertTrue(above < 20 && matching > 20);
+    }
+
+    @Test
+    void testDuplicateTextsCollapsed() {
+        SuggestIndex index = SuggestIndex.build(List.of(
+                new SuggestIndex.Entry(1, "猫咪", 5),
+                new SuggestIndex.Entry(2, "猫咪", 9),
+                new SuggestIndex.Entry(3, "猫粮", 1)));
+
+        int[] hits = index.complete("猫", 10);
+        assertEquals(List.of("猫咪", "猫粮"), texts(index, hits));
+        assertEquals(2L, index.ids[hits[0]]);
+    }
+}
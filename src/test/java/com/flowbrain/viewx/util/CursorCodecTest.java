@@ -0,0 +1,53 @@
+package com.flowbrain.viewx.util;
+
+import com.flowbrain.viewx.exception.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorCodecTest {
+
+    @Test
+    void testRoundTrip() {
+        String cursor = CursorCodec.encode(123.456, 3);
+        String[] parts = CursorCodec.decode(cursor, 2);
+
+        assertEquals("123.456", parts[0]);
+        assertEquals("3", parts[1]);
+    }
+
+    @Test
+    void testCursorIsUrlSafe() {
+        String cursor = CursorCodec.encode("2025-01-01T00:00:00", Long.MAX_VALUE);
+
+        assertFalse(cursor.contains("+"));
+        assertFalse(cursor.contains("/"));
+        assertFalse(cursor.contains("="));
+    }
+
+    @Test
+    void testTimeIdRoundTrip() {
+        LocalDateTime time = LocalDateTime.of(2025, 3, 1, 12, 0, 0, 123456000);
+        String[] parts = CursorCodec.decode(CursorCodec.encodeTimeId(time, 42L), 2);
+
+        assertEquals(time, CursorCodec.parseTime(parts[0]));
+        assertEquals(42L, CursorCodec.parseLong(parts[1]));
+        assertEquals(LocalDateTime.of(2025, 3, 1, 12, 0), CursorCodec.parseTime(LocalDateTime.of(2025, 3, 1, 12, 0).toString()));
+        assertThrows(ValidationException.class, () -> CursorCodec.parseTime("yesterday"));
+    }
+
+    @Test
+    void testInvalidCursor() {
+        assertThrows(ValidationException.class, () -> CursorCodec.decode("not base64!", 2));
+        assertThrows(ValidationException.class, () -> CursorCodec.decode(CursorCodec.encode(1), 2));
+    }
+
+    @Test
+    void testIsBlank() {
+        assertTrue(CursorCodec.isBlank(null));
+        assertTrue(CursorCodec.isBlank(" "));
+        assertFalse(CursorCodec.isBlank(CursorCodec.encode(1)));
+    }
+}
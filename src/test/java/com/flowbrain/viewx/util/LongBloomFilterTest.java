@@ -0,0 +1,41 @@
+package com.flowbrain.viewx.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongBloomFilterTest {
+
+    @Test
+    void testNoFalseNegatives() {
+        LongBloomFilter filter = new LongBloomFilter(1000, 0.01);
+        for (long id = 1; id <= 1000; id++) {
+            filter.put(id * 7919);
+        }
+        for (long id = 1; id <= 1000; id++) {
+            assertTrue(filter.mightContain(id * 7919));
+        }
+    }
+
+    @Test
+    void testFalsePositiveRateIsBounded() {
+        LongBloomFilter filter = new LongBloomFilter(1000, 0.01);
+        for (long id = 0; id < 1000; id++) {
+            filter.put(id);
+        }
+
+        int falsePositives = 0;
+        for (long id = 1_000_000; id < 1_010_000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        // 期望 1%，留出余量
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testInvalidFpp() {
+        assertThrows(IllegalArgumentException.class, () -> new LongBloomFilter(100, 0));
+    }
+}